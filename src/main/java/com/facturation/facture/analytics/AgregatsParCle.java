@@ -0,0 +1,88 @@
+package com.facturation.facture.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Accumulateurs (nombre, HT, TVA, TTC en centimes) par clé de regroupement,
+ * en tableaux primitifs à adressage ouvert
+ */
+public class AgregatsParCle {
+
+    private static final long LIBRE = Long.MIN_VALUE;
+    private static final int MESURES = 4;
+
+    private long[] cles;
+    private long[] mesures;
+    private int taille;
+
+    public AgregatsParCle() {
+        this(16);
+    }
+
+    AgregatsParCle(int capacite) {
+        cles = new long[capacite];
+        mesures = new long[capacite * MESURES];
+        Arrays.fill(cles, LIBRE);
+    }
+
+    void ajouter(long cle, long nombre, long ht, long tva, long ttc) {
+        int position = position(cle);
+        mesures[position] += nombre;
+        mesures[position + 1] += ht;
+        mesures[position + 2] += tva;
+        mesures[position + 3] += ttc;
+    }
+
+    void fusionner(AgregatsParCle autre) {
+        for (int i = 0; i < autre.cles.length; i++) {
+            if (autre.cles[i] != LIBRE) {
+                int source = i * MESURES;
+                ajouter(autre.cles[i], autre.mesures[source], autre.mesures[source + 1],
+                        autre.mesures[source + 2], autre.mesures[source + 3]);
+            }
+        }
+    }
+
+    public int taille() {
+        return taille;
+    }
+
+    public void parcourir(Visiteur visiteur) {
+        for (int i = 0; i < cles.length; i++) {
+            if (cles[i] != LIBRE) {
+                int source = i * MESURES;
+                visiteur.visiter(cles[i], mesures[source], mesures[source + 1],
+                        mesures[source + 2], mesures[source + 3]);
+            }
+        }
+    }
+
+    private int position(long cle) {
+        if ((taille + 1) * 4L > cles.length * 3L) {
+            agrandir();
+        }
+        int masque = cles.length - 1;
+        for (int i = (int) Hachage.melanger(cle) & masque; ; i = (i + 1) & masque) {
+            if (cles[i] == cle) {
+                return i * MESURES;
+            }
+            if (cles[i] == LIBRE) {
+                cles[i] = cle;
+                taille++;
+                return i * MESURES;
+            }
+        }
+    }
+
+    private void agrandir() {
+        AgregatsParCle agrandi = new AgregatsParCle(cles.length * 2);
+        agrandi.fusionner(this);
+        cles = agrandi.cles;
+        mesures = agrandi.mesures;
+        taille = agrandi.taille;
+    }
+
+    public interface Visiteur {
+        void visiter(long cle, long nombre, long montantHT, long montantTVA, long montantTTC);
+    }
+}
@@ -0,0 +1,121 @@
+package com.facturation.facture.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Balance âgée des créances : montants impayés (centimes) par client dans les tranches
+ * 0-30, 31-60, 61-90 et plus de 90 jours. Accumulée en tableaux primitifs à adressage ouvert
+ * (mémoire proportionnelle au nombre de clients, pas de factures), puis figée triée par total.
+ */
+public class BalanceAgee {
+
+    public static final String[] TRANCHES = {"0-30", "31-60", "61-90", "90+"};
+
+    private static final long LIBRE = Long.MIN_VALUE;
+    // 4 tranches + total + nombre de factures
+    private static final int CHAMPS = 6;
+    private static final int TOTAL = 4;
+    private static final int NOMBRE = 5;
+
+    private long[] cles;
+    private long[] valeurs;
+    private int taille;
+    private boolean figee;
+    private final long[] totauxTranches = new long[TRANCHES.length + 1];
+    private long nombreFactures;
+
+    public BalanceAgee() {
+        cles = new long[1024];
+        valeurs = new long[1024 * CHAMPS];
+        Arrays.fill(cles, LIBRE);
+    }
+
+    public void ajouter(long clientId, long ageJours, long centimes) {
+        if (figee) {
+            throw new IllegalStateException("Balance âgée déjà figée");
+        }
+        int tranche = ageJours <= 30 ? 0 : ageJours <= 60 ? 1 : ageJours <= 90 ? 2 : 3;
+        int position = position(clientId);
+        valeurs[position + tranche] += centimes;
+        valeurs[position + TOTAL] += centimes;
+        valeurs[position + NOMBRE]++;
+        totauxTranches[tranche] += centimes;
+        totauxTranches[TOTAL] += centimes;
+        nombreFactures++;
+    }
+
+    /**
+     * Compacter et trier les clients par total impayé décroissant ; la balance devient lecture seule
+     */
+    public BalanceAgee figer() {
+        Integer[] ordre = new Integer[taille];
+        long[] compactesCles = new long[taille];
+        long[] compactesValeurs = new long[taille * CHAMPS];
+        int n = 0;
+        for (int i = 0; i < cles.length; i++) {
+            if (cles[i] != LIBRE) {
+                compactesCles[n] = cles[i];
+                System.arraycopy(valeurs, i * CHAMPS, compactesValeurs, n * CHAMPS, CHAMPS);
+                ordre[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(ordre, (a, b) -> Long.compare(compactesValeurs[b * CHAMPS + TOTAL], compactesValeurs[a * CHAMPS + TOTAL]));
+
+        cles = new long[taille];
+        valeurs = new long[taille * CHAMPS];
+        for (int i = 0; i < taille; i++) {
+            cles[i] = compactesCles[ordre[i]];
+            System.arraycopy(compactesValeurs, ordre[i] * CHAMPS, valeurs, i * CHAMPS, CHAMPS);
+        }
+        figee = true;
+        return this;
+    }
+
+    public int nombreClients() { return taille; }
+
+    public long nombreFactures() { return nombreFactures; }
+
+    public long clientId(int rang) { return cles[rang]; }
+
+    public long tranche(int rang, int tranche) { return valeurs[rang * CHAMPS + tranche]; }
+
+    public long total(int rang) { return valeurs[rang * CHAMPS + TOTAL]; }
+
+    public long nombreFactures(int rang) { return valeurs[rang * CHAMPS + NOMBRE]; }
+
+    public long totalTranche(int tranche) { return totauxTranches[tranche]; }
+
+    public long total() { return totauxTranches[TOTAL]; }
+
+    private int position(long cle) {
+        if ((taille + 1) * 4L > cles.length * 3L) {
+            agrandir();
+        }
+        int masque = cles.length - 1;
+        for (int i = (int) Hachage.melanger(cle) & masque; ; i = (i + 1) & masque) {
+            if (cles[i] == cle) {
+                return i * CHAMPS;
+            }
+            if (cles[i] == LIBRE) {
+                cles[i] = cle;
+                taille++;
+                return i * CHAMPS;
+            }
+        }
+    }
+
+    private void agrandir() {
+        long[] anciennesCles = cles;
+        long[] anciennesValeurs = valeurs;
+        cles = new long[anciennesCles.length * 2];
+        valeurs = new long[cles.length * CHAMPS];
+        Arrays.fill(cles, LIBRE);
+        taille = 0;
+        for (int i = 0; i < anciennesCles.length; i++) {
+            if (anciennesCles[i] != LIBRE) {
+                System.arraycopy(anciennesValeurs, i * CHAMPS, valeurs, position(anciennesCles[i]), CHAMPS);
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.facturation.facture.analytics;
+
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copie colonnaire des factures hors du tas Java (buffers directs) : montants en centimes,
+ * jour et mois de facturation, statut et mode de paiement codés sur un octet, id client.
+ * Les agrégations parcourent les colonnes par tranches réparties sur un ForkJoinPool ;
+ * un seul écrivain à la fois, les lectures se partagent le verrou.
+ */
+public class ColonnesFactures {
+
+    static final byte SUPPRIMEE = -1;
+    static final byte SANS_MODE = -1;
+
+    private static final int CAPACITE_INITIALE = 1 << 16;
+    private static final int TAILLE_TRANCHE = 1 << 16;
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    private final IndexLongInt index = new IndexLongInt(CAPACITE_INITIALE);
+
+    private int capacite;
+    private int taille;
+    private int supprimees;
+
+    private LongBuffer ids;
+    private LongBuffer clients;
+    private LongBuffer montantsHT;
+    private LongBuffer montantsTVA;
+    private LongBuffer montantsTTC;
+    private IntBuffer jours;
+    private IntBuffer mois;
+    private ByteBuffer statuts;
+    private ByteBuffer modes;
+
+    public ColonnesFactures() {
+        allouer(CAPACITE_INITIALE);
+    }
+
+    /**
+     * Insérer ou remplacer une facture ; clientId négatif : conserver le client déjà connu
+     */
+    public void enregistrer(long id, LocalDate dateFacture, StatutFacture statut, ModePaiement mode, long clientId,
+                            BigDecimal montantHT, BigDecimal montantTVA, BigDecimal montantTTC) {
+        verrou.writeLock().lock();
+        try {
+            int ligne = index.get(id);
+            if (ligne < 0) {
+                if (taille == capacite) {
+                    allouer(capacite * 2);
+                }
+                ligne = taille++;
+                index.put(id, ligne);
+                ids.put(ligne, id);
+                clients.put(ligne, clientId);
+            } else {
+                if (statuts.get(ligne) == SUPPRIMEE) {
+                    supprimees--;
+                }
+                if (clientId >= 0) {
+                    clients.put(ligne, clientId);
+                }
+            }
+            jours.put(ligne, (int) dateFacture.toEpochDay());
+            mois.put(ligne, dateFacture.getYear() * 100 + dateFacture.getMonthValue());
+            statuts.put(ligne, (byte) statut.ordinal());
+            modes.put(ligne, coderMode(mode));
+            montantsHT.put(ligne, centimes(montantHT));
+            montantsTVA.put(ligne, centimes(montantTVA));
+            montantsTTC.put(ligne, centimes(montantTTC));
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public boolean contient(long id) {
+        verrou.readLock().lock();
+        try {
+            int ligne = index.get(id);
+            return ligne >= 0 && statuts.get(ligne) != SUPPRIMEE;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marquer une facture supprimée (la ligne est ignorée par les agrégations)
+     */
+    public void supprimer(long id) {
+        verrou.writeLock().lock();
+        try {
+            int ligne = index.get(id);
+            if (ligne >= 0 && statuts.get(ligne) != SUPPRIMEE) {
+                statuts.put(ligne, SUPPRIMEE);
+                supprimees++;
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public void vider() {
+        verrou.writeLock().lock();
+        try {
+            index.vider();
+            taille = 0;
+            supprimees = 0;
+            allouer(CAPACITE_INITIALE);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public int nombreFactures() {
+        verrou.readLock().lock();
+        try {
+            return taille - supprimees;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agréger les factures filtrées par clé de regroupement (montants en centimes)
+     */
+    public AgregatsParCle agreger(FiltreFactures filtre, RegroupementFactures regroupement, ForkJoinPool pool) {
+        verrou.readLock().lock();
+        try {
+            return pool.invoke(new Agregation(filtre, regroupement, 0, taille));
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    static byte coderMode(ModePaiement mode) {
+        return mode != null ? (byte) mode.ordinal() : SANS_MODE;
+    }
+
+    static long centimes(BigDecimal montant) {
+        return montant != null ? montant.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue() : 0L;
+    }
+
+    /**
+     * (Ré)allouer les colonnes ; l'ancien contenu est recopié puis libéré par le GC
+     */
+    private void allouer(int nouvelleCapacite) {
+        ids = copier(ids, allouerLongs(nouvelleCapacite));
+        clients = copier(clients, allouerLongs(nouvelleCapacite));
+        montantsHT = copier(montantsHT, allouerLongs(nouvelleCapacite));
+        montantsTVA = copier(montantsTVA, allouerLongs(nouvelleCapacite));
+        montantsTTC = copier(montantsTTC, allouerLongs(nouvelleCapacite));
+        jours = copier(jours, ByteBuffer.allocateDirect(nouvelleCapacite * 4).order(ByteOrder.nativeOrder()).asIntBuffer());
+        mois = copier(mois, ByteBuffer.allocateDirect(nouvelleCapacite * 4).order(ByteOrder.nativeOrder()).asIntBuffer());
+        statuts = copier(statuts, ByteBuffer.allocateDirect(nouvelleCapacite));
+        modes = copier(modes, ByteBuffer.allocateDirect(nouvelleCapacite));
+        capacite = nouvelleCapacite;
+    }
+
+    private static LongBuffer allouerLongs(int capacite) {
+        return ByteBuffer.allocateDirect(capacite * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private LongBuffer copier(LongBuffer source, LongBuffer cible) {
+        if (source != null && taille > 0) {
+            cible.put(0, source, 0, taille);
+        }
+        return cible;
+    }
+
+    private IntBuffer copier(IntBuffer source, IntBuffer cible) {
+        if (source != null && taille > 0) {
+            cible.put(0, source, 0, taille);
+        }
+        return cible;
+    }
+
+    private ByteBuffer copier(ByteBuffer source, ByteBuffer cible) {
+        if (source != null && taille > 0) {
+            cible.put(0, source, 0, taille);
+        }
+        return cible;
+    }
+
+    /**
+     * Parcours d'une plage de lignes : découpée en deux tant qu'elle dépasse une tranche
+     */
+    private class Agregation extends RecursiveTask<AgregatsParCle> {
+
+        private final FiltreFactures filtre;
+        private final RegroupementFactures regroupement;
+        private final int debut;
+        private final int fin;
+
+        Agregation(FiltreFactures filtre, RegroupementFactures regroupement, int debut, int fin) {
+            this.filtre = filtre;
+            this.regroupement = regroupement;
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        protected AgregatsParCle compute() {
+            if (fin - debut <= TAILLE_TRANCHE) {
+                return parcourir();
+            }
+            int milieu = (debut + fin) >>> 1;
+            Agregation gauche = new Agregation(filtre, regroupement, debut, milieu);
+            gauche.fork();
+            AgregatsParCle resultat = new Agregation(filtre, regroupement, milieu, fin).compute();
+            resultat.fusionner(gauche.join());
+            return resultat;
+        }
+
+        private AgregatsParCle parcourir() {
+            AgregatsParCle agregats = new AgregatsParCle();
+            int masqueStatuts = filtre.masqueStatuts;
+            int masqueModes = filtre.masqueModes;
+            long clientId = filtre.clientId;
+            int jourDebut = filtre.jourDebut;
+            int jourFin = filtre.jourFin;
+
+            for (int i = debut; i < fin; i++) {
+                byte statut = statuts.get(i);
+                if (statut == SUPPRIMEE || (masqueStatuts & (1 << statut)) == 0) {
+                    continue;
+                }
+                byte mode = modes.get(i);
+                if ((masqueModes & (1 << (mode + 1))) == 0) {
+                    continue;
+                }
+                int jour = jours.get(i);
+                if (jour < jourDebut || jour > jourFin) {
+                    continue;
+                }
+                long client = clients.get(i);
+                if (clientId >= 0 && client != clientId) {
+                    continue;
+                }
+
+                long cle;
+                switch (regroupement) {
+                    case STATUT: cle = statut; break;
+                    case MODE_PAIEMENT: cle = mode; break;
+                    case CLIENT: cle = client; break;
+                    case JOUR: cle = jour; break;
+                    case MOIS: cle = mois.get(i); break;
+                    default: cle = 0;
+                }
+                agregats.ajouter(cle, 1, montantsHT.get(i), montantsTVA.get(i), montantsTTC.get(i));
+            }
+            return agregats;
+        }
+    }
+}
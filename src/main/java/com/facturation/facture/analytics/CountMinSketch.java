@@ -0,0 +1,80 @@
+package com.facturation.facture.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Count-Min Sketch : fréquence estimée d'une clé, jamais sous-estimée,
+ * surestimée d'au plus e/largeur du total avec probabilité 1 - e^-profondeur
+ */
+public class CountMinSketch {
+
+    private final int profondeur;
+    private final int largeur;
+    private final long[][] compteurs;
+    private long total;
+
+    public CountMinSketch(int profondeur, int largeur) {
+        this.profondeur = profondeur;
+        this.largeur = largeur;
+        this.compteurs = new long[profondeur][largeur];
+    }
+
+    public void ajouter(long cle, long nombre) {
+        for (int i = 0; i < profondeur; i++) {
+            compteurs[i][indice(cle, i)] += nombre;
+        }
+        total += nombre;
+    }
+
+    public long estimer(long cle) {
+        long minimum = Long.MAX_VALUE;
+        for (int i = 0; i < profondeur; i++) {
+            minimum = Math.min(minimum, compteurs[i][indice(cle, i)]);
+        }
+        return minimum;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void fusionner(CountMinSketch autre) {
+        if (autre.profondeur != profondeur || autre.largeur != largeur) {
+            throw new IllegalArgumentException("Dimensions de Count-Min Sketch incompatibles");
+        }
+        for (int i = 0; i < profondeur; i++) {
+            for (int j = 0; j < largeur; j++) {
+                compteurs[i][j] += autre.compteurs[i][j];
+            }
+        }
+        total += autre.total;
+    }
+
+    private int indice(long cle, int ligne) {
+        return (int) Long.remainderUnsigned(Hachage.melanger(cle, ligne), largeur);
+    }
+
+    void ecrire(DataOutputStream sortie) throws IOException {
+        sortie.writeInt(profondeur);
+        sortie.writeInt(largeur);
+        sortie.writeLong(total);
+        for (long[] ligne : compteurs) {
+            for (long compteur : ligne) {
+                sortie.writeLong(compteur);
+            }
+        }
+    }
+
+    static CountMinSketch lire(DataInputStream entree) throws IOException {
+        CountMinSketch sketch = new CountMinSketch(entree.readInt(), entree.readInt());
+        sketch.total = entree.readLong();
+        for (long[] ligne : sketch.compteurs) {
+            for (int j = 0; j < ligne.length; j++) {
+                ligne[j] = entree.readLong();
+            }
+        }
+        return sketch;
+    }
+}
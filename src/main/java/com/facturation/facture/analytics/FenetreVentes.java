@@ -0,0 +1,162 @@
+package com.facturation.facture.analytics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ensemble des sketches d'une journée de ventes ; les fenêtres se fusionnent pour couvrir une période.
+ * Les méthodes sont synchronisées : les commandes arrivent depuis plusieurs threads de requête.
+ * Les sketches ne sortent jamais de la fenêtre : la lecture passe par les estimations.
+ */
+public class FenetreVentes {
+
+    private static final int VERSION = 1;
+
+    static final int PROFONDEUR_CMS = 4;
+    static final int LARGEUR_CMS = 2048;
+    static final int CAPACITE_TOP = 200;
+    static final int PRECISION_HLL = 9;
+    static final double PRECISION_QUANTILES = 0.01;
+
+    private final CountMinSketch quantitesProduits;
+    private final SpaceSaving topProduits;
+    private final HyperLogLog clients;
+    private final Map<Long, HyperLogLog> clientsParProduit;
+    private final QuantileSketch valeursCommandes;
+
+    public FenetreVentes() {
+        this(new CountMinSketch(PROFONDEUR_CMS, LARGEUR_CMS), new SpaceSaving(CAPACITE_TOP),
+                new HyperLogLog(PRECISION_HLL), new HashMap<>(), new QuantileSketch(PRECISION_QUANTILES));
+    }
+
+    private FenetreVentes(CountMinSketch quantitesProduits, SpaceSaving topProduits, HyperLogLog clients,
+                          Map<Long, HyperLogLog> clientsParProduit, QuantileSketch valeursCommandes) {
+        this.quantitesProduits = quantitesProduits;
+        this.topProduits = topProduits;
+        this.clients = clients;
+        this.clientsParProduit = clientsParProduit;
+        this.valeursCommandes = valeursCommandes;
+    }
+
+    /**
+     * Enregistrer une commande vendue : {produitId, quantite} pour chaque ligne
+     */
+    public synchronized void enregistrerCommande(long clientId, double totalTTC, List<long[]> lignes) {
+        clients.ajouter(clientId);
+        valeursCommandes.ajouter(totalTTC);
+        for (long[] ligne : lignes) {
+            quantitesProduits.ajouter(ligne[0], ligne[1]);
+            topProduits.ajouter(ligne[0], ligne[1]);
+            clientsParProduit.computeIfAbsent(ligne[0], id -> new HyperLogLog(PRECISION_HLL)).ajouter(clientId);
+        }
+    }
+
+    /**
+     * Fusionner cette fenêtre dans un agrégat de période
+     */
+    public synchronized void fusionnerDans(FenetreVentes cible) {
+        cible.quantitesProduits.fusionner(quantitesProduits);
+        cible.topProduits.fusionner(topProduits);
+        cible.clients.fusionner(clients);
+        cible.valeursCommandes.fusionner(valeursCommandes);
+        for (Map.Entry<Long, HyperLogLog> entree : clientsParProduit.entrySet()) {
+            cible.clientsParProduit.computeIfAbsent(entree.getKey(), id -> new HyperLogLog(PRECISION_HLL))
+                    .fusionner(entree.getValue());
+        }
+    }
+
+    /**
+     * Quantité vendue estimée d'un produit (jamais sous-estimée)
+     */
+    public synchronized long estimerQuantite(long produitId) {
+        return quantitesProduits.estimer(produitId);
+    }
+
+    /**
+     * Les k produits les plus vendus : {produitId, quantité estimée, erreur maximale}
+     */
+    public synchronized List<long[]> topProduits(int k) {
+        return topProduits.top(k);
+    }
+
+    public synchronized long estimerClients() {
+        return clients.estimer();
+    }
+
+    /**
+     * Clients distincts estimés d'un produit, 0 s'il n'a pas été vendu
+     */
+    public synchronized long estimerClientsProduit(long produitId) {
+        HyperLogLog clientsProduit = clientsParProduit.get(produitId);
+        return clientsProduit != null ? clientsProduit.estimer() : 0L;
+    }
+
+    /**
+     * Quantile q de la valeur TTC des commandes, NaN sans commande
+     */
+    public synchronized double quantileValeur(double q) {
+        return valeursCommandes.quantile(q);
+    }
+
+    public synchronized long getNombreCommandes() {
+        return valeursCommandes.getNombre();
+    }
+
+    public synchronized double getMoyenneValeur() {
+        return valeursCommandes.getMoyenne();
+    }
+
+    public synchronized double getMinimumValeur() {
+        return valeursCommandes.getMinimum();
+    }
+
+    public synchronized double getMaximumValeur() {
+        return valeursCommandes.getMaximum();
+    }
+
+    public synchronized byte[] serialiser() {
+        ByteArrayOutputStream octets = new ByteArrayOutputStream();
+        try (DataOutputStream sortie = new DataOutputStream(octets)) {
+            sortie.writeInt(VERSION);
+            quantitesProduits.ecrire(sortie);
+            topProduits.ecrire(sortie);
+            clients.ecrire(sortie);
+            valeursCommandes.ecrire(sortie);
+            sortie.writeInt(clientsParProduit.size());
+            for (Map.Entry<Long, HyperLogLog> entree : clientsParProduit.entrySet()) {
+                sortie.writeLong(entree.getKey());
+                entree.getValue().ecrire(sortie);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lors de la sérialisation des sketches", e);
+        }
+        return octets.toByteArray();
+    }
+
+    public static FenetreVentes deserialiser(byte[] donnees) {
+        try (DataInputStream entree = new DataInputStream(new ByteArrayInputStream(donnees))) {
+            int version = entree.readInt();
+            if (version != VERSION) {
+                throw new RuntimeException("Version de sketch non supportée : " + version);
+            }
+            CountMinSketch quantitesProduits = CountMinSketch.lire(entree);
+            SpaceSaving topProduits = SpaceSaving.lire(entree);
+            HyperLogLog clients = HyperLogLog.lire(entree);
+            QuantileSketch valeursCommandes = QuantileSketch.lire(entree);
+            int nombreProduits = entree.readInt();
+            Map<Long, HyperLogLog> clientsParProduit = new HashMap<>(nombreProduits * 2);
+            for (int i = 0; i < nombreProduits; i++) {
+                clientsParProduit.put(entree.readLong(), HyperLogLog.lire(entree));
+            }
+            return new FenetreVentes(quantitesProduits, topProduits, clients, clientsParProduit, valeursCommandes);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lors de la lecture des sketches", e);
+        }
+    }
+}
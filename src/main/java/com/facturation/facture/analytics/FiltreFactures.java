@@ -0,0 +1,34 @@
+package com.facturation.facture.analytics;
+
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Filtre d'une agrégation, réduit à des masques de bits et des bornes primitives
+ */
+public class FiltreFactures {
+
+    final int masqueStatuts;
+    final int masqueModes;
+    final long clientId;
+    final int jourDebut;
+    final int jourFin;
+
+    /**
+     * Collections vides ou null : pas de filtre sur l'axe ; mode de paiement null accepté
+     * dans la collection pour les factures sans mode
+     */
+    public FiltreFactures(Collection<StatutFacture> statuts, Collection<ModePaiement> modes,
+                          Long clientId, LocalDate dateDebut, LocalDate dateFin) {
+        this.masqueStatuts = statuts == null || statuts.isEmpty() ? -1 : statuts.stream()
+                .mapToInt(s -> 1 << s.ordinal()).reduce(0, (a, b) -> a | b);
+        this.masqueModes = modes == null || modes.isEmpty() ? -1 : modes.stream()
+                .mapToInt(m -> 1 << (ColonnesFactures.coderMode(m) + 1)).reduce(0, (a, b) -> a | b);
+        this.clientId = clientId != null ? clientId : -1;
+        this.jourDebut = dateDebut != null ? (int) dateDebut.toEpochDay() : Integer.MIN_VALUE;
+        this.jourFin = dateFin != null ? (int) dateFin.toEpochDay() : Integer.MAX_VALUE;
+    }
+}
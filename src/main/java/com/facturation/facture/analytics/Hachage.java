@@ -0,0 +1,20 @@
+package com.facturation.facture.analytics;
+
+/**
+ * Hachage 64 bits (finaliseur SplitMix64) partagé par les sketches
+ */
+final class Hachage {
+
+    private Hachage() {}
+
+    static long melanger(long valeur) {
+        long z = valeur + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static long melanger(long valeur, long graine) {
+        return melanger(valeur ^ melanger(graine));
+    }
+}
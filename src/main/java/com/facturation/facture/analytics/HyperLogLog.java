@@ -0,0 +1,74 @@
+package com.facturation.facture.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * HyperLogLog : cardinalité estimée avec une erreur type de 1.04 / sqrt(2^precision)
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registres;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Précision HyperLogLog hors bornes : " + precision);
+        }
+        this.precision = precision;
+        this.registres = new byte[1 << precision];
+    }
+
+    public void ajouter(long valeur) {
+        long hache = Hachage.melanger(valeur);
+        int indice = (int) (hache >>> (64 - precision));
+        long reste = hache << precision;
+        int rang = Math.min(Long.numberOfLeadingZeros(reste) + 1, 64 - precision + 1);
+        if (rang > registres[indice]) {
+            registres[indice] = (byte) rang;
+        }
+    }
+
+    public long estimer() {
+        int m = registres.length;
+        double somme = 0;
+        int zeros = 0;
+        for (byte registre : registres) {
+            somme += 1.0 / (1L << registre);
+            if (registre == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimation = alpha * m * m / somme;
+
+        // Correction petites cardinalités (comptage linéaire)
+        if (estimation <= 2.5 * m && zeros > 0) {
+            estimation = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimation);
+    }
+
+    public void fusionner(HyperLogLog autre) {
+        if (autre.precision != precision) {
+            throw new IllegalArgumentException("Précisions HyperLogLog incompatibles");
+        }
+        for (int i = 0; i < registres.length; i++) {
+            if (autre.registres[i] > registres[i]) {
+                registres[i] = autre.registres[i];
+            }
+        }
+    }
+
+    void ecrire(DataOutputStream sortie) throws IOException {
+        sortie.writeByte(precision);
+        sortie.write(registres);
+    }
+
+    static HyperLogLog lire(DataInputStream entree) throws IOException {
+        HyperLogLog sketch = new HyperLogLog(entree.readByte());
+        entree.readFully(sketch.registres);
+        return sketch;
+    }
+}
@@ -0,0 +1,73 @@
+package com.facturation.facture.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Table de hachage à adressage ouvert long -> int, sans objets par entrée
+ * (index id de facture -> numéro de ligne pour des dizaines de millions d'entrées)
+ */
+class IndexLongInt {
+
+    private static final long LIBRE = Long.MIN_VALUE;
+
+    private long[] cles;
+    private int[] valeurs;
+    private int taille;
+
+    IndexLongInt(int capaciteInitiale) {
+        int capacite = Integer.highestOneBit(Math.max(16, capaciteInitiale) - 1) << 1;
+        cles = new long[capacite];
+        valeurs = new int[capacite];
+        Arrays.fill(cles, LIBRE);
+    }
+
+    int get(long cle) {
+        int masque = cles.length - 1;
+        for (int i = (int) Hachage.melanger(cle) & masque; ; i = (i + 1) & masque) {
+            if (cles[i] == cle) {
+                return valeurs[i];
+            }
+            if (cles[i] == LIBRE) {
+                return -1;
+            }
+        }
+    }
+
+    void put(long cle, int valeur) {
+        if ((taille + 1) * 4L > cles.length * 3L) {
+            agrandir();
+        }
+        int masque = cles.length - 1;
+        for (int i = (int) Hachage.melanger(cle) & masque; ; i = (i + 1) & masque) {
+            if (cles[i] == cle) {
+                valeurs[i] = valeur;
+                return;
+            }
+            if (cles[i] == LIBRE) {
+                cles[i] = cle;
+                valeurs[i] = valeur;
+                taille++;
+                return;
+            }
+        }
+    }
+
+    void vider() {
+        Arrays.fill(cles, LIBRE);
+        taille = 0;
+    }
+
+    private void agrandir() {
+        long[] anciennesCles = cles;
+        int[] anciennesValeurs = valeurs;
+        cles = new long[anciennesCles.length * 2];
+        valeurs = new int[anciennesCles.length * 2];
+        Arrays.fill(cles, LIBRE);
+        taille = 0;
+        for (int i = 0; i < anciennesCles.length; i++) {
+            if (anciennesCles[i] != LIBRE) {
+                put(anciennesCles[i], anciennesValeurs[i]);
+            }
+        }
+    }
+}
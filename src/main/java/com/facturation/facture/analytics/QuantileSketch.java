@@ -0,0 +1,115 @@
+package com.facturation.facture.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sketch de quantiles à erreur relative bornée (principe DDSketch) : chaque valeur positive
+ * tombe dans le seau ceil(log_gamma(x)) ; tout quantile est restitué à ±precisionRelative près.
+ * Fusionnable par simple addition des seaux.
+ */
+public class QuantileSketch {
+
+    private final double precisionRelative;
+    private final double gamma;
+    private final double logGamma;
+    private final TreeMap<Integer, Long> seaux = new TreeMap<>();
+    private long nombreZeros;
+    private long nombre;
+    private double somme;
+    private double minimum = Double.POSITIVE_INFINITY;
+    private double maximum = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch(double precisionRelative) {
+        this.precisionRelative = precisionRelative;
+        this.gamma = (1 + precisionRelative) / (1 - precisionRelative);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void ajouter(double valeur) {
+        if (valeur <= 0) {
+            nombreZeros++;
+        } else {
+            seaux.merge((int) Math.ceil(Math.log(valeur) / logGamma), 1L, Long::sum);
+        }
+        nombre++;
+        somme += valeur;
+        minimum = Math.min(minimum, valeur);
+        maximum = Math.max(maximum, valeur);
+    }
+
+    /**
+     * Quantile q (0 <= q <= 1), NaN si le sketch est vide
+     */
+    public double quantile(double q) {
+        if (nombre == 0) {
+            return Double.NaN;
+        }
+        long rang = (long) Math.floor(q * (nombre - 1));
+        if (rang < nombreZeros) {
+            return Math.max(minimum, 0);
+        }
+        long cumul = nombreZeros;
+        for (Map.Entry<Integer, Long> seau : seaux.entrySet()) {
+            cumul += seau.getValue();
+            if (cumul > rang) {
+                double valeur = 2 * Math.pow(gamma, seau.getKey()) / (gamma + 1);
+                return Math.min(Math.max(valeur, minimum), maximum);
+            }
+        }
+        return maximum;
+    }
+
+    public void fusionner(QuantileSketch autre) {
+        if (autre.precisionRelative != precisionRelative) {
+            throw new IllegalArgumentException("Précisions de sketch de quantiles incompatibles");
+        }
+        for (Map.Entry<Integer, Long> seau : autre.seaux.entrySet()) {
+            seaux.merge(seau.getKey(), seau.getValue(), Long::sum);
+        }
+        nombreZeros += autre.nombreZeros;
+        nombre += autre.nombre;
+        somme += autre.somme;
+        minimum = Math.min(minimum, autre.minimum);
+        maximum = Math.max(maximum, autre.maximum);
+    }
+
+    public long getNombre() { return nombre; }
+
+    public double getMoyenne() { return nombre == 0 ? Double.NaN : somme / nombre; }
+
+    public double getMinimum() { return nombre == 0 ? Double.NaN : minimum; }
+
+    public double getMaximum() { return nombre == 0 ? Double.NaN : maximum; }
+
+    void ecrire(DataOutputStream sortie) throws IOException {
+        sortie.writeDouble(precisionRelative);
+        sortie.writeLong(nombreZeros);
+        sortie.writeLong(nombre);
+        sortie.writeDouble(somme);
+        sortie.writeDouble(minimum);
+        sortie.writeDouble(maximum);
+        sortie.writeInt(seaux.size());
+        for (Map.Entry<Integer, Long> seau : seaux.entrySet()) {
+            sortie.writeInt(seau.getKey());
+            sortie.writeLong(seau.getValue());
+        }
+    }
+
+    static QuantileSketch lire(DataInputStream entree) throws IOException {
+        QuantileSketch sketch = new QuantileSketch(entree.readDouble());
+        sketch.nombreZeros = entree.readLong();
+        sketch.nombre = entree.readLong();
+        sketch.somme = entree.readDouble();
+        sketch.minimum = entree.readDouble();
+        sketch.maximum = entree.readDouble();
+        int taille = entree.readInt();
+        for (int i = 0; i < taille; i++) {
+            sketch.seaux.put(entree.readInt(), entree.readLong());
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,13 @@
+package com.facturation.facture.analytics;
+
+/**
+ * Axe de regroupement d'une agrégation sur les colonnes de factures
+ */
+public enum RegroupementFactures {
+    AUCUN,
+    STATUT,
+    MODE_PAIEMENT,
+    CLIENT,
+    JOUR,
+    MOIS
+}
@@ -0,0 +1,173 @@
+package com.facturation.facture.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving (Metwally et al.) : suit au plus "capacite" clés ; toute clé de fréquence
+ * supérieure à total/capacite est garantie présente. Chaque compteur porte sa marge d'erreur.
+ * Les compteurs forment un tas-min indexé (clé -> position) : l'éviction du moins fréquent
+ * et l'incrément d'une clé suivie coûtent O(log capacite).
+ */
+public class SpaceSaving {
+
+    private final int capacite;
+    private final Map<Long, Integer> positions;
+    private final long[] cles;
+    private final long[] nombres;
+    private final long[] erreurs;
+    private int taille;
+
+    public SpaceSaving(int capacite) {
+        if (capacite <= 0) {
+            throw new IllegalArgumentException("La capacité du Space-Saving doit être strictement positive");
+        }
+        this.capacite = capacite;
+        this.positions = new HashMap<>(capacite * 2);
+        this.cles = new long[capacite];
+        this.nombres = new long[capacite];
+        this.erreurs = new long[capacite];
+    }
+
+    public void ajouter(long cle, long nombre) {
+        Integer position = positions.get(cle);
+        if (position != null) {
+            nombres[position] += nombre;
+            descendre(position);
+            return;
+        }
+        if (taille < capacite) {
+            inserer(cle, nombre, 0);
+            return;
+        }
+
+        // Remplacer la clé la moins fréquente (racine du tas) : la nouvelle hérite de son compte comme erreur
+        long plancher = nombres[0];
+        positions.remove(cles[0]);
+        cles[0] = cle;
+        nombres[0] = plancher + nombre;
+        erreurs[0] = plancher;
+        positions.put(cle, 0);
+        descendre(0);
+    }
+
+    public void fusionner(SpaceSaving autre) {
+        Map<Long, long[]> fusion = new HashMap<>((taille + autre.taille) * 2);
+        for (int i = 0; i < taille; i++) {
+            fusion.put(cles[i], new long[]{nombres[i], erreurs[i]});
+        }
+        for (int i = 0; i < autre.taille; i++) {
+            long[] compteur = fusion.get(autre.cles[i]);
+            if (compteur != null) {
+                compteur[0] += autre.nombres[i];
+                compteur[1] += autre.erreurs[i];
+            } else {
+                fusion.put(autre.cles[i], new long[]{autre.nombres[i], autre.erreurs[i]});
+            }
+        }
+
+        List<Map.Entry<Long, long[]>> tries = new ArrayList<>(fusion.entrySet());
+        if (tries.size() > capacite) {
+            tries.sort(Comparator.comparingLong((Map.Entry<Long, long[]> e) -> e.getValue()[0]).reversed());
+            tries = tries.subList(0, capacite);
+        }
+        vider();
+        for (Map.Entry<Long, long[]> entree : tries) {
+            inserer(entree.getKey(), entree.getValue()[0], entree.getValue()[1]);
+        }
+    }
+
+    /**
+     * Les k clés les plus fréquentes : {cle, nombre estimé, erreur maximale}
+     */
+    public List<long[]> top(int k) {
+        List<long[]> resultat = new ArrayList<>(taille);
+        for (int i = 0; i < taille; i++) {
+            resultat.add(new long[]{cles[i], nombres[i], erreurs[i]});
+        }
+        resultat.sort(Comparator.comparingLong((long[] e) -> e[1]).reversed());
+        return resultat.size() > k ? new ArrayList<>(resultat.subList(0, k)) : resultat;
+    }
+
+    private void inserer(long cle, long nombre, long erreur) {
+        int position = taille++;
+        cles[position] = cle;
+        nombres[position] = nombre;
+        erreurs[position] = erreur;
+        positions.put(cle, position);
+        monter(position);
+    }
+
+    private void vider() {
+        positions.clear();
+        Arrays.fill(nombres, 0, taille, 0L);
+        taille = 0;
+    }
+
+    private void monter(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (nombres[parent] <= nombres[position]) {
+                return;
+            }
+            echanger(position, parent);
+            position = parent;
+        }
+    }
+
+    private void descendre(int position) {
+        while (true) {
+            int gauche = 2 * position + 1;
+            if (gauche >= taille) {
+                return;
+            }
+            int droite = gauche + 1;
+            int plusPetit = droite < taille && nombres[droite] < nombres[gauche] ? droite : gauche;
+            if (nombres[position] <= nombres[plusPetit]) {
+                return;
+            }
+            echanger(position, plusPetit);
+            position = plusPetit;
+        }
+    }
+
+    private void echanger(int i, int j) {
+        long cle = cles[i];
+        long nombre = nombres[i];
+        long erreur = erreurs[i];
+        cles[i] = cles[j];
+        nombres[i] = nombres[j];
+        erreurs[i] = erreurs[j];
+        cles[j] = cle;
+        nombres[j] = nombre;
+        erreurs[j] = erreur;
+        positions.put(cles[i], i);
+        positions.put(cles[j], j);
+    }
+
+    void ecrire(DataOutputStream sortie) throws IOException {
+        sortie.writeInt(capacite);
+        sortie.writeInt(taille);
+        for (int i = 0; i < taille; i++) {
+            sortie.writeLong(cles[i]);
+            sortie.writeLong(nombres[i]);
+            sortie.writeLong(erreurs[i]);
+        }
+    }
+
+    static SpaceSaving lire(DataInputStream entree) throws IOException {
+        SpaceSaving sketch = new SpaceSaving(entree.readInt());
+        int taille = entree.readInt();
+        for (int i = 0; i < taille; i++) {
+            sketch.inserer(entree.readLong(), entree.readLong(), entree.readLong());
+        }
+        return sketch;
+    }
+}
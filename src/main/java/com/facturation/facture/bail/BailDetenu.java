@@ -0,0 +1,26 @@
+package com.facturation.facture.bail;
+
+/**
+ * Bail détenu par ce nœud : le jeton (fencing token) augmente à chaque changement de détenteur
+ */
+public class BailDetenu {
+
+    private final String nom;
+    private final long jeton;
+    private volatile boolean perdu;
+
+    public BailDetenu(String nom, long jeton) {
+        this.nom = nom;
+        this.jeton = jeton;
+    }
+
+    public String getNom() { return nom; }
+    public long getJeton() { return jeton; }
+
+    /**
+     * Vrai si un renouvellement a échoué : le bail a pu être repris par un autre nœud
+     */
+    public boolean estPerdu() { return perdu; }
+
+    public void marquerPerdu() { this.perdu = true; }
+}
@@ -0,0 +1,52 @@
+package com.facturation.facture.bail;
+
+import com.facturation.facture.service.BailService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+/**
+ * Exécute les méthodes annotées @VerrouDistribue sous bail (voir BailService.executerSousBail)
+ */
+public class InterceptionVerrouDistribue implements MethodInterceptor {
+
+    private final ObjectProvider<BailService> bailService;
+
+    public InterceptionVerrouDistribue(ObjectProvider<BailService> bailService) {
+        this.bailService = bailService;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method methode = invocation.getMethod();
+        VerrouDistribue verrou = AnnotatedElementUtils.findMergedAnnotation(methode, VerrouDistribue.class);
+        if (verrou == null) {
+            return invocation.proceed();
+        }
+
+        Object[] resultat = new Object[1];
+        Throwable[] erreur = new Throwable[1];
+        boolean execute = bailService.getObject().executerSousBail(verrou.value(),
+                Duration.ofSeconds(verrou.dureeSecondes()), () -> {
+                    try {
+                        resultat[0] = invocation.proceed();
+                    } catch (Throwable e) {
+                        erreur[0] = e;
+                    }
+                });
+        if (erreur[0] != null) {
+            throw erreur[0];
+        }
+        return execute ? resultat[0] : valeurParDefaut(methode.getReturnType());
+    }
+
+    // Appel ignoré : 0 / false pour un type primitif plutôt qu'un null non convertible
+    private static Object valeurParDefaut(Class<?> type) {
+        return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+}
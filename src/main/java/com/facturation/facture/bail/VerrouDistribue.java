@@ -0,0 +1,27 @@
+package com.facturation.facture.bail;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Méthode exécutée par un seul nœud du cluster à la fois : sans le bail, l'appel est ignoré
+ * (valeur nulle, ou zéro pour un type primitif). Le bail est prolongé tant que la méthode tourne.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VerrouDistribue {
+
+    /**
+     * Nom du bail (clé de la table baux)
+     */
+    String value();
+
+    /**
+     * Durée du bail en secondes, prolongé tous les tiers de cette durée
+     */
+    long dureeSecondes() default 60;
+}
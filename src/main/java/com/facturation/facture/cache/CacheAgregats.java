@@ -0,0 +1,179 @@
+package com.facturation.facture.cache;
+
+import com.facturation.facture.diagnostic.PropagationSqlStatistiques;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Cache "stale-while-revalidate" pour les agrégats coûteux.
+ * <ul>
+ *   <li>valeur plus jeune que la fraîcheur : servie telle quelle ;</li>
+ *   <li>valeur plus âgée : servie immédiatement, un seul recalcul est lancé en arrière-plan ;</li>
+ *   <li>au-delà de l'expiration (ou absente) : les appelants attendent un calcul unique partagé.</li>
+ * </ul>
+ * Les valeurs expirées sont purgées périodiquement.
+ */
+@Component
+public class CacheAgregats {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheAgregats.class);
+
+    private final ConcurrentHashMap<String, Entree> valeurs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Entree>> calculsEnCours = new ConcurrentHashMap<>();
+
+    private final ThreadPoolTaskExecutor agregatsExecutor;
+    private final long fraicheurNanos;
+    private final long expirationNanos;
+    private final long timeoutSecondes;
+
+    public CacheAgregats(@Qualifier("agregatsExecutor") ThreadPoolTaskExecutor agregatsExecutor,
+                         @Value("${facture.agregats.fraicheur-secondes:30}") long fraicheurSecondes,
+                         @Value("${facture.agregats.expiration-secondes:600}") long expirationSecondes,
+                         @Value("${facture.agregats.timeout-secondes:20}") long timeoutSecondes) {
+        if (expirationSecondes < fraicheurSecondes) {
+            throw new IllegalArgumentException("L'expiration des agrégats doit être supérieure à leur fraîcheur");
+        }
+        this.agregatsExecutor = agregatsExecutor;
+        this.fraicheurNanos = TimeUnit.SECONDS.toNanos(fraicheurSecondes);
+        this.expirationNanos = TimeUnit.SECONDS.toNanos(expirationSecondes);
+        this.timeoutSecondes = timeoutSecondes;
+    }
+
+    public <T> ValeurCachee<T> obtenir(String cle, Supplier<T> calcul) {
+        return obtenir(cle, calcul, valeur -> true, timeoutSecondes);
+    }
+
+    /**
+     * Comme obtenir(cle, calcul), avec un délai d'attente propre à un agrégat plus long à calculer
+     */
+    public <T> ValeurCachee<T> obtenir(String cle, Supplier<T> calcul, long timeoutSecondes) {
+        return obtenir(cle, calcul, valeur -> true, timeoutSecondes);
+    }
+
+    /**
+     * Comme obtenir(cle, calcul), mais une valeur refusée par le prédicat (résultat partiel)
+     * est rendue aux appelants qui l'attendaient sans être mise en cache
+     */
+    public <T> ValeurCachee<T> obtenir(String cle, Supplier<T> calcul, Predicate<? super T> aConserver) {
+        return obtenir(cle, calcul, aConserver, timeoutSecondes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ValeurCachee<T> obtenir(String cle, Supplier<T> calcul, Predicate<? super T> aConserver,
+                                        long timeoutSecondes) {
+        Entree entree = valeurs.get(cle);
+        long maintenant = System.nanoTime();
+        Predicate<Object> conserver = valeur -> aConserver.test((T) valeur);
+
+        if (entree == null || maintenant - entree.calculeeNanos > expirationNanos) {
+            entree = attendre(cle, recalculer(cle, calcul, conserver, true), timeoutSecondes);
+        } else if (maintenant - entree.calculeeNanos > fraicheurNanos) {
+            recalculer(cle, calcul, conserver, false);
+        }
+
+        long age = System.nanoTime() - entree.calculeeNanos;
+        return new ValeurCachee<>((T) entree.valeur, entree.calculeeLe,
+                TimeUnit.NANOSECONDS.toSeconds(age), age > fraicheurNanos);
+    }
+
+    /**
+     * Oublier une valeur (le prochain appel la recalcule de façon synchrone)
+     */
+    public void invalider(String cle) {
+        valeurs.remove(cle);
+    }
+
+    /**
+     * Oublier toutes les valeurs dont la clé commence par le préfixe (une clé par jour, par exemple)
+     */
+    public void invaliderPrefixe(String prefixe) {
+        valeurs.keySet().removeIf(cle -> cle.startsWith(prefixe));
+    }
+
+    /**
+     * Oublier les valeurs expirées : elles ne seraient plus servies, seulement recalculées
+     */
+    @Scheduled(fixedDelayString = "${facture.agregats.purge-ms:60000}")
+    public void purger() {
+        long maintenant = System.nanoTime();
+        valeurs.values().removeIf(entree -> maintenant - entree.calculeeNanos > expirationNanos);
+    }
+
+    /**
+     * Lance le recalcul de la clé, ou rejoint celui déjà en cours (single-flight) ;
+     * un recalcul attendu compte dans le budget SQL de la requête, pas celui d'arrière-plan
+     */
+    private CompletableFuture<Entree> recalculer(String cle, Supplier<?> calcul, Predicate<Object> conserver,
+                                                 boolean attendu) {
+        CompletableFuture<Entree> nouveau = new CompletableFuture<>();
+        CompletableFuture<Entree> existant = calculsEnCours.putIfAbsent(cle, nouveau);
+        if (existant != null) {
+            return existant;
+        }
+
+        Runnable tache = () -> {
+            try {
+                Entree entree = new Entree(calcul.get());
+                if (conserver.test(entree.valeur)) {
+                    valeurs.put(cle, entree);
+                } else {
+                    log.warn("Agrégat {} incomplet : rendu sans être mis en cache", cle);
+                }
+                nouveau.complete(entree);
+            } catch (Throwable t) {
+                log.warn("Échec du recalcul de l'agrégat {} : {}", cle, t.getMessage());
+                nouveau.completeExceptionally(t);
+            } finally {
+                calculsEnCours.remove(cle, nouveau);
+            }
+        };
+        try {
+            agregatsExecutor.execute(attendu ? PropagationSqlStatistiques.propager(tache) : tache);
+        } catch (TaskRejectedException e) {
+            calculsEnCours.remove(cle, nouveau);
+            nouveau.completeExceptionally(e);
+        }
+        return nouveau;
+    }
+
+    private static Entree attendre(String cle, CompletableFuture<Entree> calcul, long timeoutSecondes) {
+        try {
+            return calcul.get(timeoutSecondes, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Le calcul de " + cle + " a dépassé " + timeoutSecondes + " secondes");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Calcul de " + cle + " interrompu");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Erreur lors du calcul de " + cle + " : " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static final class Entree {
+
+        private final Object valeur;
+        private final long calculeeNanos;
+        private final LocalDateTime calculeeLe;
+
+        Entree(Object valeur) {
+            this.valeur = valeur;
+            this.calculeeNanos = System.nanoTime();
+            this.calculeeLe = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.facturation.facture.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Valeur servie par le cache d'agrégats, avec son âge et son état de fraîcheur
+ */
+public final class ValeurCachee<T> {
+
+    private final T valeur;
+    private final LocalDateTime calculeeLe;
+    private final long ageSecondes;
+    private final boolean perimee;
+
+    ValeurCachee(T valeur, LocalDateTime calculeeLe, long ageSecondes, boolean perimee) {
+        this.valeur = valeur;
+        this.calculeeLe = calculeeLe;
+        this.ageSecondes = ageSecondes;
+        this.perimee = perimee;
+    }
+
+    /**
+     * Valeur calculée à l'instant, hors cache
+     */
+    public static <T> ValeurCachee<T> fraiche(T valeur) {
+        return new ValeurCachee<>(valeur, LocalDateTime.now(), 0, false);
+    }
+
+    public T getValeur() { return valeur; }
+
+    public LocalDateTime getCalculeeLe() { return calculeeLe; }
+
+    public long getAgeSecondes() { return ageSecondes; }
+
+    public boolean isPerimee() { return perimee; }
+
+    /**
+     * En-têtes HTTP décrivant la fraîcheur (Age standard + indicateur de donnée périmée)
+     */
+    public HttpHeaders enTetes() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.AGE, String.valueOf(ageSecondes));
+        headers.set("X-Donnees-Perimees", String.valueOf(perimee));
+        return headers;
+    }
+
+    /**
+     * Description de la fraîcheur à inclure dans un corps de réponse
+     */
+    public Map<String, Object> fraicheur() {
+        Map<String, Object> fraicheur = new LinkedHashMap<>();
+        fraicheur.put("calculeeLe", calculeeLe);
+        fraicheur.put("ageSecondes", ageSecondes);
+        fraicheur.put("perimee", perimee);
+        return fraicheur;
+    }
+}
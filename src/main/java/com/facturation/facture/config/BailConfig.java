@@ -0,0 +1,30 @@
+package com.facturation.facture.config;
+
+import com.facturation.facture.bail.InterceptionVerrouDistribue;
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.service.BailService;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class BailConfig {
+
+    /**
+     * Advisor @VerrouDistribue, appliqué avant @Transactional (le bail est pris hors transaction)
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static DefaultPointcutAdvisor verrouDistribueAdvisor(ObjectProvider<BailService> bailService) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(VerrouDistribue.class),
+                new InterceptionVerrouDistribue(bailService));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return advisor;
+    }
+}
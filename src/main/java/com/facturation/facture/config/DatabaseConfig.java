@@ -1,11 +1,15 @@
 package com.facturation.facture.config;
 
+import com.facturation.facture.diagnostic.EcouteurSql;
+import com.facturation.facture.diagnostic.SqlInstrumentation;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.sql.DataSource;
+import java.util.List;
 
 @Configuration
 public class DatabaseConfig {
@@ -23,12 +27,14 @@ public class DatabaseConfig {
     private String dbDriver;
 
     @Bean
-    public DataSource dataSource() {
-        return DataSourceBuilder.create()
+    public DataSource dataSource(ObjectProvider<EcouteurSql> ecouteursSql) {
+        DataSource dataSource = DataSourceBuilder.create()
                 .url(dbUrl)
                 .username(dbUsername)
                 .password(dbPassword)
                 .driverClassName(dbDriver)
                 .build();
+        List<EcouteurSql> ecouteurs = ecouteursSql.orderedStream().toList();
+        return SqlInstrumentation.envelopper(dataSource, ecouteurs);
     }
 }
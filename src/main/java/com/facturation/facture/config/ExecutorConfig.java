@@ -0,0 +1,133 @@
+package com.facturation.facture.config;
+
+import com.facturation.facture.diagnostic.PropagationSqlStatistiques;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${facture.pdf.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int pdfThreads;
+
+    @Value("${facture.pdf.file-attente:100}")
+    private int pdfFileAttente;
+
+    @Value("${facture.agregats.threads:2}")
+    private int agregatsThreads;
+
+    @Value("${facture.dashboard.threads:8}")
+    private int dashboardThreads;
+
+    @Value("${facture.rapports.threads:2}")
+    private int rapportsThreads;
+
+    @Value("${facture.rapports.file-attente:10}")
+    private int rapportsFileAttente;
+
+    @Value("${facture.sse.threads:4}")
+    private int sseThreads;
+
+    /**
+     * Exécuteur dédié au rendu PDF (CPU uniquement, sans contexte de persistance)
+     */
+    @Bean(name = "pdfExecutor")
+    public ThreadPoolTaskExecutor pdfExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pdfThreads);
+        executor.setMaxPoolSize(pdfThreads);
+        executor.setQueueCapacity(pdfFileAttente);
+        executor.setThreadNamePrefix("pdf-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Exécuteur des recalculs d'agrégats en arrière-plan (une tâche par clé au plus)
+     */
+    @Bean(name = "agregatsExecutor")
+    public ThreadPoolTaskExecutor agregatsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(agregatsThreads);
+        executor.setMaxPoolSize(agregatsThreads);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("agregats-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Exécuteur des requêtes parallèles du tableau de bord (une connexion par tâche active),
+     * comptées dans le budget SQL de la requête qui les attend
+     */
+    @Bean(name = "dashboardExecutor")
+    public ThreadPoolTaskExecutor dashboardExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(dashboardThreads);
+        executor.setMaxPoolSize(dashboardThreads);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("dashboard-");
+        executor.setTaskDecorator(new PropagationSqlStatistiques());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Exécuteur du chargement des colonnes de factures en mémoire et de leurs relectures après commit :
+     * un seul à la fois, une relecture ne croise jamais un chargement
+     */
+    @Bean(name = "colonnesExecutor")
+    public ThreadPoolTaskExecutor colonnesExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(2);
+        executor.setThreadNamePrefix("colonnes-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Exécuteur borné des rapports de période (une connexion par rapport en cours)
+     */
+    @Bean(name = "rapportsExecutor")
+    public ThreadPoolTaskExecutor rapportsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(rapportsThreads);
+        executor.setMaxPoolSize(rapportsThreads);
+        executor.setQueueCapacity(rapportsFileAttente);
+        executor.setThreadNamePrefix("rapports-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Exécuteur des envois Server-Sent Events (vide les files des connexions, jamais un thread par connexion)
+     */
+    @Bean(name = "sseExecutor")
+    public ThreadPoolTaskExecutor sseExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(sseThreads);
+        executor.setMaxPoolSize(sseThreads);
+        executor.setQueueCapacity(20000);
+        executor.setThreadNamePrefix("sse-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Exécuteur des travaux de maintenance lancés à la demande (un seul à la fois)
+     */
+    @Bean(name = "maintenanceExecutor")
+    public ThreadPoolTaskExecutor maintenanceExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("maintenance-");
+        executor.initialize();
+        return executor;
+    }
+}
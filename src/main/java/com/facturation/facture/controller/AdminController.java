@@ -0,0 +1,162 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.diagnostic.EnregistreurRequetesLentes;
+import com.facturation.facture.diagnostic.RequeteLente;
+import com.facturation.facture.service.BailService;
+import com.facturation.facture.service.CacheStatistiquesService;
+import com.facturation.facture.service.ExpirationCommandesService;
+import com.facturation.facture.service.RetentionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AdminController {
+
+    private final EnregistreurRequetesLentes enregistreurRequetesLentes;
+    private final CacheStatistiquesService cacheStatistiquesService;
+    private final RetentionService retentionService;
+    private final ExpirationCommandesService expirationCommandesService;
+    private final BailService bailService;
+
+    @Autowired
+    public AdminController(EnregistreurRequetesLentes enregistreurRequetesLentes,
+                           CacheStatistiquesService cacheStatistiquesService,
+                           RetentionService retentionService,
+                           ExpirationCommandesService expirationCommandesService,
+                           BailService bailService) {
+        this.enregistreurRequetesLentes = enregistreurRequetesLentes;
+        this.cacheStatistiquesService = cacheStatistiquesService;
+        this.retentionService = retentionService;
+        this.expirationCommandesService = expirationCommandesService;
+        this.bailService = bailService;
+    }
+
+    /**
+     * Obtenir les requêtes SQL lentes capturées (les plus récentes d'abord)
+     */
+    @GetMapping("/slow-queries")
+    public ResponseEntity<?> obtenirRequetesLentes(@RequestParam(defaultValue = "100") int limite) {
+        if (limite < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "La limite doit être positive ou nulle"));
+        }
+        try {
+            List<RequeteLente> requetes = enregistreurRequetesLentes.obtenirRequetesLentes(limite);
+            return ResponseEntity.ok(Map.of(
+                    "seuilMs", enregistreurRequetesLentes.getSeuilMs(),
+                    "capacite", enregistreurRequetesLentes.getCapacite(),
+                    "requetes", requetes
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la récupération des requêtes lentes"));
+        }
+    }
+
+    /**
+     * Vider le tampon des requêtes lentes
+     */
+    @DeleteMapping("/slow-queries")
+    public ResponseEntity<?> viderRequetesLentes() {
+        enregistreurRequetesLentes.vider();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Modifier le seuil de capture sans redémarrage
+     */
+    @PutMapping("/slow-queries/seuil")
+    public ResponseEntity<?> modifierSeuilRequetesLentes(@RequestParam long seuilMs) {
+        try {
+            enregistreurRequetesLentes.setSeuilMs(seuilMs);
+            return ResponseEntity.ok(Map.of("seuilMs", enregistreurRequetesLentes.getSeuilMs()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Obtenir les statistiques du cache de second niveau par région
+     */
+    @GetMapping("/cache/statistiques")
+    public ResponseEntity<?> obtenirStatistiquesCache() {
+        try {
+            return ResponseEntity.ok(cacheStatistiquesService.obtenirStatistiquesCache());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la récupération des statistiques du cache"));
+        }
+    }
+
+    /**
+     * Vider le cache de second niveau
+     */
+    @DeleteMapping("/cache")
+    public ResponseEntity<?> viderCache() {
+        cacheStatistiquesService.viderCache();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Avancement et débit des dernières exécutions de la rétention
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<?> obtenirProgressionRetention() {
+        return ResponseEntity.ok(Map.of(
+                "enCours", retentionService.estEnCours(),
+                "traitements", retentionService.obtenirProgression()
+        ));
+    }
+
+    /**
+     * Lancer la rétention immédiatement (en arrière-plan)
+     */
+    @PostMapping("/retention")
+    public ResponseEntity<?> lancerRetention() {
+        try {
+            if (!retentionService.lancer()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "La rétention est déjà en cours sur ce nœud ou un autre"));
+            }
+            return ResponseEntity.accepted().body(Map.of("enCours", true));
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Un traitement de maintenance est déjà en cours"));
+        }
+    }
+
+    /**
+     * Arrêter la rétention après le lot en cours
+     */
+    @DeleteMapping("/retention")
+    public ResponseEntity<?> arreterRetention() {
+        retentionService.arreter();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Dernière exécution de l'expiration des commandes en attente sur ce nœud
+     */
+    @GetMapping("/expiration-commandes")
+    public ResponseEntity<?> obtenirExpirationCommandes() {
+        return ResponseEntity.ok(expirationCommandesService.obtenirDerniereExecution());
+    }
+
+    /**
+     * Compteurs des baux de ce nœud (acquisitions, contentions, renouvellements, pertes)
+     */
+    @GetMapping("/baux")
+    public ResponseEntity<?> obtenirStatistiquesBaux() {
+        return ResponseEntity.ok(Map.of(
+                "noeud", bailService.getIdentifiantNoeud(),
+                "baux", bailService.obtenirStatistiques()
+        ));
+    }
+}
@@ -0,0 +1,177 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.analytics.RegroupementFactures;
+import com.facturation.facture.diagnostic.SqlBudget;
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+import com.facturation.facture.service.AnalytiqueFacturesService;
+import com.facturation.facture.service.AnalytiqueVentesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+@CrossOrigin(origins = "http://localhost:3000")
+public class AnalytiqueController {
+
+    private final AnalytiqueVentesService analytiqueVentesService;
+    private final AnalytiqueFacturesService analytiqueFacturesService;
+
+    @Autowired
+    public AnalytiqueController(AnalytiqueVentesService analytiqueVentesService,
+                                AnalytiqueFacturesService analytiqueFacturesService) {
+        this.analytiqueVentesService = analytiqueVentesService;
+        this.analytiqueFacturesService = analytiqueFacturesService;
+    }
+
+    /**
+     * Obtenir les produits les plus vendus (estimation par sketches)
+     */
+    @GetMapping("/produits/top")
+    @SqlBudget(requetes = 1)
+    public ResponseEntity<?> obtenirTopProduits(@RequestParam(defaultValue = "10") int k,
+                                                @RequestParam(defaultValue = "30") int jours) {
+        try {
+            return ResponseEntity.ok(analytiqueVentesService.obtenirTopProduits(k, jours));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul des produits les plus vendus"));
+        }
+    }
+
+    /**
+     * Obtenir les produits en tendance (hausse par rapport à la période précédente)
+     */
+    @GetMapping("/produits/tendances")
+    @SqlBudget(requetes = 1)
+    public ResponseEntity<?> obtenirProduitsTendance(@RequestParam(defaultValue = "10") int k,
+                                                     @RequestParam(defaultValue = "7") int jours) {
+        try {
+            return ResponseEntity.ok(analytiqueVentesService.obtenirProduitsTendance(k, jours));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul des tendances"));
+        }
+    }
+
+    /**
+     * Obtenir le nombre estimé de clients distincts d'un produit
+     */
+    @GetMapping("/produits/{id}/clients-distincts")
+    @SqlBudget(requetes = 0)
+    public ResponseEntity<?> obtenirClientsDistinctsProduit(@PathVariable Long id,
+                                                            @RequestParam(defaultValue = "30") int jours) {
+        try {
+            return ResponseEntity.ok(analytiqueVentesService.obtenirClientsDistincts(id, jours));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du comptage des clients distincts"));
+        }
+    }
+
+    /**
+     * Obtenir le nombre estimé de clients distincts tous produits confondus
+     */
+    @GetMapping("/clients-distincts")
+    @SqlBudget(requetes = 0)
+    public ResponseEntity<?> obtenirClientsDistincts(@RequestParam(defaultValue = "30") int jours) {
+        try {
+            return ResponseEntity.ok(analytiqueVentesService.obtenirClientsDistincts(null, jours));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du comptage des clients distincts"));
+        }
+    }
+
+    /**
+     * Obtenir les quantiles (médiane, p90...) de la valeur TTC des commandes
+     */
+    @GetMapping("/commandes/quantiles")
+    @SqlBudget(requetes = 0)
+    public ResponseEntity<?> obtenirQuantilesValeurCommandes(
+            @RequestParam(defaultValue = "0.5,0.9,0.99") List<Double> q,
+            @RequestParam(defaultValue = "30") int jours) {
+        try {
+            return ResponseEntity.ok(analytiqueVentesService.obtenirQuantilesValeurCommandes(q, jours));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul des quantiles"));
+        }
+    }
+
+    /**
+     * Reconstruire les sketches depuis l'historique des commandes (pour l'admin)
+     */
+    @PostMapping("/reconstruire")
+    public ResponseEntity<?> reconstruireSketches() {
+        try {
+            Map<String, Object> resultat = analytiqueVentesService.reconstruireSketches();
+            if (resultat == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Recalcul des sketches déjà en cours sur un autre nœud"));
+            }
+            return ResponseEntity.ok(resultat);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la reconstruction des sketches"));
+        }
+    }
+
+    /**
+     * Agréger les factures (filtres et regroupement ad hoc, sans requête SQL)
+     */
+    @GetMapping("/factures")
+    @SqlBudget(requetes = 0)
+    public ResponseEntity<?> agregerFactures(
+            @RequestParam(required = false) List<StatutFacture> statuts,
+            @RequestParam(required = false) List<ModePaiement> modesPaiement,
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin,
+            @RequestParam(defaultValue = "AUCUN") RegroupementFactures groupePar,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            return ResponseEntity.ok(analytiqueFacturesService.agreger(
+                    statuts, modesPaiement, clientId, dateDebut, dateFin, groupePar, limite));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de l'agrégation des factures"));
+        }
+    }
+
+    /**
+     * Recharger les colonnes de factures depuis la base (pour l'admin)
+     */
+    @PostMapping("/factures/recharger")
+    public ResponseEntity<?> rechargerFactures() {
+        try {
+            if (!analytiqueFacturesService.recharger()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Un chargement des colonnes de factures est déjà en cours"));
+            }
+            return ResponseEntity.accepted().body(Map.of("message", "Chargement des colonnes de factures lancé"));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du lancement du chargement"));
+        }
+    }
+}
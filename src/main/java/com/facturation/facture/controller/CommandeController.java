@@ -1,10 +1,14 @@
 package com.facturation.facture.controller;
 
+import com.facturation.facture.cache.ValeurCachee;
 import com.facturation.facture.dto.CommandeDTO;
+import com.facturation.facture.dto.LigneCommandeDTO;
+import com.facturation.facture.diagnostic.SqlBudget;
 import com.facturation.facture.model.Commande;
 import com.facturation.facture.model.enums.StatutCommande;
 import com.facturation.facture.model.enums.ModePaiement;
 import com.facturation.facture.service.CommandeService;
+import com.facturation.facture.service.TableauDeBordService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -23,16 +27,19 @@ import java.util.stream.Collectors;
 public class CommandeController {
 
     private final CommandeService commandeService;
+    private final TableauDeBordService tableauDeBordService;
 
     @Autowired
-    public CommandeController(CommandeService commandeService) {
+    public CommandeController(CommandeService commandeService, TableauDeBordService tableauDeBordService) {
         this.commandeService = commandeService;
+        this.tableauDeBordService = tableauDeBordService;
     }
 
     /**
      * Créer une commande complète avec produits (recommandé)
      */
     @PostMapping("/creer-avec-produits")
+    @SqlBudget(requetes = 60)
     public ResponseEntity<?> creerCommandeAvecProduits(@RequestBody CommandeDTO commandeDTO) {
         try {
             Commande commande = commandeService.creerCommandeAvecProduits(commandeDTO);
@@ -49,6 +56,7 @@ public class CommandeController {
      * Changer le statut d'une commande (pour l'admin)
      */
     @PatchMapping("/{id}/statut")
+    @SqlBudget(requetes = 10)
     public ResponseEntity<?> changerStatutCommande(@PathVariable Long id,
                                                    @RequestParam StatutCommande statut) {
         try {
@@ -62,10 +70,34 @@ public class CommandeController {
         }
     }
 
+    /**
+     * Changer le statut de plusieurs commandes en un appel (résultat par commande)
+     */
+    @PatchMapping("/statut")
+    @SqlBudget(requetes = 20)
+    public ResponseEntity<?> changerStatutCommandes(@RequestBody List<Long> ids,
+                                                    @RequestParam StatutCommande statut) {
+        try {
+            List<Map<String, Object>> resultats = commandeService.changerStatutCommandes(ids, statut);
+            long modifiees = resultats.stream().filter(r -> "MODIFIEE".equals(r.get("resultat"))).count();
+            return ResponseEntity.ok(Map.of(
+                    "statut", statut,
+                    "modifiees", modifiees,
+                    "resultats", resultats
+            ));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur interne du serveur"));
+        }
+    }
+
     /**
      * Changer le mode de paiement d'une commande
      */
     @PatchMapping("/{id}/mode-paiement")
+    @SqlBudget(requetes = 8)
     public ResponseEntity<?> changerModePaiement(@PathVariable Long id,
                                                  @RequestParam ModePaiement modePaiement) {
         try {
@@ -100,6 +132,7 @@ public class CommandeController {
      * Obtenir une commande par son ID avec détails
      */
     @GetMapping("/{id}")
+    @SqlBudget(requetes = 3)
     public ResponseEntity<?> obtenirCommandeAvecDetails(@PathVariable Long id) {
         try {
             Optional<Commande> commande = commandeService.obtenirCommandeAvecDetails(id);
@@ -135,6 +168,7 @@ public class CommandeController {
      * Ajouter un produit à une commande
      */
     @PostMapping("/{idCommande}/produits/{idProduit}")
+    @SqlBudget(requetes = 12)
     public ResponseEntity<?> ajouterProduitACommande(
             @PathVariable Long idCommande,
             @PathVariable Long idProduit,
@@ -187,4 +221,39 @@ public class CommandeController {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Remplacer toutes les lignes d'une commande en un seul appel
+     */
+    @PutMapping("/{idCommande}/lignes")
+    @SqlBudget(requetes = 15)
+    public ResponseEntity<?> remplacerLignesCommande(
+            @PathVariable Long idCommande,
+            @RequestBody List<LigneCommandeDTO> lignes) {
+        try {
+            Commande commande = commandeService.remplacerLignesCommande(idCommande, lignes);
+            return ResponseEntity.ok(CommandeDTO.fromEntity(commande));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du remplacement des lignes de la commande"));
+        }
+    }
+
+    /**
+     * Obtenir le chiffre d'affaires des commandes payées (pour l'admin)
+     */
+    @GetMapping("/chiffre-affaires")
+    public ResponseEntity<?> obtenirChiffreAffaires() {
+        try {
+            ValeurCachee<BigDecimal> chiffreAffaires = tableauDeBordService.obtenirChiffreAffaires();
+            return ResponseEntity.ok().headers(chiffreAffaires.enTetes()).body(Map.of(
+                    "chiffreAffaires", chiffreAffaires.getValeur() != null ? chiffreAffaires.getValeur() : BigDecimal.ZERO,
+                    "fraicheur", chiffreAffaires.fraicheur()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul du chiffre d'affaires"));
+        }
+    }
+}
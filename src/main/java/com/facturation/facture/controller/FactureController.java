@@ -1,9 +1,18 @@
 package com.facturation.facture.controller;
 
+import com.facturation.facture.analytics.BalanceAgee;
+import com.facturation.facture.cache.ValeurCachee;
 import com.facturation.facture.dto.FactureDTO;
+import com.facturation.facture.diagnostic.SqlBudget;
 import com.facturation.facture.model.enums.StatutFacture;
 import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.rapprochement.RapportRapprochement;
+import com.facturation.facture.service.BalanceAgeeService;
+import com.facturation.facture.service.FacturePdfService;
 import com.facturation.facture.service.FactureService;
+import com.facturation.facture.service.RapprochementBancaireService;
+import com.facturation.facture.service.RechercheNumerosService;
+import com.facturation.facture.service.TableauDeBordService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -12,9 +21,16 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -26,19 +42,33 @@ import java.util.stream.Collectors;
 public class FactureController {
 
     private final FactureService factureService;
+    private final FacturePdfService facturePdfService;
+    private final TableauDeBordService tableauDeBordService;
+    private final BalanceAgeeService balanceAgeeService;
+    private final RapprochementBancaireService rapprochementBancaireService;
+    private final RechercheNumerosService rechercheNumerosService;
 
     @Autowired
-    public FactureController(FactureService factureService) {
+    public FactureController(FactureService factureService, FacturePdfService facturePdfService,
+                             TableauDeBordService tableauDeBordService, BalanceAgeeService balanceAgeeService,
+                             RapprochementBancaireService rapprochementBancaireService,
+                             RechercheNumerosService rechercheNumerosService) {
         this.factureService = factureService;
+        this.facturePdfService = facturePdfService;
+        this.tableauDeBordService = tableauDeBordService;
+        this.balanceAgeeService = balanceAgeeService;
+        this.rapprochementBancaireService = rapprochementBancaireService;
+        this.rechercheNumerosService = rechercheNumerosService;
     }
 
     /**
      * Exporter une facture en PDF
      */
     @GetMapping("/{id}/pdf")
+    @SqlBudget(requetes = 2)
     public ResponseEntity<ByteArrayResource> exporterFacturePDF(@PathVariable Long id) {
         try {
-            ByteArrayResource pdfResource = factureService.exporterFacturePDF(id);
+            ByteArrayResource pdfResource = facturePdfService.exporterFacturePDF(id);
 
             String filename = "facture_" + id + "_" + LocalDate.now().toString() + ".pdf";
 
@@ -58,9 +88,10 @@ public class FactureController {
      * Prévisualiser une facture en PDF (dans le navigateur)
      */
     @GetMapping("/{id}/pdf/preview")
+    @SqlBudget(requetes = 2)
     public ResponseEntity<ByteArrayResource> previsualiserFacturePDF(@PathVariable Long id) {
         try {
-            ByteArrayResource pdfResource = factureService.exporterFacturePDF(id);
+            ByteArrayResource pdfResource = facturePdfService.exporterFacturePDF(id);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "inline")
@@ -78,6 +109,7 @@ public class FactureController {
      * Obtenir toutes les factures avec filtres optionnels
      */
     @GetMapping
+    @SqlBudget(requetes = 3)
     public ResponseEntity<?> obtenirFactures(
             @RequestParam(required = false) StatutFacture statut,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
@@ -96,6 +128,7 @@ public class FactureController {
      * Obtenir une facture par ID
      */
     @GetMapping("/{id}")
+    @SqlBudget(requetes = 2)
     public ResponseEntity<?> obtenirFactureParId(@PathVariable Long id) {
         try {
             Optional<FactureDTO> facture = factureService.obtenirFactureParId(id);
@@ -114,6 +147,7 @@ public class FactureController {
      * Obtenir les factures non traitées (pour l'admin)
      */
     @GetMapping("/non-traitees")
+    @SqlBudget(requetes = 2)
     public ResponseEntity<?> obtenirFacturesNonTraitees() {
         try {
             List<FactureDTO> factures = factureService.obtenirFacturesNonTraitees();
@@ -128,6 +162,7 @@ public class FactureController {
      * Obtenir les factures payées du mois (pour l'admin)
      */
     @GetMapping("/payees-mois")
+    @SqlBudget(requetes = 2)
     public ResponseEntity<?> obtenirFacturesPayeesDuMois() {
         try {
             List<FactureDTO> factures = factureService.obtenirFacturesPayeesDuMois();
@@ -142,6 +177,7 @@ public class FactureController {
      * Obtenir l'historique des factures d'un client
      */
     @GetMapping("/client/{clientId}/historique")
+    @SqlBudget(requetes = 2)
     public ResponseEntity<?> obtenirHistoriqueFacturesClient(@PathVariable Long clientId) {
         try {
             List<FactureDTO> factures = factureService.obtenirHistoriqueFacturesClient(clientId);
@@ -179,20 +215,67 @@ public class FactureController {
      * Obtenir les statistiques des factures (pour l'admin)
      */
     @GetMapping("/statistiques")
+    @SqlBudget(requetes = 8, tempsMs = 500)
     public ResponseEntity<?> obtenirStatistiquesFactures() {
         try {
-            FactureService.FactureStatistiques stats = factureService.obtenirStatistiquesFactures();
-            return ResponseEntity.ok(stats);
+            ValeurCachee<FactureService.FactureStatistiques> stats = tableauDeBordService.obtenirStatistiquesFactures();
+            return ResponseEntity.ok().headers(stats.enTetes()).body(stats.getValeur());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Erreur lors du calcul des statistiques"));
         }
     }
 
+    /**
+     * Balance âgée des factures en attente, paginée par client (pour l'admin)
+     */
+    @GetMapping("/balance-agee")
+    @SqlBudget(requetes = 2)
+    public ResponseEntity<?> obtenirBalanceAgee(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateReference,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int taille) {
+        try {
+            ValeurCachee<BalanceAgee> balance = balanceAgeeService.obtenirBalance(dateReference);
+            Map<String, Object> reponse = new LinkedHashMap<>(balanceAgeeService.obtenirPage(balance.getValeur(), page, taille));
+            reponse.put("fraicheur", balance.fraicheur());
+            return ResponseEntity.ok().headers(balance.enTetes()).body(reponse);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul de la balance âgée"));
+        }
+    }
+
+    /**
+     * Export CSV de la balance âgée complète
+     */
+    @GetMapping("/balance-agee/csv")
+    public ResponseEntity<?> exporterBalanceAgeeCsv(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateReference) {
+        try {
+            BalanceAgee balance = balanceAgeeService.obtenirBalance(dateReference).getValeur();
+            StreamingResponseBody csv = sortie ->
+                    balanceAgeeService.ecrireCsv(balance, new OutputStreamWriter(sortie, StandardCharsets.UTF_8));
+            String filename = "balance_agee_" + (dateReference != null ? dateReference : LocalDate.now()) + ".csv";
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .body(csv);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de l'export de la balance âgée"));
+        }
+    }
+
     /**
      * Marquer une facture comme payée
      */
     @PatchMapping("/{id}/marquer-payee")
+    @SqlBudget(requetes = 5)
     public ResponseEntity<?> marquerFacturePayee(
             @PathVariable Long id,
             @RequestParam ModePaiement modePaiement) {
@@ -207,6 +290,45 @@ public class FactureController {
         }
     }
 
+    /**
+     * Rapprocher un relevé bancaire (CSV ou CAMT.053) avec les factures en attente ;
+     * format=csv renvoie les lignes en exception en CSV
+     */
+    @PostMapping(value = "/rapprochement", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> rapprocherReleve(
+            @RequestParam("releve") MultipartFile releve,
+            @RequestParam(defaultValue = "false") boolean simulation,
+            @RequestParam(defaultValue = "json") String format) {
+        if (releve.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Le relevé est vide"));
+        }
+        try (InputStream flux = releve.getInputStream()) {
+            RapportRapprochement rapport = rapprochementBancaireService.rapprocher(flux, simulation);
+            if (rapport.getErreur() != null) {
+                // Les lots validés avant l'erreur sont payés : le rapport partiel accompagne l'erreur
+                Map<String, Object> corps = new LinkedHashMap<>();
+                corps.put("error", rapport.getErreur());
+                corps.put("rapport", rapport.enMap());
+                return ResponseEntity.badRequest().body(corps);
+            }
+            if ("csv".equalsIgnoreCase(format)) {
+                StringWriter csv = new StringWriter();
+                rapport.ecrireCsv(csv);
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                "attachment; filename=\"rapprochement_exceptions_" + LocalDate.now() + ".csv\"")
+                        .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                        .body(csv.toString());
+            }
+            return ResponseEntity.ok(rapport.enMap());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du rapprochement du relevé"));
+        }
+    }
+
     /**
      * Obtenir les statuts de facture possibles
      */
@@ -244,14 +366,17 @@ public class FactureController {
     }
 
     /**
-     * Rechercher factures par numéro
+     * Rechercher des factures par numéro de facture ou de commande, complet ou partiel (paginé par curseur)
      */
     @GetMapping("/numero/{numeroFacture}")
-    public ResponseEntity<?> rechercherFactureParNumero(@PathVariable String numeroFacture) {
+    @SqlBudget(requetes = 2)
+    public ResponseEntity<?> rechercherFactureParNumero(@PathVariable String numeroFacture,
+                                                        @RequestParam(required = false) String curseur,
+                                                        @RequestParam(defaultValue = "20") int taille) {
         try {
-            // Cette méthode nécessiterait d'être ajoutée au service
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("message", "Recherche par numéro à implémenter"));
+            return ResponseEntity.ok(rechercheNumerosService.rechercher(numeroFacture, curseur, taille));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Erreur lors de la recherche"));
@@ -280,19 +405,14 @@ public class FactureController {
      * Dashboard admin - Résumé des factures
      */
     @GetMapping("/dashboard")
+    @SqlBudget(requetes = 12, tempsMs = 800)
     public ResponseEntity<?> obtenirDashboardFactures() {
         try {
-            FactureService.FactureStatistiques stats = factureService.obtenirStatistiquesFactures();
-            List<FactureDTO> facturesNonTraitees = factureService.obtenirFacturesNonTraitees();
-            List<FactureDTO> facturesPayeesMois = factureService.obtenirFacturesPayeesDuMois();
+            ValeurCachee<Map<String, Object>> dashboard = tableauDeBordService.obtenirDashboardFactures();
 
-            return ResponseEntity.ok(Map.of(
-                    "statistiques", stats,
-                    "facturesNonTraitees", facturesNonTraitees.size(),
-                    "dernieresFacturesNonTraitees", facturesNonTraitees.stream().limit(5).collect(Collectors.toList()),
-                    "facturesPayeesMois", facturesPayeesMois.size(),
-                    "dernieresFacturesPayees", facturesPayeesMois.stream().limit(5).collect(Collectors.toList())
-            ));
+            Map<String, Object> reponse = new LinkedHashMap<>(dashboard.getValeur());
+            reponse.put("fraicheur", dashboard.fraicheur());
+            return ResponseEntity.ok().headers(dashboard.enTetes()).body(reponse);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Erreur lors de la récupération du dashboard"));
@@ -0,0 +1,50 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.service.FluxEvenementsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/flux")
+@CrossOrigin(origins = "http://localhost:3000")
+public class FluxController {
+
+    private final FluxEvenementsService fluxEvenementsService;
+
+    @Autowired
+    public FluxController(FluxEvenementsService fluxEvenementsService) {
+        this.fluxEvenementsService = fluxEvenementsService;
+    }
+
+    /**
+     * Flux d'événements d'un utilisateur (notifications, statuts de commande), reprise via Last-Event-ID
+     */
+    @GetMapping(value = "/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> ouvrirFlux(@PathVariable Long userId,
+                                        @RequestHeader(value = "Last-Event-ID", required = false) String dernierId) {
+        try {
+            return ResponseEntity.ok(fluxEvenementsService.ouvrir(userId, dernierId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", "Erreur lors de l'ouverture du flux"));
+        }
+    }
+
+    /**
+     * Nombre de connexions ouvertes
+     */
+    @GetMapping("/connexions")
+    public ResponseEntity<?> obtenirNombreConnexions() {
+        return ResponseEntity.ok(Map.of("connexions", fluxEvenementsService.nombreConnexions()));
+    }
+}
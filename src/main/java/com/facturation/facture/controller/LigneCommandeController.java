@@ -1,6 +1,8 @@
 package com.facturation.facture.controller;
 
+import com.facturation.facture.diagnostic.SqlBudget;
 import com.facturation.facture.dto.LigneCommandeDTO;
+import com.facturation.facture.dto.StatistiqueProduitDTO;
 import com.facturation.facture.service.LigneCommandeService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -121,20 +123,18 @@ public class LigneCommandeController {
      * Obtenir les statistiques d'un produit
      */
     @GetMapping("/statistiques/produit/{produitId}")
+    @SqlBudget(requetes = 1)
     public ResponseEntity<Map<String, Object>> obtenirStatistiquesProduit(@PathVariable Long produitId) {
-        Object[] stats = ligneCommandeService.obtenirStatistiquesProduit(produitId);
-        Long nbCommandes = ligneCommandeService.compterCommandesAvecProduit(produitId);
-        BigDecimal chiffreAffaires = ligneCommandeService.calculerChiffreAffairesProduit(produitId);
+        StatistiqueProduitDTO stats = ligneCommandeService.obtenirStatistiquesProduit(produitId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("produitId", produitId);
-        if (stats != null && stats.length >= 3) {
-            response.put("nombreLignesCommande", stats[0]);
-            response.put("quantiteTotaleVendue", stats[1]);
-            response.put("chiffreAffairesTotal", stats[2]);
-        }
-        response.put("nombreCommandesDistinctes", nbCommandes);
-        response.put("chiffreAffaires", chiffreAffaires);
+        response.put("nombreLignesCommande", stats.getNombreLignesCommande());
+        response.put("quantiteTotaleVendue", stats.getQuantiteTotaleVendue());
+        response.put("chiffreAffairesTotal", stats.getChiffreAffaires());
+        response.put("nombreCommandesDistinctes", stats.getNombreCommandesDistinctes());
+        response.put("chiffreAffaires", stats.getChiffreAffaires());
+        response.put("derniereVente", stats.getDerniereVente());
 
         return ResponseEntity.ok(response);
     }
@@ -0,0 +1,84 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.service.NotificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/notifications")
+@CrossOrigin(origins = "http://localhost:3000")
+public class NotificationController {
+
+    private final NotificationService notificationService;
+
+    @Autowired
+    public NotificationController(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    /**
+     * Boîte de réception d'un utilisateur, paginée par curseur
+     */
+    @GetMapping("/utilisateur/{userId}")
+    public ResponseEntity<?> obtenirNotifications(@PathVariable Long userId,
+                                                  @RequestParam(required = false) String curseur,
+                                                  @RequestParam(defaultValue = "20") int taille) {
+        try {
+            return ResponseEntity.ok(notificationService.obtenirPage(userId, curseur, taille));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la récupération des notifications"));
+        }
+    }
+
+    /**
+     * Nombre de notifications non lues d'un utilisateur
+     */
+    @GetMapping("/utilisateur/{userId}/non-lues")
+    public ResponseEntity<?> compterNonLues(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(Map.of("nonLues", notificationService.compterNonLues(userId)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du comptage des notifications"));
+        }
+    }
+
+    /**
+     * Marquer des notifications comme lues
+     */
+    @PatchMapping("/utilisateur/{userId}/lues")
+    public ResponseEntity<?> marquerCommeLues(@PathVariable Long userId, @RequestBody List<Long> ids) {
+        try {
+            int modifiees = notificationService.marquerCommeLues(userId, ids);
+            return ResponseEntity.ok(Map.of("modifiees", modifiees,
+                    "nonLues", notificationService.compterNonLues(userId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du marquage des notifications"));
+        }
+    }
+
+    /**
+     * Marquer toutes les notifications d'un utilisateur comme lues
+     */
+    @PatchMapping("/utilisateur/{userId}/lues/toutes")
+    public ResponseEntity<?> marquerToutesCommeLues(@PathVariable Long userId) {
+        try {
+            int modifiees = notificationService.marquerToutesCommeLues(userId);
+            return ResponseEntity.ok(Map.of("modifiees", modifiees, "nonLues", 0));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du marquage des notifications"));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.model.TacheRapport;
+import com.facturation.facture.rapport.DefinitionRapport;
+import com.facturation.facture.rapport.ResultatRapport;
+import com.facturation.facture.service.RapportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/rapports")
+@CrossOrigin(origins = "http://localhost:3000")
+public class RapportController {
+
+    private final RapportService rapportService;
+
+    @Autowired
+    public RapportController(RapportService rapportService) {
+        this.rapportService = rapportService;
+    }
+
+    /**
+     * Soumettre un rapport de période (exécuté en arrière-plan)
+     */
+    @PostMapping
+    public ResponseEntity<?> soumettreRapport(@RequestBody DefinitionRapport definition) {
+        try {
+            TacheRapport tache = rapportService.soumettre(definition);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/rapports/" + tache.getId())
+                    .body(tache.resume());
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Trop de rapports en cours, réessayez plus tard"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la soumission du rapport"));
+        }
+    }
+
+    /**
+     * Obtenir l'état d'un rapport
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> obtenirEtatRapport(@PathVariable String id) {
+        try {
+            Optional<TacheRapport> tache = rapportService.obtenirTache(id);
+            if (tache.isPresent()) {
+                return ResponseEntity.ok(tache.get().resume());
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la récupération du rapport"));
+        }
+    }
+
+    /**
+     * Télécharger le résultat d'un rapport terminé (json ou csv)
+     */
+    @GetMapping("/{id}/resultat")
+    public ResponseEntity<?> telechargerResultat(@PathVariable String id,
+                                                 @RequestParam(defaultValue = "json") String format) {
+        try {
+            Optional<TacheRapport> tacheOpt = rapportService.obtenirTache(id);
+            if (tacheOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            TacheRapport tache = tacheOpt.get();
+            if (tache.getStatut() != TacheRapport.Statut.TERMINE) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(tache.resume());
+            }
+
+            ResultatRapport resultat = rapportService.obtenirResultat(tache);
+            if ("csv".equalsIgnoreCase(format)) {
+                byte[] csv = resultat.enCsv().getBytes(StandardCharsets.UTF_8);
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rapport-"
+                                + tache.getDefinition().getType().name().toLowerCase() + "-" + id + ".csv\"")
+                        .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                        .body(csv);
+            }
+
+            Map<String, Object> reponse = new LinkedHashMap<>(tache.resume());
+            reponse.put("resultat", resultat);
+            return ResponseEntity.ok(reponse);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du téléchargement du rapport"));
+        }
+    }
+
+    /**
+     * Annuler un rapport en attente ou en cours
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> annulerRapport(@PathVariable String id) {
+        try {
+            if (!rapportService.annuler(id)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Le rapport est déjà terminé"));
+            }
+            return ResponseEntity.ok(Map.of("message", "Rapport annulé"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de l'annulation du rapport"));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.rapport.DeclarationTVA;
+import com.facturation.facture.service.DeclarationTVAService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/tva")
+@CrossOrigin(origins = "http://localhost:3000")
+public class TvaController {
+
+    private final DeclarationTVAService declarationTVAService;
+
+    @Autowired
+    public TvaController(DeclarationTVAService declarationTVAService) {
+        this.declarationTVAService = declarationTVAService;
+    }
+
+    /**
+     * Obtenir la déclaration de TVA d'une année (json, csv ou pdf)
+     */
+    @GetMapping("/declarations/{annee}")
+    public ResponseEntity<?> obtenirDeclaration(@PathVariable int annee,
+                                                @RequestParam(defaultValue = "json") String format,
+                                                @RequestParam(defaultValue = "false") boolean recalculer) {
+        try {
+            DeclarationTVA declaration = declarationTVAService.obtenirDeclaration(annee, recalculer);
+
+            if ("csv".equalsIgnoreCase(format)) {
+                StreamingResponseBody csv = sortie -> {
+                    Writer writer = new OutputStreamWriter(sortie, StandardCharsets.UTF_8);
+                    declarationTVAService.ecrireCsv(declaration, writer);
+                };
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"declaration_tva_" + annee + ".csv\"")
+                        .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                        .body(csv);
+            }
+            if ("pdf".equalsIgnoreCase(format)) {
+                StreamingResponseBody pdf = sortie -> declarationTVAService.ecrirePdf(declaration, sortie);
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"declaration_tva_" + annee + ".pdf\"")
+                        .contentType(MediaType.APPLICATION_PDF)
+                        .body(pdf);
+            }
+            return ResponseEntity.ok(declarationTVAService.enMap(declaration));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la génération de la déclaration de TVA"));
+        }
+    }
+}
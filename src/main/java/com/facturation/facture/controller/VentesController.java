@@ -0,0 +1,83 @@
+package com.facturation.facture.controller;
+
+import com.facturation.facture.diagnostic.SqlBudget;
+import com.facturation.facture.dto.TopClientDTO;
+import com.facturation.facture.dto.TopProduitDTO;
+import com.facturation.facture.service.VentesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ventes")
+@CrossOrigin(origins = "http://localhost:3000")
+public class VentesController {
+
+    private final VentesService ventesService;
+
+    @Autowired
+    public VentesController(VentesService ventesService) {
+        this.ventesService = ventesService;
+    }
+
+    /**
+     * Obtenir les k meilleurs clients (par chiffre d'affaires ou nombre de commandes)
+     */
+    @GetMapping("/top-clients")
+    @SqlBudget(requetes = 1)
+    public ResponseEntity<?> obtenirTopClients(
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "CHIFFRE_AFFAIRES") VentesService.CritereClassement critere,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin) {
+        try {
+            List<TopClientDTO> clients = ventesService.obtenirTopClients(k, critere, dateDebut, dateFin);
+            return ResponseEntity.ok(clients);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul du classement des clients"));
+        }
+    }
+
+    /**
+     * Obtenir les k meilleurs produits (par quantité vendue ou chiffre d'affaires)
+     */
+    @GetMapping("/top-produits")
+    @SqlBudget(requetes = 1)
+    public ResponseEntity<?> obtenirTopProduits(
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "QUANTITE") VentesService.CritereClassement critere,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin) {
+        try {
+            List<TopProduitDTO> produits = ventesService.obtenirTopProduits(k, critere, dateDebut, dateFin);
+            return ResponseEntity.ok(produits);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors du calcul du classement des produits"));
+        }
+    }
+
+    /**
+     * Reconstruire les cumuls journaliers depuis l'historique des commandes (pour l'admin)
+     */
+    @PostMapping("/reconstruire")
+    public ResponseEntity<?> reconstruireCumuls() {
+        try {
+            return ResponseEntity.ok(ventesService.reconstruireCumuls());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la reconstruction des cumuls"));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.facturation.facture.diagnostic;
+
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Compte les entités hydratées par Hibernate pendant la requête HTTP courante
+ */
+@Component
+public class CompteurEntitesInterceptor implements Interceptor, HibernatePropertiesCustomizer {
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        SqlStatistiques stats = SqlStatistiques.courantes();
+        if (stats != null) {
+            stats.enregistrerEntiteChargee();
+        }
+        return false;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put("hibernate.session_factory.interceptor", this);
+    }
+}
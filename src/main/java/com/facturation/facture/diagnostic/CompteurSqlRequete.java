@@ -0,0 +1,18 @@
+package com.facturation.facture.diagnostic;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Alimente les statistiques de la requête HTTP courante (aucun coût hors échantillon)
+ */
+@Component
+public class CompteurSqlRequete implements EcouteurSql {
+
+    @Override
+    public void requeteExecutee(ExecutionSql execution) {
+        SqlStatistiques stats = SqlStatistiques.courantes();
+        if (stats != null) {
+            stats.enregistrerRequete(execution.getSql(), execution.getDureeNanos());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.facturation.facture.diagnostic;
+
+/**
+ * Reçoit chaque instruction exécutée par la DataSource instrumentée
+ */
+public interface EcouteurSql {
+
+    void requeteExecutee(ExecutionSql execution);
+}
@@ -0,0 +1,141 @@
+package com.facturation.facture.diagnostic;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Capture les instructions SQL au-delà d'un seuil réglable à chaud, dans un tampon circulaire borné.
+ * Le coût (attribution par la pile, formatage des paramètres) n'est payé que par les requêtes lentes.
+ */
+@Component
+public class EnregistreurRequetesLentes implements EcouteurSql {
+
+    private static final Logger log = LoggerFactory.getLogger(EnregistreurRequetesLentes.class);
+
+    private static final String PACKAGE_REPOSITORY = "com.facturation.facture.repository.";
+    private static final String PACKAGE_SERVICE = "com.facturation.facture.service.";
+    private static final int LONGUEUR_MAX_PARAMETRE = 100;
+
+    private static final StackWalker PILE = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final AtomicLong seuilMs;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<RequeteLente> tampon;
+
+    public EnregistreurRequetesLentes(@Value("${diagnostic.sql.seuil-lent-ms:200}") long seuilMs,
+                                      @Value("${diagnostic.sql.capacite-requetes-lentes:500}") int capacite) {
+        if (capacite <= 0) {
+            throw new IllegalArgumentException("La capacité du tampon des requêtes lentes doit être strictement positive");
+        }
+        this.seuilMs = new AtomicLong(seuilMs);
+        this.tampon = new AtomicReferenceArray<>(capacite);
+    }
+
+    @Override
+    public void requeteExecutee(ExecutionSql execution) {
+        long dureeMs = execution.getDureeNanos() / 1_000_000;
+        if (dureeMs < seuilMs.get()) {
+            return;
+        }
+
+        String[] pointAppel = pointAppel();
+        long numero = sequence.incrementAndGet();
+        RequeteLente requete = new RequeteLente(numero, LocalDateTime.now(), execution.getSql(),
+                formaterParametres(execution.getParametres()), dureeMs, execution.getLignes(),
+                pointAppel[0], pointAppel[1], Thread.currentThread().getName());
+        tampon.set((int) (numero % tampon.length()), requete);
+
+        log.warn("sql.lente dureeMs={} lignes={} repository={} service={} sql=\"{}\"",
+                dureeMs, execution.getLignes(), pointAppel[0], pointAppel[1], execution.getSql());
+    }
+
+    /**
+     * Requêtes capturées, de la plus récente à la plus ancienne
+     */
+    public List<RequeteLente> obtenirRequetesLentes(int limite) {
+        if (limite < 0) {
+            throw new RuntimeException("La limite doit être positive ou nulle");
+        }
+        List<RequeteLente> requetes = new ArrayList<>();
+        for (int i = 0; i < tampon.length(); i++) {
+            RequeteLente requete = tampon.get(i);
+            if (requete != null) {
+                requetes.add(requete);
+            }
+        }
+        requetes.sort(Comparator.comparingLong(RequeteLente::getSequence).reversed());
+        return requetes.size() > limite ? requetes.subList(0, limite) : requetes;
+    }
+
+    public void vider() {
+        for (int i = 0; i < tampon.length(); i++) {
+            tampon.set(i, null);
+        }
+    }
+
+    public long getSeuilMs() {
+        return seuilMs.get();
+    }
+
+    public void setSeuilMs(long nouveauSeuil) {
+        if (nouveauSeuil < 0) {
+            throw new RuntimeException("Le seuil doit être positif ou nul");
+        }
+        seuilMs.set(nouveauSeuil);
+    }
+
+    public int getCapacite() {
+        return tampon.length();
+    }
+
+    /**
+     * Méthode de repository (proxy Spring Data) et méthode de service à l'origine de l'instruction
+     */
+    private String[] pointAppel() {
+        String[] resultat = {null, null};
+        PILE.forEach(frame -> {
+            if (resultat[0] == null) {
+                for (Class<?> interfaceProxy : frame.getDeclaringClass().getInterfaces()) {
+                    if (interfaceProxy.getName().startsWith(PACKAGE_REPOSITORY)) {
+                        resultat[0] = interfaceProxy.getSimpleName() + "." + frame.getMethodName();
+                        break;
+                    }
+                }
+            }
+            if (resultat[1] == null && frame.getClassName().startsWith(PACKAGE_SERVICE)
+                    && !frame.getClassName().contains("$$")) {
+                resultat[1] = frame.getDeclaringClass().getSimpleName() + "." + frame.getMethodName()
+                        + ":" + frame.getLineNumber();
+            }
+        });
+        return resultat;
+    }
+
+    private List<String> formaterParametres(List<Object> parametres) {
+        List<String> valeurs = new ArrayList<>(parametres.size());
+        for (Object parametre : parametres) {
+            String valeur;
+            if (parametre == null) {
+                valeur = "null";
+            } else if (parametre instanceof byte[]) {
+                valeur = "<" + ((byte[]) parametre).length + " octets>";
+            } else {
+                valeur = String.valueOf(parametre);
+            }
+            if (valeur.length() > LONGUEUR_MAX_PARAMETRE) {
+                valeur = valeur.substring(0, LONGUEUR_MAX_PARAMETRE) + "…";
+            }
+            valeurs.add(valeur);
+        }
+        return valeurs;
+    }
+}
@@ -0,0 +1,58 @@
+package com.facturation.facture.diagnostic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Une instruction JDBC exécutée : SQL, paramètres liés, durée et nombre de lignes.
+ * Les paramètres restent dans le tableau brut du Statement ; la liste n'est construite
+ * que si un écouteur la demande (en pratique, pour une requête lente).
+ */
+public final class ExecutionSql {
+
+    private final String sql;
+    private final Object[] valeurs;
+    private final int nombreParametres;
+    private final int tailleLot;
+    private final long dureeNanos;
+    private final long lignes;
+
+    ExecutionSql(String sql, Object[] valeurs, int nombreParametres, int tailleLot, long dureeNanos, long lignes) {
+        this.sql = sql;
+        this.valeurs = valeurs;
+        this.nombreParametres = nombreParametres;
+        this.tailleLot = tailleLot;
+        this.dureeNanos = dureeNanos;
+        this.lignes = lignes;
+    }
+
+    public String getSql() { return sql; }
+
+    /**
+     * Paramètres par index croissant (le dernier lot lié pour un batch), suivis de la taille du lot
+     */
+    public List<Object> getParametres() {
+        if (valeurs == null && tailleLot <= 1) {
+            return Collections.emptyList();
+        }
+        List<Object> parametres = new ArrayList<>();
+        if (valeurs != null) {
+            // Index JDBC à partir de 1 : la case 0 n'est jamais liée
+            for (int i = 1; i <= nombreParametres; i++) {
+                parametres.add(valeurs[i]);
+            }
+        }
+        if (tailleLot > 1) {
+            parametres.add("(lot de " + tailleLot + ")");
+        }
+        return parametres;
+    }
+
+    public long getDureeNanos() { return dureeNanos; }
+
+    /**
+     * Lignes lues ou modifiées, -1 si inconnu
+     */
+    public long getLignes() { return lignes; }
+}
@@ -0,0 +1,35 @@
+package com.facturation.facture.diagnostic;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Fait compter les requêtes SQL d'une tâche d'exécuteur dans les statistiques de la requête HTTP
+ * qui l'a soumise : sans cela, le budget @SqlBudget des endpoints parallélisés ne voit que le
+ * thread de la requête
+ */
+public class PropagationSqlStatistiques implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable tache) {
+        return propager(tache);
+    }
+
+    /**
+     * Envelopper une tâche soumise à un exécuteur sans décorateur, quand la requête l'attend
+     */
+    public static Runnable propager(Runnable tache) {
+        SqlStatistiques stats = SqlStatistiques.courantes();
+        if (stats == null) {
+            return tache;
+        }
+        return () -> {
+            SqlStatistiques precedentes = SqlStatistiques.courantes();
+            SqlStatistiques.attacher(stats);
+            try {
+                tache.run();
+            } finally {
+                SqlStatistiques.attacher(precedentes);
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.facturation.facture.diagnostic;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Requête lente capturée, avec son point d'appel applicatif
+ */
+public final class RequeteLente {
+
+    private final long sequence;
+    private final LocalDateTime date;
+    private final String sql;
+    private final List<String> parametres;
+    private final long dureeMs;
+    private final long lignes;
+    private final String methodeRepository;
+    private final String methodeService;
+    private final String thread;
+
+    RequeteLente(long sequence, LocalDateTime date, String sql, List<String> parametres, long dureeMs, long lignes,
+                 String methodeRepository, String methodeService, String thread) {
+        this.sequence = sequence;
+        this.date = date;
+        this.sql = sql;
+        this.parametres = parametres;
+        this.dureeMs = dureeMs;
+        this.lignes = lignes;
+        this.methodeRepository = methodeRepository;
+        this.methodeService = methodeService;
+        this.thread = thread;
+    }
+
+    public long getSequence() { return sequence; }
+
+    public LocalDateTime getDate() { return date; }
+
+    public String getSql() { return sql; }
+
+    public List<String> getParametres() { return parametres; }
+
+    public long getDureeMs() { return dureeMs; }
+
+    public long getLignes() { return lignes; }
+
+    public String getMethodeRepository() { return methodeRepository; }
+
+    public String getMethodeService() { return methodeService; }
+
+    public String getThread() { return thread; }
+}
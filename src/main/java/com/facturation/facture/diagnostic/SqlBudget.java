@@ -0,0 +1,26 @@
+package com.facturation.facture.diagnostic;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Budget SQL d'un endpoint : au-delà, un avertissement est journalisé avec la liste des requêtes
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SqlBudget {
+
+    /**
+     * Nombre maximum d'instructions JDBC pour une requête HTTP
+     */
+    int requetes();
+
+    /**
+     * Temps SQL cumulé maximum en millisecondes (-1 : pas de limite)
+     */
+    long tempsMs() default -1;
+}
@@ -0,0 +1,34 @@
+package com.facturation.facture.diagnostic;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Ajoute les en-têtes X-SQL-* avant l'écriture du corps (après, la réponse est déjà engagée)
+ */
+@ControllerAdvice
+public class SqlDiagnosticAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlStatistiques stats = SqlStatistiques.courantes();
+        if (stats != null) {
+            response.getHeaders().set("X-SQL-Count", String.valueOf(stats.getNombreRequetes()));
+            response.getHeaders().set("X-SQL-Time", String.valueOf(stats.getTempsMs()));
+            response.getHeaders().set("X-SQL-Entities", String.valueOf(stats.getEntitesChargees()));
+        }
+        return body;
+    }
+}
@@ -0,0 +1,87 @@
+package com.facturation.facture.diagnostic;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Mesure l'activité SQL de chaque requête /api échantillonnée : une ligne de log structurée
+ * par requête, et un avertissement détaillé quand le budget @SqlBudget est dépassé
+ */
+@Component
+public class SqlDiagnosticFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlDiagnosticFilter.class);
+
+    private final boolean actif;
+    private final double tauxEchantillonnage;
+
+    public SqlDiagnosticFilter(@Value("${diagnostic.sql.actif:true}") boolean actif,
+                               @Value("${diagnostic.sql.taux-echantillonnage:1.0}") double tauxEchantillonnage) {
+        this.actif = actif;
+        this.tauxEchantillonnage = tauxEchantillonnage;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !actif || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (tauxEchantillonnage < 1.0 && ThreadLocalRandom.current().nextDouble() >= tauxEchantillonnage) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        SqlStatistiques stats = SqlStatistiques.demarrer();
+        long debut = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlStatistiques.terminer();
+            journaliser(request, response, stats, (System.nanoTime() - debut) / 1_000_000);
+        }
+    }
+
+    private void journaliser(HttpServletRequest request, HttpServletResponse response,
+                             SqlStatistiques stats, long dureeMs) {
+        String endpoint = request.getMethod() + " " + request.getRequestURI();
+        log.info("sql.diagnostic endpoint=\"{}\" statut={} requetes={} tempsSqlMs={} entites={} dureeMs={}",
+                endpoint, response.getStatus(), stats.getNombreRequetes(), stats.getTempsMs(),
+                stats.getEntitesChargees(), dureeMs);
+
+        SqlBudget budget = budget(request);
+        if (budget == null) {
+            return;
+        }
+        boolean depasseRequetes = stats.getNombreRequetes() > budget.requetes();
+        boolean depasseTemps = budget.tempsMs() >= 0 && stats.getTempsMs() > budget.tempsMs();
+        if (depasseRequetes || depasseTemps) {
+            log.warn("Budget SQL dépassé pour {} : {} requêtes (budget {}), {} ms (budget {})\n{}",
+                    endpoint, stats.getNombreRequetes(), budget.requetes(), stats.getTempsMs(),
+                    budget.tempsMs() >= 0 ? budget.tempsMs() : "-",
+                    String.join("\n", stats.getRequetes()));
+        }
+    }
+
+    private SqlBudget budget(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (handler instanceof HandlerMethod) {
+            return ((HandlerMethod) handler).getMethodAnnotation(SqlBudget.class);
+        }
+        return null;
+    }
+}
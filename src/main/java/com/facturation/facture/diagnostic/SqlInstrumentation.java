@@ -0,0 +1,275 @@
+package com.facturation.facture.diagnostic;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Instrumentation JDBC par proxys dynamiques : DataSource -> Connection -> Statement -> ResultSet.
+ * Chaque exécution est chronométrée ; pour une lecture, l'événement est émis à la fermeture
+ * du ResultSet afin de connaître le nombre de lignes parcourues.
+ */
+public final class SqlInstrumentation {
+
+    private SqlInstrumentation() {}
+
+    public static DataSource envelopper(DataSource cible, List<EcouteurSql> ecouteurs) {
+        if (ecouteurs.isEmpty()) {
+            return cible;
+        }
+        return proxy(DataSource.class, new DataSourceHandler(cible, ecouteurs));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SqlInstrumentation.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoquer(Object cible, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean estUnwrap(Method method) {
+        return "unwrap".equals(method.getName()) || "isWrapperFor".equals(method.getName());
+    }
+
+    private static final class DataSourceHandler implements InvocationHandler {
+
+        private final DataSource cible;
+        private final List<EcouteurSql> ecouteurs;
+
+        DataSourceHandler(DataSource cible, List<EcouteurSql> ecouteurs) {
+            this.cible = cible;
+            this.ecouteurs = ecouteurs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object resultat = invoquer(cible, method, args);
+            if (!estUnwrap(method) && resultat instanceof Connection) {
+                return proxy(Connection.class, new ConnectionHandler((Connection) resultat, ecouteurs));
+            }
+            return resultat;
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection cible;
+        private final List<EcouteurSql> ecouteurs;
+
+        ConnectionHandler(Connection cible, List<EcouteurSql> ecouteurs) {
+            this.cible = cible;
+            this.ecouteurs = ecouteurs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object resultat = invoquer(cible, method, args);
+            if (estUnwrap(method) || !(resultat instanceof Statement)) {
+                return resultat;
+            }
+
+            // prepareStatement / prepareCall : le SQL est connu dès la préparation
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            StatementHandler handler = new StatementHandler((Statement) resultat, sql, ecouteurs);
+            if (resultat instanceof CallableStatement) {
+                return proxy(CallableStatement.class, handler);
+            }
+            if (resultat instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, handler);
+            }
+            return proxy(Statement.class, handler);
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement cible;
+        private final String sqlPrepare;
+        private final List<EcouteurSql> ecouteurs;
+        // Tableau indexé comme JDBC (à partir de 1), confié tel quel à l'exécution : pas de copie
+        // tant que le Statement n'est pas relié avec d'autres valeurs après une exécution
+        private Object[] parametres;
+        private int nombreParametres;
+        private boolean parametresPartages;
+        private int tailleLot;
+        private ExecutionEnCours enCours;
+
+        StatementHandler(Statement cible, String sqlPrepare, List<EcouteurSql> ecouteurs) {
+            this.cible = cible;
+            this.sqlPrepare = sqlPrepare;
+            this.ecouteurs = ecouteurs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nom = method.getName();
+
+            if (nom.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                lier((Integer) args[0], nom.equals("setNull") ? null : args[1]);
+                return invoquer(cible, method, args);
+            }
+            if (nom.equals("clearParameters")) {
+                parametres = null;
+                nombreParametres = 0;
+                parametresPartages = false;
+            } else if (nom.equals("addBatch")) {
+                tailleLot++;
+            } else if (nom.equals("close")) {
+                terminer();
+            } else if (nom.equals("getResultSet")) {
+                Object resultat = invoquer(cible, method, args);
+                return resultat instanceof ResultSet && enCours != null
+                        ? proxy(ResultSet.class, new ResultSetHandler((ResultSet) resultat, enCours))
+                        : resultat;
+            }
+            if (!nom.startsWith("execute")) {
+                return invoquer(cible, method, args);
+            }
+
+            terminer();
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sqlPrepare;
+            Object[] valeurs = parametres;
+            int nombre = nombreParametres;
+            int lot = tailleLot;
+            parametresPartages = true;
+            tailleLot = 0;
+
+            long debut = System.nanoTime();
+            Object resultat;
+            try {
+                resultat = invoquer(cible, method, args);
+            } catch (Throwable t) {
+                notifier(new ExecutionSql(sql, valeurs, nombre, lot, System.nanoTime() - debut, -1));
+                throw t;
+            }
+            long duree = System.nanoTime() - debut;
+
+            if (resultat instanceof ResultSet) {
+                enCours = new ExecutionEnCours(sql, valeurs, nombre, lot, duree);
+                return proxy(ResultSet.class, new ResultSetHandler((ResultSet) resultat, enCours));
+            }
+            if (resultat instanceof Boolean && (Boolean) resultat) {
+                // execute() a produit un ResultSet : il sera récupéré par getResultSet()
+                enCours = new ExecutionEnCours(sql, valeurs, nombre, lot, duree);
+                return resultat;
+            }
+            notifier(new ExecutionSql(sql, valeurs, nombre, lot, duree, lignesModifiees(resultat)));
+            return resultat;
+        }
+
+        private void lier(int index, Object valeur) {
+            if (parametres == null || index >= parametres.length) {
+                parametres = parametres == null
+                        ? new Object[Math.max(index + 1, 8)]
+                        : Arrays.copyOf(parametres, Math.max(index + 1, parametres.length * 2));
+                parametresPartages = false;
+            } else if (parametresPartages) {
+                // Le tableau appartient à une exécution déjà notifiée (lue plus tard si elle est lente)
+                parametres = parametres.clone();
+                parametresPartages = false;
+            }
+            parametres[index] = valeur;
+            nombreParametres = Math.max(nombreParametres, index);
+        }
+
+        private void terminer() {
+            if (enCours != null) {
+                enCours.terminer();
+                enCours = null;
+            }
+        }
+
+        private void notifier(ExecutionSql execution) {
+            for (EcouteurSql ecouteur : ecouteurs) {
+                ecouteur.requeteExecutee(execution);
+            }
+        }
+
+        private long lignesModifiees(Object resultat) {
+            if (resultat instanceof Number) {
+                return ((Number) resultat).longValue();
+            }
+            long total = 0;
+            if (resultat instanceof int[]) {
+                for (int n : (int[]) resultat) {
+                    total += Math.max(n, 0);
+                }
+                return total;
+            }
+            if (resultat instanceof long[]) {
+                for (long n : (long[]) resultat) {
+                    total += Math.max(n, 0);
+                }
+                return total;
+            }
+            return -1;
+        }
+
+        private final class ExecutionEnCours {
+
+            private final String sql;
+            private final Object[] valeurs;
+            private final int nombre;
+            private final int lot;
+            private final long dureeNanos;
+            private long lignes;
+            private boolean termine;
+
+            ExecutionEnCours(String sql, Object[] valeurs, int nombre, int lot, long dureeNanos) {
+                this.sql = sql;
+                this.valeurs = valeurs;
+                this.nombre = nombre;
+                this.lot = lot;
+                this.dureeNanos = dureeNanos;
+            }
+
+            void ligneLue() {
+                lignes++;
+            }
+
+            void terminer() {
+                if (!termine) {
+                    termine = true;
+                    notifier(new ExecutionSql(sql, valeurs, nombre, lot, dureeNanos, lignes));
+                }
+            }
+        }
+
+        private final class ResultSetHandler implements InvocationHandler {
+
+            private final ResultSet cible;
+            private final ExecutionEnCours execution;
+
+            ResultSetHandler(ResultSet cible, ExecutionEnCours execution) {
+                this.cible = cible;
+                this.execution = execution;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object resultat = invoquer(cible, method, args);
+                if ("next".equals(method.getName()) && Boolean.TRUE.equals(resultat)) {
+                    execution.ligneLue();
+                } else if ("close".equals(method.getName())) {
+                    execution.terminer();
+                }
+                return resultat;
+            }
+        }
+    }
+}
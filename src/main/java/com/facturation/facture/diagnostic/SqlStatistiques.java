@@ -0,0 +1,79 @@
+package com.facturation.facture.diagnostic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteurs SQL de la requête HTTP en cours ; partagés avec les threads des exécuteurs
+ * qui travaillent pour elle (voir PropagationSqlStatistiques), d'où les compteurs atomiques
+ */
+public final class SqlStatistiques {
+
+    private static final ThreadLocal<SqlStatistiques> COURANTES = new ThreadLocal<>();
+
+    // Borne la mémoire en cas de N+1 massif
+    private static final int MAX_REQUETES_CONSERVEES = 200;
+
+    private final AtomicInteger nombreRequetes = new AtomicInteger();
+    private final AtomicLong tempsNanos = new AtomicLong();
+    private final AtomicInteger entitesChargees = new AtomicInteger();
+    private final List<String> requetes = new ArrayList<>();
+
+    private SqlStatistiques() {}
+
+    static SqlStatistiques demarrer() {
+        SqlStatistiques stats = new SqlStatistiques();
+        COURANTES.set(stats);
+        return stats;
+    }
+
+    static void terminer() {
+        COURANTES.remove();
+    }
+
+    /**
+     * Rattacher le thread courant aux statistiques d'une requête (null pour le détacher)
+     */
+    static void attacher(SqlStatistiques stats) {
+        if (stats != null) {
+            COURANTES.set(stats);
+        } else {
+            COURANTES.remove();
+        }
+    }
+
+    /**
+     * Statistiques de la requête en cours, null si elle n'est pas échantillonnée
+     */
+    public static SqlStatistiques courantes() {
+        return COURANTES.get();
+    }
+
+    void enregistrerRequete(String sql, long dureeNanos) {
+        nombreRequetes.incrementAndGet();
+        tempsNanos.addAndGet(dureeNanos);
+        synchronized (requetes) {
+            if (requetes.size() < MAX_REQUETES_CONSERVEES) {
+                requetes.add(sql);
+            }
+        }
+    }
+
+    void enregistrerEntiteChargee() {
+        entitesChargees.incrementAndGet();
+    }
+
+    public int getNombreRequetes() { return nombreRequetes.get(); }
+
+    public long getTempsMs() { return tempsNanos.get() / 1_000_000; }
+
+    public int getEntitesChargees() { return entitesChargees.get(); }
+
+    public List<String> getRequetes() {
+        synchronized (requetes) {
+            return new ArrayList<>(requetes);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.facturation.facture.dto;
+
+import com.facturation.facture.model.Commande;
+import com.facturation.facture.model.Facture;
+import com.facturation.facture.model.LigneCommande;
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Instantané immuable d'une facture, complet pour le rendu PDF
+ * (aucune association JPA n'est conservée)
+ */
+public final class FacturePdfDTO {
+
+    private final Long id;
+    private final String numeroFacture;
+    private final LocalDateTime dateFacture;
+    private final LocalDateTime datePaiement;
+    private final StatutFacture statut;
+    private final ModePaiement modePaiement;
+    private final BigDecimal montantHT;
+    private final BigDecimal montantTVA;
+    private final BigDecimal montantTTC;
+    private final String nomClient;
+    private final String emailClient;
+    private final String numeroCommande;
+    private final LocalDateTime dateCommande;
+    private final String statutCommande;
+    private final BigDecimal tauxTVA;
+    private final List<Ligne> lignes;
+
+    private FacturePdfDTO(Facture facture) {
+        this.id = facture.getId();
+        this.numeroFacture = facture.getNumeroFacture();
+        this.dateFacture = facture.getDateFacture();
+        this.datePaiement = facture.getDatePaiement();
+        this.statut = facture.getStatut();
+        this.modePaiement = facture.getModePaiement();
+        this.montantHT = facture.getMontantHT();
+        this.montantTVA = facture.getMontantTVA();
+        this.montantTTC = facture.getMontantTTC();
+        this.nomClient = facture.getNomClient();
+        this.statutCommande = facture.getStatutCommande();
+
+        Commande commande = facture.getCommande();
+        if (commande != null) {
+            this.emailClient = commande.getClient() != null ? commande.getClient().getEmail() : null;
+            this.numeroCommande = commande.getNumeroCommande();
+            this.dateCommande = commande.getDateCommande();
+            this.tauxTVA = commande.getTauxTVA() != null ? commande.getTauxTVA() : BigDecimal.ZERO;
+
+            List<Ligne> lignesCopiees = new ArrayList<>();
+            if (commande.getLignesCommande() != null) {
+                for (LigneCommande ligne : commande.getLignesCommande()) {
+                    lignesCopiees.add(new Ligne(ligne));
+                }
+            }
+            this.lignes = Collections.unmodifiableList(lignesCopiees);
+        } else {
+            this.emailClient = null;
+            this.numeroCommande = null;
+            this.dateCommande = null;
+            this.tauxTVA = BigDecimal.ZERO;
+            this.lignes = Collections.emptyList();
+        }
+    }
+
+    // Méthode de conversion depuis l'entité (à appeler dans la transaction de lecture)
+    public static FacturePdfDTO fromEntity(Facture facture) {
+        if (facture == null) return null;
+        return new FacturePdfDTO(facture);
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public String getNumeroFacture() { return numeroFacture; }
+    public LocalDateTime getDateFacture() { return dateFacture; }
+    public LocalDateTime getDatePaiement() { return datePaiement; }
+    public StatutFacture getStatut() { return statut; }
+    public ModePaiement getModePaiement() { return modePaiement; }
+    public BigDecimal getMontantHT() { return montantHT; }
+    public BigDecimal getMontantTVA() { return montantTVA; }
+    public BigDecimal getMontantTTC() { return montantTTC; }
+    public String getNomClient() { return nomClient; }
+    public String getEmailClient() { return emailClient; }
+    public String getNumeroCommande() { return numeroCommande; }
+    public LocalDateTime getDateCommande() { return dateCommande; }
+    public String getStatutCommande() { return statutCommande; }
+    public BigDecimal getTauxTVA() { return tauxTVA; }
+    public List<Ligne> getLignes() { return lignes; }
+
+    /**
+     * Ligne de facture figée
+     */
+    public static final class Ligne {
+
+        private final String nomProduit;
+        private final Integer quantite;
+        private final BigDecimal prixUnitaire;
+        private final BigDecimal sousTotal;
+
+        private Ligne(LigneCommande ligne) {
+            this.nomProduit = ligne.getProduit() != null ? ligne.getProduit().getNom() : ligne.getNomProduit();
+            this.quantite = ligne.getQuantite();
+            this.prixUnitaire = ligne.getPrixUnitaire();
+            this.sousTotal = ligne.getSousTotal();
+        }
+
+        public String getNomProduit() { return nomProduit; }
+        public Integer getQuantite() { return quantite; }
+        public BigDecimal getPrixUnitaire() { return prixUnitaire; }
+        public BigDecimal getSousTotal() { return sousTotal; }
+    }
+}
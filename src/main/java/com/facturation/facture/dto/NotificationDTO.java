@@ -0,0 +1,37 @@
+package com.facturation.facture.dto;
+
+import com.facturation.facture.model.Notification;
+import com.facturation.facture.model.enums.TypeNotification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Notification de la boîte de réception (sans l'utilisateur)
+ */
+public class NotificationDTO {
+
+    private Long id;
+    private String titre;
+    private String message;
+    private TypeNotification type;
+    private Boolean lue;
+    private LocalDateTime dateCreation;
+
+    public static NotificationDTO fromEntity(Notification notification) {
+        NotificationDTO dto = new NotificationDTO();
+        dto.id = notification.getId();
+        dto.titre = notification.getTitre();
+        dto.message = notification.getMessage();
+        dto.type = notification.getType();
+        dto.lue = notification.getLue();
+        dto.dateCreation = notification.getDateCreation();
+        return dto;
+    }
+
+    public Long getId() { return id; }
+    public String getTitre() { return titre; }
+    public String getMessage() { return message; }
+    public TypeNotification getType() { return type; }
+    public Boolean getLue() { return lue; }
+    public LocalDateTime getDateCreation() { return dateCreation; }
+}
@@ -0,0 +1,37 @@
+package com.facturation.facture.dto;
+
+import com.facturation.facture.model.StatistiqueProduit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class StatistiqueProduitDTO {
+
+    private Long produitId;
+    private Long nombreLignesCommande = 0L;
+    private Long quantiteTotaleVendue = 0L;
+    private BigDecimal chiffreAffaires = BigDecimal.ZERO;
+    private Long nombreCommandesDistinctes = 0L;
+    private LocalDateTime derniereVente;
+
+    public StatistiqueProduitDTO(Long produitId) {
+        this.produitId = produitId;
+    }
+
+    public static StatistiqueProduitDTO fromEntity(StatistiqueProduit statistique) {
+        StatistiqueProduitDTO dto = new StatistiqueProduitDTO(statistique.getProduitId());
+        dto.nombreLignesCommande = statistique.getNombreLignes();
+        dto.quantiteTotaleVendue = statistique.getQuantiteVendue();
+        dto.chiffreAffaires = statistique.getChiffreAffaires();
+        dto.nombreCommandesDistinctes = statistique.getNombreCommandes();
+        dto.derniereVente = statistique.getDerniereVente();
+        return dto;
+    }
+
+    public Long getProduitId() { return produitId; }
+    public Long getNombreLignesCommande() { return nombreLignesCommande; }
+    public Long getQuantiteTotaleVendue() { return quantiteTotaleVendue; }
+    public BigDecimal getChiffreAffaires() { return chiffreAffaires; }
+    public Long getNombreCommandesDistinctes() { return nombreCommandesDistinctes; }
+    public LocalDateTime getDerniereVente() { return derniereVente; }
+}
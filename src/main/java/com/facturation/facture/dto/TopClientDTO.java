@@ -0,0 +1,30 @@
+package com.facturation.facture.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Ligne d'un classement de clients (projection légère, sans entité)
+ */
+public class TopClientDTO {
+
+    private Long clientId;
+    private String nomComplet;
+    private String email;
+    private Long nombreCommandes;
+    private BigDecimal chiffreAffaires;
+
+    public TopClientDTO(Long clientId, String prenom, String nom, String email,
+                        Long nombreCommandes, BigDecimal chiffreAffaires) {
+        this.clientId = clientId;
+        this.nomComplet = prenom + " " + nom;
+        this.email = email;
+        this.nombreCommandes = nombreCommandes;
+        this.chiffreAffaires = chiffreAffaires;
+    }
+
+    public Long getClientId() { return clientId; }
+    public String getNomComplet() { return nomComplet; }
+    public String getEmail() { return email; }
+    public Long getNombreCommandes() { return nombreCommandes; }
+    public BigDecimal getChiffreAffaires() { return chiffreAffaires; }
+}
@@ -0,0 +1,30 @@
+package com.facturation.facture.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Ligne d'un classement de produits (projection légère, sans entité)
+ */
+public class TopProduitDTO {
+
+    private Long produitId;
+    private String nomProduit;
+    private Long quantiteVendue;
+    private Long nombreLignes;
+    private BigDecimal chiffreAffaires;
+
+    public TopProduitDTO(Long produitId, String nomProduit, Long quantiteVendue,
+                         Long nombreLignes, BigDecimal chiffreAffaires) {
+        this.produitId = produitId;
+        this.nomProduit = nomProduit;
+        this.quantiteVendue = quantiteVendue;
+        this.nombreLignes = nombreLignes;
+        this.chiffreAffaires = chiffreAffaires;
+    }
+
+    public Long getProduitId() { return produitId; }
+    public String getNomProduit() { return nomProduit; }
+    public Long getQuantiteVendue() { return quantiteVendue; }
+    public Long getNombreLignes() { return nombreLignes; }
+    public BigDecimal getChiffreAffaires() { return chiffreAffaires; }
+}
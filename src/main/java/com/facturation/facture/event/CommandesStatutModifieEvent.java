@@ -0,0 +1,103 @@
+package com.facturation.facture.event;
+
+import com.facturation.facture.model.Commande;
+import com.facturation.facture.model.enums.StatutCommande;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Publié (dans la transaction) quand une ou plusieurs commandes changent de statut
+ */
+public class CommandesStatutModifieEvent {
+
+    private final List<Transition> transitions;
+
+    public CommandesStatutModifieEvent(List<Transition> transitions) {
+        this.transitions = Collections.unmodifiableList(transitions);
+    }
+
+    public static CommandesStatutModifieEvent pour(Commande commande, StatutCommande ancienStatut) {
+        return new CommandesStatutModifieEvent(List.of(Transition.de(commande, ancienStatut)));
+    }
+
+    public List<Transition> getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Un statut vendu compte dans le chiffre d'affaires (payée, puis éventuellement livrée)
+     */
+    public static boolean estVendue(StatutCommande statut) {
+        return statut == StatutCommande.PAYEE || statut == StatutCommande.LIVREE;
+    }
+
+    public static class Transition {
+        private final Long commandeId;
+        private final Long clientId;
+        private final LocalDateTime dateCommande;
+        private final BigDecimal totalTTC;
+        private final StatutCommande ancienStatut;
+        private final StatutCommande nouveauStatut;
+
+        public Transition(Long commandeId, Long clientId, LocalDateTime dateCommande, BigDecimal totalTTC,
+                          StatutCommande ancienStatut, StatutCommande nouveauStatut) {
+            this.commandeId = commandeId;
+            this.clientId = clientId;
+            this.dateCommande = dateCommande;
+            this.totalTTC = totalTTC;
+            this.ancienStatut = ancienStatut;
+            this.nouveauStatut = nouveauStatut;
+        }
+
+        public static Transition de(Commande commande, StatutCommande ancienStatut) {
+            return new Transition(commande.getId(), commande.getClient().getId(), commande.getDateCommande(),
+                    commande.getTotalTTC(), ancienStatut, commande.getStatut());
+        }
+
+        /**
+         * Date de commande lue par une requête native : le pilote peut renvoyer Timestamp ou LocalDateTime
+         */
+        public static LocalDateTime enDateHeure(Object valeur) {
+            return valeur instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) valeur;
+        }
+
+        public Long getCommandeId() { return commandeId; }
+        public Long getClientId() { return clientId; }
+        public LocalDateTime getDateCommande() { return dateCommande; }
+        public BigDecimal getTotalTTC() { return totalTTC; }
+        public StatutCommande getAncienStatut() { return ancienStatut; }
+        public StatutCommande getNouveauStatut() { return nouveauStatut; }
+
+        /**
+         * La commande vient d'entrer dans les ventes
+         */
+        public boolean devientVendue() {
+            return !estVendue(ancienStatut) && estVendue(nouveauStatut);
+        }
+
+        /**
+         * La commande sort des ventes (annulation après paiement)
+         */
+        public boolean quitteVentes() {
+            return estVendue(ancienStatut) && !estVendue(nouveauStatut);
+        }
+
+        /**
+         * La commande vient d'être annulée
+         */
+        public boolean devientAnnulee() {
+            return ancienStatut != StatutCommande.ANNULEE && nouveauStatut == StatutCommande.ANNULEE;
+        }
+
+        /**
+         * La commande sort de l'annulation
+         */
+        public boolean quitteAnnulation() {
+            return ancienStatut == StatutCommande.ANNULEE && nouveauStatut != StatutCommande.ANNULEE;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.facturation.facture.event;
+
+import com.facturation.facture.model.Facture;
+import com.facturation.facture.service.AnalytiqueFacturesService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Signale chaque écriture JPA de facture aux colonnes analytiques, qui la relisent après commit
+ */
+@Component
+public class FactureColonnesListener {
+
+    // Résolu à la première écriture : le listener est instancié avec l'EntityManagerFactory
+    private final ObjectProvider<AnalytiqueFacturesService> analytiqueFacturesService;
+
+    @Autowired
+    public FactureColonnesListener(ObjectProvider<AnalytiqueFacturesService> analytiqueFacturesService) {
+        this.analytiqueFacturesService = analytiqueFacturesService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void apresEcriture(Facture facture) {
+        analytiqueFacturesService.getObject().rafraichirApresCommit(List.of(facture.getId()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.facturation.facture.event;
+
+import com.facturation.facture.model.enums.TypeNotification;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Publié après l'insertion (validée) d'un lot de notifications
+ */
+public class NotificationsCreeesEvent {
+
+    private final List<NotificationCreee> notifications;
+
+    public NotificationsCreeesEvent(List<NotificationCreee> notifications) {
+        this.notifications = Collections.unmodifiableList(notifications);
+    }
+
+    public List<NotificationCreee> getNotifications() {
+        return notifications;
+    }
+
+    public static class NotificationCreee {
+        private final Long userId;
+        private final String titre;
+        private final String message;
+        private final TypeNotification type;
+        private final LocalDateTime dateCreation;
+
+        public NotificationCreee(Long userId, String titre, String message, TypeNotification type,
+                                 LocalDateTime dateCreation) {
+            this.userId = userId;
+            this.titre = titre;
+            this.message = message;
+            this.type = type;
+            this.dateCreation = dateCreation;
+        }
+
+        public Long getUserId() { return userId; }
+        public String getTitre() { return titre; }
+        public String getMessage() { return message; }
+        public TypeNotification getType() { return type; }
+        public LocalDateTime getDateCreation() { return dateCreation; }
+    }
+}
@@ -0,0 +1,63 @@
+package com.facturation.facture.event;
+
+import com.facturation.facture.model.Produit;
+
+/**
+ * Publié (dans la transaction) quand le stock ou le seuil d'alerte d'un produit change
+ */
+public class StockModifieEvent {
+
+    private final Long produitId;
+    private final String nomProduit;
+    private final int ancienneQuantite;
+    private final int nouvelleQuantite;
+    private final int ancienSeuilAlerte;
+    private final int seuilAlerte;
+
+    public StockModifieEvent(Long produitId, String nomProduit, int ancienneQuantite, int nouvelleQuantite,
+                             int ancienSeuilAlerte, int seuilAlerte) {
+        this.produitId = produitId;
+        this.nomProduit = nomProduit;
+        this.ancienneQuantite = ancienneQuantite;
+        this.nouvelleQuantite = nouvelleQuantite;
+        this.ancienSeuilAlerte = ancienSeuilAlerte;
+        this.seuilAlerte = seuilAlerte;
+    }
+
+    /**
+     * Changement de stock, seuil inchangé
+     */
+    public static StockModifieEvent pour(Produit produit, int ancienneQuantite) {
+        return pour(produit, ancienneQuantite, produit.getSeuilAlerte());
+    }
+
+    public static StockModifieEvent pour(Produit produit, int ancienneQuantite, Integer ancienSeuilAlerte) {
+        return new StockModifieEvent(produit.getId(), produit.getNom(), ancienneQuantite,
+                produit.getQuantiteStock() != null ? produit.getQuantiteStock() : 0,
+                ancienSeuilAlerte != null ? ancienSeuilAlerte : 0,
+                produit.getSeuilAlerte() != null ? produit.getSeuilAlerte() : 0);
+    }
+
+    public Long getProduitId() { return produitId; }
+    public String getNomProduit() { return nomProduit; }
+    public int getAncienneQuantite() { return ancienneQuantite; }
+    public int getNouvelleQuantite() { return nouvelleQuantite; }
+    public int getAncienSeuilAlerte() { return ancienSeuilAlerte; }
+    public int getSeuilAlerte() { return seuilAlerte; }
+
+    /**
+     * Le stock vient de passer sous le seuil d'alerte (ou à zéro), y compris parce que le seuil
+     * a été relevé au-dessus d'un stock inchangé
+     */
+    public boolean franchitSeuilBas() {
+        return nouvelleQuantite <= seuilAlerte
+                && (ancienneQuantite > ancienSeuilAlerte || ancienneQuantite > 0 && nouvelleQuantite == 0);
+    }
+
+    /**
+     * Le stock est remonté au-dessus du seuil d'alerte
+     */
+    public boolean repasseAuDessusDuSeuil() {
+        return nouvelleQuantite > seuilAlerte;
+    }
+}
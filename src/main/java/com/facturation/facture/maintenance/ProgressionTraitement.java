@@ -0,0 +1,89 @@
+package com.facturation.facture.maintenance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Avancement d'un traitement de maintenance par lots (lu par l'API pendant l'exécution)
+ */
+public class ProgressionTraitement {
+
+    public enum Statut {
+        EN_COURS,
+        TERMINE,
+        INTERROMPU,
+        ECHEC
+    }
+
+    private final String nom;
+    private final LocalDateTime debutLe = LocalDateTime.now();
+    private final long debutNanos = System.nanoTime();
+
+    private volatile Statut statut = Statut.EN_COURS;
+    private volatile LocalDateTime finLe;
+    private volatile long lots;
+    private volatile long lignes;
+    private volatile long dernierId;
+    private volatile String erreur;
+
+    public ProgressionTraitement(String nom) {
+        this.nom = nom;
+    }
+
+    /**
+     * Enregistrer un lot traité (un seul thread écrit)
+     */
+    public void lotTraite(int lignesDuLot, long dernierIdDuLot) {
+        lots++;
+        lignes += lignesDuLot;
+        dernierId = dernierIdDuLot;
+    }
+
+    public void terminer() {
+        terminer(Statut.TERMINE, null);
+    }
+
+    public void interrompre() {
+        terminer(Statut.INTERROMPU, null);
+    }
+
+    public void echouer(String message) {
+        terminer(Statut.ECHEC, message);
+    }
+
+    private void terminer(Statut statutFinal, String message) {
+        this.erreur = message;
+        this.finLe = LocalDateTime.now();
+        this.statut = statutFinal;
+    }
+
+    public Statut getStatut() { return statut; }
+    public long getLignes() { return lignes; }
+
+    /**
+     * Lignes traitées par seconde depuis le début
+     */
+    public double debit() {
+        long nanos = System.nanoTime() - debutNanos;
+        return nanos > 0 ? lignes * 1e9 / nanos : 0;
+    }
+
+    public Map<String, Object> resume() {
+        Map<String, Object> resume = new LinkedHashMap<>();
+        resume.put("nom", nom);
+        resume.put("statut", statut);
+        resume.put("debutLe", debutLe);
+        resume.put("finLe", finLe);
+        resume.put("lots", lots);
+        resume.put("lignes", lignes);
+        resume.put("dernierId", dernierId);
+        resume.put("lignesParSeconde", Math.round(debit() * 10) / 10.0);
+        resume.put("dureeSecondes", Duration.between(debutLe, finLe != null ? finLe : LocalDateTime.now()).toSeconds());
+        if (erreur != null) {
+            resume.put("erreur", erreur);
+        }
+        return resume;
+    }
+}
@@ -0,0 +1,32 @@
+// Bail (lease) en base : un seul nœud du cluster exécute un traitement à la fois
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "baux")
+public class Bail {
+
+    @Id
+    @Column(name = "nom", length = 100)
+    private String nom;
+
+    @Column(name = "proprietaire", nullable = false, length = 150)
+    private String proprietaire;
+
+    @Column(name = "expire_le", nullable = false, columnDefinition = "DATETIME(3)")
+    private LocalDateTime expireLe;
+
+    // Jeton de garde (fencing token) : incrémenté à chaque changement de détenteur
+    @Column(name = "jeton", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long jeton;
+
+    public Bail() {
+    }
+
+    public String getNom() { return nom; }
+    public String getProprietaire() { return proprietaire; }
+    public LocalDateTime getExpireLe() { return expireLe; }
+    public Long getJeton() { return jeton; }
+}
@@ -12,7 +12,29 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "commandes")
+@Table(name = "commandes", indexes = {
+        @Index(name = "idx_commandes_modification", columnList = "date_modification, date_commande"),
+        @Index(name = "idx_commandes_date_modification", columnList = "date_commande, date_modification")
+})
+@NamedEntityGraphs({
+        // Détail d'une commande (client, lignes, produits et catégories pour le DTO)
+        @NamedEntityGraph(
+                name = "Commande.detail",
+                attributeNodes = {
+                        @NamedAttributeNode("client"),
+                        @NamedAttributeNode(value = "lignesCommande", subgraph = "lignes")
+                },
+                subgraphs = {
+                        @NamedSubgraph(name = "lignes", attributeNodes = @NamedAttributeNode(value = "produit", subgraph = "produit")),
+                        @NamedSubgraph(name = "produit", attributeNodes = @NamedAttributeNode("categorie"))
+                }
+        ),
+        // Listes de commandes (client uniquement)
+        @NamedEntityGraph(
+                name = "Commande.resume",
+                attributeNodes = @NamedAttributeNode("client")
+        )
+})
 public class Commande {
 
     @Id
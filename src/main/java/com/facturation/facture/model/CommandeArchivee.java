@@ -0,0 +1,66 @@
+// Commande annulée archivée par la rétention (lignes conservées en JSON)
+package com.facturation.facture.model;
+
+import com.facturation.facture.model.enums.StatutCommande;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "commandes_archivees", indexes = {
+        @Index(name = "idx_commandes_archivees_client", columnList = "client_id"),
+        @Index(name = "idx_commandes_archivees_date", columnList = "date_commande")
+})
+public class CommandeArchivee {
+
+    // Même identifiant que la commande d'origine
+    @Id
+    private Long id;
+
+    @Column(name = "numero_commande", nullable = false)
+    private String numeroCommande;
+
+    @Column(name = "client_id", nullable = false)
+    private Long clientId;
+
+    @Column(name = "date_commande", nullable = false)
+    private LocalDateTime dateCommande;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false)
+    private StatutCommande statut;
+
+    @Column(name = "total_ht", precision = 10, scale = 2)
+    private BigDecimal totalHT;
+
+    @Column(name = "montant_tva", precision = 10, scale = 2)
+    private BigDecimal montantTVA;
+
+    @Column(name = "total_ttc", precision = 10, scale = 2)
+    private BigDecimal totalTTC;
+
+    @Column(name = "numero_facture")
+    private String numeroFacture;
+
+    @Lob
+    @Column(name = "lignes", columnDefinition = "LONGTEXT")
+    private String lignes;
+
+    @Column(name = "date_archivage", nullable = false)
+    private LocalDateTime dateArchivage;
+
+    public CommandeArchivee() {
+    }
+
+    public Long getId() { return id; }
+    public String getNumeroCommande() { return numeroCommande; }
+    public Long getClientId() { return clientId; }
+    public LocalDateTime getDateCommande() { return dateCommande; }
+    public StatutCommande getStatut() { return statut; }
+    public BigDecimal getTotalHT() { return totalHT; }
+    public BigDecimal getMontantTVA() { return montantTVA; }
+    public BigDecimal getTotalTTC() { return totalTTC; }
+    public String getNumeroFacture() { return numeroFacture; }
+    public String getLignes() { return lignes; }
+    public LocalDateTime getDateArchivage() { return dateArchivage; }
+}
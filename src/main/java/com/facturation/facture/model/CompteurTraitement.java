@@ -0,0 +1,31 @@
+// Cumul persistant d'un traitement planifié (nombre et montant traités), partagé par tous les nœuds
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "compteurs_traitement")
+public class CompteurTraitement {
+
+    @Id
+    @Column(name = "nom", length = 100)
+    private String nom;
+
+    @Column(name = "nombre", nullable = false)
+    private Long nombre;
+
+    @Column(name = "montant_centimes", nullable = false)
+    private Long montantCentimes;
+
+    @Column(name = "date_mise_a_jour", nullable = false)
+    private LocalDateTime dateMiseAJour;
+
+    public CompteurTraitement() {
+    }
+
+    public String getNom() { return nom; }
+    public Long getNombre() { return nombre; }
+    public Long getMontantCentimes() { return montantCentimes; }
+    public LocalDateTime getDateMiseAJour() { return dateMiseAJour; }
+}
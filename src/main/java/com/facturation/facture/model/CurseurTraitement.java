@@ -0,0 +1,42 @@
+// Filigrane d'un traitement incrémental : dernière position (date, id) déjà examinée
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "curseurs_traitement")
+public class CurseurTraitement {
+
+    @Id
+    @Column(name = "nom", length = 100)
+    private String nom;
+
+    @Column(name = "position_date", nullable = false, columnDefinition = "DATETIME(6)")
+    private LocalDateTime positionDate;
+
+    @Column(name = "position_id", nullable = false)
+    private Long positionId;
+
+    @Column(name = "date_mise_a_jour", nullable = false)
+    private LocalDateTime dateMiseAJour;
+
+    public CurseurTraitement() {
+    }
+
+    public CurseurTraitement(String nom, LocalDateTime positionDate, Long positionId) {
+        this.nom = nom;
+        avancer(positionDate, positionId);
+    }
+
+    public void avancer(LocalDateTime positionDate, Long positionId) {
+        this.positionDate = positionDate;
+        this.positionId = positionId;
+        this.dateMiseAJour = LocalDateTime.now();
+    }
+
+    public String getNom() { return nom; }
+    public LocalDateTime getPositionDate() { return positionDate; }
+    public Long getPositionId() { return positionId; }
+    public LocalDateTime getDateMiseAJour() { return dateMiseAJour; }
+}
@@ -0,0 +1,40 @@
+// Événement à pousser par SSE, écrit dans la transaction de l'écriture d'origine et relu par chaque nœud
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "evenements_flux", indexes = {
+        @Index(name = "idx_evenements_flux_canal", columnList = "canal, id"),
+        @Index(name = "idx_evenements_flux_date", columnList = "date_creation")
+})
+public class EvenementFlux {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ID de l'utilisateur destinataire, -1 pour les diffusions admin
+    @Column(name = "canal", nullable = false)
+    private Long canal;
+
+    @Column(name = "type", nullable = false, length = 50)
+    private String type;
+
+    @Lob
+    @Column(name = "donnees", nullable = false, columnDefinition = "LONGTEXT")
+    private String donnees;
+
+    @Column(name = "date_creation", nullable = false, columnDefinition = "DATETIME(6)")
+    private LocalDateTime dateCreation;
+
+    public EvenementFlux() {
+    }
+
+    public Long getId() { return id; }
+    public Long getCanal() { return canal; }
+    public String getType() { return type; }
+    public String getDonnees() { return donnees; }
+    public LocalDateTime getDateCreation() { return dateCreation; }
+}
@@ -1,6 +1,7 @@
 // 9. Entité Facture
 package com.facturation.facture.model;
 
+import com.facturation.facture.event.FactureColonnesListener;
 import com.facturation.facture.model.enums.ModePaiement;
 import com.facturation.facture.model.enums.StatutFacture;
 import jakarta.persistence.*;
@@ -9,7 +10,28 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "factures")
+@Table(name = "factures", indexes = @Index(name = "idx_factures_statut_date", columnList = "statut, date_facture, id"))
+@EntityListeners(FactureColonnesListener.class)
+@NamedEntityGraphs({
+        // Liste de factures et historique client (commande et client pour le DTO)
+        @NamedEntityGraph(
+                name = "Facture.liste",
+                attributeNodes = @NamedAttributeNode(value = "commande", subgraph = "commande"),
+                subgraphs = @NamedSubgraph(name = "commande", attributeNodes = @NamedAttributeNode("client"))
+        ),
+        // Détail d'une facture (commande, client, lignes et produits)
+        @NamedEntityGraph(
+                name = "Facture.detail",
+                attributeNodes = @NamedAttributeNode(value = "commande", subgraph = "commande"),
+                subgraphs = {
+                        @NamedSubgraph(name = "commande", attributeNodes = {
+                                @NamedAttributeNode("client"),
+                                @NamedAttributeNode(value = "lignesCommande", subgraph = "lignes")
+                        }),
+                        @NamedSubgraph(name = "lignes", attributeNodes = @NamedAttributeNode("produit"))
+                }
+        )
+})
 public class Facture {
 
     @Id
@@ -64,6 +86,10 @@ public class Facture {
     @Column(name = "statut_commande")
     private String statutCommande;
 
+    // Positionné par le détecteur de retards (DetectionRetardsService)
+    @Column(name = "en_retard")
+    private Boolean enRetard = false;
+
 
     // Constructeurs et méthodes...
     public Facture() {
@@ -240,4 +266,12 @@ public class Facture {
     public void setStatutCommande(String statutCommande) {
         this.statutCommande = statutCommande;
     }
+
+    public Boolean getEnRetard() {
+        return enRetard;
+    }
+
+    public void setEnRetard(Boolean enRetard) {
+        this.enRetard = enRetard;
+    }
 }
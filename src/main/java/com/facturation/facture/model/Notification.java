@@ -8,7 +8,10 @@ import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        @Index(name = "idx_notifications_user_date", columnList = "user_id, date_creation, id"),
+        @Index(name = "idx_notifications_user_lue", columnList = "user_id, lue")
+})
 public class Notification {
 
     @Id
@@ -0,0 +1,44 @@
+// Sketches analytiques sérialisés d'une journée de ventes
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "sketches_ventes")
+public class SketchVentes {
+
+    @Id
+    @Column(name = "jour")
+    private LocalDate jour;
+
+    @Lob
+    @Column(name = "donnees", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] donnees;
+
+    // Instant de lecture des commandes dont la journée a été recalculée (sert de version)
+    @Column(name = "date_mise_a_jour", nullable = false)
+    private LocalDateTime dateMiseAJour;
+
+    public SketchVentes() {
+    }
+
+    public SketchVentes(LocalDate jour, byte[] donnees, LocalDateTime dateMiseAJour) {
+        this.jour = jour;
+        this.donnees = donnees;
+        this.dateMiseAJour = dateMiseAJour;
+    }
+
+    public LocalDate getJour() {
+        return jour;
+    }
+
+    public byte[] getDonnees() {
+        return donnees;
+    }
+
+    public LocalDateTime getDateMiseAJour() {
+        return dateMiseAJour;
+    }
+}
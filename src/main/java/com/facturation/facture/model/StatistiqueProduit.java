@@ -0,0 +1,68 @@
+// Statistiques de vente précalculées d'un produit
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "statistiques_produit")
+public class StatistiqueProduit {
+
+    @Id
+    @Column(name = "produit_id")
+    private Long produitId;
+
+    @Column(name = "nombre_lignes", nullable = false)
+    private Long nombreLignes = 0L;
+
+    @Column(name = "quantite_vendue", nullable = false)
+    private Long quantiteVendue = 0L;
+
+    @Column(name = "chiffre_affaires", nullable = false, precision = 14, scale = 2)
+    private BigDecimal chiffreAffaires = BigDecimal.ZERO;
+
+    @Column(name = "nombre_commandes", nullable = false)
+    private Long nombreCommandes = 0L;
+
+    @Column(name = "derniere_vente")
+    private LocalDateTime derniereVente;
+
+    @Column(name = "date_mise_a_jour")
+    private LocalDateTime dateMiseAJour;
+
+    public StatistiqueProduit() {
+    }
+
+    public StatistiqueProduit(Long produitId) {
+        this.produitId = produitId;
+    }
+
+    public Long getProduitId() {
+        return produitId;
+    }
+
+    public Long getNombreLignes() {
+        return nombreLignes;
+    }
+
+    public Long getQuantiteVendue() {
+        return quantiteVendue;
+    }
+
+    public BigDecimal getChiffreAffaires() {
+        return chiffreAffaires;
+    }
+
+    public Long getNombreCommandes() {
+        return nombreCommandes;
+    }
+
+    public LocalDateTime getDerniereVente() {
+        return derniereVente;
+    }
+
+    public LocalDateTime getDateMiseAJour() {
+        return dateMiseAJour;
+    }
+}
@@ -0,0 +1,112 @@
+// Exécution d'un rapport de période, partagée par tous les nœuds (résultat conservé en JSON)
+package com.facturation.facture.model;
+
+import com.facturation.facture.rapport.DefinitionRapport;
+import com.facturation.facture.rapport.TypeRapport;
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Entity
+@Table(name = "taches_rapport", indexes = {
+        @Index(name = "idx_taches_rapport_definition", columnList = "type, date_debut, date_fin, statut"),
+        @Index(name = "idx_taches_rapport_statut", columnList = "statut, soumise_le")
+})
+public class TacheRapport {
+
+    public enum Statut {
+        EN_ATTENTE,
+        EN_COURS,
+        TERMINE,
+        ECHEC,
+        ANNULE
+    }
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private TypeRapport type;
+
+    @Column(name = "date_debut", nullable = false)
+    private LocalDate dateDebut;
+
+    @Column(name = "date_fin", nullable = false)
+    private LocalDate dateFin;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false)
+    private Statut statut;
+
+    @Column(name = "soumise_le", nullable = false)
+    private LocalDateTime soumiseLe;
+
+    @Column(name = "debut_le")
+    private LocalDateTime debutLe;
+
+    @Column(name = "fin_le")
+    private LocalDateTime finLe;
+
+    @Column(name = "erreur", length = 1000)
+    private String erreur;
+
+    @Lob
+    @Column(name = "resultat", columnDefinition = "LONGTEXT")
+    private String resultat;
+
+    // Réponse à une soumission servie par un résultat déjà calculé (non persisté)
+    @Transient
+    private boolean depuisCache;
+
+    public TacheRapport() {
+    }
+
+    public TacheRapport(DefinitionRapport definition) {
+        this.id = UUID.randomUUID().toString();
+        this.type = definition.getType();
+        this.dateDebut = definition.getDateDebut();
+        this.dateFin = definition.getDateFin();
+        this.statut = Statut.EN_ATTENTE;
+        this.soumiseLe = LocalDateTime.now();
+    }
+
+    public boolean estFinie() {
+        return statut == Statut.TERMINE || statut == Statut.ECHEC || statut == Statut.ANNULE;
+    }
+
+    public DefinitionRapport getDefinition() {
+        return new DefinitionRapport(type, dateDebut, dateFin);
+    }
+
+    public String getId() { return id; }
+    public Statut getStatut() { return statut; }
+    public LocalDateTime getFinLe() { return finLe; }
+    public String getResultat() { return resultat; }
+
+    public void setDepuisCache(boolean depuisCache) { this.depuisCache = depuisCache; }
+
+    /**
+     * État de la tâche sans le résultat (pour le suivi)
+     */
+    public Map<String, Object> resume() {
+        Map<String, Object> resume = new LinkedHashMap<>();
+        resume.put("id", id);
+        resume.put("type", type);
+        resume.put("dateDebut", dateDebut);
+        resume.put("dateFin", dateFin);
+        resume.put("statut", statut);
+        resume.put("soumiseLe", soumiseLe);
+        resume.put("debutLe", debutLe);
+        resume.put("finLe", finLe);
+        resume.put("depuisCache", depuisCache);
+        if (erreur != null) {
+            resume.put("erreur", erreur);
+        }
+        return resume;
+    }
+}
@@ -0,0 +1,52 @@
+// Agrégat des ventes par client et par jour
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "ventes_client_jour",
+        uniqueConstraints = @UniqueConstraint(name = "uk_vente_client_jour", columnNames = {"client_id", "jour"}),
+        indexes = @Index(name = "idx_vente_client_jour_jour", columnList = "jour"))
+public class VenteClientJour {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "client_id", nullable = false)
+    private Long clientId;
+
+    @Column(name = "jour", nullable = false)
+    private LocalDate jour;
+
+    @Column(name = "nombre_commandes", nullable = false)
+    private Long nombreCommandes = 0L;
+
+    @Column(name = "chiffre_affaires", nullable = false, precision = 14, scale = 2)
+    private BigDecimal chiffreAffaires = BigDecimal.ZERO;
+
+    public VenteClientJour() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getClientId() {
+        return clientId;
+    }
+
+    public LocalDate getJour() {
+        return jour;
+    }
+
+    public Long getNombreCommandes() {
+        return nombreCommandes;
+    }
+
+    public BigDecimal getChiffreAffaires() {
+        return chiffreAffaires;
+    }
+}
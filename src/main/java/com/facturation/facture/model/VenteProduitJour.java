@@ -0,0 +1,59 @@
+// Agrégat des ventes par produit et par jour
+package com.facturation.facture.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "ventes_produit_jour",
+        uniqueConstraints = @UniqueConstraint(name = "uk_vente_produit_jour", columnNames = {"produit_id", "jour"}),
+        indexes = @Index(name = "idx_vente_produit_jour_jour", columnList = "jour"))
+public class VenteProduitJour {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "produit_id", nullable = false)
+    private Long produitId;
+
+    @Column(name = "jour", nullable = false)
+    private LocalDate jour;
+
+    @Column(name = "quantite", nullable = false)
+    private Long quantite = 0L;
+
+    @Column(name = "nombre_lignes", nullable = false)
+    private Long nombreLignes = 0L;
+
+    @Column(name = "chiffre_affaires", nullable = false, precision = 14, scale = 2)
+    private BigDecimal chiffreAffaires = BigDecimal.ZERO;
+
+    public VenteProduitJour() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getProduitId() {
+        return produitId;
+    }
+
+    public LocalDate getJour() {
+        return jour;
+    }
+
+    public Long getQuantite() {
+        return quantite;
+    }
+
+    public Long getNombreLignes() {
+        return nombreLignes;
+    }
+
+    public BigDecimal getChiffreAffaires() {
+        return chiffreAffaires;
+    }
+}
@@ -5,5 +5,6 @@ public enum TypeNotification {
     COMMANDE_RECUE,
     STOCK_FAIBLE,
     PAIEMENT_RECU,
-    LIVRAISON
+    LIVRAISON,
+    RETARD_PAIEMENT
 }
\ No newline at end of file
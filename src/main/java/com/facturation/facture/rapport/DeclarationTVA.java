@@ -0,0 +1,43 @@
+package com.facturation.facture.rapport;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Déclaration de TVA d'une année : une partition par mois écoulé
+ */
+public class DeclarationTVA {
+
+    private final int annee;
+    private final List<PartitionTVA> partitions;
+    private final LocalDateTime genereeLe = LocalDateTime.now();
+
+    public DeclarationTVA(int annee, List<PartitionTVA> partitions) {
+        this.annee = annee;
+        this.partitions = partitions;
+    }
+
+    public int getAnnee() { return annee; }
+    public List<PartitionTVA> getPartitions() { return partitions; }
+    public LocalDateTime getGenereeLe() { return genereeLe; }
+
+    /**
+     * Totaux déclarables de l'année par taux de TVA : {base HT, TVA, TTC}
+     */
+    public Map<BigDecimal, BigDecimal[]> getDeclarableParTaux() {
+        Map<BigDecimal, BigDecimal[]> parTaux = new TreeMap<>();
+        for (PartitionTVA partition : partitions) {
+            partition.getDeclarableParTaux().forEach((taux, totaux) -> {
+                BigDecimal[] cumul = parTaux.computeIfAbsent(taux,
+                        t -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+                for (int i = 0; i < 3; i++) {
+                    cumul[i] = cumul[i].add(totaux[i]);
+                }
+            });
+        }
+        return parTaux;
+    }
+}
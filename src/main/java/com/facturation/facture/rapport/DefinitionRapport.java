@@ -0,0 +1,56 @@
+package com.facturation.facture.rapport;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Paramètres d'un rapport ; sert aussi de clé au cache des résultats
+ */
+public class DefinitionRapport {
+
+    private TypeRapport type;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate dateDebut;
+
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate dateFin;
+
+    public DefinitionRapport() {
+    }
+
+    public DefinitionRapport(TypeRapport type, LocalDate dateDebut, LocalDate dateFin) {
+        this.type = type;
+        this.dateDebut = dateDebut;
+        this.dateFin = dateFin;
+    }
+
+    public TypeRapport getType() { return type; }
+    public void setType(TypeRapport type) { this.type = type; }
+
+    public LocalDate getDateDebut() { return dateDebut; }
+    public void setDateDebut(LocalDate dateDebut) { this.dateDebut = dateDebut; }
+
+    public LocalDate getDateFin() { return dateFin; }
+    public void setDateFin(LocalDate dateFin) { this.dateFin = dateFin; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DefinitionRapport)) return false;
+        DefinitionRapport autre = (DefinitionRapport) o;
+        return type == autre.type && Objects.equals(dateDebut, autre.dateDebut) && Objects.equals(dateFin, autre.dateFin);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, dateDebut, dateFin);
+    }
+
+    @Override
+    public String toString() {
+        return type + " du " + dateDebut + " au " + dateFin;
+    }
+}
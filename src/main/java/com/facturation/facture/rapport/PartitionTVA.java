@@ -0,0 +1,79 @@
+package com.facturation.facture.rapport;
+
+import com.facturation.facture.event.CommandesStatutModifieEvent;
+import com.facturation.facture.model.enums.StatutCommande;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Totaux TVA d'un mois par taux et par statut ; immuable, donc réutilisable tel quel
+ * pour un mois clôturé
+ */
+public class PartitionTVA {
+
+    private final YearMonth mois;
+    private final List<Ligne> lignes;
+    private final boolean cloture;
+    private final LocalDateTime calculeeLe;
+
+    public PartitionTVA(YearMonth mois, List<Ligne> lignes, boolean cloture) {
+        this.mois = mois;
+        this.lignes = Collections.unmodifiableList(lignes);
+        this.cloture = cloture;
+        this.calculeeLe = LocalDateTime.now();
+    }
+
+    public YearMonth getMois() { return mois; }
+    public List<Ligne> getLignes() { return lignes; }
+    public boolean isCloture() { return cloture; }
+    public LocalDateTime getCalculeeLe() { return calculeeLe; }
+
+    /**
+     * Totaux déclarables (commandes vendues) par taux de TVA : {base HT, TVA, TTC}
+     */
+    public Map<BigDecimal, BigDecimal[]> getDeclarableParTaux() {
+        Map<BigDecimal, BigDecimal[]> parTaux = new TreeMap<>();
+        for (Ligne ligne : lignes) {
+            if (CommandesStatutModifieEvent.estVendue(ligne.statut)) {
+                BigDecimal[] totaux = parTaux.computeIfAbsent(ligne.tauxTVA,
+                        t -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+                totaux[0] = totaux[0].add(ligne.baseHT);
+                totaux[1] = totaux[1].add(ligne.montantTVA);
+                totaux[2] = totaux[2].add(ligne.totalTTC);
+            }
+        }
+        return parTaux;
+    }
+
+    public static class Ligne {
+        private final BigDecimal tauxTVA;
+        private final StatutCommande statut;
+        private final long nombreCommandes;
+        private final BigDecimal baseHT;
+        private final BigDecimal montantTVA;
+        private final BigDecimal totalTTC;
+
+        public Ligne(BigDecimal tauxTVA, StatutCommande statut, long nombreCommandes,
+                     BigDecimal baseHT, BigDecimal montantTVA, BigDecimal totalTTC) {
+            this.tauxTVA = tauxTVA != null ? tauxTVA : BigDecimal.ZERO;
+            this.statut = statut;
+            this.nombreCommandes = nombreCommandes;
+            this.baseHT = baseHT;
+            this.montantTVA = montantTVA;
+            this.totalTTC = totalTTC;
+        }
+
+        public BigDecimal getTauxTVA() { return tauxTVA; }
+        public StatutCommande getStatut() { return statut; }
+        public long getNombreCommandes() { return nombreCommandes; }
+        public BigDecimal getBaseHT() { return baseHT; }
+        public BigDecimal getMontantTVA() { return montantTVA; }
+        public BigDecimal getTotalTTC() { return totalTTC; }
+    }
+}
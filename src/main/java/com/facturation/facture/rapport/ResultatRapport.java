@@ -0,0 +1,80 @@
+package com.facturation.facture.rapport;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Résultat d'un rapport : synthèse et éventuelles lignes de détail (colonnes ordonnées)
+ */
+public class ResultatRapport {
+
+    private final Map<String, Object> synthese;
+    private final List<String> colonnes;
+    private final List<List<Object>> lignes;
+    private final LocalDateTime calculeLe;
+
+    public ResultatRapport(Map<String, Object> synthese, List<String> colonnes, List<List<Object>> lignes) {
+        this.synthese = synthese;
+        this.colonnes = colonnes;
+        this.lignes = lignes;
+        this.calculeLe = LocalDateTime.now();
+    }
+
+    /**
+     * Relecture d'un résultat conservé en base
+     */
+    @JsonCreator
+    public ResultatRapport(@JsonProperty("synthese") Map<String, Object> synthese,
+                           @JsonProperty("colonnes") List<String> colonnes,
+                           @JsonProperty("lignes") List<List<Object>> lignes,
+                           @JsonProperty("calculeLe") LocalDateTime calculeLe) {
+        this.synthese = synthese;
+        this.colonnes = colonnes;
+        this.lignes = lignes;
+        this.calculeLe = calculeLe;
+    }
+
+    public Map<String, Object> getSynthese() { return synthese; }
+    public List<String> getColonnes() { return colonnes; }
+    public List<List<Object>> getLignes() { return lignes; }
+    public LocalDateTime getCalculeLe() { return calculeLe; }
+
+    /**
+     * Rendu CSV (séparateur ';') : lignes de détail, ou synthèse à défaut
+     */
+    public String enCsv() {
+        StringBuilder csv = new StringBuilder();
+        if (colonnes.isEmpty()) {
+            csv.append(String.join(";", synthese.keySet())).append('\n');
+            ajouterLigne(csv, new ArrayList<>(synthese.values()));
+        } else {
+            csv.append(String.join(";", colonnes)).append('\n');
+            for (List<Object> ligne : lignes) {
+                ajouterLigne(csv, ligne);
+            }
+        }
+        return csv.toString();
+    }
+
+    private static void ajouterLigne(StringBuilder csv, List<Object> valeurs) {
+        for (int i = 0; i < valeurs.size(); i++) {
+            if (i > 0) {
+                csv.append(';');
+            }
+            Object valeur = valeurs.get(i);
+            if (valeur != null) {
+                String texte = valeur.toString();
+                if (texte.contains(";") || texte.contains("\"") || texte.contains("\n")) {
+                    texte = '"' + texte.replace("\"", "\"\"") + '"';
+                }
+                csv.append(texte);
+            }
+        }
+        csv.append('\n');
+    }
+}
@@ -0,0 +1,11 @@
+package com.facturation.facture.rapport;
+
+/**
+ * Rapports de période disponibles en exécution asynchrone
+ */
+public enum TypeRapport {
+    // Chiffre d'affaires, sous-total et TVA de la période
+    SYNTHESE_PERIODE,
+    // Liste des commandes de la période avec leur client
+    COMMANDES_PERIODE
+}
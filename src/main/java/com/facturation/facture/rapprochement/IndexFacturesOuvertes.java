@@ -0,0 +1,226 @@
+package com.facturation.facture.rapprochement;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index en mémoire des factures en attente pour le rapprochement : table de hachage sur le
+ * numéro normalisé (FAC-20250101-0001, FAC202501010001 et fac 20250101 0001 sont équivalents)
+ * et sur le montant TTC en centimes pour le repli par nom de client.
+ */
+public class IndexFacturesOuvertes {
+
+    // Numéro de facture dans un libellé, tirets et espaces facultatifs
+    private static final Pattern REFERENCE = Pattern.compile("FAC[\\s-]?(\\d{8})[\\s-]?(\\d{4,})");
+
+    private final Map<String, FactureOuverte> parNumero = new HashMap<>();
+    private final Map<Long, List<FactureOuverte>> parMontant = new HashMap<>();
+
+    public void ajouter(FactureOuverte facture) {
+        parNumero.put(cleNumero(facture.numeroFacture), facture);
+        parMontant.computeIfAbsent(facture.montantTTC, m -> new ArrayList<>(1)).add(facture);
+    }
+
+    public int taille() {
+        return parNumero.size();
+    }
+
+    /**
+     * Rapprocher une opération : référence exacte d'abord, puis montant et nom du client
+     */
+    public Correspondance rapprocher(LigneReleve ligne) {
+        String texte = LecteurReleve.normaliser(ligne.getLibelle() + " " + ligne.getNomEmetteur());
+
+        Matcher references = REFERENCE.matcher(texte);
+        FactureOuverte dejaRapprochee = null;
+        FactureOuverte montantDifferent = null;
+        while (references.find()) {
+            FactureOuverte facture = parNumero.get("FAC" + references.group(1) + references.group(2));
+            if (facture == null) {
+                continue;
+            }
+            if (facture.montantTTC != ligne.getMontantCentimes()) {
+                montantDifferent = facture;
+            } else if (facture.rapprochee) {
+                dejaRapprochee = facture;
+            } else {
+                facture.rapprochee = true;
+                return Correspondance.trouvee(facture, "REFERENCE");
+            }
+        }
+        if (dejaRapprochee != null) {
+            return Correspondance.exception("DEJA_RAPPROCHEE", dejaRapprochee,
+                    "Facture déjà rapprochée par une ligne précédente du relevé");
+        }
+        if (montantDifferent != null) {
+            return Correspondance.exception("MONTANT_DIFFERENT", montantDifferent,
+                    "Montant attendu " + montantDifferent.montantTTC / 100.0);
+        }
+        return rapprocherParNom(ligne, texte);
+    }
+
+    /**
+     * Repli : factures du même montant dont le nom du client figure dans l'opération (à une faute près)
+     */
+    private Correspondance rapprocherParNom(LigneReleve ligne, String texte) {
+        List<FactureOuverte> memeMontant = parMontant.get(ligne.getMontantCentimes());
+        if (memeMontant == null) {
+            return Correspondance.exception("NON_TROUVEE", null, "Aucune facture en attente de ce montant");
+        }
+        Set<String> mots = new HashSet<>(List.of(texte.split(" ")));
+
+        FactureOuverte meilleure = null;
+        int meilleurScore = 0;
+        boolean ambigue = false;
+        for (FactureOuverte facture : memeMontant) {
+            if (facture.rapprochee) {
+                continue;
+            }
+            int score = score(facture, mots);
+            if (score > meilleurScore) {
+                meilleure = facture;
+                meilleurScore = score;
+                ambigue = false;
+            } else if (score > 0 && score == meilleurScore) {
+                ambigue = true;
+            }
+        }
+        if (meilleure == null) {
+            return Correspondance.exception("NON_TROUVEE", null, "Aucun client correspondant pour ce montant");
+        }
+        if (ambigue) {
+            return Correspondance.exception("AMBIGUE", meilleure, "Plusieurs factures du même montant et du même client");
+        }
+        meilleure.rapprochee = true;
+        return Correspondance.trouvee(meilleure, "NOM_ET_MONTANT");
+    }
+
+    // Nom obligatoire (2 points), prénom en plus (1 point)
+    private static int score(FactureOuverte facture, Set<String> mots) {
+        if (!contientMots(facture.nomClient, mots)) {
+            return 0;
+        }
+        return contientMots(facture.prenomClient, mots) ? 3 : 2;
+    }
+
+    private static boolean contientMots(String nom, Set<String> mots) {
+        if (nom.isEmpty()) {
+            return false;
+        }
+        for (String partie : nom.split(" ")) {
+            if (!mots.contains(partie) && (partie.length() < 5 || mots.stream().noneMatch(m -> uneFauteAuPlus(m, partie)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Distance d'édition au plus 1 (substitution, insertion ou suppression)
+     */
+    static boolean uneFauteAuPlus(String a, String b) {
+        int ecart = a.length() - b.length();
+        if (Math.abs(ecart) > 1) {
+            return false;
+        }
+        int i = 0, j = 0, fautes = 0;
+        while (i < a.length() && j < b.length()) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (++fautes > 1) {
+                return false;
+            }
+            if (ecart > 0) {
+                i++;
+            } else if (ecart < 0) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return fautes + (a.length() - i) + (b.length() - j) <= 1;
+    }
+
+    private static String cleNumero(String numeroFacture) {
+        return LecteurReleve.normaliser(numeroFacture).replace(" ", "");
+    }
+
+    /**
+     * Facture en attente (montants en centimes, nom du client normalisé)
+     */
+    public static class FactureOuverte {
+        final long id;
+        final String numeroFacture;
+        final LocalDateTime dateFacture;
+        final long clientId;
+        final long montantHT;
+        final long montantTVA;
+        final long montantTTC;
+        final String nomClient;
+        final String prenomClient;
+        boolean rapprochee;
+
+        public FactureOuverte(long id, String numeroFacture, LocalDateTime dateFacture, long clientId, long montantHT,
+                              long montantTVA, long montantTTC, String nomClient, String prenomClient) {
+            this.id = id;
+            this.numeroFacture = numeroFacture;
+            this.dateFacture = dateFacture;
+            this.clientId = clientId;
+            this.montantHT = montantHT;
+            this.montantTVA = montantTVA;
+            this.montantTTC = montantTTC;
+            this.nomClient = LecteurReleve.normaliser(nomClient);
+            this.prenomClient = LecteurReleve.normaliser(prenomClient);
+        }
+
+        public long getId() { return id; }
+        public String getNumeroFacture() { return numeroFacture; }
+        public LocalDateTime getDateFacture() { return dateFacture; }
+        public long getClientId() { return clientId; }
+        public long getMontantHT() { return montantHT; }
+        public long getMontantTVA() { return montantTVA; }
+        public long getMontantTTC() { return montantTTC; }
+    }
+
+    /**
+     * Résultat du rapprochement d'une opération
+     */
+    public static class Correspondance {
+        private final FactureOuverte facture;
+        private final String methode;
+        private final String exception;
+        private final String message;
+
+        private Correspondance(FactureOuverte facture, String methode, String exception, String message) {
+            this.facture = facture;
+            this.methode = methode;
+            this.exception = exception;
+            this.message = message;
+        }
+
+        static Correspondance trouvee(FactureOuverte facture, String methode) {
+            return new Correspondance(facture, methode, null, null);
+        }
+
+        static Correspondance exception(String type, FactureOuverte facture, String message) {
+            return new Correspondance(facture, null, type, message);
+        }
+
+        public boolean estTrouvee() { return exception == null; }
+        public FactureOuverte getFacture() { return facture; }
+        public String getMethode() { return methode; }
+        public String getException() { return exception; }
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,271 @@
+package com.facturation.facture.rapprochement;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Lecture en flux d'un relevé bancaire, une opération à la fois : CSV avec en-tête
+ * (séparateur ';' ou ',', colonnes date / montant / libellé / nom) ou XML de type CAMT.053
+ * (éléments Ntry). Les lignes illisibles sont signalées sans interrompre la lecture.
+ */
+public final class LecteurReleve {
+
+    private static final DateTimeFormatter DATE_FR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private LecteurReleve() {
+    }
+
+    /**
+     * Lire le relevé ; chaque opération est passée à operation, chaque erreur à erreur
+     */
+    public static void lire(InputStream flux, Consumer<LigneReleve> operation, Consumer<ErreurLecture> erreur)
+            throws IOException {
+        BufferedInputStream entree = new BufferedInputStream(flux, 64 * 1024);
+        if (estXml(entree)) {
+            lireCamt(entree, operation, erreur);
+        } else {
+            lireCsv(entree, operation, erreur);
+        }
+    }
+
+    private static boolean estXml(BufferedInputStream entree) throws IOException {
+        entree.mark(64);
+        try {
+            int c;
+            // BOM UTF-8 et blancs ignorés
+            while ((c = entree.read()) != -1 && (Character.isWhitespace(c) || c == 0xEF || c == 0xBB || c == 0xBF)) {
+            }
+            return c == '<';
+        } finally {
+            entree.reset();
+        }
+    }
+
+    private static void lireCsv(InputStream entree, Consumer<LigneReleve> operation, Consumer<ErreurLecture> erreur)
+            throws IOException {
+        BufferedReader lecteur = new BufferedReader(new InputStreamReader(entree, StandardCharsets.UTF_8));
+        String entete = lecteur.readLine();
+        if (entete == null) {
+            throw new RuntimeException("Relevé vide");
+        }
+        entete = entete.replace("\uFEFF", "");
+        char separateur = entete.indexOf(';') >= 0 ? ';' : ',';
+        List<String> colonnes = decouper(entete, separateur);
+
+        int colDate = -1, colMontant = -1, colCredit = -1, colDebit = -1, colLibelle = -1, colNom = -1;
+        for (int i = 0; i < colonnes.size(); i++) {
+            String nom = normaliser(colonnes.get(i));
+            if (nom.startsWith("DATE") && colDate < 0) colDate = i;
+            else if (nom.equals("MONTANT") || nom.equals("AMOUNT")) colMontant = i;
+            else if (nom.startsWith("CREDIT")) colCredit = i;
+            else if (nom.startsWith("DEBIT") && !nom.startsWith("DEBITEUR")) colDebit = i;
+            else if (nom.startsWith("LIBELLE") || nom.startsWith("REFERENCE") || nom.startsWith("MOTIF")
+                    || nom.startsWith("DESCRIPTION")) colLibelle = i;
+            else if (nom.startsWith("NOM") || nom.startsWith("EMETTEUR") || nom.startsWith("DEBITEUR")
+                    || nom.startsWith("DONNEUR")) colNom = i;
+        }
+        if ((colMontant < 0 && colCredit < 0) || colLibelle < 0) {
+            throw new RuntimeException("En-tête du relevé non reconnu : colonnes montant (ou crédit) et libellé requises");
+        }
+
+        String ligne;
+        int numero = 1;
+        while ((ligne = lecteur.readLine()) != null) {
+            numero++;
+            if (ligne.isBlank()) {
+                continue;
+            }
+            LigneReleve operationLue;
+            try {
+                List<String> valeurs = decouper(ligne, separateur);
+                long montant;
+                if (colMontant >= 0) {
+                    montant = centimes(valeur(valeurs, colMontant));
+                } else {
+                    String credit = valeur(valeurs, colCredit);
+                    montant = !credit.isBlank() ? centimes(credit) : -Math.abs(centimes(valeur(valeurs, colDebit)));
+                }
+                operationLue = new LigneReleve(numero, date(valeur(valeurs, colDate)), montant,
+                        valeur(valeurs, colLibelle), valeur(valeurs, colNom));
+            } catch (RuntimeException e) {
+                erreur.accept(new ErreurLecture(numero, ligne, e.getMessage()));
+                continue;
+            }
+            // Hors du try : une erreur du traitement interrompt la lecture au lieu d'être imputée à la ligne
+            operation.accept(operationLue);
+        }
+    }
+
+    private static void lireCamt(InputStream entree, Consumer<LigneReleve> operation, Consumer<ErreurLecture> erreur)
+            throws IOException {
+        XMLInputFactory fabrique = XMLInputFactory.newInstance();
+        fabrique.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        fabrique.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader xml = fabrique.createXMLStreamReader(entree, "UTF-8");
+            int numero = 0;
+            boolean dansOperation = false;
+            boolean dansDebiteur = false;
+            String montant = null, sens = null, date = null, nom = null;
+            StringBuilder libelle = new StringBuilder();
+
+            while (xml.hasNext()) {
+                int evenement = xml.next();
+                if (evenement == XMLStreamConstants.START_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if (element.equals("Ntry")) {
+                        dansOperation = true;
+                        numero++;
+                        montant = sens = date = nom = null;
+                        libelle.setLength(0);
+                    } else if (!dansOperation) {
+                        continue;
+                    } else if (element.equals("Dbtr")) {
+                        dansDebiteur = true;
+                    } else if (element.equals("Amt") && montant == null) {
+                        montant = xml.getElementText();
+                    } else if (element.equals("CdtDbtInd") && sens == null) {
+                        sens = xml.getElementText();
+                    } else if (element.equals("Dt") && date == null) {
+                        date = xml.getElementText();
+                    } else if (element.equals("Nm") && dansDebiteur && nom == null) {
+                        nom = xml.getElementText();
+                    } else if (element.equals("Ustrd") || element.equals("EndToEndId") || element.equals("AddtlNtryInf")) {
+                        libelle.append(' ').append(xml.getElementText());
+                    }
+                } else if (evenement == XMLStreamConstants.END_ELEMENT) {
+                    String element = xml.getLocalName();
+                    if (element.equals("Dbtr")) {
+                        dansDebiteur = false;
+                    } else if (element.equals("Ntry") && dansOperation) {
+                        dansOperation = false;
+                        LigneReleve operationLue;
+                        try {
+                            long centimes = centimes(montant);
+                            operationLue = new LigneReleve(numero, date(date),
+                                    "DBIT".equals(sens) ? -centimes : centimes, libelle.toString().trim(), nom);
+                        } catch (RuntimeException e) {
+                            erreur.accept(new ErreurLecture(numero, libelle.toString().trim(), e.getMessage()));
+                            continue;
+                        }
+                        operation.accept(operationLue);
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Relevé XML illisible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Découper une ligne CSV (guillemets doubles pris en charge)
+     */
+    private static List<String> decouper(String ligne, char separateur) {
+        List<String> valeurs = new ArrayList<>();
+        StringBuilder courante = new StringBuilder();
+        boolean entreGuillemets = false;
+        for (int i = 0; i < ligne.length(); i++) {
+            char c = ligne.charAt(i);
+            if (c == '"') {
+                if (entreGuillemets && i + 1 < ligne.length() && ligne.charAt(i + 1) == '"') {
+                    courante.append('"');
+                    i++;
+                } else {
+                    entreGuillemets = !entreGuillemets;
+                }
+            } else if (c == separateur && !entreGuillemets) {
+                valeurs.add(courante.toString().trim());
+                courante.setLength(0);
+            } else {
+                courante.append(c);
+            }
+        }
+        valeurs.add(courante.toString().trim());
+        return valeurs;
+    }
+
+    private static String valeur(List<String> valeurs, int colonne) {
+        return colonne >= 0 && colonne < valeurs.size() ? valeurs.get(colonne) : "";
+    }
+
+    /**
+     * Montant français ou anglais ("1 234,56", "1234.56", "-12,00 €") en centimes
+     */
+    static long centimes(String texte) {
+        if (texte == null || texte.isBlank()) {
+            throw new RuntimeException("Montant manquant");
+        }
+        String nettoye = texte.replaceAll("[\\s\\u00A0\\u202F€]", "");
+        if (nettoye.indexOf(',') >= 0) {
+            nettoye = nettoye.replace(".", "").replace(',', '.');
+        }
+        try {
+            return new BigDecimal(nettoye).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new RuntimeException("Montant illisible : " + texte);
+        }
+    }
+
+    private static LocalDate date(String texte) {
+        if (texte == null || texte.isBlank()) {
+            return null;
+        }
+        String valeur = texte.trim();
+        try {
+            return valeur.indexOf('/') > 0 ? LocalDate.parse(valeur, DATE_FR) : LocalDate.parse(valeur.substring(0, 10));
+        } catch (DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new RuntimeException("Date illisible : " + texte);
+        }
+    }
+
+    /**
+     * Majuscules sans accents, tout autre caractère que lettre ou chiffre remplacé par une espace
+     */
+    public static String normaliser(String texte) {
+        if (texte == null) {
+            return "";
+        }
+        return Normalizer.normalize(texte, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toUpperCase(Locale.ROOT)
+                .replaceAll("[^A-Z0-9]+", " ")
+                .trim();
+    }
+
+    /**
+     * Ligne du relevé qui n'a pas pu être lue
+     */
+    public static class ErreurLecture {
+        private final int numeroLigne;
+        private final String contenu;
+        private final String message;
+
+        public ErreurLecture(int numeroLigne, String contenu, String message) {
+            this.numeroLigne = numeroLigne;
+            this.contenu = contenu;
+            this.message = message;
+        }
+
+        public int getNumeroLigne() { return numeroLigne; }
+        public String getContenu() { return contenu; }
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,29 @@
+package com.facturation.facture.rapprochement;
+
+import java.time.LocalDate;
+
+/**
+ * Opération d'un relevé bancaire (montant en centimes, négatif pour un débit)
+ */
+public class LigneReleve {
+
+    private final int numeroLigne;
+    private final LocalDate date;
+    private final long montantCentimes;
+    private final String libelle;
+    private final String nomEmetteur;
+
+    public LigneReleve(int numeroLigne, LocalDate date, long montantCentimes, String libelle, String nomEmetteur) {
+        this.numeroLigne = numeroLigne;
+        this.date = date;
+        this.montantCentimes = montantCentimes;
+        this.libelle = libelle != null ? libelle : "";
+        this.nomEmetteur = nomEmetteur != null ? nomEmetteur : "";
+    }
+
+    public int getNumeroLigne() { return numeroLigne; }
+    public LocalDate getDate() { return date; }
+    public long getMontantCentimes() { return montantCentimes; }
+    public String getLibelle() { return libelle; }
+    public String getNomEmetteur() { return nomEmetteur; }
+}
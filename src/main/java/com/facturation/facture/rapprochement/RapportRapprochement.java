@@ -0,0 +1,162 @@
+package com.facturation.facture.rapprochement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Résultat d'un rapprochement de relevé : compteurs et lignes en exception
+ * (toutes dans l'export CSV, les premières seulement dans la réponse JSON)
+ */
+public class RapportRapprochement {
+
+    private static final int EXCEPTIONS_JSON_MAX = 1000;
+
+    private final boolean simulation;
+    private int lignesLues;
+    private int debitsIgnores;
+    private int rapprocheesParReference;
+    private int rapprocheesParNom;
+    private int facturesPayees;
+    private long montantPaye;
+    private long dureeMs;
+    private String erreur;
+    private final Map<String, Integer> exceptionsParType = new TreeMap<>();
+    private final List<ExceptionRapprochement> exceptions = new ArrayList<>();
+
+    public RapportRapprochement(boolean simulation) {
+        this.simulation = simulation;
+    }
+
+    public void ligneLue() {
+        lignesLues++;
+    }
+
+    public void debitIgnore() {
+        debitsIgnores++;
+    }
+
+    public void rapprochee(String methode) {
+        if ("REFERENCE".equals(methode)) {
+            rapprocheesParReference++;
+        } else {
+            rapprocheesParNom++;
+        }
+    }
+
+    public void facturesPayees(int nombre, long centimes) {
+        facturesPayees += nombre;
+        montantPaye += centimes;
+    }
+
+    public void terminer(long dureeMs) {
+        this.dureeMs = dureeMs;
+    }
+
+    /**
+     * Traitement interrompu : les lots déjà validés restent payés, le rapport les décrit
+     */
+    public void interrompre(String erreur) {
+        this.erreur = erreur;
+    }
+
+    public void exception(int numeroLigne, LocalDate date, long montantCentimes, String libelle, String type,
+                   IndexFacturesOuvertes.FactureOuverte facture, String message) {
+        exceptionsParType.merge(type, 1, Integer::sum);
+        exceptions.add(new ExceptionRapprochement(numeroLigne, date, montantCentimes, libelle, type,
+                facture != null ? facture.getId() : null, facture != null ? facture.getNumeroFacture() : null, message));
+    }
+
+    public Map<String, Object> enMap() {
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("simulation", simulation);
+        resultat.put("lignesLues", lignesLues);
+        resultat.put("debitsIgnores", debitsIgnores);
+        resultat.put("rapprocheesParReference", rapprocheesParReference);
+        resultat.put("rapprocheesParNom", rapprocheesParNom);
+        resultat.put("facturesPayees", facturesPayees);
+        resultat.put("montantPaye", BigDecimal.valueOf(montantPaye, 2));
+        resultat.put("nombreExceptions", exceptions.size());
+        resultat.put("exceptionsParType", exceptionsParType);
+        resultat.put("exceptionsTronquees", exceptions.size() > EXCEPTIONS_JSON_MAX);
+        List<Map<String, Object>> lignes = new ArrayList<>();
+        for (ExceptionRapprochement exception : exceptions.subList(0, Math.min(exceptions.size(), EXCEPTIONS_JSON_MAX))) {
+            lignes.add(exception.enMap());
+        }
+        resultat.put("exceptions", lignes);
+        resultat.put("dureeMs", dureeMs);
+        if (erreur != null) {
+            resultat.put("interrompu", true);
+        }
+        return resultat;
+    }
+
+    /**
+     * Écrire toutes les exceptions en CSV (séparateur ';')
+     */
+    public void ecrireCsv(Writer sortie) throws IOException {
+        sortie.write("ligne;date;montant;libelle;exception;factureId;numeroFacture;message\n");
+        for (ExceptionRapprochement exception : exceptions) {
+            StringBuilder ligne = new StringBuilder();
+            for (Object valeur : exception.enMap().values()) {
+                if (ligne.length() > 0) {
+                    ligne.append(';');
+                }
+                ligne.append(valeur != null ? valeur.toString().replace(";", ",").replace("\n", " ") : "");
+            }
+            sortie.write(ligne.append('\n').toString());
+        }
+        sortie.flush();
+    }
+
+    public boolean isSimulation() { return simulation; }
+    public int getLignesLues() { return lignesLues; }
+    public int getFacturesPayees() { return facturesPayees; }
+    public int getNombreExceptions() { return exceptions.size(); }
+    public String getErreur() { return erreur; }
+
+    /**
+     * Opération du relevé non rapprochée (ou rapprochée mais non appliquée)
+     */
+    public static class ExceptionRapprochement {
+        private final int numeroLigne;
+        private final LocalDate date;
+        private final long montantCentimes;
+        private final String libelle;
+        private final String type;
+        private final Long factureId;
+        private final String numeroFacture;
+        private final String message;
+
+        ExceptionRapprochement(int numeroLigne, LocalDate date, long montantCentimes, String libelle, String type,
+                               Long factureId, String numeroFacture, String message) {
+            this.numeroLigne = numeroLigne;
+            this.date = date;
+            this.montantCentimes = montantCentimes;
+            this.libelle = libelle;
+            this.type = type;
+            this.factureId = factureId;
+            this.numeroFacture = numeroFacture;
+            this.message = message;
+        }
+
+        Map<String, Object> enMap() {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("ligne", numeroLigne);
+            ligne.put("date", date);
+            ligne.put("montant", BigDecimal.valueOf(montantCentimes, 2));
+            ligne.put("libelle", libelle);
+            ligne.put("exception", type);
+            ligne.put("factureId", factureId);
+            ligne.put("numeroFacture", numeroFacture);
+            ligne.put("message", message);
+            return ligne;
+        }
+    }
+}
@@ -1,12 +1,29 @@
 package com.facturation.facture.repository;
 
 import com.facturation.facture.model.Categorie;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
 public interface CategorieRepository extends JpaRepository<Categorie, Long> {
+
+    // Données de référence : résultats conservés dans le cache de requêtes Hibernate
+
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "requetes-catalogue")
+    })
+    List<Categorie> findAll();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "requetes-catalogue")
+    })
     List<Categorie> findByActifTrue();
 }
@@ -3,13 +3,18 @@ package com.facturation.facture.repository;
 import com.facturation.facture.model.Commande;
 import com.facturation.facture.model.User;
 import com.facturation.facture.model.enums.StatutCommande;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,6 +42,7 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
     /**
      * Recherche des commandes par statut
      */
+    @EntityGraph("Commande.resume")
     List<Commande> findByStatut(StatutCommande statut);
 
     /**
@@ -57,6 +63,7 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
     /**
      * Recherche des commandes d'aujourd'hui
      */
+    @EntityGraph("Commande.resume")
     @Query("SELECT c FROM Commande c WHERE DATE(c.dateCommande) = CURRENT_DATE")
     List<Commande> findCommandesAujourdhui();
 
@@ -65,27 +72,22 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
     /**
      * Obtenir une commande avec ses lignes de commande et produits
      */
-    @Query("SELECT DISTINCT c FROM Commande c " +
-            "LEFT JOIN FETCH c.lignesCommande lc " +
-            "LEFT JOIN FETCH lc.produit " +
-            "WHERE c.id = :id")
+    @EntityGraph("Commande.detail")
+    @Query("SELECT c FROM Commande c WHERE c.id = :id")
     Optional<Commande> findByIdWithLignesCommande(@Param("id") Long id);
 
     /**
      * Obtenir une commande avec son client et ses lignes
      */
-    @Query("SELECT DISTINCT c FROM Commande c " +
-            "LEFT JOIN FETCH c.client " +
-            "LEFT JOIN FETCH c.lignesCommande lc " +
-            "LEFT JOIN FETCH lc.produit " +
-            "WHERE c.id = :id")
+    @EntityGraph("Commande.detail")
+    @Query("SELECT c FROM Commande c WHERE c.id = :id")
     Optional<Commande> findByIdWithDetails(@Param("id") Long id);
 
     /**
      * Recherche des commandes par période avec détails client
      */
-    @Query("SELECT DISTINCT c FROM Commande c " +
-            "LEFT JOIN FETCH c.client " +
+    @EntityGraph("Commande.resume")
+    @Query("SELECT c FROM Commande c " +
             "WHERE c.dateCommande BETWEEN :dateDebut AND :dateFin " +
             "ORDER BY c.dateCommande DESC")
     List<Commande> findByPeriodeWithClient(@Param("dateDebut") LocalDateTime dateDebut,
@@ -94,6 +96,7 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
     /**
      * Obtenir les commandes d'un client avec pagination
      */
+    @EntityGraph("Commande.resume")
     @Query("SELECT c FROM Commande c WHERE c.client.id = :idClient ORDER BY c.dateCommande DESC")
     List<Commande> findByClientIdOrderByDateCommandeDesc(@Param("idClient") Long idClient);
 
@@ -125,6 +128,21 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
     @Query("SELECT COALESCE(AVG(c.totalTTC), 0) FROM Commande c WHERE c.statut = 'PAYEE'")
     BigDecimal getValeurMoyenneCommandes();
 
+    /**
+     * Commandes vendues passées dans [debut, fin[ : {id, clientId, dateCommande, totalTTC}
+     */
+    @Query("SELECT c.id, c.client.id, c.dateCommande, c.totalTTC FROM Commande c " +
+            "WHERE c.statut IN ('PAYEE', 'LIVREE') AND c.dateCommande >= :debut AND c.dateCommande < :fin")
+    List<Object[]> findVentesEntre(@Param("debut") LocalDateTime debut, @Param("fin") LocalDateTime fin);
+
+    /**
+     * Jours de commande (à partir de premier) des commandes modifiées depuis une date, quel que soit leur statut
+     */
+    @Query("SELECT DISTINCT CAST(c.dateCommande AS LocalDate) FROM Commande c " +
+            "WHERE c.dateModification >= :depuis AND c.dateCommande >= :premier")
+    List<LocalDate> findJoursCommandesModifieesDepuis(@Param("depuis") LocalDateTime depuis,
+                                                      @Param("premier") LocalDateTime premier);
+
     /**
      * Obtenir le nombre de commandes par client
      */
@@ -159,6 +177,38 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
             "AND c.dateCommande <= :dateExpiration")
     List<Commande> findCommandesEnAttente(@Param("dateExpiration") LocalDateTime dateExpiration);
 
+    /**
+     * IDs des commandes en attente expirées après un ID donné, par ordre croissant (LIMIT via Pageable)
+     */
+    @Query("SELECT c.id FROM Commande c WHERE c.statut = 'EN_ATTENTE' " +
+            "AND c.dateCommande <= :dateExpiration AND c.id > :apresId ORDER BY c.id")
+    List<Long> findIdsCommandesEnAttente(@Param("dateExpiration") LocalDateTime dateExpiration,
+                                         @Param("apresId") Long apresId,
+                                         Pageable pageable);
+
+    /**
+     * Verrouiller les commandes encore en attente : {id, clientId, dateCommande, totalTTC}
+     */
+    @Query(value = "SELECT c.id, c.client_id, c.date_commande, c.total_ttc FROM commandes c " +
+            "WHERE c.id IN (:ids) AND c.statut = 'EN_ATTENTE' FOR UPDATE", nativeQuery = true)
+    List<Object[]> verrouillerCommandesEnAttente(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Verrouiller des commandes : {id, statut, clientId, dateCommande, totalTTC}
+     */
+    @Query(value = "SELECT c.id, c.statut, c.client_id, c.date_commande, c.total_ttc FROM commandes c " +
+            "WHERE c.id IN (:ids) FOR UPDATE", nativeQuery = true)
+    List<Object[]> verrouillerCommandes(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Passer des commandes au statut donné en un seul UPDATE
+     */
+    @Modifying
+    @Query("UPDATE Commande c SET c.statut = :statut, c.dateModification = :maintenant WHERE c.id IN :ids")
+    int changerStatutEnMasse(@Param("ids") Collection<Long> ids,
+                             @Param("statut") StatutCommande statut,
+                             @Param("maintenant") LocalDateTime maintenant);
+
     /**
      * Trouver le dernier numéro de commande pour générer le prochain
      */
@@ -176,6 +226,28 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
      */
     List<Commande> findByDateModificationAfter(LocalDateTime dateModification);
 
+    /**
+     * Totaux d'une période [debut, fin[ par taux de TVA et statut :
+     * {tauxTVA, statut, nombre, sousTotal, montantTVA, totalTTC}
+     */
+    @Query("SELECT c.tauxTVA, c.statut, COUNT(c), COALESCE(SUM(c.sousTotal), 0), " +
+            "COALESCE(SUM(c.montantTVA), 0), COALESCE(SUM(c.totalTTC), 0) FROM Commande c " +
+            "WHERE c.dateCommande >= :debut AND c.dateCommande < :fin " +
+            "GROUP BY c.tauxTVA, c.statut")
+    List<Object[]> getTotauxTVAParTauxEtStatut(@Param("debut") LocalDateTime debut,
+                                               @Param("fin") LocalDateTime fin);
+
+    /**
+     * Version des commandes de chaque mois de la période :
+     * {annee * 100 + mois, nombre, dernière modification, somme des instants de modification}
+     */
+    @Query(value = "SELECT YEAR(date_commande) * 100 + MONTH(date_commande), COUNT(*), MAX(date_modification), " +
+            "COALESCE(SUM(UNIX_TIMESTAMP(date_modification)), 0) FROM commandes " +
+            "WHERE date_commande >= :debut AND date_commande < :fin " +
+            "GROUP BY YEAR(date_commande) * 100 + MONTH(date_commande)", nativeQuery = true)
+    List<Object[]> findVersionsMensuelles(@Param("debut") LocalDateTime debut,
+                                          @Param("fin") LocalDateTime fin);
+
     /**
      * Calculer le sous-total total pour une période
      */
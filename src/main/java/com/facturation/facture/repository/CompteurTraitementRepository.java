@@ -0,0 +1,31 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.CompteurTraitement;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+
+@Repository
+public interface CompteurTraitementRepository extends JpaRepository<CompteurTraitement, String> {
+
+    /**
+     * Ajouter au compteur (créé au premier cumul), dans la transaction de l'appelant
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "compteurs_traitement"))
+    @Query(value = "INSERT INTO compteurs_traitement (nom, nombre, montant_centimes, date_mise_a_jour) " +
+            "VALUES (:nom, :nombre, :centimes, :maintenant) " +
+            "ON DUPLICATE KEY UPDATE nombre = nombre + VALUES(nombre), " +
+            "montant_centimes = montant_centimes + VALUES(montant_centimes), " +
+            "date_mise_a_jour = VALUES(date_mise_a_jour)",
+            nativeQuery = true)
+    int cumuler(@Param("nom") String nom, @Param("nombre") long nombre, @Param("centimes") long centimes,
+                @Param("maintenant") Timestamp maintenant);
+}
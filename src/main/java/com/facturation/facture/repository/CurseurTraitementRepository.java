@@ -0,0 +1,9 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.CurseurTraitement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CurseurTraitementRepository extends JpaRepository<CurseurTraitement, String> {
+}
@@ -4,28 +4,50 @@ package com.facturation.facture.repository;
 
 import com.facturation.facture.model.Facture;
 import com.facturation.facture.model.enums.StatutFacture;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface FactureRepository extends JpaRepository<Facture, Long> {
 
+    // Plans de chargement explicites (open-in-view désactivé)
+    @Override
+    @EntityGraph("Facture.liste")
+    Optional<Facture> findById(Long id);
+
+    @Override
+    @EntityGraph("Facture.liste")
+    List<Facture> findAll();
+
     // Recherches par statut
+    @EntityGraph("Facture.liste")
     List<Facture> findByStatut(StatutFacture statut);
+    @EntityGraph("Facture.liste")
     List<Facture> findByStatutOrderByDateCreationAsc(StatutFacture statut);
+    @EntityGraph("Facture.liste")
     List<Facture> findByStatutOrderByDateCreationDesc(StatutFacture statut);
 
     // Recherches par date
+    @EntityGraph("Facture.liste")
     List<Facture> findByDateFactureBetween(LocalDateTime dateDebut, LocalDateTime dateFin);
     List<Facture> findByDateCreationBetween(LocalDateTime dateDebut, LocalDateTime dateFin);
 
     // Recherches combinées statut + date
+    @EntityGraph("Facture.liste")
     List<Facture> findByStatutAndDateFactureBetween(
             StatutFacture statut,
             LocalDateTime dateDebut,
@@ -39,10 +61,13 @@ public interface FactureRepository extends JpaRepository<Facture, Long> {
     );
 
     // Recherches par client
+    @EntityGraph("Facture.liste")
     List<Facture> findByCommande_Client_Id(Long clientId);
+    @EntityGraph("Facture.liste")
     List<Facture> findByCommande_Client_IdOrderByDateFactureDesc(Long clientId);
 
     // Recherches combinées client + statut + date
+    @EntityGraph("Facture.liste")
     List<Facture> findByStatutAndDateFactureBetweenAndCommande_Client_Id(
             StatutFacture statut,
             LocalDateTime dateDebut,
@@ -51,9 +76,28 @@ public interface FactureRepository extends JpaRepository<Facture, Long> {
     );
 
     // Recherches par numéro
+    @EntityGraph("Facture.liste")
     Facture findByNumeroFacture(String numeroFacture);
     List<Facture> findByNumeroFactureContaining(String numeroPartiel);
 
+    /**
+     * Factures dont le numéro commence par le préfixe, après le curseur (index unique, ordre des numéros)
+     */
+    @EntityGraph("Facture.liste")
+    @Query("SELECT f FROM Facture f WHERE f.numeroFacture LIKE CONCAT(:prefixe, '%') " +
+            "AND f.numeroFacture > :apres ORDER BY f.numeroFacture")
+    List<Facture> findPageParPrefixeNumeroFacture(@Param("prefixe") String prefixe, @Param("apres") String apres,
+                                                  Pageable pageable);
+
+    /**
+     * Factures dont le numéro de commande commence par le préfixe, après le curseur
+     */
+    @EntityGraph("Facture.liste")
+    @Query("SELECT f FROM Facture f WHERE f.commande.numeroCommande LIKE CONCAT(:prefixe, '%') " +
+            "AND f.commande.numeroCommande > :apres ORDER BY f.commande.numeroCommande")
+    List<Facture> findPageParPrefixeNumeroCommande(@Param("prefixe") String prefixe, @Param("apres") String apres,
+                                                   Pageable pageable);
+
     // Comptage par statut
     Long countByStatut(StatutFacture statut);
 
@@ -113,12 +157,92 @@ public interface FactureRepository extends JpaRepository<Facture, Long> {
 
     // Recherche par commande
     Facture findByCommande_Id(Long commandeId);
+    @EntityGraph("Facture.liste")
     List<Facture> findByCommande_NumeroCommande(String numeroCommande);
 
     // Recherches avec jointures optimisées
-    @Query("SELECT f FROM Facture f LEFT JOIN FETCH f.commande c LEFT JOIN FETCH c.client WHERE f.id = :id")
+    @EntityGraph("Facture.liste")
+    @Query("SELECT f FROM Facture f WHERE f.id = :id")
     Facture findByIdWithDetails(@Param("id") Long id);
 
-    @Query("SELECT f FROM Facture f LEFT JOIN FETCH f.commande c LEFT JOIN FETCH c.lignesCommande WHERE f.id = :id")
+    @EntityGraph("Facture.detail")
+    @Query("SELECT f FROM Facture f WHERE f.id = :id")
     Facture findByIdWithCommandeAndLignes(@Param("id") Long id);
-}
\ No newline at end of file
+
+    // Chargement complet en une requête pour l'impression PDF
+    @EntityGraph("Facture.detail")
+    @Query("SELECT f FROM Facture f WHERE f.id = :id")
+    Optional<Facture> findByIdPourImpression(@Param("id") Long id);
+
+    /**
+     * Synchroniser le statut des factures de plusieurs commandes en un seul UPDATE
+     */
+    @Modifying
+    @Query("UPDATE Facture f SET f.statut = :statut, f.statutCommande = :statutCommande, " +
+            "f.dateModification = :maintenant WHERE f.commande.id IN :commandeIds")
+    int changerStatutParCommandeIds(@Param("commandeIds") Collection<Long> commandeIds,
+                                    @Param("statut") StatutFacture statut,
+                                    @Param("statutCommande") String statutCommande,
+                                    @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Identifiants des factures de ces commandes (relecture des colonnes après un UPDATE en masse)
+     */
+    @Query("SELECT f.id FROM Facture f WHERE f.commande.id IN :commandeIds")
+    List<Long> findIdsParCommandeIds(@Param("commandeIds") Collection<Long> commandeIds);
+
+    /**
+     * Factures en attente passées sous le seuil d'échéance après la position (dateFacture, id),
+     * par ordre croissant : {id, numeroFacture, dateFacture, montantTTC, clientId}
+     */
+    @Query("SELECT f.id, f.numeroFacture, f.dateFacture, f.montantTTC, f.commande.client.id FROM Facture f " +
+            "WHERE f.statut = 'EN_ATTENTE' " +
+            "AND f.dateFacture <= :seuil " +
+            "AND (f.dateFacture > :apresDate OR (f.dateFacture = :apresDate AND f.id > :apresId)) " +
+            "ORDER BY f.dateFacture, f.id")
+    List<Object[]> findNouvellesFacturesEnRetard(@Param("seuil") LocalDateTime seuil,
+                                                 @Param("apresDate") LocalDateTime apresDate,
+                                                 @Param("apresId") Long apresId,
+                                                 Pageable pageable);
+
+    /**
+     * Marquer des factures (encore en attente) comme en retard en un seul UPDATE
+     */
+    @Modifying
+    @Query("UPDATE Facture f SET f.enRetard = true " +
+            "WHERE f.id IN :ids AND f.statut = 'EN_ATTENTE'")
+    int marquerEnRetard(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Marquer en retard tout l'arriéré en attente jusqu'au seuil (initialisation du filigrane)
+     */
+    @Modifying
+    @Query("UPDATE Facture f SET f.enRetard = true " +
+            "WHERE f.statut = 'EN_ATTENTE' AND f.dateFacture <= :seuil")
+    int marquerArriereEnRetard(@Param("seuil") LocalDateTime seuil);
+
+    /**
+     * Resynchroniser les factures de plusieurs commandes (montants, statuts) en un seul UPDATE ;
+     * statutImpose vide : la facture reste payée si elle l'était, sinon en attente
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "factures"))
+    @Query(value = "UPDATE factures f JOIN commandes c ON c.id = f.commande_id SET " +
+            "f.montant_ht = c.total_ht, f.montant_tva = c.montant_tva, f.montant_ttc = c.total_ttc, " +
+            "f.statut = CASE WHEN :statutImpose <> '' THEN :statutImpose " +
+            "WHEN f.statut = 'PAYEE' THEN 'PAYEE' ELSE 'EN_ATTENTE' END, " +
+            "f.date_paiement = CASE WHEN :statutImpose = 'PAYEE' THEN COALESCE(f.date_paiement, :maintenant) " +
+            "ELSE f.date_paiement END, " +
+            "f.statut_commande = c.statut, f.date_modification = :maintenant " +
+            "WHERE f.commande_id IN (:commandeIds)", nativeQuery = true)
+    int synchroniserAvecCommandes(@Param("commandeIds") Collection<Long> commandeIds,
+                                  @Param("statutImpose") String statutImpose,
+                                  @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Verrouiller les factures encore en attente parmi les IDs donnés
+     */
+    @Query(value = "SELECT f.id FROM factures f WHERE f.id IN (:ids) AND f.statut = 'EN_ATTENTE' FOR UPDATE",
+            nativeQuery = true)
+    List<Long> verrouillerFacturesEnAttente(@Param("ids") Collection<Long> ids);
+}
@@ -3,12 +3,15 @@ package com.facturation.facture.repository;
 import com.facturation.facture.model.LigneCommande;
 import com.facturation.facture.model.Commande;
 import com.facturation.facture.model.Produit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -57,9 +60,8 @@ public interface LigneCommandeRepository extends JpaRepository<LigneCommande, Lo
     /**
      * Obtenir les lignes de commande avec les détails du produit
      */
-    @Query("SELECT lc FROM LigneCommande lc " +
-            "LEFT JOIN FETCH lc.produit " +
-            "WHERE lc.commande.id = :commandeId")
+    @EntityGraph(attributePaths = {"produit", "produit.categorie"})
+    @Query("SELECT lc FROM LigneCommande lc WHERE lc.commande.id = :commandeId")
     List<LigneCommande> findByCommandeIdWithProduit(@Param("commandeId") Long commandeId);
 
     /**
@@ -100,26 +102,19 @@ public interface LigneCommandeRepository extends JpaRepository<LigneCommande, Lo
     List<Object[]> findProduitsParChiffreAffaires();
 
     /**
-     * Obtenir les statistiques de vente d'un produit
-     */
-    @Query("SELECT COUNT(lc), SUM(lc.quantite), SUM(lc.sousTotal) " +
-            "FROM LigneCommande lc " +
-            "WHERE lc.produit.id = :produitId")
-    Object[] getStatistiquesProduit(@Param("produitId") Long produitId);
-
-    /**
-     * Obtenir le nombre de fois qu'un produit a été commandé
+     * Quantités par produit des commandes données : {commandeId, produitId, quantite}
      */
-    @Query("SELECT COUNT(DISTINCT lc.commande) FROM LigneCommande lc " +
-            "WHERE lc.produit.id = :produitId")
-    Long countCommandesWithProduit(@Param("produitId") Long produitId);
+    @Query("SELECT lc.commande.id, lc.produit.id, lc.quantite FROM LigneCommande lc " +
+            "WHERE lc.commande.id IN :commandeIds")
+    List<Object[]> findQuantitesParCommandeIds(@Param("commandeIds") Collection<Long> commandeIds);
 
     /**
-     * Calculer le chiffre d'affaires total d'un produit
+     * Quantités par produit des commandes vendues passées dans [debut, fin[ : {commandeId, produitId, quantite}
      */
-    @Query("SELECT SUM(lc.sousTotal) FROM LigneCommande lc " +
-            "WHERE lc.produit.id = :produitId")
-    BigDecimal calculateChiffreAffairesProduit(@Param("produitId") Long produitId);
+    @Query("SELECT lc.commande.id, lc.produit.id, lc.quantite FROM LigneCommande lc " +
+            "JOIN lc.commande c WHERE c.statut IN ('PAYEE', 'LIVREE') " +
+            "AND c.dateCommande >= :debut AND c.dateCommande < :fin")
+    List<Object[]> findQuantitesVenduesEntre(@Param("debut") LocalDateTime debut, @Param("fin") LocalDateTime fin);
 
     /**
      * Obtenir les lignes de commande par tranche de prix
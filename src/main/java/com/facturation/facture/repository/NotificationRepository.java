@@ -0,0 +1,69 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    /**
+     * Première page de la boîte de réception, plus récentes d'abord (LIMIT via Pageable)
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
+            "ORDER BY n.dateCreation DESC, n.id DESC")
+    List<Notification> findPremierePage(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Page suivante par clé (dateCreation, id) : parcourt l'index sans OFFSET
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
+            "AND (n.dateCreation < :dateCreation OR (n.dateCreation = :dateCreation AND n.id < :id)) " +
+            "ORDER BY n.dateCreation DESC, n.id DESC")
+    List<Notification> findPageApres(@Param("userId") Long userId,
+                                     @Param("dateCreation") LocalDateTime dateCreation,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+
+    /**
+     * Nombre de notifications non lues d'un utilisateur
+     */
+    long countByUserIdAndLueFalse(Long userId);
+
+    /**
+     * Nombre de notifications non lues par utilisateur : {userId, nombre}
+     */
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.lue = false AND n.user.id IN :userIds " +
+            "GROUP BY n.user.id")
+    List<Object[]> compterNonLuesParUtilisateur(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Marquer comme lues des notifications d'un utilisateur en un seul UPDATE
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.lue = true " +
+            "WHERE n.user.id = :userId AND n.id IN :ids AND n.lue = false")
+    int marquerCommeLues(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Marquer comme lues toutes les notifications d'un utilisateur
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.lue = true WHERE n.user.id = :userId AND n.lue = false")
+    int marquerToutesCommeLues(@Param("userId") Long userId);
+
+    /**
+     * Supprimer toutes les notifications d'un utilisateur en une requête
+     */
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId")
+    int supprimerParUtilisateur(@Param("userId") Long userId);
+}
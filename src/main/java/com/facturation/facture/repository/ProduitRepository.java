@@ -1,8 +1,12 @@
 package com.facturation.facture.repository;
 
 import com.facturation.facture.model.Produit;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -14,6 +18,16 @@ import java.util.Optional;
 @Repository
 public interface ProduitRepository extends JpaRepository<Produit, Long> {
 
+    // Plans de chargement explicites : la catégorie est nécessaire au ProduitDTO
+
+    @Override
+    @EntityGraph(attributePaths = "categorie")
+    Optional<Produit> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = "categorie")
+    List<Produit> findAllById(Iterable<Long> ids);
+
     // Méthodes de recherche automatiques Spring Data JPA
 
     /**
@@ -59,27 +73,40 @@ public interface ProduitRepository extends JpaRepository<Produit, Long> {
     /**
      * Recherche des produits par fourchette de prix
      */
+    @EntityGraph(attributePaths = "categorie")
     List<Produit> findByPrixBetween(BigDecimal prixMin, BigDecimal prixMax);
 
     /**
      * Recherche des produits par catégorie
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "requetes-catalogue")
+    })
+    @EntityGraph(attributePaths = "categorie")
     List<Produit> findByCategorieId(Long categorieId);
 
     /**
      * Recherche des produits disponibles par catégorie
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "requetes-catalogue")
+    })
+    @EntityGraph(attributePaths = "categorie")
     List<Produit> findByCategorieIdAndDisponibleTrue(Long categorieId);
 
     /**
      * Recherche des produits avec stock faible
      */
+    @EntityGraph(attributePaths = "categorie")
     @Query("SELECT p FROM Produit p WHERE p.quantiteStock <= p.seuilAlerte AND p.disponible = true")
     List<Produit> findProduitsStockFaible();
 
     /**
      * Recherche des produits en rupture de stock
      */
+    @EntityGraph(attributePaths = "categorie")
     List<Produit> findByQuantiteStockLessThanEqual(Integer quantite);
 
     // Requêtes JPQL personnalisées
@@ -87,6 +114,7 @@ public interface ProduitRepository extends JpaRepository<Produit, Long> {
     /**
      * Recherche globale de produits
      */
+    @EntityGraph(attributePaths = "categorie")
     @Query("SELECT p FROM Produit p WHERE " +
             "LOWER(p.nom) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(p.description) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
@@ -95,12 +123,21 @@ public interface ProduitRepository extends JpaRepository<Produit, Long> {
     /**
      * Obtenir tous les produits disponibles triés par nom
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "requetes-catalogue")
+    })
+    @EntityGraph(attributePaths = "categorie")
     @Query("SELECT p FROM Produit p WHERE p.disponible = true ORDER BY p.nom ASC")
     List<Produit> findAllDisponiblesOrderByNom();
 
     /**
      * Obtenir tous les produits avec leurs catégories triés par catégorie puis par nom
      */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "requetes-catalogue")
+    })
     @Query("SELECT p FROM Produit p JOIN FETCH p.categorie ORDER BY p.categorie.nom ASC, p.nom ASC")
     List<Produit> findAllWithCategoriesOrderByCategorieAndNom();
 
@@ -155,12 +192,14 @@ public interface ProduitRepository extends JpaRepository<Produit, Long> {
     /**
      * Obtenir les produits par catégorie avec stock disponible
      */
+    @EntityGraph(attributePaths = "categorie")
     @Query("SELECT p FROM Produit p WHERE p.categorie.id = :categorieId AND p.quantiteStock > 0 AND p.disponible = true")
     List<Produit> findByCategorieIdWithStock(@Param("categorieId") Long categorieId);
 
     /**
      * Recherche de produits par nom avec stock disponible
      */
+    @EntityGraph(attributePaths = "categorie")
     @Query("SELECT p FROM Produit p WHERE " +
             "LOWER(p.nom) LIKE LOWER(CONCAT('%', :searchTerm, '%')) AND " +
             "p.quantiteStock > 0 AND p.disponible = true")
@@ -169,6 +208,7 @@ public interface ProduitRepository extends JpaRepository<Produit, Long> {
     /**
      * Obtenir les produits récemment ajoutés
      */
+    @EntityGraph(attributePaths = "categorie")
     @Query("SELECT p FROM Produit p WHERE p.dateCreation >= :dateDebut ORDER BY p.dateCreation DESC")
     List<Produit> findProduitsRecents(@Param("dateDebut") LocalDateTime dateDebut);
 
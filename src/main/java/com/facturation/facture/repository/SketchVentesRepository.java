@@ -0,0 +1,28 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.SketchVentes;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SketchVentesRepository extends JpaRepository<SketchVentes, LocalDate> {
+
+    /**
+     * Journée et instantané des sketches conservés, sans les données : {jour, dateMiseAJour}
+     */
+    @Query("SELECT s.jour, s.dateMiseAJour FROM SketchVentes s WHERE s.jour >= :jour")
+    List<Object[]> findVersionsDepuis(@Param("jour") LocalDate jour);
+
+    /**
+     * Supprimer les sketches sortis de la fenêtre de rétention
+     */
+    @Modifying
+    @Query("DELETE FROM SketchVentes s WHERE s.jour < :jour")
+    int supprimerAvant(@Param("jour") LocalDate jour);
+}
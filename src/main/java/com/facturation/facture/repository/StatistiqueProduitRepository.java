@@ -0,0 +1,62 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.StatistiqueProduit;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+
+@Repository
+public interface StatistiqueProduitRepository extends JpaRepository<StatistiqueProduit, Long> {
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "statistiques_produit"))
+    @Query(value = "DELETE FROM statistiques_produit", nativeQuery = true)
+    int viderTout();
+
+    /**
+     * Ajouter (signe = 1) ou retirer (signe = -1) les lignes des commandes des statistiques de leurs produits ;
+     * un retrait laisse la date de dernière vente, corrigée par la reconstruction nocturne
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "statistiques_produit"))
+    @Query(value = "INSERT INTO statistiques_produit (produit_id, nombre_lignes, quantite_vendue, chiffre_affaires, " +
+            "nombre_commandes, derniere_vente, date_mise_a_jour) " +
+            "SELECT lc.produit_id, COUNT(*) * :signe, SUM(lc.quantite) * :signe, COALESCE(SUM(lc.sous_total), 0) * :signe, " +
+            "COUNT(DISTINCT lc.commande_id) * :signe, IF(:signe > 0, MAX(c.date_commande), NULL), :maintenant " +
+            "FROM lignes_commande lc JOIN commandes c ON c.id = lc.commande_id " +
+            "WHERE c.id IN (:commandeIds) " +
+            "GROUP BY lc.produit_id " +
+            "ON DUPLICATE KEY UPDATE nombre_lignes = nombre_lignes + VALUES(nombre_lignes), " +
+            "quantite_vendue = quantite_vendue + VALUES(quantite_vendue), " +
+            "chiffre_affaires = chiffre_affaires + VALUES(chiffre_affaires), " +
+            "nombre_commandes = nombre_commandes + VALUES(nombre_commandes), " +
+            "derniere_vente = GREATEST(COALESCE(derniere_vente, VALUES(derniere_vente)), " +
+            "COALESCE(VALUES(derniere_vente), derniere_vente)), " +
+            "date_mise_a_jour = VALUES(date_mise_a_jour)",
+            nativeQuery = true)
+    int cumulerLignesCommandes(@Param("commandeIds") Collection<Long> commandeIds, @Param("signe") int signe,
+                               @Param("maintenant") Timestamp maintenant);
+
+    /**
+     * Recalculer les statistiques de tous les produits depuis les lignes des commandes non annulées
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "statistiques_produit"))
+    @Query(value = "INSERT INTO statistiques_produit (produit_id, nombre_lignes, quantite_vendue, chiffre_affaires, " +
+            "nombre_commandes, derniere_vente, date_mise_a_jour) " +
+            "SELECT lc.produit_id, COUNT(*), SUM(lc.quantite), COALESCE(SUM(lc.sous_total), 0), " +
+            "COUNT(DISTINCT lc.commande_id), MAX(c.date_commande), NOW() " +
+            "FROM lignes_commande lc JOIN commandes c ON c.id = lc.commande_id " +
+            "WHERE c.statut <> 'ANNULEE' " +
+            "GROUP BY lc.produit_id",
+            nativeQuery = true)
+    int reconstruireDepuisLignes();
+}
@@ -0,0 +1,89 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.TacheRapport;
+import com.facturation.facture.rapport.TypeRapport;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TacheRapportRepository extends JpaRepository<TacheRapport, String> {
+
+    /**
+     * Tâche la plus récente d'une définition parmi les statuts donnés (tâche identique en attente ou en cours)
+     */
+    Optional<TacheRapport> findFirstByTypeAndDateDebutAndDateFinAndStatutInOrderBySoumiseLeDesc(
+            TypeRapport type, LocalDate dateDebut, LocalDate dateFin, Collection<TacheRapport.Statut> statuts);
+
+    /**
+     * Dernier résultat d'une définition calculé après la limite (réutilisé pendant le TTL)
+     */
+    Optional<TacheRapport> findFirstByTypeAndDateDebutAndDateFinAndStatutAndFinLeAfterOrderByFinLeDesc(
+            TypeRapport type, LocalDate dateDebut, LocalDate dateFin, TacheRapport.Statut statut, LocalDateTime limite);
+
+    /**
+     * Passer une tâche en cours, sauf si elle a été annulée entre-temps (0 : ne pas l'exécuter)
+     */
+    @Modifying
+    @Query("UPDATE TacheRapport t SET t.statut = :statut, t.debutLe = :maintenant " +
+            "WHERE t.id = :id AND t.statut = 'EN_ATTENTE'")
+    int demarrer(@Param("id") String id,
+                 @Param("statut") TacheRapport.Statut statut,
+                 @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Conserver le résultat d'une tâche toujours en cours (une tâche annulée le reste)
+     */
+    @Modifying
+    @Query("UPDATE TacheRapport t SET t.statut = :statut, t.resultat = :resultat, t.finLe = :maintenant " +
+            "WHERE t.id = :id AND t.statut = 'EN_COURS'")
+    int terminer(@Param("id") String id,
+                 @Param("statut") TacheRapport.Statut statut,
+                 @Param("resultat") String resultat,
+                 @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Passer une tâche non finie au statut donné (échec ou annulation) ; 0 si elle était déjà finie
+     */
+    @Modifying
+    @Query("UPDATE TacheRapport t SET t.statut = :statut, t.erreur = :erreur, t.finLe = :maintenant " +
+            "WHERE t.id = :id AND t.statut IN ('EN_ATTENTE', 'EN_COURS')")
+    int finir(@Param("id") String id,
+              @Param("statut") TacheRapport.Statut statut,
+              @Param("erreur") String erreur,
+              @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Tâches annulées parmi celles exécutées par ce nœud (annulation reçue par un autre nœud)
+     */
+    @Query("SELECT t.id FROM TacheRapport t WHERE t.id IN :ids AND t.statut = 'ANNULE'")
+    List<String> findIdsAnnuleesParmi(@Param("ids") Collection<String> ids);
+
+    /**
+     * Mettre en échec les tâches abandonnées par un nœud arrêté (en cours ou en attente depuis trop longtemps)
+     */
+    @Modifying
+    @Query("UPDATE TacheRapport t SET t.statut = :statut, t.erreur = :erreur, t.finLe = :maintenant " +
+            "WHERE (t.statut = 'EN_COURS' AND t.debutLe < :limiteEnCours) " +
+            "OR (t.statut = 'EN_ATTENTE' AND t.soumiseLe < :limiteEnAttente)")
+    int abandonner(@Param("statut") TacheRapport.Statut statut,
+                   @Param("erreur") String erreur,
+                   @Param("limiteEnCours") LocalDateTime limiteEnCours,
+                   @Param("limiteEnAttente") LocalDateTime limiteEnAttente,
+                   @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Oublier les tâches finies avant la limite
+     */
+    @Modifying
+    @Query("DELETE FROM TacheRapport t WHERE t.finLe < :limite")
+    int supprimerFiniesAvant(@Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,82 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.dto.TopClientDTO;
+import com.facturation.facture.model.VenteClientJour;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+// Les écritures natives déclarent leur table (HINT_NATIVE_SPACES) pour ne pas vider
+// tout le cache de second niveau à chaque mise à jour des cumuls
+@Repository
+public interface VenteClientJourRepository extends JpaRepository<VenteClientJour, Long> {
+
+    /**
+     * Ajouter (signe = 1) ou retirer (signe = -1) des commandes du cumul journalier de leur client
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ventes_client_jour"))
+    @Query(value = "INSERT INTO ventes_client_jour (client_id, jour, nombre_commandes, chiffre_affaires) " +
+            "SELECT c.client_id, DATE(c.date_commande), COUNT(*) * :signe, COALESCE(SUM(c.total_ttc), 0) * :signe " +
+            "FROM commandes c WHERE c.id IN (:commandeIds) " +
+            "GROUP BY c.client_id, DATE(c.date_commande) " +
+            "ON DUPLICATE KEY UPDATE nombre_commandes = nombre_commandes + VALUES(nombre_commandes), " +
+            "chiffre_affaires = chiffre_affaires + VALUES(chiffre_affaires)",
+            nativeQuery = true)
+    int cumulerCommandes(@Param("commandeIds") Collection<Long> commandeIds, @Param("signe") int signe);
+
+    /**
+     * Recalculer tous les cumuls depuis l'historique des commandes vendues
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ventes_client_jour"))
+    @Query(value = "INSERT INTO ventes_client_jour (client_id, jour, nombre_commandes, chiffre_affaires) " +
+            "SELECT c.client_id, DATE(c.date_commande), COUNT(*), COALESCE(SUM(c.total_ttc), 0) " +
+            "FROM commandes c WHERE c.statut IN ('PAYEE', 'LIVREE') " +
+            "GROUP BY c.client_id, DATE(c.date_commande)",
+            nativeQuery = true)
+    int reconstruireDepuisCommandes();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ventes_client_jour"))
+    @Query(value = "DELETE FROM ventes_client_jour", nativeQuery = true)
+    int viderTout();
+
+    /**
+     * Meilleurs clients par chiffre d'affaires sur la période (LIMIT via Pageable)
+     */
+    @Query("SELECT new com.facturation.facture.dto.TopClientDTO(u.id, u.prenom, u.nom, u.email, " +
+            "SUM(v.nombreCommandes), SUM(v.chiffreAffaires)) " +
+            "FROM VenteClientJour v JOIN User u ON u.id = v.clientId " +
+            "WHERE v.jour BETWEEN :debut AND :fin " +
+            "GROUP BY u.id, u.prenom, u.nom, u.email " +
+            "HAVING SUM(v.nombreCommandes) > 0 " +
+            "ORDER BY SUM(v.chiffreAffaires) DESC")
+    List<TopClientDTO> findTopClientsParChiffreAffaires(@Param("debut") LocalDate debut,
+                                                        @Param("fin") LocalDate fin,
+                                                        Pageable pageable);
+
+    /**
+     * Meilleurs clients par nombre de commandes sur la période (LIMIT via Pageable)
+     */
+    @Query("SELECT new com.facturation.facture.dto.TopClientDTO(u.id, u.prenom, u.nom, u.email, " +
+            "SUM(v.nombreCommandes), SUM(v.chiffreAffaires)) " +
+            "FROM VenteClientJour v JOIN User u ON u.id = v.clientId " +
+            "WHERE v.jour BETWEEN :debut AND :fin " +
+            "GROUP BY u.id, u.prenom, u.nom, u.email " +
+            "HAVING SUM(v.nombreCommandes) > 0 " +
+            "ORDER BY SUM(v.nombreCommandes) DESC")
+    List<TopClientDTO> findTopClientsParNombreCommandes(@Param("debut") LocalDate debut,
+                                                        @Param("fin") LocalDate fin,
+                                                        Pageable pageable);
+}
@@ -0,0 +1,86 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.dto.TopProduitDTO;
+import com.facturation.facture.model.VenteProduitJour;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+// Les écritures natives déclarent leur table (HINT_NATIVE_SPACES) pour ne pas vider
+// tout le cache de second niveau à chaque mise à jour des cumuls
+@Repository
+public interface VenteProduitJourRepository extends JpaRepository<VenteProduitJour, Long> {
+
+    /**
+     * Ajouter (signe = 1) ou retirer (signe = -1) les lignes des commandes du cumul journalier de leurs produits
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ventes_produit_jour"))
+    @Query(value = "INSERT INTO ventes_produit_jour (produit_id, jour, quantite, nombre_lignes, chiffre_affaires) " +
+            "SELECT lc.produit_id, DATE(c.date_commande), SUM(lc.quantite) * :signe, COUNT(*) * :signe, " +
+            "COALESCE(SUM(lc.sous_total), 0) * :signe " +
+            "FROM lignes_commande lc JOIN commandes c ON c.id = lc.commande_id " +
+            "WHERE c.id IN (:commandeIds) " +
+            "GROUP BY lc.produit_id, DATE(c.date_commande) " +
+            "ON DUPLICATE KEY UPDATE quantite = quantite + VALUES(quantite), " +
+            "nombre_lignes = nombre_lignes + VALUES(nombre_lignes), " +
+            "chiffre_affaires = chiffre_affaires + VALUES(chiffre_affaires)",
+            nativeQuery = true)
+    int cumulerLignesCommandes(@Param("commandeIds") Collection<Long> commandeIds, @Param("signe") int signe);
+
+    /**
+     * Recalculer tous les cumuls depuis l'historique des commandes vendues
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ventes_produit_jour"))
+    @Query(value = "INSERT INTO ventes_produit_jour (produit_id, jour, quantite, nombre_lignes, chiffre_affaires) " +
+            "SELECT lc.produit_id, DATE(c.date_commande), SUM(lc.quantite), COUNT(*), COALESCE(SUM(lc.sous_total), 0) " +
+            "FROM lignes_commande lc JOIN commandes c ON c.id = lc.commande_id " +
+            "WHERE c.statut IN ('PAYEE', 'LIVREE') " +
+            "GROUP BY lc.produit_id, DATE(c.date_commande)",
+            nativeQuery = true)
+    int reconstruireDepuisCommandes();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "ventes_produit_jour"))
+    @Query(value = "DELETE FROM ventes_produit_jour", nativeQuery = true)
+    int viderTout();
+
+    /**
+     * Produits les plus vendus (quantité) sur la période (LIMIT via Pageable)
+     */
+    @Query("SELECT new com.facturation.facture.dto.TopProduitDTO(p.id, p.nom, " +
+            "SUM(v.quantite), SUM(v.nombreLignes), SUM(v.chiffreAffaires)) " +
+            "FROM VenteProduitJour v JOIN Produit p ON p.id = v.produitId " +
+            "WHERE v.jour BETWEEN :debut AND :fin " +
+            "GROUP BY p.id, p.nom " +
+            "HAVING SUM(v.quantite) > 0 " +
+            "ORDER BY SUM(v.quantite) DESC")
+    List<TopProduitDTO> findTopProduitsParQuantite(@Param("debut") LocalDate debut,
+                                                   @Param("fin") LocalDate fin,
+                                                   Pageable pageable);
+
+    /**
+     * Produits générant le plus de chiffre d'affaires sur la période (LIMIT via Pageable)
+     */
+    @Query("SELECT new com.facturation.facture.dto.TopProduitDTO(p.id, p.nom, " +
+            "SUM(v.quantite), SUM(v.nombreLignes), SUM(v.chiffreAffaires)) " +
+            "FROM VenteProduitJour v JOIN Produit p ON p.id = v.produitId " +
+            "WHERE v.jour BETWEEN :debut AND :fin " +
+            "GROUP BY p.id, p.nom " +
+            "HAVING SUM(v.quantite) > 0 " +
+            "ORDER BY SUM(v.chiffreAffaires) DESC")
+    List<TopProduitDTO> findTopProduitsParChiffreAffaires(@Param("debut") LocalDate debut,
+                                                          @Param("fin") LocalDate fin,
+                                                          Pageable pageable);
+}
@@ -0,0 +1,123 @@
+package com.facturation.facture.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Exécute des requêtes d'agrégation indépendantes en parallèle, chacune dans sa propre
+ * transaction en lecture seule (donc sur sa propre connexion) avec un délai maximum.
+ * Le délai est celui de la transaction, que Hibernate applique à chaque instruction JDBC
+ * (setQueryTimeout) : une requête trop longue est arrêtée par la base, pas seulement abandonnée.
+ * Une partie en échec n'empêche pas les autres : le résultat est alors marqué partiel.
+ */
+@Component
+public class AgregationParallele {
+
+    private static final Logger log = LoggerFactory.getLogger(AgregationParallele.class);
+
+    private final ThreadPoolTaskExecutor dashboardExecutor;
+    private final PlatformTransactionManager transactionManager;
+    private final long timeoutSecondes;
+
+    public AgregationParallele(@Qualifier("dashboardExecutor") ThreadPoolTaskExecutor dashboardExecutor,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${facture.dashboard.timeout-requete-secondes:5}") int timeoutSecondes) {
+        this.dashboardExecutor = dashboardExecutor;
+        this.transactionManager = transactionManager;
+        this.timeoutSecondes = timeoutSecondes;
+    }
+
+    /**
+     * Lancer toutes les parties puis attendre au plus le délai configuré
+     */
+    public Resultats executer(Map<String, Supplier<?>> parties) {
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        Map<String, String> erreurs = new LinkedHashMap<>();
+
+        // Délai commun : la latence totale est bornée par la partie la plus lente
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSecondes);
+        for (Map.Entry<String, Supplier<?>> partie : parties.entrySet()) {
+            Supplier<?> calcul = partie.getValue();
+            try {
+                futures.put(partie.getKey(), CompletableFuture.supplyAsync(
+                        () -> transactionLecture(limite).execute(status -> calcul.get()), dashboardExecutor));
+            } catch (TaskRejectedException e) {
+                erreurs.put(partie.getKey(), "REJETEE");
+            }
+        }
+
+        Map<String, Object> valeurs = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Object>> future : futures.entrySet()) {
+            String nom = future.getKey();
+            try {
+                long restant = Math.max(0, limite - System.nanoTime());
+                valeurs.put(nom, future.getValue().get(restant, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                // N'empêche que le démarrage d'une partie encore en file : une partie lancée
+                // est arrêtée par le délai de ses instructions
+                future.getValue().cancel(false);
+                erreurs.put(nom, "DELAI_DEPASSE");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                erreurs.put(nom, "INTERROMPUE");
+            } catch (ExecutionException e) {
+                log.warn("Échec de la partie {} du tableau de bord : {}", nom, e.getCause().getMessage());
+                erreurs.put(nom, "ERREUR");
+            }
+        }
+        return new Resultats(valeurs, erreurs);
+    }
+
+    /**
+     * Transaction en lecture seule limitée au temps restant jusqu'à l'échéance commune :
+     * une partie restée en file ne dispose pas d'un délai complet en démarrant
+     */
+    private TransactionTemplate transactionLecture(long limite) {
+        long restantNanos = limite - System.nanoTime();
+        if (restantNanos <= 0) {
+            throw new RuntimeException("Délai dépassé avant le démarrage de la requête");
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.setTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(restantNanos + 999_999_999L)));
+        return transaction;
+    }
+
+    public static class Resultats {
+        private final Map<String, Object> valeurs;
+        private final Map<String, String> erreurs;
+
+        Resultats(Map<String, Object> valeurs, Map<String, String> erreurs) {
+            this.valeurs = valeurs;
+            this.erreurs = Collections.unmodifiableMap(erreurs);
+        }
+
+        /**
+         * Valeur d'une partie, null si elle a échoué
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(String nom) {
+            return (T) valeurs.get(nom);
+        }
+
+        public boolean estPartiel() { return !erreurs.isEmpty(); }
+
+        public Map<String, String> getErreurs() { return erreurs; }
+    }
+}
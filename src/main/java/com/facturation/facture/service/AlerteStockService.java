@@ -0,0 +1,182 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.event.NotificationsCreeesEvent;
+import com.facturation.facture.event.StockModifieEvent;
+import com.facturation.facture.model.User;
+import com.facturation.facture.model.enums.Role;
+import com.facturation.facture.model.enums.TypeNotification;
+import com.facturation.facture.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Alertes de stock faible déclenchées au franchissement du seuil par les méthodes de stock
+ * (aucun parcours de la table produits) : une seule alerte ouverte par produit jusqu'à ce que
+ * le stock remonte, au plus une par intervalle, puis insertion groupée des notifications admin
+ */
+@Service
+public class AlerteStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(AlerteStockService.class);
+
+    private static final String INSERTION_NOTIFICATION =
+            "INSERT INTO notifications (titre, message, type, lue, date_creation, user_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int ALERTES_MAX_PAR_LOT = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long intervalleNanos;
+
+    // Produit -> instant (nanoTime) de la dernière alerte émise ; présent tant que le stock reste bas
+    private final Map<Long, Long> alertesOuvertes = new ConcurrentHashMap<>();
+    // Dernière alerte non encore envoyée par produit (conservée tant qu'aucun admin ne peut la recevoir)
+    private final Map<Long, AlerteStock> alertesEnAttente = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AlerteStockService(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${facture.alertes-stock.intervalle-minutes:60}") long intervalleMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.intervalleNanos = TimeUnit.MINUTES.toNanos(intervalleMinutes);
+    }
+
+    /**
+     * Détecter le franchissement du seuil ; l'alerte n'est mise en file qu'après le commit
+     */
+    @EventListener
+    public void surStockModifie(StockModifieEvent event) {
+        if (event.repasseAuDessusDuSeuil()) {
+            apresCommit(() -> alertesOuvertes.remove(event.getProduitId()));
+            return;
+        }
+        if (!event.franchitSeuilBas()) {
+            return;
+        }
+
+        AlerteStock alerte = new AlerteStock(event.getProduitId(), event.getNomProduit(),
+                event.getNouvelleQuantite(), event.getSeuilAlerte());
+        apresCommit(() -> {
+            long maintenant = System.nanoTime();
+            boolean[] retenue = {false};
+            alertesOuvertes.compute(event.getProduitId(), (id, derniere) -> {
+                if (derniere != null && maintenant - derniere < intervalleNanos) {
+                    return derniere;
+                }
+                retenue[0] = true;
+                return maintenant;
+            });
+            if (retenue[0]) {
+                alertesEnAttente.put(alerte.produitId, alerte);
+            }
+        });
+    }
+
+    /**
+     * Insérer les notifications en attente pour tous les admins actifs, en un lot JDBC
+     */
+    @Scheduled(fixedDelayString = "${facture.alertes-stock.envoi-ms:5000}")
+    public void envoyerAlertes() {
+        if (alertesEnAttente.isEmpty()) {
+            return;
+        }
+        List<User> admins = userRepository.findByRoleAndActifTrue(Role.ADMIN);
+        if (admins.isEmpty()) {
+            // Les alertes restent en attente jusqu'à l'activation d'un admin
+            log.warn("{} alertes de stock sans destinataire : aucun admin actif", alertesEnAttente.size());
+            return;
+        }
+
+        List<AlerteStock> alertes = new ArrayList<>();
+        for (AlerteStock alerte : alertesEnAttente.values()) {
+            if (alertes.size() >= ALERTES_MAX_PAR_LOT) {
+                break;
+            }
+            // Retirée seulement si elle n'a pas été remplacée entre-temps par une alerte plus récente
+            if (alertesEnAttente.remove(alerte.produitId, alerte)) {
+                alertes.add(alerte);
+            }
+        }
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        List<Object[]> lignes = new ArrayList<>(alertes.size() * admins.size());
+        List<NotificationsCreeesEvent.NotificationCreee> creees = new ArrayList<>(alertes.size() * admins.size());
+        for (AlerteStock a : alertes) {
+            for (User admin : admins) {
+                lignes.add(new Object[]{a.titre(), a.message(), TypeNotification.STOCK_FAIBLE.name(),
+                        false, Timestamp.valueOf(maintenant), admin.getId()});
+                creees.add(new NotificationsCreeesEvent.NotificationCreee(admin.getId(), a.titre(), a.message(),
+                        TypeNotification.STOCK_FAIBLE, maintenant));
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERTION_NOTIFICATION, lignes);
+        eventPublisher.publishEvent(new NotificationsCreeesEvent(creees));
+        log.info("Alertes de stock envoyées : {} produits, {} notifications", alertes.size(), lignes.size());
+    }
+
+    /**
+     * Produits actuellement en alerte (depuis le dernier franchissement du seuil)
+     */
+    public Set<Long> obtenirProduitsEnAlerte() {
+        return Set.copyOf(alertesOuvertes.keySet());
+    }
+
+    private static void apresCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class AlerteStock {
+        private final Long produitId;
+        private final String nomProduit;
+        private final int quantite;
+        private final int seuil;
+
+        AlerteStock(Long produitId, String nomProduit, int quantite, int seuil) {
+            this.produitId = produitId;
+            this.nomProduit = nomProduit;
+            this.quantite = quantite;
+            this.seuil = seuil;
+        }
+
+        String titre() {
+            String titre = (quantite == 0 ? "Rupture de stock : " : "Stock faible : ") + nomProduit;
+            return titre.length() > 100 ? titre.substring(0, 100) : titre;
+        }
+
+        String message() {
+            String message = "Le produit " + nomProduit + " (ID " + produitId + ") n'a plus que " + quantite
+                    + " unité(s) en stock (seuil d'alerte : " + seuil + ").";
+            return message.length() > 255 ? message.substring(0, 255) : message;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.analytics.AgregatsParCle;
+import com.facturation.facture.analytics.ColonnesFactures;
+import com.facturation.facture.analytics.FiltreFactures;
+import com.facturation.facture.analytics.RegroupementFactures;
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moteur d'agrégation ad hoc sur les factures : copie colonnaire hors tas chargée au démarrage
+ * (lecture en flux), relue après chaque commit qui écrit une facture, et parcourue
+ * en parallèle pour les filtres et regroupements demandés par la finance
+ */
+@Service
+public class AnalytiqueFacturesService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalytiqueFacturesService.class);
+
+    private static final int TAILLE_LOT = 1000;
+
+    private static final String REQUETE_CHARGEMENT =
+            "SELECT f.id, f.date_facture, f.statut, f.mode_paiement, c.client_id, " +
+            "f.montant_ht, f.montant_tva, f.montant_ttc " +
+            "FROM factures f JOIN commandes c ON c.id = f.commande_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor colonnesExecutor;
+    private final ForkJoinPool pool;
+    private final ColonnesFactures colonnes = new ColonnesFactures();
+
+    private final AtomicBoolean chargementEnCours = new AtomicBoolean();
+    private final Set<Long> aRafraichir = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rafraichissementPlanifie = new AtomicBoolean();
+    private final Object cleTransaction = new Object();
+    private volatile boolean pret;
+
+    @Autowired
+    public AnalytiqueFacturesService(JdbcTemplate jdbcTemplate,
+                                     @Qualifier("colonnesExecutor") ThreadPoolTaskExecutor colonnesExecutor,
+                                     @Value("${facture.colonnes.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.colonnesExecutor = colonnesExecutor;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        pool.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void chargerAuDemarrage() {
+        recharger();
+    }
+
+    /**
+     * Recharger toutes les colonnes depuis la base en arrière-plan (false si déjà en cours)
+     */
+    public boolean recharger() {
+        if (!chargementEnCours.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            colonnesExecutor.execute(this::charger);
+        } catch (RuntimeException e) {
+            chargementEnCours.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Relire ces factures une fois la transaction validée : point d'entrée unique de tous les écrivains
+     * (listener JPA, UPDATE en masse, JDBC, suppressions) ; une facture absente de la base est retirée
+     */
+    @SuppressWarnings("unchecked")
+    public void rafraichirApresCommit(Collection<Long> factureIds) {
+        if (factureIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            planifier(factureIds);
+            return;
+        }
+
+        // Une seule relecture par transaction, quel que soit le nombre d'écritures
+        Set<Long> ids = (Set<Long>) TransactionSynchronizationManager.getResource(cleTransaction);
+        if (ids == null) {
+            Set<Long> nouveaux = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(cleTransaction, nouveaux);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    planifier(nouveaux);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(cleTransaction);
+                }
+            });
+            ids = nouveaux;
+        }
+        ids.addAll(factureIds);
+    }
+
+    /**
+     * Agréger les factures filtrées selon l'axe demandé (limite appliquée après tri)
+     */
+    public Map<String, Object> agreger(Collection<StatutFacture> statuts, Collection<ModePaiement> modes,
+                                       Long clientId, LocalDate dateDebut, LocalDate dateFin,
+                                       RegroupementFactures regroupement, Integer limite) {
+        if (dateDebut != null && dateFin != null && dateDebut.isAfter(dateFin)) {
+            throw new RuntimeException("La date de début doit précéder la date de fin");
+        }
+        long debut = System.nanoTime();
+        AgregatsParCle agregats = colonnes.agreger(
+                new FiltreFactures(statuts, modes, clientId, dateDebut, dateFin), regroupement, pool);
+        long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+
+        List<Map<String, Object>> lignes = new ArrayList<>(agregats.taille());
+        List<Long> cles = new ArrayList<>(agregats.taille());
+        agregats.parcourir((cle, nombre, ht, tva, ttc) -> {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("cle", libelle(regroupement, cle));
+            ligne.put("nombre", nombre);
+            ligne.put("montantHT", BigDecimal.valueOf(ht, 2));
+            ligne.put("montantTVA", BigDecimal.valueOf(tva, 2));
+            ligne.put("montantTTC", BigDecimal.valueOf(ttc, 2));
+            lignes.add(ligne);
+            cles.add(cle);
+        });
+
+        if (regroupement == RegroupementFactures.CLIENT) {
+            lignes.sort(Comparator.comparing((Map<String, Object> l) -> (BigDecimal) l.get("montantTTC")).reversed());
+        } else {
+            lignes.sort(Comparator.comparing(l -> cleDeTri(l.get("cle"))));
+        }
+        List<Map<String, Object>> resultat = limite != null && limite > 0 && lignes.size() > limite
+                ? new ArrayList<>(lignes.subList(0, limite)) : lignes;
+
+        Map<String, Object> reponse = new LinkedHashMap<>();
+        reponse.put("regroupement", regroupement);
+        reponse.put("lignes", resultat);
+        reponse.put("nombreGroupes", lignes.size());
+        reponse.put("facturesIndexees", colonnes.nombreFactures());
+        reponse.put("complet", pret && !chargementEnCours.get());
+        reponse.put("dureeMs", dureeMs);
+        return reponse;
+    }
+
+    /**
+     * Relectures sur l'exécuteur des colonnes (un seul thread) : jamais en même temps qu'un chargement,
+     * chacune lit l'état validé après les commits qui l'ont demandée
+     */
+    private void planifier(Collection<Long> factureIds) {
+        aRafraichir.addAll(factureIds);
+        if (!rafraichissementPlanifie.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            colonnesExecutor.execute(this::rafraichir);
+        } catch (TaskRejectedException e) {
+            // Les identifiants restent en attente : le prochain commit replanifie la relecture
+            rafraichissementPlanifie.set(false);
+            log.warn("Relecture des colonnes de factures refusée par l'exécuteur : {}", e.getMessage());
+        }
+    }
+
+    private void rafraichir() {
+        try {
+            while (!aRafraichir.isEmpty()) {
+                List<Long> lot = new ArrayList<>(TAILLE_LOT);
+                Iterator<Long> iterateur = aRafraichir.iterator();
+                while (iterateur.hasNext() && lot.size() < TAILLE_LOT) {
+                    lot.add(iterateur.next());
+                    iterateur.remove();
+                }
+                relire(lot);
+            }
+        } catch (RuntimeException e) {
+            log.error("Échec de la relecture des colonnes de factures (rechargement nécessaire) : {}", e.getMessage(), e);
+        } finally {
+            rafraichissementPlanifie.set(false);
+            // Identifiants ajoutés entre la dernière lecture et la remise à zéro du drapeau
+            if (!aRafraichir.isEmpty()) {
+                planifier(List.of());
+            }
+        }
+    }
+
+    private void relire(List<Long> lot) {
+        Set<Long> absentes = new HashSet<>(lot);
+        jdbcTemplate.query(REQUETE_CHARGEMENT + " WHERE f.id IN (" + String.join(", ", Collections.nCopies(lot.size(), "?")) + ")",
+                (RowCallbackHandler) ligne -> {
+                    absentes.remove(ligne.getLong(1));
+                    enregistrer(ligne);
+                }, lot.toArray());
+        absentes.forEach(colonnes::supprimer);
+    }
+
+    private void charger() {
+        long debut = System.currentTimeMillis();
+        try {
+            pret = false;
+            colonnes.vider();
+
+            // Lecture en flux (MySQL : fetchSize = Integer.MIN_VALUE) pour ne pas matérialiser le résultat
+            jdbcTemplate.query(connexion -> {
+                PreparedStatement requete = connexion.prepareStatement(REQUETE_CHARGEMENT,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                requete.setFetchSize(Integer.MIN_VALUE);
+                return requete;
+            }, (RowCallbackHandler) this::enregistrer);
+
+            pret = true;
+            log.info("Colonnes de factures chargées : {} factures en {} ms",
+                    colonnes.nombreFactures(), System.currentTimeMillis() - debut);
+        } catch (RuntimeException e) {
+            log.error("Échec du chargement des colonnes de factures : {}", e.getMessage(), e);
+        } finally {
+            chargementEnCours.set(false);
+        }
+    }
+
+    private void enregistrer(ResultSet ligne) throws SQLException {
+        Timestamp dateFacture = ligne.getTimestamp(2);
+        String modePaiement = ligne.getString(4);
+        colonnes.enregistrer(ligne.getLong(1),
+                dateFacture != null ? dateFacture.toLocalDateTime().toLocalDate() : LocalDate.now(),
+                StatutFacture.valueOf(ligne.getString(3)),
+                modePaiement != null ? ModePaiement.valueOf(modePaiement) : null,
+                ligne.getLong(5), ligne.getBigDecimal(6), ligne.getBigDecimal(7), ligne.getBigDecimal(8));
+    }
+
+    private static Object libelle(RegroupementFactures regroupement, long cle) {
+        switch (regroupement) {
+            case STATUT:
+                return StatutFacture.values()[(int) cle].name();
+            case MODE_PAIEMENT:
+                return cle >= 0 ? ModePaiement.values()[(int) cle].name() : null;
+            case CLIENT:
+                return cle;
+            case JOUR:
+                return LocalDate.ofEpochDay(cle).toString();
+            case MOIS:
+                return String.format("%04d-%02d", cle / 100, cle % 100);
+            default:
+                return "TOTAL";
+        }
+    }
+
+    private static String cleDeTri(Object cle) {
+        return cle != null ? cle.toString() : "";
+    }
+
+}
@@ -0,0 +1,514 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.analytics.FenetreVentes;
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.event.CommandesStatutModifieEvent;
+import com.facturation.facture.model.CurseurTraitement;
+import com.facturation.facture.model.Produit;
+import com.facturation.facture.model.SketchVentes;
+import com.facturation.facture.repository.CommandeRepository;
+import com.facturation.facture.repository.CurseurTraitementRepository;
+import com.facturation.facture.repository.LigneCommandeRepository;
+import com.facturation.facture.repository.ProduitRepository;
+import com.facturation.facture.repository.SketchVentesRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Analytique approximative des ventes tenue en mémoire par sketches journaliers
+ * (Count-Min / Space-Saving pour les produits, HyperLogLog pour les clients distincts,
+ * sketch de quantiles pour la valeur des commandes).
+ * <p>
+ * La table sketches_ventes fait foi : le nœud qui détient le bail "sketches-ventes" recalcule
+ * depuis les commandes les journées modifiées depuis son filigrane et les y enregistre ; chaque
+ * nœud recharge les journées dont la version a changé. Entre deux recalculs, les ventes validées
+ * sur le nœud s'ajoutent à la journée (une fois par commande) jusqu'à ce qu'une sauvegarde plus
+ * récente les contienne.
+ */
+@Service
+public class AnalytiqueVentesService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalytiqueVentesService.class);
+
+    public static final int K_MAX = 100;
+
+    private static final String BAIL = "sketches-ventes";
+    private static final String CURSEUR = "sketches-ventes";
+
+    // Couvre les transactions encore ouvertes au passage précédent (date de modification antérieure, commit postérieur)
+    private static final Duration MARGE_FILIGRANE = Duration.ofMinutes(2);
+
+    private final CommandeRepository commandeRepository;
+    private final LigneCommandeRepository ligneCommandeRepository;
+    private final ProduitRepository produitRepository;
+    private final SketchVentesRepository sketchVentesRepository;
+    private final CurseurTraitementRepository curseurTraitementRepository;
+    private final BailService bailService;
+    private final int retentionJours;
+
+    private final ConcurrentHashMap<LocalDate, Journee> journees = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AnalytiqueVentesService(CommandeRepository commandeRepository,
+                                   LigneCommandeRepository ligneCommandeRepository,
+                                   ProduitRepository produitRepository,
+                                   SketchVentesRepository sketchVentesRepository,
+                                   CurseurTraitementRepository curseurTraitementRepository,
+                                   BailService bailService,
+                                   @Value("${facture.analytics.retention-jours:90}") int retentionJours) {
+        this.commandeRepository = commandeRepository;
+        this.ligneCommandeRepository = ligneCommandeRepository;
+        this.produitRepository = produitRepository;
+        this.sketchVentesRepository = sketchVentesRepository;
+        this.curseurTraitementRepository = curseurTraitementRepository;
+        this.bailService = bailService;
+        this.retentionJours = retentionJours;
+    }
+
+    /**
+     * Lire les lignes des commandes vendues dans la transaction, puis alimenter les sketches
+     * seulement après le commit (un sketch ne sait pas retirer une valeur)
+     */
+    @EventListener
+    public void surChangementStatut(CommandesStatutModifieEvent event) {
+        Map<Long, CommandesStatutModifieEvent.Transition> vendues = new HashMap<>();
+        for (CommandesStatutModifieEvent.Transition transition : event.getTransitions()) {
+            if (transition.devientVendue()) {
+                vendues.put(transition.getCommandeId(), transition);
+            }
+        }
+        if (vendues.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<long[]>> lignesParCommande = new HashMap<>();
+        for (Object[] ligne : ligneCommandeRepository.findQuantitesParCommandeIds(vendues.keySet())) {
+            lignesParCommande.computeIfAbsent((Long) ligne[0], id -> new ArrayList<>())
+                    .add(new long[]{(Long) ligne[1], ((Integer) ligne[2]).longValue()});
+        }
+
+        List<Vente> ventes = vendues.values().stream()
+                .map(t -> new Vente(t.getCommandeId(), t.getDateCommande().toLocalDate(), t.getClientId(),
+                        t.getTotalTTC(), lignesParCommande.getOrDefault(t.getCommandeId(), List.of())))
+                .collect(Collectors.toList());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enregistrerRecentes(ventes, LocalDateTime.now());
+                }
+            });
+        } else {
+            enregistrerRecentes(ventes, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Charger les sketches sauvegardés au démarrage
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void chargerSketches() {
+        rafraichirFenetres();
+        log.info("Sketches de ventes chargés : {} journées", journees.size());
+    }
+
+    /**
+     * Recharger les journées dont la sauvegarde a changé (sur chaque nœud) et oublier
+     * celles sorties de la rétention ; seules les versions sont lues pour les journées inchangées
+     */
+    @Scheduled(fixedDelayString = "${facture.analytics.rafraichissement-ms:60000}",
+            initialDelayString = "${facture.analytics.rafraichissement-ms:60000}")
+    @Transactional(readOnly = true)
+    public void rafraichirFenetres() {
+        LocalDate premierJour = premierJourConserve();
+        Map<LocalDate, LocalDateTime> versions = new HashMap<>();
+        for (Object[] version : sketchVentesRepository.findVersionsDepuis(premierJour)) {
+            versions.put((LocalDate) version[0], (LocalDateTime) version[1]);
+        }
+
+        List<LocalDate> aLire = new ArrayList<>();
+        versions.forEach((jour, version) -> {
+            Journee journee = journees.get(jour);
+            if (journee == null || !version.equals(journee.instantane)) {
+                aLire.add(jour);
+            }
+        });
+        for (SketchVentes sauvegarde : sketchVentesRepository.findAllById(aLire)) {
+            try {
+                installer(sauvegarde.getJour(), FenetreVentes.deserialiser(sauvegarde.getDonnees()),
+                        sauvegarde.getDateMiseAJour());
+            } catch (RuntimeException e) {
+                log.warn("Sketches du {} ignorés : {}", sauvegarde.getJour(), e.getMessage());
+            }
+        }
+
+        // Journée supprimée de la table (plus aucune vente) : seules restent les ventes récentes du nœud
+        for (Map.Entry<LocalDate, Journee> entree : journees.entrySet()) {
+            if (entree.getValue().instantane != null && !versions.containsKey(entree.getKey())) {
+                installer(entree.getKey(), null, null);
+            }
+        }
+        journees.keySet().removeIf(jour -> jour.isBefore(premierJour));
+    }
+
+    /**
+     * Recalculer depuis les commandes les journées modifiées depuis le filigrane et les sauvegarder
+     * (un seul nœud du cluster, sous bail)
+     */
+    @Scheduled(fixedDelayString = "${facture.analytics.persistance-ms:300000}",
+            initialDelayString = "${facture.analytics.persistance-ms:300000}")
+    @VerrouDistribue(value = BAIL, dureeSecondes = 120)
+    @Transactional
+    public void persisterSketches() {
+        LocalDateTime instantane = LocalDateTime.now();
+        LocalDate premierJour = premierJourConserve();
+        bailService.verifierBailCourant();
+        sketchVentesRepository.supprimerAvant(premierJour);
+
+        Optional<CurseurTraitement> curseur = curseurTraitementRepository.findById(CURSEUR);
+        Collection<LocalDate> jours = curseur.isPresent()
+                ? commandeRepository.findJoursCommandesModifieesDepuis(
+                        curseur.get().getPositionDate().minus(MARGE_FILIGRANE), premierJour.atStartOfDay())
+                : joursConserves();
+        int sauvegardees = recalculerJournees(jours, instantane);
+
+        if (curseur.isPresent()) {
+            curseur.get().avancer(instantane, 0L);
+        } else {
+            curseurTraitementRepository.save(new CurseurTraitement(CURSEUR, instantane, 0L));
+        }
+        if (!jours.isEmpty()) {
+            log.debug("Sketches de ventes recalculés : {} journées modifiées, {} sauvegardées", jours.size(), sauvegardees);
+        }
+    }
+
+    /**
+     * Reconstruire toute la période de rétention depuis l'historique des commandes
+     * (sous le même bail que le recalcul périodique ; null si un autre nœud le détient)
+     */
+    @VerrouDistribue(value = BAIL, dureeSecondes = 300)
+    @Transactional
+    public Map<String, Object> reconstruireSketches() {
+        LocalDateTime instantane = LocalDateTime.now();
+        bailService.verifierBailCourant();
+        sketchVentesRepository.supprimerAvant(premierJourConserve());
+
+        int journeesAvecVentes = recalculerJournees(joursConserves(), instantane);
+        Optional<CurseurTraitement> curseur = curseurTraitementRepository.findById(CURSEUR);
+        if (curseur.isPresent()) {
+            curseur.get().avancer(instantane, 0L);
+        } else {
+            curseurTraitementRepository.save(new CurseurTraitement(CURSEUR, instantane, 0L));
+        }
+
+        log.info("Sketches de ventes reconstruits sur {} journées", journeesAvecVentes);
+        return Map.of("journees", journeesAvecVentes);
+    }
+
+    /**
+     * Produits les plus vendus (en quantité) sur les derniers jours
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenirTopProduits(int k, int jours) {
+        FenetreVentes periode = agreger(0, borner(jours));
+        List<long[]> top = periode.topProduits(bornerK(k));
+        Map<Long, String> noms = nomsProduits(top.stream().map(e -> e[0]).collect(Collectors.toList()));
+
+        List<Map<String, Object>> resultat = new ArrayList<>();
+        for (long[] entree : top) {
+            Map<String, Object> produit = new LinkedHashMap<>();
+            produit.put("produitId", entree[0]);
+            produit.put("nom", noms.get(entree[0]));
+            produit.put("quantiteEstimee", periode.estimerQuantite(entree[0]));
+            produit.put("erreurMaximale", entree[2]);
+            resultat.add(produit);
+        }
+        return resultat;
+    }
+
+    /**
+     * Produits en hausse : quantité des derniers jours comparée à la période précédente de même durée
+     * (les deux périodes doivent tenir dans la rétention)
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> obtenirProduitsTendance(int k, int jours) {
+        int duree = borner(jours);
+        if (duree > retentionJours / 2) {
+            throw new RuntimeException("Le nombre de jours d'une tendance doit être compris entre 1 et "
+                    + retentionJours / 2 + " (deux périodes dans la rétention)");
+        }
+        FenetreVentes recente = agreger(0, duree);
+        FenetreVentes precedente = agreger(duree, duree);
+
+        List<Map<String, Object>> resultat = new ArrayList<>();
+        for (long[] entree : recente.topProduits(Integer.MAX_VALUE)) {
+            long quantiteRecente = recente.estimerQuantite(entree[0]);
+            long quantitePrecedente = precedente.estimerQuantite(entree[0]);
+            Map<String, Object> produit = new LinkedHashMap<>();
+            produit.put("produitId", entree[0]);
+            produit.put("quantiteRecente", quantiteRecente);
+            produit.put("quantitePrecedente", quantitePrecedente);
+            produit.put("croissance", (double) (quantiteRecente + 1) / (quantitePrecedente + 1));
+            resultat.add(produit);
+        }
+        resultat.sort(Comparator.comparingDouble((Map<String, Object> p) -> (Double) p.get("croissance")).reversed());
+        if (resultat.size() > bornerK(k)) {
+            resultat = new ArrayList<>(resultat.subList(0, bornerK(k)));
+        }
+
+        Map<Long, String> noms = nomsProduits(resultat.stream()
+                .map(p -> (Long) p.get("produitId")).collect(Collectors.toList()));
+        resultat.forEach(p -> p.put("nom", noms.get((Long) p.get("produitId"))));
+        return resultat;
+    }
+
+    /**
+     * Nombre estimé de clients distincts (tous produits ou un produit) sur les derniers jours
+     */
+    public Map<String, Object> obtenirClientsDistincts(Long produitId, int jours) {
+        int duree = borner(jours);
+        FenetreVentes periode = agreger(0, duree);
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        if (produitId != null) {
+            resultat.put("produitId", produitId);
+        }
+        resultat.put("jours", duree);
+        resultat.put("clientsDistincts", produitId != null ? periode.estimerClientsProduit(produitId) : periode.estimerClients());
+        return resultat;
+    }
+
+    /**
+     * Quantiles de la valeur TTC des commandes vendues sur les derniers jours
+     */
+    public Map<String, Object> obtenirQuantilesValeurCommandes(List<Double> quantiles, int jours) {
+        int duree = borner(jours);
+        FenetreVentes periode = agreger(0, duree);
+
+        Map<String, Object> valeursQuantiles = new LinkedHashMap<>();
+        for (Double q : quantiles) {
+            if (q == null || q < 0 || q > 1) {
+                throw new RuntimeException("Les quantiles doivent être compris entre 0 et 1");
+            }
+            valeursQuantiles.put("p" + BigDecimal.valueOf(q * 100).stripTrailingZeros().toPlainString(),
+                    arrondir(periode.quantileValeur(q)));
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("jours", duree);
+        resultat.put("nombreCommandes", periode.getNombreCommandes());
+        resultat.put("moyenne", arrondir(periode.getMoyenneValeur()));
+        resultat.put("minimum", arrondir(periode.getMinimumValeur()));
+        resultat.put("maximum", arrondir(periode.getMaximumValeur()));
+        resultat.put("quantiles", valeursQuantiles);
+        return resultat;
+    }
+
+    /**
+     * Recalculer les journées données depuis les commandes vendues : journée avec ventes sauvegardée,
+     * journée sans vente supprimée ; installées localement après le commit. Renvoie le nombre sauvegardé.
+     */
+    private int recalculerJournees(Collection<LocalDate> jours, LocalDateTime instantane) {
+        if (jours.isEmpty()) {
+            return 0;
+        }
+        TreeSet<LocalDate> aRecalculer = new TreeSet<>(jours);
+        LocalDateTime debut = aRecalculer.first().atStartOfDay();
+        LocalDateTime fin = aRecalculer.last().plusDays(1).atStartOfDay();
+
+        Map<Long, List<long[]>> lignesParCommande = new HashMap<>();
+        for (Object[] ligne : ligneCommandeRepository.findQuantitesVenduesEntre(debut, fin)) {
+            lignesParCommande.computeIfAbsent((Long) ligne[0], id -> new ArrayList<>())
+                    .add(new long[]{(Long) ligne[1], ((Integer) ligne[2]).longValue()});
+        }
+        Map<LocalDate, FenetreVentes> fenetres = new HashMap<>();
+        for (Object[] commande : commandeRepository.findVentesEntre(debut, fin)) {
+            Vente vente = new Vente((Long) commande[0], ((LocalDateTime) commande[2]).toLocalDate(), (Long) commande[1],
+                    (BigDecimal) commande[3], lignesParCommande.getOrDefault((Long) commande[0], List.of()));
+            if (aRecalculer.contains(vente.jour)) {
+                fenetres.computeIfAbsent(vente.jour, jour -> new FenetreVentes())
+                        .enregistrerCommande(vente.clientId, vente.totalTTC.doubleValue(), vente.lignes);
+            }
+        }
+
+        List<SketchVentes> aSauvegarder = new ArrayList<>();
+        fenetres.forEach((jour, fenetre) -> aSauvegarder.add(new SketchVentes(jour, fenetre.serialiser(), instantane)));
+        List<LocalDate> sansVente = aRecalculer.stream().filter(jour -> !fenetres.containsKey(jour)).toList();
+        sketchVentesRepository.saveAll(aSauvegarder);
+        sketchVentesRepository.deleteAllByIdInBatch(sansVente);
+
+        Runnable installation = () -> {
+            fenetres.forEach((jour, fenetre) -> installer(jour, fenetre, instantane));
+            sansVente.forEach(jour -> installer(jour, null, instantane));
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    installation.run();
+                }
+            });
+        } else {
+            installation.run();
+        }
+        return aSauvegarder.size();
+    }
+
+    /**
+     * Remplacer la sauvegarde d'une journée (null : aucune) ; les ventes récentes validées
+     * après l'instantané sont conservées, les autres y sont déjà comptées
+     */
+    private void installer(LocalDate jour, FenetreVentes sauvegarde, LocalDateTime instantane) {
+        journees.compute(jour, (j, actuelle) -> actuelle != null
+                ? actuelle.remplacer(sauvegarde, instantane)
+                : new Journee(sauvegarde, instantane));
+    }
+
+    private void enregistrerRecentes(List<Vente> ventes, LocalDateTime validees) {
+        LocalDate premierJour = premierJourConserve();
+        for (Vente vente : ventes) {
+            if (vente.jour.isBefore(premierJour)) {
+                continue;
+            }
+            journees.compute(vente.jour, (jour, journee) -> {
+                Journee cible = journee != null ? journee : new Journee(null, null);
+                cible.ajouterRecente(vente, validees);
+                return cible;
+            });
+        }
+    }
+
+    /**
+     * Fusionner les fenêtres de [aujourd'hui - decalage - duree + 1, aujourd'hui - decalage]
+     */
+    private FenetreVentes agreger(int decalage, int duree) {
+        FenetreVentes periode = new FenetreVentes();
+        LocalDate fin = LocalDate.now().minusDays(decalage);
+        for (int i = 0; i < duree; i++) {
+            Journee journee = journees.get(fin.minusDays(i));
+            if (journee != null) {
+                journee.fusionnerDans(periode);
+            }
+        }
+        return periode;
+    }
+
+    private Map<Long, String> nomsProduits(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return produitRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Produit::getId, Produit::getNom));
+    }
+
+    private LocalDate premierJourConserve() {
+        return LocalDate.now().minusDays(retentionJours - 1L);
+    }
+
+    private List<LocalDate> joursConserves() {
+        return premierJourConserve().datesUntil(LocalDate.now().plusDays(1)).toList();
+    }
+
+    private int borner(int jours) {
+        if (jours < 1 || jours > retentionJours) {
+            throw new RuntimeException("Le nombre de jours doit être compris entre 1 et " + retentionJours);
+        }
+        return jours;
+    }
+
+    private int bornerK(int k) {
+        if (k < 1) {
+            throw new RuntimeException("Le paramètre k doit être supérieur ou égal à 1");
+        }
+        return Math.min(k, K_MAX);
+    }
+
+    private static Double arrondir(double valeur) {
+        return Double.isNaN(valeur) ? null : Math.round(valeur * 100) / 100.0;
+    }
+
+    /**
+     * Une journée en mémoire : sa sauvegarde (jamais modifiée après lecture) et les ventes validées
+     * sur ce nœud depuis, une fois par commande
+     */
+    private static final class Journee {
+
+        private final FenetreVentes sauvegarde;
+        private final LocalDateTime instantane;
+        private final Map<Long, LocalDateTime> recentes = new HashMap<>();
+        private final List<Vente> ventesRecentes = new ArrayList<>();
+        private final FenetreVentes fenetreRecentes = new FenetreVentes();
+
+        Journee(FenetreVentes sauvegarde, LocalDateTime instantane) {
+            this.sauvegarde = sauvegarde;
+            this.instantane = instantane;
+        }
+
+        synchronized void ajouterRecente(Vente vente, LocalDateTime validee) {
+            if (recentes.putIfAbsent(vente.commandeId, validee) == null) {
+                ventesRecentes.add(vente);
+                fenetreRecentes.enregistrerCommande(vente.clientId, vente.totalTTC.doubleValue(), vente.lignes);
+            }
+        }
+
+        synchronized Journee remplacer(FenetreVentes nouvelleSauvegarde, LocalDateTime nouvelInstantane) {
+            Journee remplacante = new Journee(nouvelleSauvegarde, nouvelInstantane);
+            for (Vente vente : ventesRecentes) {
+                LocalDateTime validee = recentes.get(vente.commandeId);
+                if (nouvelInstantane == null || validee.isAfter(nouvelInstantane)) {
+                    remplacante.ajouterRecente(vente, validee);
+                }
+            }
+            return remplacante;
+        }
+
+        synchronized void fusionnerDans(FenetreVentes periode) {
+            if (sauvegarde != null) {
+                sauvegarde.fusionnerDans(periode);
+            }
+            fenetreRecentes.fusionnerDans(periode);
+        }
+    }
+
+    private static class Vente {
+        private final Long commandeId;
+        private final LocalDate jour;
+        private final Long clientId;
+        private final BigDecimal totalTTC;
+        private final List<long[]> lignes;
+
+        Vente(Long commandeId, LocalDate jour, Long clientId, BigDecimal totalTTC, List<long[]> lignes) {
+            this.commandeId = commandeId;
+            this.jour = jour;
+            this.clientId = clientId;
+            this.totalTTC = totalTTC != null ? totalTTC : BigDecimal.ZERO;
+            this.lignes = lignes;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.BailDetenu;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Baux en base de données (table baux : nom, détenteur, expiration, jeton) : un traitement
+ * n'est exécuté que par le nœud qui détient le bail, prolongé automatiquement pendant
+ * l'exécution. L'horloge de référence est celle de la base ; le jeton (fencing token)
+ * augmente à chaque changement de détenteur et permet de refuser les écritures d'un ancien
+ * détenteur. SQL standard (pas d'INSERT IGNORE) pour tourner aussi sur une base embarquée.
+ */
+@Service
+public class BailService {
+
+    private static final Logger log = LoggerFactory.getLogger(BailService.class);
+
+    private static final String CREATION =
+            "INSERT INTO baux (nom, proprietaire, expire_le, jeton) VALUES (?, '', TIMESTAMP '1970-01-01 00:00:01', 0)";
+
+    // Jeton incrémenté sauf si ce nœud détient déjà un bail encore valide (colonnes lues avant mise à jour)
+    private static final String PRISE =
+            "UPDATE baux SET jeton = CASE WHEN proprietaire = ? AND expire_le >= CURRENT_TIMESTAMP(3) " +
+            "THEN jeton ELSE jeton + 1 END, " +
+            "proprietaire = ?, expire_le = TIMESTAMPADD(MICROSECOND, ?, CURRENT_TIMESTAMP(3)) " +
+            "WHERE nom = ? AND (proprietaire = ? OR expire_le < CURRENT_TIMESTAMP(3))";
+
+    private static final String LECTURE_JETON =
+            "SELECT jeton FROM baux WHERE nom = ? AND proprietaire = ?";
+
+    private static final String RENOUVELLEMENT =
+            "UPDATE baux SET expire_le = TIMESTAMPADD(MICROSECOND, ?, CURRENT_TIMESTAMP(3)) " +
+            "WHERE nom = ? AND proprietaire = ? AND jeton = ? AND expire_le >= CURRENT_TIMESTAMP(3)";
+
+    private static final String VERIFICATION =
+            "SELECT jeton FROM baux WHERE nom = ? AND proprietaire = ? AND jeton = ? " +
+            "AND expire_le >= CURRENT_TIMESTAMP(3) FOR UPDATE";
+
+    private static final String LIBERATION =
+            "UPDATE baux SET expire_le = CURRENT_TIMESTAMP(3) WHERE nom = ? AND proprietaire = ? AND jeton = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String identifiantNoeud;
+    private final ScheduledExecutorService renouvellements;
+
+    // Un seul thread par bail sur ce nœud (le détenteur en base est le nœud, pas le thread)
+    private final Map<String, ReentrantLock> verrousLocaux = new ConcurrentHashMap<>();
+    private final Map<String, Statistiques> statistiques = new ConcurrentHashMap<>();
+    private final ThreadLocal<BailDetenu> bailCourant = new ThreadLocal<>();
+
+    @Autowired
+    public BailService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.identifiantNoeud = nomHote() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.renouvellements = Executors.newSingleThreadScheduledExecutor(tache -> {
+            Thread thread = new Thread(tache, "bail-renouvellement");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void arreter() {
+        renouvellements.shutdownNow();
+    }
+
+    /**
+     * Exécuter un traitement sous bail, prolongé tous les tiers de la durée (false si le bail est pris)
+     */
+    public boolean executerSousBail(String nom, Duration duree, Runnable traitement) {
+        Statistiques stats = statistiques(nom);
+        ReentrantLock verrouLocal = verrousLocaux.computeIfAbsent(nom, n -> new ReentrantLock());
+        if (!verrouLocal.tryLock()) {
+            stats.contentions.incrementAndGet();
+            return false;
+        }
+        try {
+            Optional<BailDetenu> acquis = acquerir(nom, duree);
+            if (acquis.isEmpty()) {
+                return false;
+            }
+            BailDetenu bail = acquis.get();
+            long periodeMs = Math.max(1, duree.toMillis() / 3);
+            ScheduledFuture<?> renouvellement = renouvellements.scheduleAtFixedRate(
+                    () -> renouveler(bail, duree), periodeMs, periodeMs, TimeUnit.MILLISECONDS);
+            BailDetenu precedent = bailCourant.get();
+            bailCourant.set(bail);
+            long debut = System.nanoTime();
+            try {
+                traitement.run();
+                return true;
+            } finally {
+                bailCourant.set(precedent);
+                renouvellement.cancel(false);
+                stats.dureeTotaleMs.addAndGet((System.nanoTime() - debut) / 1_000_000);
+                liberer(bail);
+            }
+        } finally {
+            verrouLocal.unlock();
+        }
+    }
+
+    /**
+     * Prendre le bail pour la durée donnée (vide s'il est détenu par un autre nœud)
+     */
+    public Optional<BailDetenu> acquerir(String nom, Duration duree) {
+        Statistiques stats = statistiques(nom);
+        stats.tentatives.incrementAndGet();
+        try {
+            int prises = prendre(nom, duree);
+            if (prises == 0 && !existe(nom)) {
+                try {
+                    jdbcTemplate.update(CREATION, nom);
+                } catch (DuplicateKeyException e) {
+                    // Créé en parallèle par un autre nœud
+                }
+                prises = prendre(nom, duree);
+            }
+            if (prises == 0) {
+                stats.contentions.incrementAndGet();
+                log.debug("Bail {} détenu par un autre nœud", nom);
+                return Optional.empty();
+            }
+            Long jeton = jdbcTemplate.queryForObject(LECTURE_JETON, Long.class, nom, identifiantNoeud);
+            stats.acquisitions.incrementAndGet();
+            stats.dernierJeton = jeton;
+            stats.derniereAcquisition = LocalDateTime.now();
+            return Optional.of(new BailDetenu(nom, jeton));
+        } catch (RuntimeException e) {
+            stats.erreurs.incrementAndGet();
+            log.warn("Impossible d'acquérir le bail {} : {}", nom, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Prolonger un bail détenu (false s'il a expiré ou changé de détenteur)
+     */
+    public boolean renouveler(BailDetenu bail, Duration duree) {
+        if (bail.estPerdu()) {
+            return false;
+        }
+        Statistiques stats = statistiques(bail.getNom());
+        try {
+            if (jdbcTemplate.update(RENOUVELLEMENT, duree.toNanos() / 1000, bail.getNom(),
+                    identifiantNoeud, bail.getJeton()) == 1) {
+                stats.renouvellements.incrementAndGet();
+                return true;
+            }
+        } catch (RuntimeException e) {
+            stats.erreurs.incrementAndGet();
+            log.warn("Échec du renouvellement du bail {} : {}", bail.getNom(), e.getMessage());
+        }
+        // Erreur ou bail expiré : on le considère perdu, les écritures protégées seront refusées
+        if (!bail.estPerdu()) {
+            stats.pertes.incrementAndGet();
+            log.warn("Bail {} perdu (jeton {})", bail.getNom(), bail.getJeton());
+        }
+        bail.marquerPerdu();
+        return false;
+    }
+
+    /**
+     * Dans la transaction courante : vérifier que le bail du thread est toujours détenu et
+     * verrouiller sa ligne jusqu'au commit (aucune reprise possible pendant l'écriture)
+     */
+    public void verifierBailCourant() {
+        BailDetenu bail = bailCourant.get();
+        if (bail == null) {
+            return;
+        }
+        List<Long> jetons = bail.estPerdu() ? List.of() : jdbcTemplate.queryForList(VERIFICATION, Long.class,
+                bail.getNom(), identifiantNoeud, bail.getJeton());
+        if (jetons.isEmpty()) {
+            bail.marquerPerdu();
+            throw new RuntimeException("Bail " + bail.getNom() + " perdu (jeton " + bail.getJeton() + "), écriture refusée");
+        }
+    }
+
+    /**
+     * Bail détenu par le thread courant (dans un traitement exécuté sous bail)
+     */
+    public Optional<BailDetenu> bailCourant() {
+        return Optional.ofNullable(bailCourant.get());
+    }
+
+    /**
+     * Rendre le bail avant son expiration (sans effet s'il a été repris par un autre nœud)
+     */
+    public void liberer(BailDetenu bail) {
+        try {
+            jdbcTemplate.update(LIBERATION, bail.getNom(), identifiantNoeud, bail.getJeton());
+        } catch (RuntimeException e) {
+            log.warn("Échec de la libération du bail {} (il expirera seul) : {}", bail.getNom(), e.getMessage());
+        }
+    }
+
+    /**
+     * Compteurs par bail : tentatives, acquisitions, contentions, renouvellements, pertes
+     */
+    public List<Map<String, Object>> obtenirStatistiques() {
+        List<Map<String, Object>> resultat = new ArrayList<>();
+        statistiques.forEach((nom, stats) -> resultat.add(stats.resume(nom)));
+        return resultat;
+    }
+
+    public String getIdentifiantNoeud() {
+        return identifiantNoeud;
+    }
+
+    private int prendre(String nom, Duration duree) {
+        return jdbcTemplate.update(PRISE, identifiantNoeud, identifiantNoeud, duree.toNanos() / 1000,
+                nom, identifiantNoeud);
+    }
+
+    private boolean existe(String nom) {
+        Integer nombre = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM baux WHERE nom = ?", Integer.class, nom);
+        return nombre != null && nombre > 0;
+    }
+
+    private Statistiques statistiques(String nom) {
+        return statistiques.computeIfAbsent(nom, n -> new Statistiques());
+    }
+
+    private static String nomHote() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "noeud";
+        }
+    }
+
+    private static class Statistiques {
+        private final AtomicLong tentatives = new AtomicLong();
+        private final AtomicLong acquisitions = new AtomicLong();
+        private final AtomicLong contentions = new AtomicLong();
+        private final AtomicLong renouvellements = new AtomicLong();
+        private final AtomicLong pertes = new AtomicLong();
+        private final AtomicLong erreurs = new AtomicLong();
+        private final AtomicLong dureeTotaleMs = new AtomicLong();
+        private volatile Long dernierJeton;
+        private volatile LocalDateTime derniereAcquisition;
+
+        Map<String, Object> resume(String nom) {
+            Map<String, Object> resume = new LinkedHashMap<>();
+            resume.put("nom", nom);
+            resume.put("tentatives", tentatives.get());
+            resume.put("acquisitions", acquisitions.get());
+            resume.put("contentions", contentions.get());
+            resume.put("renouvellements", renouvellements.get());
+            resume.put("pertes", pertes.get());
+            resume.put("erreurs", erreurs.get());
+            resume.put("dureeTotaleMs", dureeTotaleMs.get());
+            resume.put("dernierJeton", dernierJeton);
+            resume.put("derniereAcquisition", derniereAcquisition);
+            return resume;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.analytics.BalanceAgee;
+import com.facturation.facture.cache.CacheAgregats;
+import com.facturation.facture.cache.ValeurCachee;
+import com.facturation.facture.model.CompteurTraitement;
+import com.facturation.facture.model.User;
+import com.facturation.facture.repository.CompteurTraitementRepository;
+import com.facturation.facture.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Balance âgée des factures en attente : un seul passage en flux sur les factures ouvertes
+ * (curseur en avant seulement), cumul par client en mémoire bornée par le nombre de clients,
+ * puis pagination par client ou export CSV
+ */
+@Service
+public class BalanceAgeeService {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceAgeeService.class);
+
+    private static final int TAILLE_PAGE_MAX = 500;
+
+    // Une clé par jour : la balance de la veille peut rester en cache passé minuit
+    private static final String PREFIXE_CACHE = "balance-agee.";
+
+    // Retards détectés depuis la mise en service (alimenté par DetectionRetardsService, tous nœuds confondus)
+    private static final String COMPTEUR_RETARDS = "retards-detectes";
+
+    private static final String REQUETE_FACTURES_OUVERTES =
+            "SELECT c.client_id, f.date_facture, f.montant_ttc " +
+            "FROM factures f JOIN commandes c ON c.id = f.commande_id " +
+            "WHERE f.statut = 'EN_ATTENTE' AND f.date_facture < ?";
+
+    // Date passée : aussi les factures ouvertes à cette date et payées depuis (même borne de fin de journée)
+    private static final String REQUETE_FACTURES_OUVERTES_AU =
+            "SELECT c.client_id, f.date_facture, f.montant_ttc " +
+            "FROM factures f JOIN commandes c ON c.id = f.commande_id " +
+            "WHERE f.date_facture < ? AND (f.statut = 'EN_ATTENTE' " +
+            "OR (f.statut = 'PAYEE' AND f.date_paiement >= ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final CompteurTraitementRepository compteurTraitementRepository;
+    private final CacheAgregats cacheAgregats;
+    private final long timeoutSecondes;
+
+    @Autowired
+    public BalanceAgeeService(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+                              CompteurTraitementRepository compteurTraitementRepository, CacheAgregats cacheAgregats,
+                              @Value("${facture.balance-agee.timeout-secondes:300}") long timeoutSecondes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.compteurTraitementRepository = compteurTraitementRepository;
+        this.cacheAgregats = cacheAgregats;
+        this.timeoutSecondes = timeoutSecondes;
+    }
+
+    /**
+     * Obtenir la balance à une date de référence : celle du jour depuis le cache d'agrégats,
+     * une date passée calculée à la demande (une clé par date saisie ferait grossir le cache), en
+     * comptant les factures alors ouvertes et payées depuis
+     */
+    public ValeurCachee<BalanceAgee> obtenirBalance(LocalDate dateReference) {
+        LocalDate aujourdhui = LocalDate.now();
+        LocalDate reference = dateReference != null ? dateReference : aujourdhui;
+        if (reference.isAfter(aujourdhui)) {
+            throw new RuntimeException("La date de référence ne peut pas être dans le futur : " + reference);
+        }
+        if (reference.isBefore(aujourdhui)) {
+            return ValeurCachee.fraiche(calculer(reference));
+        }
+        return cacheAgregats.obtenir(PREFIXE_CACHE + reference, () -> calculer(reference), timeoutSecondes);
+    }
+
+    /**
+     * Prendre en compte des factures nouvellement en retard : le compteur est cumulé dans la
+     * transaction du lot détecté, les balances en cache sont recalculées
+     */
+    public void signalerNouveauxRetards(int nombre, long centimes) {
+        compteurTraitementRepository.cumuler(COMPTEUR_RETARDS, nombre, centimes, Timestamp.valueOf(LocalDateTime.now()));
+        cacheAgregats.invaliderPrefixe(PREFIXE_CACHE);
+    }
+
+    /**
+     * Prendre en compte des paiements enregistrés en masse : les balances en cache sont recalculées
+     */
+    public void signalerPaiements() {
+        cacheAgregats.invaliderPrefixe(PREFIXE_CACHE);
+    }
+
+    /**
+     * Obtenir une page de clients (triés par montant impayé décroissant)
+     */
+    public Map<String, Object> obtenirPage(BalanceAgee balance, int page, int taille) {
+        if (page < 0 || taille < 1) {
+            throw new RuntimeException("Pagination invalide : page >= 0 et taille >= 1");
+        }
+        int tailleBornee = Math.min(taille, TAILLE_PAGE_MAX);
+        int debut = (int) Math.min((long) page * tailleBornee, balance.nombreClients());
+        int fin = Math.min(debut + tailleBornee, balance.nombreClients());
+
+        Map<String, Object> totaux = new LinkedHashMap<>();
+        for (int t = 0; t < BalanceAgee.TRANCHES.length; t++) {
+            totaux.put(BalanceAgee.TRANCHES[t], montant(balance.totalTranche(t)));
+        }
+        totaux.put("total", montant(balance.total()));
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("page", page);
+        resultat.put("taille", tailleBornee);
+        resultat.put("nombreClients", balance.nombreClients());
+        resultat.put("nombrePages", (balance.nombreClients() + tailleBornee - 1) / tailleBornee);
+        resultat.put("nombreFactures", balance.nombreFactures());
+        resultat.put("totaux", totaux);
+        CompteurTraitement retards = compteurTraitementRepository.findById(COMPTEUR_RETARDS).orElse(null);
+        resultat.put("retardsDetectes", Map.of(
+                "nombreFactures", retards != null ? retards.getNombre() : 0L,
+                "montant", montant(retards != null ? retards.getMontantCentimes() : 0L),
+                "derniereDetection", retards != null ? retards.getDateMiseAJour().toString() : ""));
+        resultat.put("clients", lignesClients(balance, debut, fin));
+        return resultat;
+    }
+
+    /**
+     * Écrire la balance complète en CSV (séparateur ';'), par blocs de clients
+     */
+    public void ecrireCsv(BalanceAgee balance, Writer sortie) throws IOException {
+        sortie.write("clientId;nom;prenom;email;" + String.join(";", BalanceAgee.TRANCHES) + ";total;nombreFactures\n");
+        for (int debut = 0; debut < balance.nombreClients(); debut += TAILLE_PAGE_MAX) {
+            int fin = Math.min(debut + TAILLE_PAGE_MAX, balance.nombreClients());
+            for (Map<String, Object> ligne : lignesClients(balance, debut, fin)) {
+                sortie.write(ligne.values().stream()
+                        .map(v -> v != null ? v.toString().replace(";", ",") : "")
+                        .collect(Collectors.joining(";")));
+                sortie.write('\n');
+            }
+        }
+        sortie.flush();
+    }
+
+    private BalanceAgee calculer(LocalDate reference) {
+        long debut = System.currentTimeMillis();
+        long jourReference = reference.toEpochDay();
+        boolean passee = reference.isBefore(LocalDate.now());
+        Timestamp finReference = Timestamp.valueOf(reference.plusDays(1).atStartOfDay());
+        BalanceAgee balance = new BalanceAgee();
+
+        // Lecture en flux (MySQL : fetchSize = Integer.MIN_VALUE), aucune entité chargée
+        jdbcTemplate.query(connexion -> {
+            PreparedStatement requete = connexion.prepareStatement(
+                    passee ? REQUETE_FACTURES_OUVERTES_AU : REQUETE_FACTURES_OUVERTES,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            requete.setFetchSize(Integer.MIN_VALUE);
+            // Factures émises jusqu'à la date de référence incluse, encore impayées à la fin de ce jour
+            requete.setTimestamp(1, finReference);
+            if (passee) {
+                requete.setTimestamp(2, finReference);
+            }
+            return requete;
+        }, (RowCallbackHandler) ligne -> {
+            Timestamp dateFacture = ligne.getTimestamp(2);
+            BigDecimal montant = ligne.getBigDecimal(3);
+            long age = dateFacture != null ? jourReference - dateFacture.toLocalDateTime().toLocalDate().toEpochDay() : 0;
+            balance.ajouter(ligne.getLong(1), age,
+                    montant != null ? montant.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue() : 0L);
+        });
+
+        log.info("Balance âgée au {} : {} factures, {} clients en {} ms", reference,
+                balance.nombreFactures(), balance.nombreClients(), System.currentTimeMillis() - debut);
+        return balance.figer();
+    }
+
+    private List<Map<String, Object>> lignesClients(BalanceAgee balance, int debut, int fin) {
+        List<Long> ids = new ArrayList<>(fin - debut);
+        for (int i = debut; i < fin; i++) {
+            ids.add(balance.clientId(i));
+        }
+        Map<Long, User> clients = userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<Map<String, Object>> lignes = new ArrayList<>(fin - debut);
+        for (int i = debut; i < fin; i++) {
+            User client = clients.get(balance.clientId(i));
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("clientId", balance.clientId(i));
+            ligne.put("nom", client != null ? client.getNom() : null);
+            ligne.put("prenom", client != null ? client.getPrenom() : null);
+            ligne.put("email", client != null ? client.getEmail() : null);
+            for (int t = 0; t < BalanceAgee.TRANCHES.length; t++) {
+                ligne.put(BalanceAgee.TRANCHES[t], montant(balance.tranche(i, t)));
+            }
+            ligne.put("total", montant(balance.total(i)));
+            ligne.put("nombreFactures", balance.nombreFactures(i));
+            lignes.add(ligne);
+        }
+        return lignes;
+    }
+
+    private static BigDecimal montant(long centimes) {
+        return BigDecimal.valueOf(centimes, 2);
+    }
+}
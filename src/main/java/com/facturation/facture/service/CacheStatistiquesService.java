@@ -0,0 +1,60 @@
+package com.facturation.facture.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+public class CacheStatistiquesService {
+
+    private final SessionFactory sessionFactory;
+
+    @Autowired
+    public CacheStatistiquesService(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * Obtenir les statistiques du cache de second niveau, région par région
+     */
+    public Map<String, Object> obtenirStatistiquesCache() {
+        Statistics statistiques = sessionFactory.getStatistics();
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String nomRegion : statistiques.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistiques.getCacheRegionStatistics(nomRegion);
+            if (region == null) {
+                continue;
+            }
+            long succes = region.getHitCount();
+            long echecs = region.getMissCount();
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("succes", succes);
+            detail.put("echecs", echecs);
+            detail.put("ajouts", region.getPutCount());
+            detail.put("tauxSucces", succes + echecs == 0 ? 0.0 : (double) succes / (succes + echecs));
+            detail.put("elementsEnMemoire", region.getElementCountInMemory());
+            regions.put(nomRegion, detail);
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("statistiquesActives", statistiques.isStatisticsEnabled());
+        resultat.put("requetesCacheSucces", statistiques.getQueryCacheHitCount());
+        resultat.put("requetesCacheEchecs", statistiques.getQueryCacheMissCount());
+        resultat.put("regions", regions);
+        return resultat;
+    }
+
+    /**
+     * Vider toutes les régions (après une modification directe en base)
+     */
+    public void viderCache() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+}
@@ -2,17 +2,24 @@ package com.facturation.facture.service;
 
 import com.facturation.facture.dto.CommandeDTO;
 import com.facturation.facture.dto.LigneCommandeDTO;
+import com.facturation.facture.event.CommandesStatutModifieEvent;
 import com.facturation.facture.model.*;
 import com.facturation.facture.model.enums.StatutCommande;
 import com.facturation.facture.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -31,18 +38,29 @@ public class CommandeService {
     private final ProduitRepository produitRepository;
     private final LigneCommandeRepository ligneCommandeRepository;
     private final FactureRepository factureRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StatistiqueProduitService statistiqueProduitService;
+    private final AnalytiqueFacturesService analytiqueFacturesService;
+
+    private static final int COMMANDES_MAX_PAR_LOT = 1000;
 
     @Autowired
     public CommandeService(CommandeRepository commandeRepository,
                            UserRepository clientRepository,
                            ProduitRepository produitRepository,
                            LigneCommandeRepository ligneCommandeRepository,
-                           FactureRepository factureRepository) {
+                           FactureRepository factureRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           StatistiqueProduitService statistiqueProduitService,
+                           AnalytiqueFacturesService analytiqueFacturesService) {
         this.commandeRepository = commandeRepository;
         this.clientRepository = clientRepository;
         this.produitRepository = produitRepository;
         this.ligneCommandeRepository = ligneCommandeRepository;
         this.factureRepository = factureRepository;
+        this.eventPublisher = eventPublisher;
+        this.statistiqueProduitService = statistiqueProduitService;
+        this.analytiqueFacturesService = analytiqueFacturesService;
     }
 
     /**
@@ -98,6 +116,7 @@ public class CommandeService {
 
         // Sauvegarder la commande d'abord
         Commande commandeSauvegardee = commandeRepository.save(commande);
+        statistiqueProduitService.enregistrerVariations(commandeSauvegardee, StatistiqueProduitService.Instantane.VIDE);
 
         // Créer automatiquement la facture avec tous les détails
         creerFactureComplete(commandeSauvegardee);
@@ -199,6 +218,7 @@ public class CommandeService {
         }
 
         // Changer le statut vers VALIDEE (ou TRAITEE selon votre enum)
+        StatutCommande ancienStatut = commande.getStatut();
         commande.setStatut(StatutCommande.PAYEE); // Ou TRAITEE 
         commande.setDateModification(LocalDateTime.now());
         calculerTotauxCommande(commande);
@@ -206,14 +226,16 @@ public class CommandeService {
         // Mettre à jour automatiquement la facture associée
         mettreAJourFactureAutomatiquement(commande);
 
-        return commandeRepository.save(commande);
+        Commande commandeValidee = commandeRepository.save(commande);
+        eventPublisher.publishEvent(CommandesStatutModifieEvent.pour(commandeValidee, ancienStatut));
+        return commandeValidee;
     }
 
     /**
      * Changer le statut d'une commande (pour l'admin)
      */
     public Commande changerStatutCommande(Long idCommande, StatutCommande nouveauStatut) {
-        Optional<Commande> commandeOpt = commandeRepository.findById(idCommande);
+        Optional<Commande> commandeOpt = commandeRepository.findByIdWithDetails(idCommande);
         if (commandeOpt.isEmpty()) {
             throw new RuntimeException("Commande non trouvée avec l'ID : " + idCommande);
         }
@@ -232,14 +254,80 @@ public class CommandeService {
         // Mettre à jour automatiquement la facture
         mettreAJourFactureAutomatiquement(commande);
 
-        return commandeRepository.save(commande);
+        Commande commandeModifiee = commandeRepository.save(commande);
+        if (ancienStatut != nouveauStatut) {
+            eventPublisher.publishEvent(CommandesStatutModifieEvent.pour(commandeModifiee, ancienStatut));
+        }
+        return commandeModifiee;
+    }
+
+    /**
+     * Changer le statut de plusieurs commandes : transitions validées en mémoire, un UPDATE
+     * pour les commandes et un pour leurs factures, résultat par ID
+     */
+    public List<Map<String, Object>> changerStatutCommandes(List<Long> idsCommandes, StatutCommande nouveauStatut) {
+        if (idsCommandes == null || idsCommandes.isEmpty()) {
+            throw new RuntimeException("La liste des commandes est vide");
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(idsCommandes));
+        if (ids.size() > COMMANDES_MAX_PAR_LOT) {
+            throw new RuntimeException("Au plus " + COMMANDES_MAX_PAR_LOT + " commandes par appel");
+        }
+
+        Map<Long, Object[]> existantes = new HashMap<>();
+        for (Object[] ligne : commandeRepository.verrouillerCommandes(ids)) {
+            existantes.put(((Number) ligne[0]).longValue(), ligne);
+        }
+
+        Map<Long, Map<String, Object>> resultats = new LinkedHashMap<>();
+        List<Long> aModifier = new ArrayList<>();
+        List<CommandesStatutModifieEvent.Transition> transitions = new ArrayList<>();
+        for (Long id : ids) {
+            Map<String, Object> resultat = new LinkedHashMap<>();
+            resultat.put("id", id);
+            resultats.put(id, resultat);
+
+            Object[] commande = existantes.get(id);
+            if (commande == null) {
+                resultat.put("resultat", "INTROUVABLE");
+                continue;
+            }
+            StatutCommande ancienStatut = StatutCommande.valueOf((String) commande[1]);
+            resultat.put("ancienStatut", ancienStatut);
+            if (ancienStatut == nouveauStatut) {
+                resultat.put("resultat", "INCHANGEE");
+            } else if (!peutChangerStatut(ancienStatut, nouveauStatut)) {
+                resultat.put("resultat", "TRANSITION_INVALIDE");
+                resultat.put("message", "Transition de statut invalide : " + ancienStatut + " -> " + nouveauStatut);
+            } else {
+                resultat.put("resultat", "MODIFIEE");
+                aModifier.add(id);
+                transitions.add(new CommandesStatutModifieEvent.Transition(id, ((Number) commande[2]).longValue(),
+                        CommandesStatutModifieEvent.Transition.enDateHeure(commande[3]), (BigDecimal) commande[4],
+                        ancienStatut, nouveauStatut));
+            }
+        }
+
+        if (!aModifier.isEmpty()) {
+            LocalDateTime maintenant = LocalDateTime.now();
+            commandeRepository.changerStatutEnMasse(aModifier, nouveauStatut, maintenant);
+            String statutImpose = nouveauStatut == StatutCommande.PAYEE || nouveauStatut == StatutCommande.ANNULEE
+                    ? nouveauStatut.name() : "";
+            factureRepository.synchroniserAvecCommandes(aModifier, statutImpose, maintenant);
+
+            // UPDATE en masse : copie colonnaire des factures rafraîchie après commit
+            analytiqueFacturesService.rafraichirApresCommit(factureRepository.findIdsParCommandeIds(aModifier));
+            eventPublisher.publishEvent(new CommandesStatutModifieEvent(transitions));
+        }
+
+        return new ArrayList<>(resultats.values());
     }
 
     /**
      * Mettre à jour le mode de paiement d'une facture
      */
     public Commande changerModePaiement(Long idCommande, ModePaiement modePaiement) {
-        Optional<Commande> commandeOpt = commandeRepository.findById(idCommande);
+        Optional<Commande> commandeOpt = commandeRepository.findByIdWithDetails(idCommande);
         if (commandeOpt.isEmpty()) {
             throw new RuntimeException("Commande non trouvée avec l'ID : " + idCommande);
         }
@@ -382,7 +470,7 @@ public class CommandeService {
      * Ajouter un produit à une commande
      */
     public Commande ajouterProduitACommande(Long idCommande, Long idProduit, Integer quantite) {
-        Optional<Commande> commandeOpt = commandeRepository.findById(idCommande);
+        Optional<Commande> commandeOpt = commandeRepository.findByIdWithDetails(idCommande);
         if (commandeOpt.isEmpty()) {
             throw new RuntimeException("Commande non trouvée avec l'ID : " + idCommande);
         }
@@ -403,11 +491,13 @@ public class CommandeService {
             throw new RuntimeException("Le produit '" + produit.getNom() + "' n'est plus disponible");
         }
 
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
         Optional<LigneCommande> ligneExistante = ligneCommandeRepository.findByCommandeAndProduit(commande, produit);
 
         if (ligneExistante.isPresent()) {
             LigneCommande ligne = ligneExistante.get();
             ligne.setQuantite(ligne.getQuantite() + quantite);
+            ligne.calculerSousTotal();
             ligneCommandeRepository.save(ligne);
         } else {
             LigneCommande nouvelleLigne = new LigneCommande();
@@ -416,11 +506,13 @@ public class CommandeService {
             nouvelleLigne.setQuantite(quantite);
             nouvelleLigne.setPrixUnitaire(produit.getPrix());
             nouvelleLigne.calculerSousTotal();
+            commande.ajouterLigneCommande(nouvelleLigne);
             ligneCommandeRepository.save(nouvelleLigne);
         }
 
         calculerTotauxCommande(commande);
         Commande commandeModifiee = commandeRepository.save(commande);
+        statistiqueProduitService.enregistrerVariations(commandeModifiee, avant);
 
         // Mettre à jour la facture automatiquement
         mettreAJourFactureAutomatiquement(commandeModifiee);
@@ -480,7 +572,7 @@ public class CommandeService {
      * Annuler une commande
      */
     public Commande annulerCommande(Long idCommande) {
-        Optional<Commande> commandeOpt = commandeRepository.findById(idCommande);
+        Optional<Commande> commandeOpt = commandeRepository.findByIdWithDetails(idCommande);
         if (commandeOpt.isEmpty()) {
             throw new RuntimeException("Commande non trouvée avec l'ID : " + idCommande);
         }
@@ -495,13 +587,16 @@ public class CommandeService {
             throw new RuntimeException("Impossible d'annuler une commande déjà livrée");
         }
 
+        StatutCommande ancienStatut = commande.getStatut();
         commande.setStatut(StatutCommande.ANNULEE);
         commande.setDateModification(LocalDateTime.now());
 
         // Mettre à jour automatiquement la facture associée
         mettreAJourFactureAutomatiquement(commande);
 
-        return commandeRepository.save(commande);
+        Commande commandeAnnulee = commandeRepository.save(commande);
+        eventPublisher.publishEvent(CommandesStatutModifieEvent.pour(commandeAnnulee, ancienStatut));
+        return commandeAnnulee;
     }
 
     /**
@@ -531,11 +626,13 @@ public class CommandeService {
             throw new RuntimeException("Produit non trouvé dans cette commande");
         }
 
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
         commande.getLignesCommande().remove(ligneASupprimer);
         ligneCommandeRepository.delete(ligneASupprimer);
 
         calculerTotauxCommande(commande);
         Commande commandeModifiee = commandeRepository.save(commande);
+        statistiqueProduitService.enregistrerVariations(commandeModifiee, avant);
 
         // Mettre à jour la facture automatiquement
         mettreAJourFactureAutomatiquement(commandeModifiee);
@@ -574,12 +671,14 @@ public class CommandeService {
             throw new RuntimeException("Produit non trouvé dans cette commande");
         }
 
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
         ligneAModifier.setQuantite(nouvelleQuantite);
         ligneAModifier.calculerSousTotal();
         ligneCommandeRepository.save(ligneAModifier);
 
         calculerTotauxCommande(commande);
         Commande commandeModifiee = commandeRepository.save(commande);
+        statistiqueProduitService.enregistrerVariations(commandeModifiee, avant);
 
         // Mettre à jour la facture automatiquement
         mettreAJourFactureAutomatiquement(commandeModifiee);
@@ -587,11 +686,116 @@ public class CommandeService {
         return commandeModifiee;
     }
 
+    /**
+     * Remplacer l'ensemble des lignes d'une commande (diff avec les lignes existantes)
+     */
+    public Commande remplacerLignesCommande(Long idCommande, List<LigneCommandeDTO> lignesSouhaitees) {
+        Optional<Commande> commandeOpt = commandeRepository.findByIdWithLignesCommande(idCommande);
+        if (commandeOpt.isEmpty()) {
+            throw new RuntimeException("Commande non trouvée avec l'ID : " + idCommande);
+        }
+
+        Commande commande = commandeOpt.get();
+
+        if (!peutEtreModifiee(commande)) {
+            throw new RuntimeException("Cette commande ne peut plus être modifiée");
+        }
+
+        if (lignesSouhaitees == null || lignesSouhaitees.isEmpty()) {
+            throw new RuntimeException("Une commande doit contenir au moins un produit");
+        }
+
+        // Quantités souhaitées par produit (ordre de la requête conservé)
+        Map<Long, Integer> quantitesSouhaitees = new LinkedHashMap<>();
+        for (LigneCommandeDTO ligneDTO : lignesSouhaitees) {
+            if (ligneDTO.getProduit() == null || ligneDTO.getProduit().getId() == null) {
+                throw new RuntimeException("Produit manquant dans une ligne de commande");
+            }
+            Long idProduit = ligneDTO.getProduit().getId();
+            if (ligneDTO.getQuantite() == null || ligneDTO.getQuantite() <= 0) {
+                throw new RuntimeException("Quantité invalide pour le produit " + idProduit);
+            }
+            if (quantitesSouhaitees.put(idProduit, ligneDTO.getQuantite()) != null) {
+                throw new RuntimeException("Le produit " + idProduit + " apparaît plusieurs fois dans la commande");
+            }
+        }
+
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
+
+        // Lignes actuelles indexées par produit (les doublons éventuels sont supprimés)
+        Map<Long, LigneCommande> lignesActuelles = new HashMap<>();
+        List<LigneCommande> aSupprimer = new ArrayList<>();
+        for (LigneCommande ligne : commande.getLignesCommande()) {
+            LigneCommande doublon = lignesActuelles.put(ligne.getProduit().getId(), ligne);
+            if (doublon != null) {
+                aSupprimer.add(doublon);
+            }
+        }
+
+        // Les nouveaux produits sont chargés en une seule requête
+        List<Long> idsNouveauxProduits = quantitesSouhaitees.keySet().stream()
+                .filter(idProduit -> !lignesActuelles.containsKey(idProduit))
+                .collect(Collectors.toList());
+        Map<Long, Produit> nouveauxProduits = new HashMap<>();
+        if (!idsNouveauxProduits.isEmpty()) {
+            for (Produit produit : produitRepository.findAllById(idsNouveauxProduits)) {
+                nouveauxProduits.put(produit.getId(), produit);
+            }
+        }
+
+        List<LigneCommande> aInserer = new ArrayList<>();
+        List<LigneCommande> aModifier = new ArrayList<>();
+        for (Map.Entry<Long, Integer> souhait : quantitesSouhaitees.entrySet()) {
+            LigneCommande ligneExistante = lignesActuelles.remove(souhait.getKey());
+            if (ligneExistante != null) {
+                if (!ligneExistante.getQuantite().equals(souhait.getValue())) {
+                    ligneExistante.setQuantite(souhait.getValue());
+                    ligneExistante.calculerSousTotal();
+                    aModifier.add(ligneExistante);
+                }
+                continue;
+            }
+
+            Produit produit = nouveauxProduits.get(souhait.getKey());
+            if (produit == null) {
+                throw new RuntimeException("Produit non trouvé avec l'ID : " + souhait.getKey());
+            }
+            if (!produit.getDisponible()) {
+                throw new RuntimeException("Le produit '" + produit.getNom() + "' n'est plus disponible");
+            }
+            aInserer.add(new LigneCommande(souhait.getValue(), produit.getPrix(), commande, produit));
+        }
+
+        // Les lignes restantes ne font plus partie de la commande
+        aSupprimer.addAll(lignesActuelles.values());
+
+        // Appliquer le diff par lots (un seul DELETE, INSERT/UPDATE regroupés au flush)
+        if (!aSupprimer.isEmpty()) {
+            commande.getLignesCommande().removeAll(aSupprimer);
+            ligneCommandeRepository.deleteAllInBatch(aSupprimer);
+        }
+        if (!aModifier.isEmpty()) {
+            ligneCommandeRepository.saveAll(aModifier);
+        }
+        if (!aInserer.isEmpty()) {
+            commande.getLignesCommande().addAll(aInserer);
+            ligneCommandeRepository.saveAll(aInserer);
+        }
+
+        // Totaux et facture recalculés une seule fois
+        calculerTotauxCommande(commande);
+        Commande commandeModifiee = commandeRepository.save(commande);
+        statistiqueProduitService.enregistrerVariations(commandeModifiee, avant);
+        mettreAJourFactureAutomatiquement(commandeModifiee);
+
+        return commandeModifiee;
+    }
+
     /**
      * Mettre à jour le commentaire d'une commande
      */
     public Commande mettreAJourCommentaire(Long idCommande, String commentaire) {
-        Optional<Commande> commandeOpt = commandeRepository.findById(idCommande);
+        Optional<Commande> commandeOpt = commandeRepository.findByIdWithDetails(idCommande);
         if (commandeOpt.isEmpty()) {
             throw new RuntimeException("Commande non trouvée avec l'ID : " + idCommande);
         }
@@ -0,0 +1,281 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.model.enums.StatutCommande;
+import com.facturation.facture.rapport.DeclarationTVA;
+import com.facturation.facture.rapport.PartitionTVA;
+import com.facturation.facture.repository.CommandeRepository;
+import com.lowagie.text.*;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Déclaration de TVA annuelle découpée en partitions mensuelles calculées en parallèle
+ * (par taux et par statut). Les mois clôturés sont conservés en cache avec la version de leurs
+ * commandes, relue en base à chaque déclaration : toute écriture, quel que soit son auteur
+ * (JPA, UPDATE en masse, rétention, autre nœud), fait recalculer le mois qu'elle touche.
+ */
+@Service
+public class DeclarationTVAService {
+
+    private final CommandeRepository commandeRepository;
+    private final AgregationParallele agregationParallele;
+
+    private static final String VERSION_SANS_COMMANDE = "0";
+
+    private final Map<YearMonth, PartitionVersionnee> partitionsCloturees = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DeclarationTVAService(CommandeRepository commandeRepository, AgregationParallele agregationParallele) {
+        this.commandeRepository = commandeRepository;
+        this.agregationParallele = agregationParallele;
+    }
+
+    /**
+     * Obtenir la déclaration d'une année (mois écoulés uniquement)
+     */
+    public DeclarationTVA obtenirDeclaration(int annee, boolean recalculer) {
+        YearMonth moisCourant = YearMonth.now();
+        if (annee < 2000 || annee > moisCourant.getYear()) {
+            throw new RuntimeException("Année de déclaration invalide : " + annee);
+        }
+        int dernierMois = annee == moisCourant.getYear() ? moisCourant.getMonthValue() : 12;
+
+        // Versions lues avant tout calcul : un commit concurrent fera recalculer le mois la fois suivante
+        Map<YearMonth, String> versions = versionsMensuelles(annee, dernierMois);
+
+        Map<YearMonth, PartitionTVA> partitions = new LinkedHashMap<>();
+        Map<String, Supplier<?>> aCalculer = new LinkedHashMap<>();
+        for (int m = 1; m <= dernierMois; m++) {
+            YearMonth mois = YearMonth.of(annee, m);
+            PartitionVersionnee enCache = recalculer ? null : partitionsCloturees.get(mois);
+            boolean aJour = enCache != null && enCache.version.equals(versions.get(mois));
+            partitions.put(mois, aJour ? enCache.partition : null);
+            if (!aJour) {
+                aCalculer.put(mois.toString(), () -> calculerPartition(mois, mois.isBefore(moisCourant)));
+            }
+        }
+
+        if (!aCalculer.isEmpty()) {
+            AgregationParallele.Resultats resultats = agregationParallele.executer(aCalculer);
+            if (resultats.estPartiel()) {
+                // Une déclaration incomplète ne doit jamais être produite
+                throw new RuntimeException("Déclaration incomplète, mois en erreur : " + resultats.getErreurs());
+            }
+            for (String mois : aCalculer.keySet()) {
+                PartitionTVA partition = resultats.get(mois);
+                partitions.put(partition.getMois(), partition);
+                if (partition.isCloture()) {
+                    partitionsCloturees.put(partition.getMois(),
+                            new PartitionVersionnee(partition, versions.get(partition.getMois())));
+                }
+            }
+        }
+        return new DeclarationTVA(annee, new ArrayList<>(partitions.values()));
+    }
+
+    /**
+     * Oublier les partitions de mois dont les commandes ont été supprimées ; la version relue
+     * les ferait déjà recalculer, ceci libère la mémoire sans attendre la prochaine déclaration
+     */
+    public void invaliderMois(Collection<YearMonth> mois) {
+        mois.forEach(partitionsCloturees::remove);
+    }
+
+    /**
+     * Représentation JSON de la déclaration
+     */
+    public Map<String, Object> enMap(DeclarationTVA declaration) {
+        List<Map<String, Object>> mois = new ArrayList<>();
+        for (PartitionTVA partition : declaration.getPartitions()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("mois", partition.getMois().toString());
+            m.put("cloture", partition.isCloture());
+            m.put("calculeeLe", partition.getCalculeeLe());
+            m.put("detail", partition.getLignes());
+            m.put("declarable", totauxEnListe(partition.getDeclarableParTaux()));
+            mois.add(m);
+        }
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("annee", declaration.getAnnee());
+        resultat.put("genereeLe", declaration.getGenereeLe());
+        resultat.put("mois", mois);
+        resultat.put("totalAnnuel", totauxEnListe(declaration.getDeclarableParTaux()));
+        return resultat;
+    }
+
+    /**
+     * Écrire la déclaration en CSV (séparateur ';') : détail par mois, taux et statut puis totaux déclarables
+     */
+    public void ecrireCsv(DeclarationTVA declaration, Writer sortie) throws IOException {
+        sortie.write("mois;tauxTVA;statut;nombreCommandes;baseHT;montantTVA;totalTTC\n");
+        for (PartitionTVA partition : declaration.getPartitions()) {
+            for (PartitionTVA.Ligne ligne : partition.getLignes()) {
+                sortie.write(partition.getMois() + ";" + ligne.getTauxTVA() + ";" + ligne.getStatut() + ";"
+                        + ligne.getNombreCommandes() + ";" + ligne.getBaseHT() + ";" + ligne.getMontantTVA() + ";"
+                        + ligne.getTotalTTC() + "\n");
+            }
+        }
+        sortie.write("\nperiode;tauxTVA;baseHT;montantTVA;totalTTC\n");
+        for (PartitionTVA partition : declaration.getPartitions()) {
+            for (Map.Entry<BigDecimal, BigDecimal[]> taux : partition.getDeclarableParTaux().entrySet()) {
+                ecrireTotal(sortie, partition.getMois().toString(), taux);
+            }
+        }
+        for (Map.Entry<BigDecimal, BigDecimal[]> taux : declaration.getDeclarableParTaux().entrySet()) {
+            ecrireTotal(sortie, String.valueOf(declaration.getAnnee()), taux);
+        }
+        sortie.flush();
+    }
+
+    /**
+     * Écrire la déclaration en PDF directement dans le flux de sortie
+     */
+    public void ecrirePdf(DeclarationTVA declaration, OutputStream sortie) {
+        Document document = new Document(PageSize.A4);
+        try {
+            PdfWriter.getInstance(document, sortie);
+            document.open();
+
+            Font titleFont = new Font(Font.HELVETICA, 18, Font.BOLD, Color.BLACK);
+            Font headerFont = new Font(Font.HELVETICA, 12, Font.BOLD, Color.BLACK);
+            Font normalFont = new Font(Font.HELVETICA, 9, Font.NORMAL, Color.BLACK);
+            Font boldFont = new Font(Font.HELVETICA, 9, Font.BOLD, Color.BLACK);
+
+            Paragraph title = new Paragraph("DÉCLARATION DE TVA " + declaration.getAnnee(), titleFont);
+            title.setAlignment(Element.ALIGN_CENTER);
+            title.setSpacingAfter(20f);
+            document.add(title);
+
+            // Montants déclarables : commandes payées ou livrées
+            document.add(new Paragraph("TOTAUX DÉCLARABLES PAR MOIS", headerFont));
+            PdfPTable table = tableau(new String[]{"Période", "Taux TVA", "Base HT", "TVA", "Total TTC"}, boldFont);
+            for (PartitionTVA partition : declaration.getPartitions()) {
+                for (Map.Entry<BigDecimal, BigDecimal[]> taux : partition.getDeclarableParTaux().entrySet()) {
+                    ajouterTotal(table, partition.getMois().toString(), taux, normalFont);
+                }
+            }
+            for (Map.Entry<BigDecimal, BigDecimal[]> taux : declaration.getDeclarableParTaux().entrySet()) {
+                ajouterTotal(table, "Total " + declaration.getAnnee(), taux, boldFont);
+            }
+            document.add(table);
+            document.add(new Paragraph(" "));
+
+            document.add(new Paragraph("DÉTAIL PAR TAUX ET STATUT", headerFont));
+            PdfPTable detail = tableau(new String[]{"Mois", "Taux TVA", "Statut", "Commandes", "Base HT", "TVA", "Total TTC"}, boldFont);
+            for (PartitionTVA partition : declaration.getPartitions()) {
+                for (PartitionTVA.Ligne ligne : partition.getLignes()) {
+                    detail.addCell(new PdfPCell(new Paragraph(partition.getMois().toString(), normalFont)));
+                    detail.addCell(new PdfPCell(new Paragraph(ligne.getTauxTVA() + "%", normalFont)));
+                    detail.addCell(new PdfPCell(new Paragraph(ligne.getStatut().name(), normalFont)));
+                    detail.addCell(new PdfPCell(new Paragraph(String.valueOf(ligne.getNombreCommandes()), normalFont)));
+                    detail.addCell(new PdfPCell(new Paragraph(ligne.getBaseHT() + " DT", normalFont)));
+                    detail.addCell(new PdfPCell(new Paragraph(ligne.getMontantTVA() + " DT", normalFont)));
+                    detail.addCell(new PdfPCell(new Paragraph(ligne.getTotalTTC() + " DT", normalFont)));
+                }
+            }
+            document.add(detail);
+        } catch (DocumentException e) {
+            throw new RuntimeException("Erreur lors de la génération du PDF de déclaration: " + e.getMessage(), e);
+        } finally {
+            if (document.isOpen()) {
+                document.close();
+            }
+        }
+    }
+
+    /**
+     * Version des commandes de chaque mois : nombre, dernière modification et somme des instants
+     * de modification (une écriture change la somme même quand elle n'est pas la plus récente)
+     */
+    private Map<YearMonth, String> versionsMensuelles(int annee, int dernierMois) {
+        Map<YearMonth, String> versions = new LinkedHashMap<>();
+        for (int m = 1; m <= dernierMois; m++) {
+            versions.put(YearMonth.of(annee, m), VERSION_SANS_COMMANDE);
+        }
+        for (Object[] version : commandeRepository.findVersionsMensuelles(
+                YearMonth.of(annee, 1).atDay(1).atStartOfDay(),
+                YearMonth.of(annee, dernierMois).plusMonths(1).atDay(1).atStartOfDay())) {
+            int mois = ((Number) version[0]).intValue();
+            versions.put(YearMonth.of(mois / 100, mois % 100), version[1] + "|" + version[2] + "|" + version[3]);
+        }
+        return versions;
+    }
+
+    private PartitionTVA calculerPartition(YearMonth mois, boolean cloture) {
+        List<PartitionTVA.Ligne> lignes = new ArrayList<>();
+        for (Object[] total : commandeRepository.getTotauxTVAParTauxEtStatut(
+                mois.atDay(1).atStartOfDay(), mois.plusMonths(1).atDay(1).atStartOfDay())) {
+            lignes.add(new PartitionTVA.Ligne((BigDecimal) total[0], (StatutCommande) total[1], (Long) total[2],
+                    (BigDecimal) total[3], (BigDecimal) total[4], (BigDecimal) total[5]));
+        }
+        return new PartitionTVA(mois, lignes, cloture);
+    }
+
+    private static List<Map<String, Object>> totauxEnListe(Map<BigDecimal, BigDecimal[]> parTaux) {
+        List<Map<String, Object>> totaux = new ArrayList<>();
+        parTaux.forEach((taux, montants) -> {
+            Map<String, Object> total = new LinkedHashMap<>();
+            total.put("tauxTVA", taux);
+            total.put("baseHT", montants[0]);
+            total.put("montantTVA", montants[1]);
+            total.put("totalTTC", montants[2]);
+            totaux.add(total);
+        });
+        return totaux;
+    }
+
+    private static void ecrireTotal(Writer sortie, String periode, Map.Entry<BigDecimal, BigDecimal[]> taux) throws IOException {
+        BigDecimal[] montants = taux.getValue();
+        sortie.write(periode + ";" + taux.getKey() + ";" + montants[0] + ";" + montants[1] + ";" + montants[2] + "\n");
+    }
+
+    private static PdfPTable tableau(String[] entetes, Font font) {
+        PdfPTable table = new PdfPTable(entetes.length);
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        for (String entete : entetes) {
+            PdfPCell cell = new PdfPCell(new Paragraph(entete, font));
+            cell.setBackgroundColor(Color.LIGHT_GRAY);
+            cell.setPadding(6f);
+            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            table.addCell(cell);
+        }
+        return table;
+    }
+
+    private static void ajouterTotal(PdfPTable table, String periode, Map.Entry<BigDecimal, BigDecimal[]> taux, Font font) {
+        BigDecimal[] montants = taux.getValue();
+        table.addCell(new PdfPCell(new Paragraph(periode, font)));
+        table.addCell(new PdfPCell(new Paragraph(taux.getKey() + "%", font)));
+        table.addCell(new PdfPCell(new Paragraph(montants[0] + " DT", font)));
+        table.addCell(new PdfPCell(new Paragraph(montants[1] + " DT", font)));
+        table.addCell(new PdfPCell(new Paragraph(montants[2] + " DT", font)));
+    }
+
+    private static class PartitionVersionnee {
+        private final PartitionTVA partition;
+        private final String version;
+
+        PartitionVersionnee(PartitionTVA partition, String version) {
+            this.partition = partition;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.event.NotificationsCreeesEvent;
+import com.facturation.facture.model.CurseurTraitement;
+import com.facturation.facture.model.User;
+import com.facturation.facture.model.enums.Role;
+import com.facturation.facture.model.enums.TypeNotification;
+import com.facturation.facture.repository.CurseurTraitementRepository;
+import com.facturation.facture.repository.FactureRepository;
+import com.facturation.facture.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Détection incrémentale des factures en retard : un filigrane (dateFacture, id) mémorise la
+ * dernière facture examinée, chaque exécution ne lit que les factures passées sous le seuil
+ * d'échéance depuis la précédente, les marque en retard, notifie le client et les admins et
+ * alimente la balance âgée. Le coût d'une exécution suit le nombre de nouveaux retards.
+ */
+@Service
+public class DetectionRetardsService {
+
+    private static final Logger log = LoggerFactory.getLogger(DetectionRetardsService.class);
+
+    private static final String CURSEUR = "detection-retards";
+
+    private static final String INSERTION_NOTIFICATION =
+            "INSERT INTO notifications (titre, message, type, lue, date_creation, user_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final FactureRepository factureRepository;
+    private final CurseurTraitementRepository curseurTraitementRepository;
+    private final UserRepository userRepository;
+    private final BailService bailService;
+    private final BalanceAgeeService balanceAgeeService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionLot;
+
+    private final int delaiPaiementJours;
+    private final int tailleLot;
+
+    @Autowired
+    public DetectionRetardsService(FactureRepository factureRepository,
+                                   CurseurTraitementRepository curseurTraitementRepository,
+                                   UserRepository userRepository,
+                                   BailService bailService,
+                                   BalanceAgeeService balanceAgeeService,
+                                   JdbcTemplate jdbcTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${facture.retards.delai-paiement-jours:30}") int delaiPaiementJours,
+                                   @Value("${facture.retards.taille-lot:500}") int tailleLot) {
+        this.factureRepository = factureRepository;
+        this.curseurTraitementRepository = curseurTraitementRepository;
+        this.userRepository = userRepository;
+        this.bailService = bailService;
+        this.balanceAgeeService = balanceAgeeService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionLot = new TransactionTemplate(transactionManager);
+        this.delaiPaiementJours = delaiPaiementJours;
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Examiner les factures passées sous le seuil d'échéance depuis la dernière exécution
+     */
+    @Scheduled(fixedDelayString = "${facture.retards.intervalle-ms:600000}")
+    @VerrouDistribue(value = CURSEUR, dureeSecondes = 120)
+    public void detecterRetards() {
+        try {
+            LocalDateTime seuil = LocalDateTime.now().minusDays(delaiPaiementJours);
+            int total = 0;
+            int traitees;
+            // Un lot par transaction : filigrane, marquage et notifications validés ensemble ;
+            // un lot plein signifie qu'il en reste peut-être d'autres
+            do {
+                traitees = transactionLot.execute(status -> traiterLot(seuil));
+                total += traitees;
+            } while (traitees == tailleLot);
+            if (total > 0) {
+                log.info("Détection des retards : {} nouvelles factures en retard", total);
+            }
+        } catch (RuntimeException e) {
+            log.error("Échec de la détection des factures en retard", e);
+        }
+    }
+
+    /**
+     * Traiter le lot suivant après le filigrane, renvoie le nombre de factures du lot
+     */
+    private int traiterLot(LocalDateTime seuil) {
+        // Le filigrane n'avance que sous le bail courant (jeton vérifié, ligne verrouillée jusqu'au commit)
+        bailService.verifierBailCourant();
+        Optional<CurseurTraitement> existant = curseurTraitementRepository.findById(CURSEUR);
+        if (existant.isEmpty()) {
+            // Premier passage : l'arriéré est marqué sans notification, on ne suit que les nouveaux retards
+            int arriere = factureRepository.marquerArriereEnRetard(seuil);
+            curseurTraitementRepository.save(new CurseurTraitement(CURSEUR, seuil, Long.MAX_VALUE));
+            log.info("Filigrane de détection des retards initialisé au {} ({} factures d'arriéré marquées)", seuil, arriere);
+            balanceAgeeService.signalerNouveauxRetards(0, 0);
+            return 0;
+        }
+        CurseurTraitement curseur = existant.get();
+        if (!curseur.getPositionDate().isBefore(seuil)) {
+            return 0;
+        }
+
+        List<Object[]> factures = factureRepository.findNouvellesFacturesEnRetard(seuil,
+                curseur.getPositionDate(), curseur.getPositionId(), PageRequest.of(0, tailleLot));
+        if (factures.size() < tailleLot) {
+            // Tout ce qui précède le seuil a été examiné
+            curseur.avancer(seuil, Long.MAX_VALUE);
+        } else {
+            Object[] derniere = factures.get(factures.size() - 1);
+            curseur.avancer((LocalDateTime) derniere[2], (Long) derniere[0]);
+        }
+        curseurTraitementRepository.save(curseur);
+        if (factures.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(factures.size());
+        factures.forEach(facture -> ids.add((Long) facture[0]));
+        factureRepository.marquerEnRetard(ids);
+        notifier(factures);
+
+        long centimes = 0;
+        for (Object[] facture : factures) {
+            BigDecimal montant = (BigDecimal) facture[3];
+            if (montant != null) {
+                centimes += montant.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+            }
+        }
+        balanceAgeeService.signalerNouveauxRetards(factures.size(), centimes);
+        return factures.size();
+    }
+
+    /**
+     * Une notification par facture pour son client, un récapitulatif du lot pour chaque admin
+     */
+    private void notifier(List<Object[]> factures) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        Timestamp horodatage = Timestamp.valueOf(maintenant);
+        List<Object[]> lignes = new ArrayList<>();
+        List<NotificationsCreeesEvent.NotificationCreee> creees = new ArrayList<>();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Object[] facture : factures) {
+            Long clientId = (Long) facture[4];
+            BigDecimal montant = facture[3] != null ? (BigDecimal) facture[3] : BigDecimal.ZERO;
+            total = total.add(montant);
+            String titre = "Facture en retard de paiement";
+            String message = "La facture " + facture[1] + " de " + montant + " DT n'est pas réglée après "
+                    + delaiPaiementJours + " jours";
+            lignes.add(new Object[]{titre, message, TypeNotification.RETARD_PAIEMENT.name(), false, horodatage, clientId});
+            creees.add(new NotificationsCreeesEvent.NotificationCreee(clientId, titre, message,
+                    TypeNotification.RETARD_PAIEMENT, maintenant));
+        }
+
+        String titreAdmin = "Nouvelles factures en retard";
+        String messageAdmin = factures.size() + " factures sont passées en retard de paiement (total " + total + " DT)";
+        for (User admin : userRepository.findByRoleAndActifTrue(Role.ADMIN)) {
+            lignes.add(new Object[]{titreAdmin, messageAdmin, TypeNotification.RETARD_PAIEMENT.name(), false,
+                    horodatage, admin.getId()});
+            creees.add(new NotificationsCreeesEvent.NotificationCreee(admin.getId(), titreAdmin, messageAdmin,
+                    TypeNotification.RETARD_PAIEMENT, maintenant));
+        }
+
+        jdbcTemplate.batchUpdate(INSERTION_NOTIFICATION, lignes);
+        eventPublisher.publishEvent(new NotificationsCreeesEvent(creees));
+    }
+}
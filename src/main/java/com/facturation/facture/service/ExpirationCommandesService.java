@@ -0,0 +1,143 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.event.CommandesStatutModifieEvent;
+import com.facturation.facture.maintenance.ProgressionTraitement;
+import com.facturation.facture.model.enums.StatutCommande;
+import com.facturation.facture.model.enums.StatutFacture;
+import com.facturation.facture.repository.CommandeRepository;
+import com.facturation.facture.repository.FactureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expiration des commandes restées EN_ATTENTE au-delà d'un âge configurable : passage en
+ * ANNULEE par lots (un UPDATE pour les commandes et un pour leurs factures par lot), sous bail
+ * pour qu'un seul nœud du cluster l'exécute.
+ */
+@Service
+public class ExpirationCommandesService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpirationCommandesService.class);
+
+    private static final String BAIL = "expiration-commandes";
+
+    private final CommandeRepository commandeRepository;
+    private final FactureRepository factureRepository;
+    private final BailService bailService;
+    private final AnalytiqueFacturesService analytiqueFacturesService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionLot;
+
+    private final Duration ageMaximum;
+    private final int tailleLot;
+
+    private volatile ProgressionTraitement derniereExecution;
+
+    @Autowired
+    public ExpirationCommandesService(CommandeRepository commandeRepository,
+                                      FactureRepository factureRepository,
+                                      BailService bailService,
+                                      AnalytiqueFacturesService analytiqueFacturesService,
+                                      ApplicationEventPublisher eventPublisher,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${facture.expiration-commandes.age-heures:72}") long ageHeures,
+                                      @Value("${facture.expiration-commandes.taille-lot:500}") int tailleLot) {
+        this.commandeRepository = commandeRepository;
+        this.factureRepository = factureRepository;
+        this.bailService = bailService;
+        this.analytiqueFacturesService = analytiqueFacturesService;
+        this.eventPublisher = eventPublisher;
+        this.transactionLot = new TransactionTemplate(transactionManager);
+        this.ageMaximum = Duration.ofHours(ageHeures);
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Expirer les commandes en attente trop anciennes (uniquement sur le nœud qui détient le bail)
+     */
+    @Scheduled(fixedDelayString = "${facture.expiration-commandes.intervalle-ms:300000}")
+    @VerrouDistribue(value = BAIL, dureeSecondes = 120)
+    public void expirerCommandes() {
+        ProgressionTraitement progression = new ProgressionTraitement(BAIL);
+        derniereExecution = progression;
+        LocalDateTime dateExpiration = LocalDateTime.now().minus(ageMaximum);
+        long dernierId = 0;
+        try {
+            while (true) {
+                List<Long> ids = commandeRepository.findIdsCommandesEnAttente(
+                        dateExpiration, dernierId, PageRequest.of(0, tailleLot));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                int expirees = transactionLot.execute(status -> expirerLot(ids));
+                dernierId = ids.get(ids.size() - 1);
+                progression.lotTraite(expirees, dernierId);
+
+                if (ids.size() < tailleLot) {
+                    break;
+                }
+            }
+            progression.terminer();
+            if (progression.getLignes() > 0) {
+                log.info("Commandes en attente expirées : {} ({} lignes/s)",
+                        progression.getLignes(), Math.round(progression.debit()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Échec de l'expiration des commandes après l'ID {}", dernierId, e);
+            progression.echouer(e.getMessage());
+        }
+    }
+
+    public Map<String, Object> obtenirDerniereExecution() {
+        ProgressionTraitement progression = derniereExecution;
+        return progression != null ? progression.resume() : Map.of();
+    }
+
+    /**
+     * Un lot : verrouiller les commandes encore en attente, les annuler et annuler leurs factures
+     */
+    private int expirerLot(List<Long> ids) {
+        // Un ancien détenteur du bail ne peut plus écrire
+        bailService.verifierBailCourant();
+        List<Object[]> commandes = commandeRepository.verrouillerCommandesEnAttente(ids);
+        if (commandes.isEmpty()) {
+            return 0;
+        }
+        List<Long> commandeIds = new ArrayList<>(commandes.size());
+        List<CommandesStatutModifieEvent.Transition> transitions = new ArrayList<>(commandes.size());
+        for (Object[] ligne : commandes) {
+            Long id = ((Number) ligne[0]).longValue();
+            commandeIds.add(id);
+            transitions.add(new CommandesStatutModifieEvent.Transition(id, ((Number) ligne[1]).longValue(),
+                    CommandesStatutModifieEvent.Transition.enDateHeure(ligne[2]), (BigDecimal) ligne[3],
+                    StatutCommande.EN_ATTENTE, StatutCommande.ANNULEE));
+        }
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        int expirees = commandeRepository.changerStatutEnMasse(commandeIds, StatutCommande.ANNULEE, maintenant);
+        factureRepository.changerStatutParCommandeIds(commandeIds, StatutFacture.ANNULEE,
+                StatutCommande.ANNULEE.name(), maintenant);
+
+        // UPDATE en masse : ni listener JPA ni copie colonnaire à jour sans cette étape
+        analytiqueFacturesService.rafraichirApresCommit(factureRepository.findIdsParCommandeIds(commandeIds));
+
+        eventPublisher.publishEvent(new CommandesStatutModifieEvent(transitions));
+        return expirees;
+    }
+}
@@ -0,0 +1,255 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.dto.FacturePdfDTO;
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+import com.lowagie.text.*;
+import com.lowagie.text.pdf.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Rendu PDF des factures en deux temps :
+ * lecture courte en transaction puis rendu sur un exécuteur dédié, sans connexion JDBC.
+ */
+@Service
+public class FacturePdfService {
+
+    private final FactureService factureService;
+    private final ThreadPoolTaskExecutor pdfExecutor;
+
+    @Value("${facture.pdf.timeout-secondes:30}")
+    private long timeoutSecondes;
+
+    @Autowired
+    public FacturePdfService(FactureService factureService,
+                             @Qualifier("pdfExecutor") ThreadPoolTaskExecutor pdfExecutor) {
+        this.factureService = factureService;
+        this.pdfExecutor = pdfExecutor;
+    }
+
+    /**
+     * Générer et exporter une facture en PDF
+     */
+    public ByteArrayResource exporterFacturePDF(Long factureId) {
+        // Phase 1 : instantané complet, la connexion est rendue à la fin de cet appel
+        FacturePdfDTO facture = factureService.obtenirFacturePourImpression(factureId);
+
+        // Phase 2 : rendu CPU hors transaction
+        CompletableFuture<byte[]> rendu;
+        try {
+            rendu = CompletableFuture.supplyAsync(() -> genererPDFFacture(facture), pdfExecutor);
+        } catch (TaskRejectedException e) {
+            throw new RuntimeException("Trop de PDF en cours de génération, réessayez plus tard", e);
+        }
+
+        try {
+            return new ByteArrayResource(rendu.get(timeoutSecondes, TimeUnit.SECONDS));
+        } catch (TimeoutException e) {
+            rendu.cancel(true);
+            throw new RuntimeException("Délai dépassé lors de la génération du PDF", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Génération du PDF interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Erreur lors de la génération du PDF: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Générer le PDF d'une facture
+     */
+    private byte[] genererPDFFacture(FacturePdfDTO facture) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            Document document = new Document(PageSize.A4);
+            PdfWriter writer = PdfWriter.getInstance(document, baos);
+
+            document.open();
+
+            // Styles de police
+            Font titleFont = new Font(Font.HELVETICA, 20, Font.BOLD, Color.BLACK);
+            Font headerFont = new Font(Font.HELVETICA, 12, Font.BOLD, Color.BLACK);
+            Font normalFont = new Font(Font.HELVETICA, 10, Font.NORMAL, Color.BLACK);
+            Font boldFont = new Font(Font.HELVETICA, 10, Font.BOLD, Color.BLACK);
+
+            // En-tête de la facture
+            Paragraph title = new Paragraph("FACTURE", titleFont);
+            title.setAlignment(Element.ALIGN_CENTER);
+            title.setSpacingAfter(20f);
+            document.add(title);
+
+            // Informations de l'entreprise (à personnaliser)
+            PdfPTable headerTable = new PdfPTable(2);
+            headerTable.setWidthPercentage(100);
+            headerTable.setWidths(new float[]{1, 1});
+
+            PdfPCell leftCell = new PdfPCell();
+            leftCell.setBorder(Rectangle.NO_BORDER);
+            leftCell.addElement(new Paragraph("VOTRE ENTREPRISE", headerFont));
+            leftCell.addElement(new Paragraph("123 Rue de la Facturation", normalFont));
+            leftCell.addElement(new Paragraph("75001 Paris, France", normalFont));
+            leftCell.addElement(new Paragraph("Tél: 01 23 45 67 89", normalFont));
+            leftCell.addElement(new Paragraph("Email: contact@entreprise.com", normalFont));
+
+            PdfPCell rightCell = new PdfPCell();
+            rightCell.setBorder(Rectangle.NO_BORDER);
+            rightCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            rightCell.addElement(new Paragraph("Numéro: " + facture.getNumeroFacture(), boldFont));
+            rightCell.addElement(new Paragraph("Date: " + facture.getDateFacture().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont));
+            rightCell.addElement(new Paragraph("Statut: " + getStatutLibelle(facture.getStatut()), boldFont));
+            if (facture.getDatePaiement() != null) {
+                rightCell.addElement(new Paragraph("Payée le: " + facture.getDatePaiement().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont));
+            }
+
+            headerTable.addCell(leftCell);
+            headerTable.addCell(rightCell);
+            document.add(headerTable);
+            document.add(new Paragraph(" ")); // Espace
+
+            // Informations client
+            Paragraph clientTitle = new Paragraph("FACTURÉ À:", headerFont);
+            document.add(clientTitle);
+
+            PdfPTable clientTable = new PdfPTable(1);
+            clientTable.setWidthPercentage(50);
+            clientTable.setHorizontalAlignment(Element.ALIGN_LEFT);
+
+            PdfPCell clientCell = new PdfPCell();
+            clientCell.setBorder(Rectangle.BOX);
+            clientCell.setPadding(10f);
+            clientCell.addElement(new Paragraph(facture.getNomClient() != null ? facture.getNomClient() : "Client", boldFont));
+
+            // Ajouter d'autres infos client si disponibles
+            if (facture.getEmailClient() != null) {
+                clientCell.addElement(new Paragraph("Email: " + facture.getEmailClient(), normalFont));
+            }
+
+            clientTable.addCell(clientCell);
+            document.add(clientTable);
+            document.add(new Paragraph(" ")); // Espace
+
+            // Détails de la commande
+            if (facture.getNumeroCommande() != null) {
+                Paragraph commandeTitle = new Paragraph("DÉTAILS DE LA COMMANDE:", headerFont);
+                document.add(commandeTitle);
+
+                Paragraph commandeInfo = new Paragraph("Commande N°: " + facture.getNumeroCommande(), normalFont);
+                commandeInfo.add(new Paragraph("Date commande: " + facture.getDateCommande().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")), normalFont));
+                commandeInfo.add(new Paragraph("Statut commande: " + facture.getStatutCommande(), normalFont));
+                document.add(commandeInfo);
+                document.add(new Paragraph(" ")); // Espace
+            }
+
+            // Tableau des produits
+            if (!facture.getLignes().isEmpty()) {
+                PdfPTable productTable = new PdfPTable(5);
+                productTable.setWidthPercentage(100);
+                productTable.setWidths(new float[]{3, 1, 1, 1, 1});
+
+                // En-têtes du tableau
+                String[] headers = {"Produit", "Qté", "Prix Unit.", "TVA", "Total"};
+                for (String header : headers) {
+                    PdfPCell headerCell = new PdfPCell(new Paragraph(header, boldFont));
+                    headerCell.setBackgroundColor(Color.LIGHT_GRAY);
+                    headerCell.setPadding(8f);
+                    headerCell.setHorizontalAlignment(Element.ALIGN_CENTER);
+                    productTable.addCell(headerCell);
+                }
+
+                // Lignes des produits
+                for (FacturePdfDTO.Ligne ligne : facture.getLignes()) {
+                    productTable.addCell(new PdfPCell(new Paragraph(ligne.getNomProduit(), normalFont)));
+                    productTable.addCell(new PdfPCell(new Paragraph(ligne.getQuantite().toString(), normalFont)));
+                    productTable.addCell(new PdfPCell(new Paragraph(ligne.getPrixUnitaire() + " DT", normalFont)));
+
+                    productTable.addCell(new PdfPCell(new Paragraph(facture.getTauxTVA() + "%", normalFont)));
+                    productTable.addCell(new PdfPCell(new Paragraph(ligne.getSousTotal() + " DT", normalFont)));
+                }
+
+                document.add(productTable);
+                document.add(new Paragraph(" ")); // Espace
+            }
+
+            // Totaux
+            PdfPTable totalTable = new PdfPTable(2);
+            totalTable.setWidthPercentage(50);
+            totalTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
+
+            totalTable.addCell(new PdfPCell(new Paragraph("Sous-total HT:", boldFont)));
+            totalTable.addCell(new PdfPCell(new Paragraph(facture.getMontantHT() + " DT", normalFont)));
+
+            totalTable.addCell(new PdfPCell(new Paragraph("TVA:", boldFont)));
+            totalTable.addCell(new PdfPCell(new Paragraph(facture.getMontantTVA() + " DT", normalFont)));
+
+            PdfPCell totalLabelCell = new PdfPCell(new Paragraph("TOTAL TTC:", titleFont));
+            totalLabelCell.setBackgroundColor(Color.LIGHT_GRAY);
+            totalLabelCell.setPadding(8f);
+
+            PdfPCell totalValueCell = new PdfPCell(new Paragraph(facture.getMontantTTC() + " DT", titleFont));
+            totalValueCell.setBackgroundColor(Color.LIGHT_GRAY);
+            totalValueCell.setPadding(8f);
+
+            totalTable.addCell(totalLabelCell);
+            totalTable.addCell(totalValueCell);
+
+            document.add(totalTable);
+            document.add(new Paragraph(" ")); // Espace
+
+            // Informations de paiement
+            if (facture.getModePaiement() != null) {
+                Paragraph paiementInfo = new Paragraph("Mode de paiement: " + getModePaiementLibelle(facture.getModePaiement()), headerFont);
+                document.add(paiementInfo);
+            }
+
+            // Pied de page
+            document.add(new Paragraph(" "));
+            Paragraph footer = new Paragraph("Merci pour votre confiance !", normalFont);
+            footer.setAlignment(Element.ALIGN_CENTER);
+            document.add(footer);
+
+            document.close();
+            return baos.toByteArray();
+
+        } catch (DocumentException e) {
+            throw new RuntimeException("Erreur lors de la génération du PDF: " + e.getMessage(), e);
+        }
+    }
+
+    // Méthodes utilitaires
+    private String getStatutLibelle(StatutFacture statut) {
+        switch (statut) {
+            case EN_ATTENTE: return "En attente";
+            case PAYEE: return "Payée";
+            case ANNULEE: return "Annulée";
+            default: return statut.name();
+        }
+    }
+
+    private String getModePaiementLibelle(ModePaiement mode) {
+        switch (mode) {
+            case ESPECES: return "Espèces";
+            case CARTE_BANCAIRE: return "Carte bancaire";
+            case CHEQUE: return "Chèque";
+            case VIREMENT: return "Virement";
+            default: return mode.name();
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.event.CommandesStatutModifieEvent;
+import com.facturation.facture.event.NotificationsCreeesEvent;
+import com.facturation.facture.model.User;
+import com.facturation.facture.model.enums.Role;
+import com.facturation.facture.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hub Server-Sent Events : notifications et changements de statut de commande poussés aux
+ * utilisateurs connectés, quel que soit le nœud qui les a produits. Chaque événement est inséré
+ * dans evenements_flux par la transaction qui le produit ; chaque nœud relit la table par ID
+ * croissant et pousse les nouveaux événements à ses propres connexions. Les connexions sont
+ * asynchrones (aucun thread par connexion) ; chaque connexion a une file bornée vidée par un
+ * petit pool, une connexion trop lente est fermée et le client reprend depuis son Last-Event-ID,
+ * rejoué depuis la table.
+ */
+@Service
+public class FluxEvenementsService {
+
+    private static final Logger log = LoggerFactory.getLogger(FluxEvenementsService.class);
+
+    private static final String BAIL_PURGE = "purge-evenements-flux";
+
+    // Canal des diffusions admin (toutes les transitions de commande)
+    private static final Long CANAL_ADMIN = -1L;
+
+    private static final int TAILLE_LECTURE = 1000;
+    private static final int TAILLE_RECENTS = 1000;
+
+    private static final EvenementPush HEARTBEAT = new EvenementPush(0, null, null, null);
+
+    private static final String INSERTION =
+            "INSERT INTO evenements_flux (canal, type, donnees, date_creation) VALUES (?, ?, ?, ?)";
+
+    private static final String COLONNES = "SELECT id, canal, type, donnees FROM evenements_flux ";
+
+    private static final RowMapper<EvenementPush> LECTURE = (ligne, numero) -> new EvenementPush(
+            ligne.getLong(1), ligne.getLong(2), ligne.getString(3), ligne.getString(4));
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolTaskExecutor sseExecutor;
+    private final long timeoutMillis;
+    private final int capaciteFile;
+    private final int tailleHistorique;
+    private final long delaiTrouNanos;
+
+    private final Map<Long, Set<Connexion>> connexionsParUtilisateur = new ConcurrentHashMap<>();
+    private final Set<Connexion> connexionsAdmin = ConcurrentHashMap.newKeySet();
+
+    // Diffusion locale et enregistrement d'une connexion sont exclusifs : une connexion ouverte
+    // pendant une diffusion reçoit les événements diffusés avant elle depuis "recents"
+    private final Object verrouDiffusion = new Object();
+    private final Deque<EvenementPush> recents = new ArrayDeque<>();
+
+    // Lecture de la table (thread du planificateur) : tous les IDs <= curseur sont traités,
+    // "vus" retient les IDs traités au-delà (ID -> instant de lecture) tant qu'un trou les précède
+    private long curseur = -1;
+    private final TreeMap<Long, Long> vus = new TreeMap<>();
+
+    @Autowired
+    public FluxEvenementsService(UserRepository userRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 @Qualifier("sseExecutor") ThreadPoolTaskExecutor sseExecutor,
+                                 @Value("${facture.sse.timeout-minutes:30}") long timeoutMinutes,
+                                 @Value("${facture.sse.capacite-file:64}") int capaciteFile,
+                                 @Value("${facture.sse.taille-historique:50}") int tailleHistorique,
+                                 @Value("${facture.sse.delai-trou-ms:10000}") long delaiTrouMillis) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.sseExecutor = sseExecutor;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.capaciteFile = capaciteFile;
+        this.tailleHistorique = tailleHistorique;
+        this.delaiTrouNanos = TimeUnit.MILLISECONDS.toNanos(delaiTrouMillis);
+    }
+
+    /**
+     * Ouvrir le flux d'un utilisateur, en rejouant les événements postérieurs à dernierId
+     * avant d'inscrire la connexion aux diffusions ; un événement n'est jamais envoyé deux fois
+     */
+    public SseEmitter ouvrir(Long userId, String dernierId) {
+        User user = userRepository.findById(userId)
+                .filter(u -> !Boolean.FALSE.equals(u.getActif()))
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé avec l'ID : " + userId));
+        boolean admin = user.getRole() == Role.ADMIN;
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Connexion connexion = new Connexion(userId, admin, emitter, capaciteFile);
+
+        emitter.onCompletion(() -> retirer(connexion));
+        emitter.onTimeout(() -> retirer(connexion));
+        emitter.onError(e -> retirer(connexion));
+
+        long depuis = parserId(dernierId);
+        if (depuis >= 0) {
+            int limite = admin ? 2 * tailleHistorique : tailleHistorique;
+            List<EvenementPush> rejoues = jdbcTemplate.query(COLONNES +
+                    "WHERE canal IN (?, ?) AND id > ? ORDER BY id DESC LIMIT ?",
+                    LECTURE, userId, admin ? CANAL_ADMIN : userId, depuis, limite);
+            Collections.reverse(rejoues);
+            for (EvenementPush evenement : rejoues) {
+                connexion.envoyes.add(evenement.id);
+                envoyer(connexion, evenement);
+            }
+            // Historique tronqué : rien d'antérieur au plus ancien rejoué
+            connexion.plancher = rejoues.size() == limite ? rejoues.get(0).id : depuis;
+        }
+
+        synchronized (verrouDiffusion) {
+            if (depuis >= 0) {
+                // Diffusés par ce nœud entre la relecture et l'inscription
+                for (EvenementPush evenement : recents) {
+                    diffuser(connexion, evenement);
+                }
+            }
+            if (!connexion.fermee) {
+                connexionsParUtilisateur.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(connexion);
+                if (admin) {
+                    connexionsAdmin.add(connexion);
+                }
+            }
+        }
+        envoyer(connexion, HEARTBEAT);
+        return emitter;
+    }
+
+    /**
+     * Écrire les transitions de statut pour le client de chaque commande et pour les admins,
+     * dans la transaction du changement de statut
+     */
+    @EventListener
+    public void surChangementStatut(CommandesStatutModifieEvent event) {
+        List<Object[]> lignes = new ArrayList<>();
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        for (CommandesStatutModifieEvent.Transition transition : event.getTransitions()) {
+            if (transition.getAncienStatut() == transition.getNouveauStatut()) {
+                continue;
+            }
+            Map<String, Object> donnees = new LinkedHashMap<>();
+            donnees.put("commandeId", transition.getCommandeId());
+            donnees.put("ancienStatut", transition.getAncienStatut());
+            donnees.put("nouveauStatut", transition.getNouveauStatut());
+            donnees.put("totalTTC", transition.getTotalTTC());
+            String json = json(donnees);
+            lignes.add(new Object[]{transition.getClientId(), "commande-statut", json, maintenant});
+            lignes.add(new Object[]{CANAL_ADMIN, "commande-statut", json, maintenant});
+        }
+        if (!lignes.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERTION, lignes);
+        }
+    }
+
+    /**
+     * Écrire les notifications insérées pour leur destinataire, dans la transaction de l'insertion
+     */
+    @EventListener
+    public void surNotificationsCreees(NotificationsCreeesEvent event) {
+        List<Object[]> lignes = new ArrayList<>();
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        for (NotificationsCreeesEvent.NotificationCreee notification : event.getNotifications()) {
+            Map<String, Object> donnees = new LinkedHashMap<>();
+            donnees.put("titre", notification.getTitre());
+            donnees.put("message", notification.getMessage());
+            donnees.put("type", notification.getType());
+            donnees.put("dateCreation", notification.getDateCreation());
+            lignes.add(new Object[]{notification.getUserId(), "notification", json(donnees), maintenant});
+        }
+        if (!lignes.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERTION, lignes);
+        }
+    }
+
+    /**
+     * Pousser aux connexions de ce nœud les événements écrits depuis la dernière lecture, par
+     * n'importe quel nœud. Un trou dans les IDs (transaction pas encore validée) retient le
+     * curseur, sans retarder les événements suivants, jusqu'à delai-trou-ms : au-delà, la
+     * transaction est tenue pour annulée.
+     */
+    @Scheduled(fixedDelayString = "${facture.sse.lecture-ms:500}")
+    public void lireEvenements() {
+        if (curseur < 0) {
+            // Premier passage : seuls les événements postérieurs au démarrage sont poussés
+            curseur = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM evenements_flux", Long.class);
+            return;
+        }
+
+        List<EvenementPush> lus = jdbcTemplate.query(COLONNES + "WHERE id > ? ORDER BY id LIMIT ?",
+                LECTURE, curseur, TAILLE_LECTURE);
+        long maintenant = System.nanoTime();
+        List<EvenementPush> nouveaux = new ArrayList<>();
+        for (EvenementPush evenement : lus) {
+            if (vus.putIfAbsent(evenement.id, maintenant) == null) {
+                nouveaux.add(evenement);
+            }
+        }
+        if (!nouveaux.isEmpty()) {
+            synchronized (verrouDiffusion) {
+                for (EvenementPush evenement : nouveaux) {
+                    if (recents.size() == TAILLE_RECENTS) {
+                        recents.removeFirst();
+                    }
+                    recents.addLast(evenement);
+                    Set<Connexion> destinataires = CANAL_ADMIN.equals(evenement.canal)
+                            ? connexionsAdmin : connexionsParUtilisateur.get(evenement.canal);
+                    if (destinataires != null) {
+                        destinataires.forEach(connexion -> diffuser(connexion, evenement));
+                    }
+                }
+            }
+        }
+
+        while (!vus.isEmpty()) {
+            Map.Entry<Long, Long> premier = vus.firstEntry();
+            if (premier.getKey() != curseur + 1 && maintenant - premier.getValue() < delaiTrouNanos) {
+                break;
+            }
+            curseur = premier.getKey();
+            vus.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Oublier les événements de plus d'une heure (au-delà, la reprise n'a plus d'intérêt)
+     */
+    @Scheduled(fixedDelayString = "${facture.sse.purge-ms:60000}")
+    @VerrouDistribue(value = BAIL_PURGE, dureeSecondes = 120)
+    public void purger() {
+        int supprimes = jdbcTemplate.update("DELETE FROM evenements_flux WHERE date_creation < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+        if (supprimes > 0) {
+            log.debug("Événements de flux purgés : {}", supprimes);
+        }
+    }
+
+    /**
+     * Maintenir les connexions ouvertes (et détecter les clients partis) : une seule tâche
+     * écrit le ping de toutes les connexions, sauf celles dont la file est en cours d'envoi
+     */
+    @Scheduled(fixedRateString = "${facture.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        try {
+            sseExecutor.execute(() -> {
+                for (Set<Connexion> connexions : connexionsParUtilisateur.values()) {
+                    connexions.forEach(this::ping);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.debug("Heartbeat SSE ignoré : pool saturé");
+        }
+    }
+
+    public int nombreConnexions() {
+        return connexionsParUtilisateur.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void ping(Connexion connexion) {
+        if (connexion.fermee) {
+            return;
+        }
+        if (!connexion.envoiEnCours.compareAndSet(false, true)) {
+            // Un envoi est en cours : il prouve déjà que la connexion est vivante
+            return;
+        }
+        try {
+            connexion.emitter.send(SseEmitter.event().comment("ping"));
+        } catch (IOException | IllegalStateException e) {
+            fermer(connexion);
+        } finally {
+            connexion.envoiEnCours.set(false);
+        }
+        if (!connexion.fermee && !connexion.file.isEmpty()) {
+            planifier(connexion);
+        }
+    }
+
+    /**
+     * Pousser un événement à une connexion qui y est abonnée et ne l'a pas déjà reçu à la reprise
+     */
+    private void diffuser(Connexion connexion, EvenementPush evenement) {
+        boolean abonne = evenement.canal.equals(connexion.userId) || (connexion.admin && CANAL_ADMIN.equals(evenement.canal));
+        if (abonne && evenement.id > connexion.plancher && !connexion.envoyes.contains(evenement.id)) {
+            envoyer(connexion, evenement);
+        }
+    }
+
+    /**
+     * Mettre en file sans bloquer ; file pleine : le client est trop lent, on le déconnecte
+     */
+    private void envoyer(Connexion connexion, EvenementPush evenement) {
+        if (connexion.fermee) {
+            return;
+        }
+        if (!connexion.file.offer(evenement)) {
+            log.debug("File SSE pleine pour l'utilisateur {}, connexion fermée", connexion.userId);
+            fermer(connexion);
+            return;
+        }
+        planifier(connexion);
+    }
+
+    private void planifier(Connexion connexion) {
+        if (!connexion.envoiEnCours.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sseExecutor.execute(() -> vider(connexion));
+        } catch (TaskRejectedException e) {
+            // Repris au prochain événement ou heartbeat
+            connexion.envoiEnCours.set(false);
+        }
+    }
+
+    private void vider(Connexion connexion) {
+        try {
+            EvenementPush evenement;
+            while (!connexion.fermee && (evenement = connexion.file.poll()) != null) {
+                if (evenement == HEARTBEAT) {
+                    connexion.emitter.send(SseEmitter.event().comment("ping"));
+                } else {
+                    connexion.emitter.send(SseEmitter.event()
+                            .id(String.valueOf(evenement.id))
+                            .name(evenement.type)
+                            .data(evenement.donnees, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            fermer(connexion);
+        } finally {
+            connexion.envoiEnCours.set(false);
+        }
+        if (!connexion.fermee && !connexion.file.isEmpty()) {
+            planifier(connexion);
+        }
+    }
+
+    private void fermer(Connexion connexion) {
+        connexion.fermee = true;
+        retirer(connexion);
+        try {
+            connexion.emitter.complete();
+        } catch (IllegalStateException e) {
+            // Déjà terminée
+        }
+    }
+
+    private void retirer(Connexion connexion) {
+        connexion.fermee = true;
+        connexionsAdmin.remove(connexion);
+        connexionsParUtilisateur.computeIfPresent(connexion.userId, (id, connexions) -> {
+            connexions.remove(connexion);
+            return connexions.isEmpty() ? null : connexions;
+        });
+    }
+
+    private String json(Map<String, Object> donnees) {
+        try {
+            return objectMapper.writeValueAsString(donnees);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Sérialisation de l'événement impossible : " + e.getMessage(), e);
+        }
+    }
+
+    private static long parserId(String id) {
+        if (id == null || id.isBlank()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Données déjà sérialisées en JSON, envoyées telles quelles
+     */
+    private static class EvenementPush {
+        private final long id;
+        private final Long canal;
+        private final String type;
+        private final String donnees;
+
+        EvenementPush(long id, Long canal, String type, String donnees) {
+            this.id = id;
+            this.canal = canal;
+            this.type = type;
+            this.donnees = donnees;
+        }
+    }
+
+    private static class Connexion {
+        private final Long userId;
+        private final boolean admin;
+        private final SseEmitter emitter;
+        private final BlockingQueue<EvenementPush> file;
+        private final AtomicBoolean envoiEnCours = new AtomicBoolean();
+        private volatile boolean fermee;
+
+        // Reprise : IDs déjà rejoués, et rien à pousser en deçà du plancher
+        private final Set<Long> envoyes = new HashSet<>();
+        private long plancher = -1;
+
+        Connexion(Long userId, boolean admin, SseEmitter emitter, int capacite) {
+            this.userId = userId;
+            this.admin = admin;
+            this.emitter = emitter;
+            this.file = new ArrayBlockingQueue<>(capacite);
+        }
+    }
+}
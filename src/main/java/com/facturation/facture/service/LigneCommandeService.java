@@ -1,6 +1,7 @@
 package com.facturation.facture.service;
 
 import com.facturation.facture.dto.LigneCommandeDTO;
+import com.facturation.facture.dto.StatistiqueProduitDTO;
 import com.facturation.facture.config.ResourceNotFoundException;
 import com.facturation.facture.model.Commande;
 import com.facturation.facture.model.LigneCommande;
@@ -29,6 +30,9 @@ public class LigneCommandeService {
     @Autowired
     private ProduitRepository produitRepository;
 
+    @Autowired
+    private StatistiqueProduitService statistiqueProduitService;
+
     /**
      * Créer une nouvelle ligne de commande
      */
@@ -41,6 +45,8 @@ public class LigneCommandeService {
         Produit produit = produitRepository.findById(ligneCommandeDTO.getProduit().getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Produit non trouvé avec l'ID : " + ligneCommandeDTO.getProduit().getId()));
 
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
+
         // Créer la ligne de commande
         LigneCommande ligneCommande = new LigneCommande(
                 ligneCommandeDTO.getQuantite(),
@@ -48,8 +54,10 @@ public class LigneCommandeService {
                 commande,
                 produit
         );
+        commande.ajouterLigneCommande(ligneCommande);
 
         LigneCommande savedLigne = ligneCommandeRepository.save(ligneCommande);
+        statistiqueProduitService.enregistrerVariations(commande, avant);
         return LigneCommandeDTO.fromEntity(savedLigne);
     }
 
@@ -100,6 +108,9 @@ public class LigneCommandeService {
         LigneCommande ligneExistante = ligneCommandeRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Ligne de commande non trouvée avec l'ID : " + id));
 
+        Commande commande = ligneExistante.getCommande();
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
+
         // Mettre à jour les champs modifiables
         ligneExistante.setQuantite(ligneCommandeDTO.getQuantite());
         ligneExistante.setPrixUnitaire(ligneCommandeDTO.getPrixUnitaire());
@@ -119,6 +130,7 @@ public class LigneCommandeService {
         }
 
         LigneCommande ligneUpdated = ligneCommandeRepository.save(ligneExistante);
+        statistiqueProduitService.enregistrerVariations(commande, avant);
         return LigneCommandeDTO.fromEntity(ligneUpdated);
     }
 
@@ -126,17 +138,27 @@ public class LigneCommandeService {
      * Supprimer une ligne de commande
      */
     public void supprimerLigneCommande(Long id) {
-        if (!ligneCommandeRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Ligne de commande non trouvée avec l'ID : " + id);
-        }
-        ligneCommandeRepository.deleteById(id);
+        LigneCommande ligne = ligneCommandeRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Ligne de commande non trouvée avec l'ID : " + id));
+
+        Commande commande = ligne.getCommande();
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
+        commande.getLignesCommande().remove(ligne);
+        ligneCommandeRepository.delete(ligne);
+        statistiqueProduitService.enregistrerVariations(commande, avant);
     }
 
     /**
      * Supprimer toutes les lignes d'une commande
      */
     public void supprimerLignesCommandeParCommandeId(Long commandeId) {
+        Commande commande = commandeRepository.findByIdWithLignesCommande(commandeId)
+                .orElseThrow(() -> new ResourceNotFoundException("Commande non trouvée avec l'ID : " + commandeId));
+
+        StatistiqueProduitService.Instantane avant = StatistiqueProduitService.instantane(commande);
+        commande.getLignesCommande().clear();
         ligneCommandeRepository.deleteByCommandeId(commandeId);
+        statistiqueProduitService.enregistrerVariations(commande, avant);
     }
 
     /**
@@ -168,8 +190,8 @@ public class LigneCommandeService {
      * Obtenir les statistiques de vente d'un produit
      */
     @Transactional(readOnly = true)
-    public Object[] obtenirStatistiquesProduit(Long produitId) {
-        return ligneCommandeRepository.getStatistiquesProduit(produitId);
+    public StatistiqueProduitDTO obtenirStatistiquesProduit(Long produitId) {
+        return statistiqueProduitService.obtenirStatistiquesProduit(produitId);
     }
 
     /**
@@ -177,7 +199,7 @@ public class LigneCommandeService {
      */
     @Transactional(readOnly = true)
     public Long compterCommandesAvecProduit(Long produitId) {
-        return ligneCommandeRepository.countCommandesWithProduit(produitId);
+        return statistiqueProduitService.obtenirStatistiquesProduit(produitId).getNombreCommandesDistinctes();
     }
 
     /**
@@ -185,8 +207,7 @@ public class LigneCommandeService {
      */
     @Transactional(readOnly = true)
     public BigDecimal calculerChiffreAffairesProduit(Long produitId) {
-        BigDecimal ca = ligneCommandeRepository.calculateChiffreAffairesProduit(produitId);
-        return ca != null ? ca : BigDecimal.ZERO;
+        return statistiqueProduitService.obtenirStatistiquesProduit(produitId).getChiffreAffaires();
     }
 
     /**
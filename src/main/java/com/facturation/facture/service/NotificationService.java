@@ -0,0 +1,288 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.dto.NotificationDTO;
+import com.facturation.facture.event.NotificationsCreeesEvent;
+import com.facturation.facture.model.Notification;
+import com.facturation.facture.model.User;
+import com.facturation.facture.model.enums.TypeNotification;
+import com.facturation.facture.repository.NotificationRepository;
+import com.facturation.facture.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Boîte de réception des notifications : pagination par clé (dateCreation, id), marquage en
+ * masse en un UPDATE, et compteurs de non lues en mémoire ajustés à l'insertion et à la lecture.
+ * Les compteurs sont propres à chaque nœud : relus en base au plus tard expiration-s après leur
+ * dernière vérification (une lecture faite sur un autre nœud n'est vue qu'alors), oubliés après
+ * dix minutes sans consultation et limités à compteurs-max utilisateurs.
+ */
+@Service
+@Transactional
+public class NotificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    private static final int TAILLE_PAGE_MAX = 100;
+    private static final int TAILLE_LOT_RECONCILIATION = 1000;
+    private static final long INACTIVITE_MAX_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final long expirationNanos;
+    private final int compteursMax;
+
+    // userId -> nombre de notifications non lues (uniquement les utilisateurs consultés récemment)
+    private final Map<Long, CompteurNonLues> compteursNonLues = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NotificationService(NotificationRepository notificationRepository,
+                               UserRepository userRepository,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${facture.notifications.expiration-s:30}") long expirationSecondes,
+                               @Value("${facture.notifications.compteurs-max:100000}") int compteursMax) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.expirationNanos = TimeUnit.SECONDS.toNanos(expirationSecondes);
+        this.compteursMax = compteursMax;
+    }
+
+    /**
+     * Créer une notification pour un utilisateur
+     */
+    public NotificationDTO creerNotification(Long userId, String titre, String message, TypeNotification type) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé avec l'ID : " + userId));
+        Notification notification = notificationRepository.save(new Notification(titre, message, type, user));
+        eventPublisher.publishEvent(new NotificationsCreeesEvent(List.of(new NotificationsCreeesEvent.NotificationCreee(
+                userId, titre, message, type, notification.getDateCreation()))));
+        return NotificationDTO.fromEntity(notification);
+    }
+
+    /**
+     * Page de la boîte de réception, plus récentes d'abord ; curseur null pour la première page
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> obtenirPage(Long userId, String curseur, int taille) {
+        int limite = Math.max(1, Math.min(taille, TAILLE_PAGE_MAX));
+        // Une ligne de plus pour savoir s'il existe une page suivante
+        PageRequest page = PageRequest.of(0, limite + 1);
+
+        List<Notification> notifications;
+        if (curseur == null || curseur.isBlank()) {
+            notifications = notificationRepository.findPremierePage(userId, page);
+        } else {
+            Curseur position = Curseur.decoder(curseur);
+            notifications = notificationRepository.findPageApres(userId, position.dateCreation, position.id, page);
+        }
+
+        boolean suivante = notifications.size() > limite;
+        if (suivante) {
+            notifications = notifications.subList(0, limite);
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("notifications", notifications.stream().map(NotificationDTO::fromEntity).collect(Collectors.toList()));
+        resultat.put("curseurSuivant", suivante ? Curseur.encoder(notifications.get(notifications.size() - 1)) : null);
+        resultat.put("nonLues", compterNonLues(userId));
+        return resultat;
+    }
+
+    /**
+     * Nombre de notifications non lues, sans requête tant que le compteur n'a pas expiré
+     */
+    @Transactional(readOnly = true)
+    public long compterNonLues(Long userId) {
+        long maintenant = System.nanoTime();
+        CompteurNonLues compteur = compteursNonLues.get(userId);
+        if (compteur != null) {
+            compteur.consulteLe = maintenant;
+            if (maintenant - compteur.verifieLe < expirationNanos) {
+                return compteur.valeur.get();
+            }
+            // Recaler sans écraser un ajustement fait pendant la requête
+            long avant = compteur.valeur.get();
+            compteur.valeur.compareAndSet(avant, notificationRepository.countByUserIdAndLueFalse(userId));
+            compteur.verifieLe = maintenant;
+            return compteur.valeur.get();
+        }
+
+        long enBase = notificationRepository.countByUserIdAndLueFalse(userId);
+        if (enBase == 0 && !userRepository.existsById(userId)) {
+            throw new RuntimeException("Utilisateur non trouvé avec l'ID : " + userId);
+        }
+        if (compteursNonLues.size() < compteursMax) {
+            compteursNonLues.putIfAbsent(userId, new CompteurNonLues(enBase, maintenant));
+        }
+        return enBase;
+    }
+
+    /**
+     * Marquer des notifications comme lues (un seul UPDATE), renvoie le nombre réellement modifié
+     */
+    public int marquerCommeLues(Long userId, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        int modifiees = notificationRepository.marquerCommeLues(userId, ids);
+        apresCommit(() -> decrementer(userId, modifiees));
+        return modifiees;
+    }
+
+    /**
+     * Marquer toutes les notifications d'un utilisateur comme lues
+     */
+    public int marquerToutesCommeLues(Long userId) {
+        int modifiees = notificationRepository.marquerToutesCommeLues(userId);
+        apresCommit(() -> decrementer(userId, modifiees));
+        return modifiees;
+    }
+
+    /**
+     * Incrémenter les compteurs chargés après l'insertion validée de notifications
+     */
+    @EventListener
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void surNotificationsCreees(NotificationsCreeesEvent event) {
+        Map<Long, Long> parUtilisateur = new HashMap<>();
+        for (NotificationsCreeesEvent.NotificationCreee notification : event.getNotifications()) {
+            parUtilisateur.merge(notification.getUserId(), 1L, Long::sum);
+        }
+        // Un compteur absent sera chargé depuis la base, insertions comprises
+        apresCommit(() -> parUtilisateur.forEach((userId, nombre) -> {
+            CompteurNonLues compteur = compteursNonLues.get(userId);
+            if (compteur != null) {
+                compteur.valeur.addAndGet(nombre);
+            }
+        }));
+    }
+
+    /**
+     * Oublier les compteurs inactifs et recaler les autres sur la base (écritures hors service,
+     * courses). Un compteur ajusté pendant la requête garde sa valeur : la base lue peut ne pas
+     * inclure l'ajustement, le prochain passage le recalera.
+     */
+    @Scheduled(fixedDelayString = "${facture.notifications.reconciliation-ms:300000}")
+    @Transactional(readOnly = true)
+    public void reconcilierCompteurs() {
+        long maintenant = System.nanoTime();
+        compteursNonLues.values().removeIf(compteur -> maintenant - compteur.consulteLe > INACTIVITE_MAX_NANOS);
+
+        List<Long> userIds = new ArrayList<>(compteursNonLues.keySet());
+        int corriges = 0;
+        for (int debut = 0; debut < userIds.size(); debut += TAILLE_LOT_RECONCILIATION) {
+            List<Long> lot = userIds.subList(debut, Math.min(debut + TAILLE_LOT_RECONCILIATION, userIds.size()));
+            Map<Long, Long> avant = new HashMap<>();
+            for (Long userId : lot) {
+                CompteurNonLues compteur = compteursNonLues.get(userId);
+                if (compteur != null) {
+                    avant.put(userId, compteur.valeur.get());
+                }
+            }
+            Map<Long, Long> enBase = new HashMap<>();
+            for (Object[] ligne : notificationRepository.compterNonLuesParUtilisateur(lot)) {
+                enBase.put((Long) ligne[0], (Long) ligne[1]);
+            }
+            for (Map.Entry<Long, Long> entree : avant.entrySet()) {
+                long attendu = enBase.getOrDefault(entree.getKey(), 0L);
+                CompteurNonLues compteur = compteursNonLues.get(entree.getKey());
+                if (compteur != null && entree.getValue() != attendu
+                        && compteur.valeur.compareAndSet(entree.getValue(), attendu)) {
+                    corriges++;
+                }
+            }
+        }
+        if (corriges > 0) {
+            log.info("Compteurs de notifications non lues recalés : {} sur {}", corriges, userIds.size());
+        }
+    }
+
+    private void decrementer(Long userId, int nombre) {
+        CompteurNonLues compteur = compteursNonLues.get(userId);
+        if (compteur != null && nombre > 0) {
+            compteur.valeur.accumulateAndGet(nombre, (actuel, moins) -> Math.max(0, actuel - moins));
+        }
+    }
+
+    private static void apresCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Compteur de non lues d'un utilisateur, avec ses dates (System.nanoTime) de dernière
+     * vérification en base et de dernière consultation
+     */
+    private static class CompteurNonLues {
+        private final AtomicLong valeur;
+        private volatile long verifieLe;
+        private volatile long consulteLe;
+
+        CompteurNonLues(long valeur, long maintenant) {
+            this.valeur = new AtomicLong(valeur);
+            this.verifieLe = maintenant;
+            this.consulteLe = maintenant;
+        }
+    }
+
+    /**
+     * Position opaque dans la boîte de réception : "<dateCreation>_<id>"
+     */
+    private static class Curseur {
+        private final LocalDateTime dateCreation;
+        private final Long id;
+
+        Curseur(LocalDateTime dateCreation, Long id) {
+            this.dateCreation = dateCreation;
+            this.id = id;
+        }
+
+        static String encoder(Notification notification) {
+            return notification.getDateCreation() + "_" + notification.getId();
+        }
+
+        static Curseur decoder(String valeur) {
+            int separateur = valeur.lastIndexOf('_');
+            try {
+                return new Curseur(LocalDateTime.parse(valeur.substring(0, separateur)),
+                        Long.parseLong(valeur.substring(separateur + 1)));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Curseur de pagination invalide : " + valeur);
+            }
+        }
+    }
+}
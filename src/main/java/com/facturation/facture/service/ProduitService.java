@@ -1,16 +1,19 @@
 package com.facturation.facture.service;
 
+import com.facturation.facture.event.StockModifieEvent;
 import com.facturation.facture.model.Produit;
 import com.facturation.facture.model.Categorie;
 import com.facturation.facture.repository.ProduitRepository;
 import com.facturation.facture.repository.CategorieRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -19,11 +22,14 @@ public class ProduitService {
 
     private final ProduitRepository produitRepository;
     private final CategorieRepository categorieRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public ProduitService(ProduitRepository produitRepository, CategorieRepository categorieRepository) {
+    public ProduitService(ProduitRepository produitRepository, CategorieRepository categorieRepository,
+                          ApplicationEventPublisher eventPublisher) {
         this.produitRepository = produitRepository;
         this.categorieRepository = categorieRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -77,6 +83,8 @@ public class ProduitService {
         }
 
         // Mettre à jour les champs
+        int ancienneQuantite = produit.getQuantiteStock();
+        Integer ancienSeuil = produit.getSeuilAlerte();
         produit.setNom(produitMisAJour.getNom());
         produit.setDescription(produitMisAJour.getDescription());
         produit.setPrix(produitMisAJour.getPrix());
@@ -86,7 +94,12 @@ public class ProduitService {
         produit.setImagePath(produitMisAJour.getImagePath());
         produit.setDateModification(LocalDateTime.now());
 
-        return produitRepository.save(produit);
+        Produit produitSauvegarde = produitRepository.save(produit);
+        if (!Objects.equals(ancienneQuantite, produitSauvegarde.getQuantiteStock())
+                || !Objects.equals(ancienSeuil, produitSauvegarde.getSeuilAlerte())) {
+            eventPublisher.publishEvent(StockModifieEvent.pour(produitSauvegarde, ancienneQuantite, ancienSeuil));
+        }
+        return produitSauvegarde;
     }
 
     /**
@@ -236,9 +249,10 @@ public class ProduitService {
         }
 
         Produit produit = produitOpt.get();
+        int ancienneQuantite = produit.getQuantiteStock();
         produit.setQuantiteStock(nouvelleQuantite);
         produit.setDateModification(LocalDateTime.now());
-        return produitRepository.save(produit);
+        return enregistrerStock(produit, ancienneQuantite);
     }
 
     /**
@@ -256,9 +270,10 @@ public class ProduitService {
             throw new RuntimeException("Stock insuffisant. Stock actuel : " + produit.getQuantiteStock());
         }
 
-        produit.setQuantiteStock(produit.getQuantiteStock() - quantiteVendue);
+        int ancienneQuantite = produit.getQuantiteStock();
+        produit.setQuantiteStock(ancienneQuantite - quantiteVendue);
         produit.setDateModification(LocalDateTime.now());
-        return produitRepository.save(produit);
+        return enregistrerStock(produit, ancienneQuantite);
     }
 
     /**
@@ -275,9 +290,19 @@ public class ProduitService {
         }
 
         Produit produit = produitOpt.get();
-        produit.setQuantiteStock(produit.getQuantiteStock() + quantiteAjoutee);
+        int ancienneQuantite = produit.getQuantiteStock();
+        produit.setQuantiteStock(ancienneQuantite + quantiteAjoutee);
         produit.setDateModification(LocalDateTime.now());
-        return produitRepository.save(produit);
+        return enregistrerStock(produit, ancienneQuantite);
+    }
+
+    /**
+     * Sauvegarder un changement de stock et le signaler (alertes de seuil)
+     */
+    private Produit enregistrerStock(Produit produit, int ancienneQuantite) {
+        Produit produitSauvegarde = produitRepository.save(produit);
+        eventPublisher.publishEvent(StockModifieEvent.pour(produitSauvegarde, ancienneQuantite));
+        return produitSauvegarde;
     }
 
     /**
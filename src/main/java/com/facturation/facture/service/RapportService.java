@@ -0,0 +1,358 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.model.Commande;
+import com.facturation.facture.model.TacheRapport;
+import com.facturation.facture.rapport.DefinitionRapport;
+import com.facturation.facture.rapport.ResultatRapport;
+import com.facturation.facture.repository.CommandeRepository;
+import com.facturation.facture.repository.TacheRapportRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * Rapports de période exécutés hors des threads HTTP : soumission, suivi par identifiant,
+ * téléchargement du résultat. Les tâches et leurs résultats sont conservés en base, lisibles
+ * et annulables depuis n'importe quel nœud ; le nœud qui exécute une tâche annulée interrompt
+ * sa requête côté base (KILL QUERY), le délai de la transaction restant le filet de sécurité.
+ */
+@Service
+public class RapportService {
+
+    private static final Logger log = LoggerFactory.getLogger(RapportService.class);
+
+    private static final List<String> COLONNES_COMMANDES = List.of(
+            "id", "numeroCommande", "dateCommande", "statut", "client", "email", "totalHT", "montantTVA", "totalTTC");
+
+    private static final List<TacheRapport.Statut> STATUTS_ACTIFS =
+            List.of(TacheRapport.Statut.EN_ATTENTE, TacheRapport.Statut.EN_COURS);
+
+    private static final int LONGUEUR_ERREUR_MAX = 1000;
+
+    private final CommandeRepository commandeRepository;
+    private final TacheRapportRepository tacheRapportRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader lecteurResultats;
+    private final ThreadPoolTaskExecutor rapportsExecutor;
+    private final TransactionTemplate transactionLecture;
+    private final TransactionTemplate transactionEcriture;
+    private final int timeoutSecondes;
+    private final long cacheTtlSecondes;
+    private final long conservationTachesSecondes;
+
+    // Tâches exécutées (ou en file) sur ce nœud : seules celles-ci peuvent être interrompues ici
+    private final Map<String, ExecutionLocale> executions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RapportService(CommandeRepository commandeRepository,
+                          TacheRapportRepository tacheRapportRepository,
+                          JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          @Qualifier("rapportsExecutor") ThreadPoolTaskExecutor rapportsExecutor,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${facture.rapports.timeout-secondes:120}") int timeoutSecondes,
+                          @Value("${facture.rapports.cache-ttl-secondes:600}") long cacheTtlSecondes,
+                          @Value("${facture.rapports.conservation-taches-secondes:3600}") long conservationTachesSecondes) {
+        this.commandeRepository = commandeRepository;
+        this.tacheRapportRepository = tacheRapportRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        // Montants relus en BigDecimal (échelle conservée), comme à la sortie du calcul
+        this.lecteurResultats = objectMapper.readerFor(ResultatRapport.class)
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        this.rapportsExecutor = rapportsExecutor;
+        this.timeoutSecondes = timeoutSecondes;
+        this.cacheTtlSecondes = cacheTtlSecondes;
+        this.conservationTachesSecondes = conservationTachesSecondes;
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.transactionLecture.setTimeout(timeoutSecondes);
+        this.transactionEcriture = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Soumettre un rapport : résultat encore valide, tâche identique déjà en cours, ou nouvelle tâche
+     */
+    public synchronized TacheRapport soumettre(DefinitionRapport definition) {
+        valider(definition);
+
+        Optional<TacheRapport> enCache = tacheRapportRepository
+                .findFirstByTypeAndDateDebutAndDateFinAndStatutAndFinLeAfterOrderByFinLeDesc(
+                        definition.getType(), definition.getDateDebut(), definition.getDateFin(),
+                        TacheRapport.Statut.TERMINE, LocalDateTime.now().minusSeconds(cacheTtlSecondes));
+        if (enCache.isPresent()) {
+            enCache.get().setDepuisCache(true);
+            return enCache.get();
+        }
+
+        Optional<TacheRapport> existante = tacheRapportRepository
+                .findFirstByTypeAndDateDebutAndDateFinAndStatutInOrderBySoumiseLeDesc(
+                        definition.getType(), definition.getDateDebut(), definition.getDateFin(), STATUTS_ACTIFS);
+        if (existante.isPresent()) {
+            return existante.get();
+        }
+
+        TacheRapport tache = tacheRapportRepository.save(new TacheRapport(definition));
+        ExecutionLocale execution = new ExecutionLocale();
+        executions.put(tache.getId(), execution);
+        try {
+            // TaskRejectedException si la file d'attente est pleine
+            execution.setFuture(rapportsExecutor.submit(() -> executer(tache.getId(), definition, execution)));
+        } catch (RuntimeException e) {
+            executions.remove(tache.getId());
+            tacheRapportRepository.deleteById(tache.getId());
+            throw e;
+        }
+        return tache;
+    }
+
+    public Optional<TacheRapport> obtenirTache(String id) {
+        return tacheRapportRepository.findById(id);
+    }
+
+    /**
+     * Résultat d'une tâche terminée, relu depuis sa forme conservée
+     */
+    public ResultatRapport obtenirResultat(TacheRapport tache) {
+        if (tache.getStatut() != TacheRapport.Statut.TERMINE || tache.getResultat() == null) {
+            throw new RuntimeException("Le rapport n'est pas terminé : " + tache.getId());
+        }
+        try {
+            return lecteurResultats.readValue(tache.getResultat());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Résultat du rapport illisible : " + tache.getId(), e);
+        }
+    }
+
+    /**
+     * Annuler une tâche en attente ou en cours, sur ce nœud ou sur un autre
+     */
+    public boolean annuler(String id) {
+        if (!tacheRapportRepository.existsById(id)) {
+            throw new RuntimeException("Rapport non trouvé avec l'ID : " + id);
+        }
+        Integer annulees = transactionEcriture.execute(status -> tacheRapportRepository.finir(
+                id, TacheRapport.Statut.ANNULE, null, LocalDateTime.now()));
+        if (annulees == null || annulees == 0) {
+            return false;
+        }
+        // Exécutée ailleurs : le nœud concerné la voit annulée à son prochain contrôle
+        interrompre(id);
+        return true;
+    }
+
+    /**
+     * Interrompre les tâches de ce nœud annulées depuis un autre nœud
+     */
+    @Scheduled(fixedDelayString = "${facture.rapports.annulations-ms:2000}")
+    public void surveillerAnnulations() {
+        if (executions.isEmpty()) {
+            return;
+        }
+        tacheRapportRepository.findIdsAnnuleesParmi(new ArrayList<>(executions.keySet())).forEach(this::interrompre);
+    }
+
+    /**
+     * Mettre en échec les tâches abandonnées par un nœud arrêté et oublier les tâches finies depuis longtemps
+     */
+    @Scheduled(fixedDelayString = "${facture.rapports.nettoyage-ms:60000}")
+    public void nettoyer() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        transactionEcriture.executeWithoutResult(status -> {
+            int abandonnees = tacheRapportRepository.abandonner(TacheRapport.Statut.ECHEC,
+                    "Tâche abandonnée (nœud arrêté pendant le calcul)",
+                    maintenant.minusSeconds(timeoutSecondes + 60L),
+                    maintenant.minusSeconds(conservationTachesSecondes), maintenant);
+            if (abandonnees > 0) {
+                log.warn("{} rapport(s) abandonné(s) mis en échec", abandonnees);
+            }
+            tacheRapportRepository.supprimerFiniesAvant(maintenant.minusSeconds(conservationTachesSecondes));
+        });
+    }
+
+    private void interrompre(String id) {
+        // Retirée tout de suite : une tâche encore en file ne passera jamais par executer
+        ExecutionLocale execution = executions.remove(id);
+        if (execution != null) {
+            execution.interrompre(jdbcTemplate);
+        }
+    }
+
+    private void executer(String id, DefinitionRapport definition, ExecutionLocale execution) {
+        long debut = System.currentTimeMillis();
+        try {
+            Integer demarree = transactionEcriture.execute(status -> tacheRapportRepository.demarrer(
+                    id, TacheRapport.Statut.EN_COURS, LocalDateTime.now()));
+            if (demarree == null || demarree == 0) {
+                return;
+            }
+            ResultatRapport resultat = transactionLecture.execute(status -> {
+                if (!execution.attacher(connexionSql())) {
+                    throw new RuntimeException("Rapport annulé");
+                }
+                try {
+                    return calculer(definition);
+                } finally {
+                    execution.detacher();
+                }
+            });
+            String json = serialiser(resultat);
+            transactionEcriture.execute(status -> tacheRapportRepository.terminer(
+                    id, TacheRapport.Statut.TERMINE, json, LocalDateTime.now()));
+            log.info("Rapport {} calculé en {} ms", definition, System.currentTimeMillis() - debut);
+        } catch (RuntimeException e) {
+            log.warn("Échec du rapport {} après {} ms : {}", definition, System.currentTimeMillis() - debut, e.getMessage());
+            // Sans effet si la tâche a été annulée entre-temps
+            transactionEcriture.execute(status -> tacheRapportRepository.finir(
+                    id, TacheRapport.Statut.ECHEC, tronquer(e.getMessage()), LocalDateTime.now()));
+        } finally {
+            executions.remove(id, execution);
+        }
+    }
+
+    /**
+     * Identifiant MySQL de la connexion de la transaction courante (cible d'un KILL QUERY) ;
+     * null si la base ne le fournit pas : seul le délai de la transaction s'applique alors
+     */
+    private Long connexionSql() {
+        try {
+            return jdbcTemplate.queryForObject("SELECT CONNECTION_ID()", Long.class);
+        } catch (DataAccessException e) {
+            return null;
+        }
+    }
+
+    private String serialiser(ResultatRapport resultat) {
+        try {
+            return objectMapper.writeValueAsString(resultat);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Impossible de conserver le résultat du rapport : " + e.getMessage(), e);
+        }
+    }
+
+    private static String tronquer(String message) {
+        if (message == null) {
+            return "Erreur inconnue";
+        }
+        return message.length() > LONGUEUR_ERREUR_MAX ? message.substring(0, LONGUEUR_ERREUR_MAX) : message;
+    }
+
+    private ResultatRapport calculer(DefinitionRapport definition) {
+        LocalDateTime debut = definition.getDateDebut().atStartOfDay();
+        LocalDateTime fin = definition.getDateFin().atTime(LocalTime.MAX);
+
+        switch (definition.getType()) {
+            case SYNTHESE_PERIODE: {
+                Map<String, Object> synthese = new LinkedHashMap<>();
+                synthese.put("dateDebut", definition.getDateDebut());
+                synthese.put("dateFin", definition.getDateFin());
+                synthese.put("chiffreAffaires", commandeRepository.calculateChiffreAffairesPeriode(debut, fin));
+                synthese.put("sousTotal", commandeRepository.calculateSousTotalPeriode(debut, fin));
+                synthese.put("montantTVA", commandeRepository.calculateMontantTVAPeriode(debut, fin));
+                return new ResultatRapport(synthese, List.of(), List.of());
+            }
+            case COMMANDES_PERIODE: {
+                List<Commande> commandes = commandeRepository.findByPeriodeWithClient(debut, fin);
+                List<List<Object>> lignes = new ArrayList<>(commandes.size());
+                for (Commande commande : commandes) {
+                    lignes.add(Arrays.asList(commande.getId(), commande.getNumeroCommande(),
+                            commande.getDateCommande(), commande.getStatut(),
+                            commande.getClient().getPrenom() + " " + commande.getClient().getNom(),
+                            commande.getClient().getEmail(), commande.getTotalHT(), commande.getMontantTVA(),
+                            commande.getTotalTTC()));
+                }
+                Map<String, Object> synthese = new LinkedHashMap<>();
+                synthese.put("dateDebut", definition.getDateDebut());
+                synthese.put("dateFin", definition.getDateFin());
+                synthese.put("nombreCommandes", commandes.size());
+                return new ResultatRapport(synthese, COLONNES_COMMANDES, lignes);
+            }
+            default:
+                throw new RuntimeException("Type de rapport non supporté : " + definition.getType());
+        }
+    }
+
+    private void valider(DefinitionRapport definition) {
+        if (definition == null || definition.getType() == null) {
+            throw new RuntimeException("Le type de rapport est obligatoire");
+        }
+        if (definition.getDateDebut() == null || definition.getDateFin() == null) {
+            throw new RuntimeException("Les dates de début et de fin sont obligatoires");
+        }
+        if (definition.getDateDebut().isAfter(definition.getDateFin())) {
+            throw new RuntimeException("La date de début doit précéder la date de fin");
+        }
+    }
+
+    /**
+     * Exécution locale d'une tâche : file d'attente puis connexion SQL le temps du calcul.
+     * Interrompre et détacher sont exclusifs : le KILL QUERY ne vise jamais une connexion
+     * déjà rendue au pool.
+     */
+    private static class ExecutionLocale {
+        private Future<?> future;
+        private Long connexionSql;
+        private boolean interrompue;
+
+        synchronized void setFuture(Future<?> future) {
+            this.future = future;
+            if (interrompue) {
+                future.cancel(false);
+            }
+        }
+
+        synchronized boolean attacher(Long connexionSql) {
+            if (interrompue) {
+                return false;
+            }
+            this.connexionSql = connexionSql;
+            return true;
+        }
+
+        synchronized void detacher() {
+            connexionSql = null;
+        }
+
+        synchronized void interrompre(JdbcTemplate jdbcTemplate) {
+            if (interrompue) {
+                return;
+            }
+            interrompue = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+            if (connexionSql != null) {
+                try {
+                    jdbcTemplate.execute("KILL QUERY " + connexionSql);
+                } catch (DataAccessException e) {
+                    log.warn("Impossible d'interrompre la requête du rapport : {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
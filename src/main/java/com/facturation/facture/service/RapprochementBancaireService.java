@@ -0,0 +1,200 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.rapprochement.IndexFacturesOuvertes;
+import com.facturation.facture.rapprochement.LecteurReleve;
+import com.facturation.facture.rapprochement.LigneReleve;
+import com.facturation.facture.rapprochement.RapportRapprochement;
+import com.facturation.facture.repository.FactureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rapprochement d'un relevé bancaire (CSV ou XML CAMT.053) avec les factures en attente :
+ * index en mémoire construit en un passage sur les factures ouvertes, relevé lu en flux,
+ * factures rapprochées passées PAYEE (VIREMENT) par lots, chaque lot dans sa transaction
+ */
+@Service
+public class RapprochementBancaireService {
+
+    private static final Logger log = LoggerFactory.getLogger(RapprochementBancaireService.class);
+
+    private static final int TAILLE_LOT = 1000;
+
+    private static final String REQUETE_FACTURES_OUVERTES =
+            "SELECT f.id, f.numero_facture, f.date_facture, c.client_id, f.montant_ht, f.montant_tva, f.montant_ttc, " +
+            "u.nom, u.prenom " +
+            "FROM factures f JOIN commandes c ON c.id = f.commande_id JOIN users u ON u.id = c.client_id " +
+            "WHERE f.statut = 'EN_ATTENTE'";
+
+    private static final String MISE_A_JOUR_PAYEE =
+            "UPDATE factures SET statut = 'PAYEE', mode_paiement = 'VIREMENT', date_paiement = ?, date_modification = ? " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FactureRepository factureRepository;
+    private final AnalytiqueFacturesService analytiqueFacturesService;
+    private final BalanceAgeeService balanceAgeeService;
+    private final TransactionTemplate transactionLot;
+
+    @Autowired
+    public RapprochementBancaireService(JdbcTemplate jdbcTemplate, FactureRepository factureRepository,
+                                        AnalytiqueFacturesService analytiqueFacturesService,
+                                        BalanceAgeeService balanceAgeeService,
+                                        PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.factureRepository = factureRepository;
+        this.analytiqueFacturesService = analytiqueFacturesService;
+        this.balanceAgeeService = balanceAgeeService;
+        this.transactionLot = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Rapprocher un relevé ; en simulation aucune facture n'est modifiée. Une erreur en cours de
+     * relevé n'annule pas les lots déjà validés : elle est consignée dans le rapport, rendu partiel
+     */
+    public RapportRapprochement rapprocher(InputStream releve, boolean simulation) {
+        long debut = System.currentTimeMillis();
+        IndexFacturesOuvertes index = construireIndex();
+        RapportRapprochement rapport = new RapportRapprochement(simulation);
+
+        try {
+            lire(releve, index, rapport);
+        } catch (IOException | RuntimeException e) {
+            // Chaque lot est validé seul : les précédents restent payés, le rapport partiel est rendu
+            log.error("Rapprochement interrompu après {} lignes et {} factures payées",
+                    rapport.getLignesLues(), rapport.getFacturesPayees(), e);
+            rapport.interrompre(e instanceof IOException
+                    ? "Lecture du relevé interrompue : " + e.getMessage() : e.getMessage());
+        }
+
+        if (!simulation && rapport.getFacturesPayees() > 0) {
+            balanceAgeeService.signalerPaiements();
+        }
+        rapport.terminer(System.currentTimeMillis() - debut);
+        log.info("Rapprochement{} : {} lignes, {} factures payées, {} exceptions en {} ms",
+                simulation ? " (simulation)" : "", rapport.getLignesLues(), rapport.getFacturesPayees(),
+                rapport.getNombreExceptions(), System.currentTimeMillis() - debut);
+        return rapport;
+    }
+
+    private void lire(InputStream releve, IndexFacturesOuvertes index, RapportRapprochement rapport) throws IOException {
+        List<Rapprochement> lot = new ArrayList<>(TAILLE_LOT);
+        LecteurReleve.lire(releve, ligne -> {
+            rapport.ligneLue();
+            if (ligne.getMontantCentimes() <= 0) {
+                rapport.debitIgnore();
+                return;
+            }
+            IndexFacturesOuvertes.Correspondance correspondance = index.rapprocher(ligne);
+            if (!correspondance.estTrouvee()) {
+                rapport.exception(ligne.getNumeroLigne(), ligne.getDate(), ligne.getMontantCentimes(), ligne.getLibelle(),
+                        correspondance.getException(), correspondance.getFacture(), correspondance.getMessage());
+                return;
+            }
+            rapport.rapprochee(correspondance.getMethode());
+            lot.add(new Rapprochement(ligne, correspondance.getFacture()));
+            if (lot.size() == TAILLE_LOT) {
+                appliquer(lot, rapport);
+                lot.clear();
+            }
+        }, erreur -> {
+            rapport.ligneLue();
+            rapport.exception(erreur.getNumeroLigne(), null, 0, erreur.getContenu(), "LIGNE_INVALIDE", null,
+                    erreur.getMessage());
+        });
+        appliquer(lot, rapport);
+    }
+
+    private IndexFacturesOuvertes construireIndex() {
+        IndexFacturesOuvertes index = new IndexFacturesOuvertes();
+        // Lecture en flux (MySQL : fetchSize = Integer.MIN_VALUE), aucune entité chargée
+        jdbcTemplate.query(connexion -> {
+            PreparedStatement requete = connexion.prepareStatement(REQUETE_FACTURES_OUVERTES,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            requete.setFetchSize(Integer.MIN_VALUE);
+            return requete;
+        }, (RowCallbackHandler) ligne -> {
+            Timestamp dateFacture = ligne.getTimestamp(3);
+            index.ajouter(new IndexFacturesOuvertes.FactureOuverte(ligne.getLong(1), ligne.getString(2),
+                    dateFacture != null ? dateFacture.toLocalDateTime() : null, ligne.getLong(4),
+                    centimes(ligne.getBigDecimal(5)), centimes(ligne.getBigDecimal(6)), centimes(ligne.getBigDecimal(7)),
+                    ligne.getString(8), ligne.getString(9)));
+        });
+        return index;
+    }
+
+    /**
+     * Passer un lot de factures rapprochées à PAYEE : verrouillage des factures encore en attente
+     * puis un UPDATE groupé ; celles payées entre-temps sont signalées en exception
+     */
+    private void appliquer(List<Rapprochement> lot, RapportRapprochement rapport) {
+        if (lot.isEmpty()) {
+            return;
+        }
+        if (rapport.isSimulation()) {
+            rapport.facturesPayees(lot.size(), lot.stream().mapToLong(r -> r.facture.getMontantTTC()).sum());
+            return;
+        }
+        List<Long> ids = lot.stream().map(r -> r.facture.getId()).toList();
+
+        transactionLot.executeWithoutResult(status -> {
+            Set<Long> enAttente = new HashSet<>(factureRepository.verrouillerFacturesEnAttente(ids));
+            LocalDateTime maintenant = LocalDateTime.now();
+            List<Object[]> lignes = new ArrayList<>(enAttente.size());
+            long montant = 0;
+            for (Rapprochement rapprochement : lot) {
+                IndexFacturesOuvertes.FactureOuverte facture = rapprochement.facture;
+                if (!enAttente.contains(facture.getId())) {
+                    LigneReleve ligne = rapprochement.ligne;
+                    rapport.exception(ligne.getNumeroLigne(), ligne.getDate(), ligne.getMontantCentimes(),
+                            ligne.getLibelle(), "DEJA_PAYEE", facture, "Facture payée ou annulée entre-temps");
+                    continue;
+                }
+                LocalDateTime datePaiement = rapprochement.ligne.getDate() != null
+                        ? rapprochement.ligne.getDate().atStartOfDay() : maintenant;
+                lignes.add(new Object[]{datePaiement, maintenant, facture.getId()});
+                montant += facture.getMontantTTC();
+            }
+            if (!lignes.isEmpty()) {
+                jdbcTemplate.batchUpdate(MISE_A_JOUR_PAYEE, lignes);
+                // UPDATE JDBC : ni listener JPA ni copie colonnaire à jour sans cette étape
+                analytiqueFacturesService.rafraichirApresCommit(
+                        lignes.stream().map(ligne -> (Long) ligne[2]).toList());
+            }
+            rapport.facturesPayees(lignes.size(), montant);
+        });
+    }
+
+    private static long centimes(BigDecimal montant) {
+        return montant != null ? montant.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue() : 0L;
+    }
+
+    private static class Rapprochement {
+        private final LigneReleve ligne;
+        private final IndexFacturesOuvertes.FactureOuverte facture;
+
+        Rapprochement(LigneReleve ligne, IndexFacturesOuvertes.FactureOuverte facture) {
+            this.ligne = ligne;
+            this.facture = facture;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.dto.FactureDTO;
+import com.facturation.facture.model.Facture;
+import com.facturation.facture.repository.FactureRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Recherche de factures par numéro de facture (FAC-) ou de commande (CMD-) : numéro complet
+ * par l'index unique de la base, préfixe par un LIKE 'préfixe%' sur ce même index, parcouru
+ * dans l'ordre des numéros à partir du curseur.
+ */
+@Service
+public class RechercheNumerosService {
+
+    private static final int TAILLE_PAGE_MAX = 100;
+
+    private static final Pattern NUMERO_COMPLET = Pattern.compile("(FAC|CMD)-\\d{8}-\\d{4,}");
+
+    private final FactureRepository factureRepository;
+
+    @Autowired
+    public RechercheNumerosService(FactureRepository factureRepository) {
+        this.factureRepository = factureRepository;
+    }
+
+    /**
+     * Rechercher par numéro complet ou partiel ("FAC-20251019", "cmd 2025", "20251019-00" pour une facture) ;
+     * curseur null pour la première page
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> rechercher(String numero, String curseur, int taille) {
+        long debut = System.currentTimeMillis();
+        String cible = canonique(numero);
+        boolean parCommande = cible.startsWith("CMD");
+        int limite = Math.max(1, Math.min(taille, TAILLE_PAGE_MAX));
+        boolean premierePage = curseur == null || curseur.isBlank();
+
+        // Numéro complet : une seule lecture par l'index unique
+        if (premierePage && NUMERO_COMPLET.matcher(cible).matches()) {
+            List<Facture> exactes = new ArrayList<>();
+            if (parCommande) {
+                exactes.addAll(factureRepository.findByCommande_NumeroCommande(cible));
+            } else {
+                Facture facture = factureRepository.findByNumeroFacture(cible);
+                if (facture != null) {
+                    exactes.add(facture);
+                }
+            }
+            if (!exactes.isEmpty()) {
+                return resultat(cible, true, "index-unique", exactes, null, debut);
+            }
+        }
+
+        // Une ligne de plus pour savoir s'il existe une page suivante
+        String apres = premierePage ? "" : curseur.trim().toUpperCase(Locale.ROOT);
+        PageRequest page = PageRequest.of(0, limite + 1);
+        List<Facture> factures = parCommande
+                ? factureRepository.findPageParPrefixeNumeroCommande(cible, apres, page)
+                : factureRepository.findPageParPrefixeNumeroFacture(cible, apres, page);
+        String curseurSuivant = null;
+        if (factures.size() > limite) {
+            factures = factures.subList(0, limite);
+            Facture derniere = factures.get(limite - 1);
+            curseurSuivant = parCommande ? derniere.getCommande().getNumeroCommande() : derniere.getNumeroFacture();
+        }
+        return resultat(cible, false, "base", factures, curseurSuivant, debut);
+    }
+
+    /**
+     * Mettre une saisie libre au format des numéros : "fac20251019 0001" devient "FAC-20251019-0001",
+     * sans préfixe le numéro est celui d'une facture
+     */
+    static String canonique(String numero) {
+        String brut = numero != null ? numero.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "") : "";
+        String prefixe = "FAC";
+        String chiffres = brut;
+        if (brut.startsWith("FAC") || brut.startsWith("CMD")) {
+            prefixe = brut.substring(0, 3);
+            chiffres = brut.substring(3);
+        }
+        if (brut.isEmpty() || !chiffres.matches("\\d*")) {
+            throw new RuntimeException("Numéro invalide : " + numero);
+        }
+        return prefixe + "-" + (chiffres.length() > 8 ? chiffres.substring(0, 8) + "-" + chiffres.substring(8) : chiffres);
+    }
+
+    private Map<String, Object> resultat(String cible, boolean exact, String source, List<Facture> factures,
+                                         String curseurSuivant, long debut) {
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("numero", cible);
+        resultat.put("exact", exact);
+        resultat.put("source", source);
+        resultat.put("factures", factures.stream().map(FactureDTO::fromEntity).collect(Collectors.toList()));
+        resultat.put("curseurSuivant", curseurSuivant);
+        resultat.put("dureeMs", System.currentTimeMillis() - debut);
+        return resultat;
+    }
+}
@@ -0,0 +1,294 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.BailDetenu;
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.maintenance.ProgressionTraitement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rétention des données : suppression des notifications lues anciennes et archivage des
+ * commandes annulées au-delà de l'horizon. Parcours par lots ordonnés sur la clé primaire,
+ * une transaction courte par lot et une pause entre les lots pour borner la durée des verrous
+ * et le retard de réplication.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    private static final String BAIL = "retention";
+    private static final long DUREE_BAIL_SECONDES = 120;
+
+    private static final String SELECTION_NOTIFICATIONS =
+            "SELECT id FROM notifications WHERE id > ? AND lue = true AND date_creation < ? ORDER BY id LIMIT ?";
+
+    private static final String SELECTION_COMMANDES =
+            "SELECT id FROM commandes WHERE id > ? AND statut = 'ANNULEE' AND date_commande < ? ORDER BY id LIMIT ?";
+
+    private static final String ARCHIVAGE_COMMANDES =
+            "INSERT INTO commandes_archivees (id, numero_commande, client_id, date_commande, statut, " +
+            "total_ht, montant_tva, total_ttc, numero_facture, lignes, date_archivage) " +
+            "SELECT c.id, c.numero_commande, c.client_id, c.date_commande, c.statut, " +
+            "c.total_ht, c.montant_tva, c.total_ttc, f.numero_facture, " +
+            "(SELECT JSON_ARRAYAGG(JSON_OBJECT('produitId', lc.produit_id, 'nomProduit', lc.nom_produit, " +
+            "'quantite', lc.quantite, 'prixUnitaire', lc.prix_unitaire)) " +
+            "FROM lignes_commande lc WHERE lc.commande_id = c.id), ? " +
+            "FROM commandes c LEFT JOIN factures f ON f.commande_id = c.id WHERE c.id IN ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionLot;
+    private final ThreadPoolTaskExecutor maintenanceExecutor;
+    private final AnalytiqueFacturesService analytiqueFacturesService;
+    private final DeclarationTVAService declarationTVAService;
+    private final BailService bailService;
+
+    private final int notificationsJours;
+    private final int commandesAnnuleesJours;
+    private final int tailleLot;
+    private final long pauseMs;
+
+    private final AtomicBoolean enCours = new AtomicBoolean();
+    private volatile boolean arretDemande;
+    private final Map<String, ProgressionTraitement> dernieresExecutions = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Autowired
+    public RetentionService(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Qualifier("maintenanceExecutor") ThreadPoolTaskExecutor maintenanceExecutor,
+                            AnalytiqueFacturesService analytiqueFacturesService,
+                            DeclarationTVAService declarationTVAService,
+                            BailService bailService,
+                            @Value("${facture.retention.notifications-lues-jours:90}") int notificationsJours,
+                            @Value("${facture.retention.commandes-annulees-jours:365}") int commandesAnnuleesJours,
+                            @Value("${facture.retention.taille-lot:1000}") int tailleLot,
+                            @Value("${facture.retention.pause-ms:200}") long pauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionLot = new TransactionTemplate(transactionManager);
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.analytiqueFacturesService = analytiqueFacturesService;
+        this.declarationTVAService = declarationTVAService;
+        this.bailService = bailService;
+        this.notificationsJours = notificationsJours;
+        this.commandesAnnuleesJours = commandesAnnuleesJours;
+        this.tailleLot = tailleLot;
+        this.pauseMs = pauseMs;
+    }
+
+    @Scheduled(cron = "${facture.retention.cron:0 0 4 * * *}")
+    @VerrouDistribue(value = BAIL, dureeSecondes = DUREE_BAIL_SECONDES)
+    public void executerPlanifie() {
+        executer();
+    }
+
+    /**
+     * Lancer la rétention en arrière-plan (false si une exécution est déjà en cours, sur ce nœud
+     * ou sur un autre). Le bail est pris avant de rendre la main ; la tâche le reprend à son
+     * démarrage, ce nœud en étant déjà détenteur.
+     */
+    public boolean lancer() {
+        if (enCours.get()) {
+            return false;
+        }
+        Duration duree = Duration.ofSeconds(DUREE_BAIL_SECONDES);
+        Optional<BailDetenu> bail = bailService.acquerir(BAIL, duree);
+        if (bail.isEmpty()) {
+            return false;
+        }
+        try {
+            maintenanceExecutor.execute(() -> bailService.executerSousBail(BAIL, duree, this::executer));
+        } catch (TaskRejectedException e) {
+            bailService.liberer(bail.get());
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Demander l'arrêt après le lot en cours
+     */
+    public void arreter() {
+        arretDemande = true;
+    }
+
+    public boolean estEnCours() {
+        return enCours.get();
+    }
+
+    /**
+     * Avancement des dernières exécutions (une entrée par traitement)
+     */
+    public List<Map<String, Object>> obtenirProgression() {
+        synchronized (dernieresExecutions) {
+            List<Map<String, Object>> resumes = new ArrayList<>();
+            dernieresExecutions.values().forEach(progression -> resumes.add(progression.resume()));
+            return resumes;
+        }
+    }
+
+    private void executer() {
+        if (!enCours.compareAndSet(false, true)) {
+            return;
+        }
+        arretDemande = false;
+        try {
+            LocalDateTime maintenant = LocalDateTime.now();
+            traiter("notifications-lues", SELECTION_NOTIFICATIONS, maintenant.minusDays(notificationsJours),
+                    this::supprimerNotifications);
+            traiter("commandes-annulees", SELECTION_COMMANDES, maintenant.minusDays(commandesAnnuleesJours),
+                    this::archiverCommandes);
+        } finally {
+            enCours.set(false);
+        }
+    }
+
+    /**
+     * Parcourir les lignes éligibles par clé croissante, un lot par transaction
+     */
+    private void traiter(String nom, String selection, LocalDateTime limite, TraitementLot traitement) {
+        ProgressionTraitement progression = new ProgressionTraitement(nom);
+        dernieresExecutions.put(nom, progression);
+        long dernierId = 0;
+        try {
+            while (!arretDemande) {
+                List<Long> ids = jdbcTemplate.queryForList(selection, Long.class,
+                        dernierId, Timestamp.valueOf(limite), tailleLot);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long debut = System.nanoTime();
+                int traitees = transactionLot.execute(status -> {
+                    bailService.verifierBailCourant();
+                    return traitement.traiter(ids);
+                });
+                dernierId = ids.get(ids.size() - 1);
+                progression.lotTraite(traitees, dernierId);
+
+                if (ids.size() < tailleLot) {
+                    break;
+                }
+                // Au moins autant de pause que de travail : la base n'est jamais occupée plus de la moitié du temps
+                long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+                Thread.sleep(Math.max(pauseMs, dureeMs));
+            }
+            if (arretDemande) {
+                progression.interrompre();
+            } else {
+                progression.terminer();
+            }
+            log.info("Rétention {} : {} lignes en {} lots ({} lignes/s)", nom, progression.getLignes(),
+                    progression.resume().get("lots"), Math.round(progression.debit()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progression.interrompre();
+        } catch (RuntimeException e) {
+            log.error("Échec de la rétention {} après l'ID {}", nom, dernierId, e);
+            progression.echouer(e.getMessage());
+        }
+    }
+
+    private int supprimerNotifications(List<Long> ids) {
+        return jdbcTemplate.update("DELETE FROM notifications WHERE id IN " + parametres(ids.size()), ids.toArray());
+    }
+
+    /**
+     * Copier les commandes (et leurs lignes en JSON) dans l'archive puis les supprimer avec leurs
+     * factures. Les commandes sont verrouillées d'abord : seules celles encore annulées sont
+     * archivées, une commande rétablie depuis la sélection reste en place.
+     */
+    private int archiverCommandes(List<Long> selection) {
+        LocalDateTime maintenant = LocalDateTime.now();
+
+        List<Long> ids = new ArrayList<>(selection.size());
+        Set<YearMonth> mois = new HashSet<>();
+        jdbcTemplate.query("SELECT id, statut, date_commande FROM commandes WHERE id IN " + parametres(selection.size())
+                + " FOR UPDATE", ligne -> {
+                    if (!"ANNULEE".equals(ligne.getString(2))) {
+                        return;
+                    }
+                    ids.add(ligne.getLong(1));
+                    Timestamp dateCommande = ligne.getTimestamp(3);
+                    if (dateCommande != null) {
+                        mois.add(YearMonth.from(dateCommande.toLocalDateTime()));
+                    }
+                }, selection.toArray());
+        if (ids.size() < selection.size()) {
+            log.info("Rétention : {} commandes plus annulées (ou supprimées) depuis la sélection, conservées",
+                    selection.size() - ids.size());
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String in = parametres(ids.size());
+        Object[] valeurs = ids.toArray();
+
+        // Une commande déjà archivée (archivage rejoué, commande restaurée) : l'archive est remplacée
+        List<Long> dejaArchivees = jdbcTemplate.queryForList(
+                "SELECT id FROM commandes_archivees WHERE id IN " + in, Long.class, valeurs);
+        if (!dejaArchivees.isEmpty()) {
+            log.warn("Commandes déjà archivées, archive remplacée : {}", dejaArchivees);
+            jdbcTemplate.update("DELETE FROM commandes_archivees WHERE id IN " + parametres(dejaArchivees.size()),
+                    dejaArchivees.toArray());
+        }
+        List<Object> archivage = new ArrayList<>(ids.size() + 1);
+        archivage.add(Timestamp.valueOf(maintenant));
+        archivage.addAll(ids);
+        jdbcTemplate.update(ARCHIVAGE_COMMANDES + in, archivage.toArray());
+
+        List<Long> factureIds = jdbcTemplate.queryForList(
+                "SELECT id FROM factures WHERE commande_id IN " + in, Long.class, valeurs);
+        jdbcTemplate.update("DELETE FROM factures WHERE commande_id IN " + in, valeurs);
+        jdbcTemplate.update("DELETE FROM lignes_commande WHERE commande_id IN " + in, valeurs);
+        int supprimees = jdbcTemplate.update("DELETE FROM commandes WHERE id IN " + in, valeurs);
+
+        // Suppressions hors JPA : retirer les factures de la copie colonnaire et les mois
+        // touchés du cache de TVA après commit
+        analytiqueFacturesService.rafraichirApresCommit(factureIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    declarationTVAService.invaliderMois(mois);
+                }
+            });
+        } else {
+            declarationTVAService.invaliderMois(mois);
+        }
+        return supprimees;
+    }
+
+    private static String parametres(int nombre) {
+        return "(" + String.join(", ", Collections.nCopies(nombre, "?")) + ")";
+    }
+
+    @FunctionalInterface
+    private interface TraitementLot {
+        int traiter(List<Long> ids);
+    }
+}
@@ -0,0 +1,193 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.VerrouDistribue;
+import com.facturation.facture.dto.StatistiqueProduitDTO;
+import com.facturation.facture.event.CommandesStatutModifieEvent;
+import com.facturation.facture.model.Commande;
+import com.facturation.facture.model.LigneCommande;
+import com.facturation.facture.model.enums.StatutCommande;
+import com.facturation.facture.repository.StatistiqueProduitRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Statistiques de vente par produit tenues à jour à chaque modification des lignes de commande.
+ * Les appelants prennent un instantané des lignes avant modification ; la différence avec l'état
+ * final est appliquée en un seul lot d'upserts, dans la même transaction. Les commandes annulées
+ * ne comptent pas : leurs lignes sont retirées à l'annulation.
+ */
+@Service
+@Transactional
+public class StatistiqueProduitService {
+
+    private static final Logger log = LoggerFactory.getLogger(StatistiqueProduitService.class);
+
+    private static final String SQL_VARIATION =
+            "INSERT INTO statistiques_produit (produit_id, nombre_lignes, quantite_vendue, chiffre_affaires, " +
+            "nombre_commandes, derniere_vente, date_mise_a_jour) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE nombre_lignes = nombre_lignes + VALUES(nombre_lignes), " +
+            "quantite_vendue = quantite_vendue + VALUES(quantite_vendue), " +
+            "chiffre_affaires = chiffre_affaires + VALUES(chiffre_affaires), " +
+            "nombre_commandes = nombre_commandes + VALUES(nombre_commandes), " +
+            "derniere_vente = GREATEST(COALESCE(derniere_vente, VALUES(derniere_vente)), " +
+            "COALESCE(VALUES(derniere_vente), derniere_vente)), " +
+            "date_mise_a_jour = VALUES(date_mise_a_jour)";
+
+    private final StatistiqueProduitRepository statistiqueProduitRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public StatistiqueProduitService(StatistiqueProduitRepository statistiqueProduitRepository,
+                                     JdbcTemplate jdbcTemplate) {
+        this.statistiqueProduitRepository = statistiqueProduitRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Obtenir les statistiques de vente d'un produit (lecture par clé primaire)
+     */
+    @Transactional(readOnly = true)
+    public StatistiqueProduitDTO obtenirStatistiquesProduit(Long produitId) {
+        return statistiqueProduitRepository.findById(produitId)
+                .map(StatistiqueProduitDTO::fromEntity)
+                .orElseGet(() -> new StatistiqueProduitDTO(produitId));
+    }
+
+    /**
+     * Instantané des lignes d'une commande, à prendre avant de les modifier (vide si elle est annulée)
+     */
+    public static Instantane instantane(Commande commande) {
+        return commande.getStatut() == StatutCommande.ANNULEE ? Instantane.VIDE : new Instantane(commande.getLignesCommande());
+    }
+
+    /**
+     * Appliquer la différence entre l'instantané et les lignes actuelles de la commande
+     */
+    public void enregistrerVariations(Commande commande, Instantane avant) {
+        Instantane apres = instantane(commande);
+
+        Set<Long> produits = new HashSet<>(avant.parProduit.keySet());
+        produits.addAll(apres.parProduit.keySet());
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        Timestamp dateVente = commande.getDateCommande() != null ? Timestamp.valueOf(commande.getDateCommande()) : null;
+        List<Object[]> variations = new ArrayList<>();
+        for (Long produitId : produits) {
+            Cumul ancien = avant.parProduit.getOrDefault(produitId, Cumul.VIDE);
+            Cumul nouveau = apres.parProduit.getOrDefault(produitId, Cumul.VIDE);
+
+            long deltaLignes = nouveau.lignes - ancien.lignes;
+            long deltaQuantite = nouveau.quantite - ancien.quantite;
+            BigDecimal deltaMontant = nouveau.montant.subtract(ancien.montant);
+            int deltaCommandes = (nouveau.lignes > 0 ? 1 : 0) - (ancien.lignes > 0 ? 1 : 0);
+            if (deltaLignes == 0 && deltaQuantite == 0 && deltaMontant.signum() == 0) {
+                continue;
+            }
+
+            variations.add(new Object[]{produitId, deltaLignes, deltaQuantite, deltaMontant, deltaCommandes,
+                    nouveau.lignes > 0 ? dateVente : null, Timestamp.valueOf(maintenant)});
+        }
+
+        if (!variations.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_VARIATION, variations);
+        }
+    }
+
+    /**
+     * Retirer les lignes des commandes annulées (et les remettre si une commande sort de l'annulation),
+     * dans la transaction qui change leur statut
+     */
+    @EventListener
+    public void surChangementStatut(CommandesStatutModifieEvent event) {
+        List<Long> annulees = new ArrayList<>();
+        List<Long> retablies = new ArrayList<>();
+        for (CommandesStatutModifieEvent.Transition transition : event.getTransitions()) {
+            if (transition.devientAnnulee()) {
+                annulees.add(transition.getCommandeId());
+            } else if (transition.quitteAnnulation()) {
+                retablies.add(transition.getCommandeId());
+            }
+        }
+
+        if (!annulees.isEmpty()) {
+            statistiqueProduitRepository.cumulerLignesCommandes(annulees, -1, Timestamp.valueOf(LocalDateTime.now()));
+        }
+        if (!retablies.isEmpty()) {
+            statistiqueProduitRepository.cumulerLignesCommandes(retablies, 1, Timestamp.valueOf(LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Reconstruire toute la table depuis les lignes de commande (corrige une éventuelle dérive),
+     * sur un seul nœud du cluster
+     */
+    @Scheduled(cron = "${facture.statistiques-produit.reconstruction-cron:0 30 3 * * *}")
+    @VerrouDistribue(value = "reconstruction-statistiques-produit", dureeSecondes = 300)
+    public int reconstruireStatistiques() {
+        statistiqueProduitRepository.viderTout();
+        int produits = statistiqueProduitRepository.reconstruireDepuisLignes();
+        log.info("Statistiques produit reconstruites pour {} produits", produits);
+        return produits;
+    }
+
+    /**
+     * Cumul des lignes d'une commande par produit
+     */
+    public static final class Instantane {
+
+        public static final Instantane VIDE = new Instantane(null);
+
+        private final Map<Long, Cumul> parProduit = new HashMap<>();
+
+        private Instantane(Collection<LigneCommande> lignes) {
+            if (lignes == null) {
+                return;
+            }
+            for (LigneCommande ligne : lignes) {
+                parProduit.merge(ligne.getProduit().getId(), Cumul.de(ligne), Cumul::plus);
+            }
+        }
+    }
+
+    private static final class Cumul {
+
+        private static final Cumul VIDE = new Cumul(0, 0, BigDecimal.ZERO);
+
+        private final long lignes;
+        private final long quantite;
+        private final BigDecimal montant;
+
+        private Cumul(long lignes, long quantite, BigDecimal montant) {
+            this.lignes = lignes;
+            this.quantite = quantite;
+            this.montant = montant;
+        }
+
+        static Cumul de(LigneCommande ligne) {
+            return new Cumul(1,
+                    ligne.getQuantite() != null ? ligne.getQuantite() : 0,
+                    ligne.getSousTotal() != null ? ligne.getSousTotal() : BigDecimal.ZERO);
+        }
+
+        Cumul plus(Cumul autre) {
+            return new Cumul(lignes + autre.lignes, quantite + autre.quantite, montant.add(autre.montant));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.cache.CacheAgregats;
+import com.facturation.facture.cache.ValeurCachee;
+import com.facturation.facture.dto.FactureDTO;
+import com.facturation.facture.model.enums.StatutFacture;
+import com.facturation.facture.repository.FactureRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+public class TableauDeBordService {
+
+    private final FactureService factureService;
+    private final CommandeService commandeService;
+    private final FactureRepository factureRepository;
+    private final CacheAgregats cacheAgregats;
+    private final AgregationParallele agregationParallele;
+
+    @Autowired
+    public TableauDeBordService(FactureService factureService, CommandeService commandeService,
+                                FactureRepository factureRepository, CacheAgregats cacheAgregats,
+                                AgregationParallele agregationParallele) {
+        this.factureService = factureService;
+        this.commandeService = commandeService;
+        this.factureRepository = factureRepository;
+        this.cacheAgregats = cacheAgregats;
+        this.agregationParallele = agregationParallele;
+    }
+
+    /**
+     * Obtenir les statistiques des factures (depuis le cache d'agrégats, jamais un résultat partiel)
+     */
+    public ValeurCachee<FactureService.FactureStatistiques> obtenirStatistiquesFactures() {
+        return cacheAgregats.obtenir("factures.statistiques",
+                () -> statistiques(agregationParallele.executer(partiesStatistiques())),
+                stats -> stats.getPartiesEnErreur().isEmpty());
+    }
+
+    /**
+     * Obtenir le résumé du dashboard des factures (depuis le cache d'agrégats, jamais un résultat partiel)
+     */
+    public ValeurCachee<Map<String, Object>> obtenirDashboardFactures() {
+        return cacheAgregats.obtenir("factures.dashboard", this::calculerDashboardFactures,
+                dashboard -> !Boolean.TRUE.equals(dashboard.get("partiel")));
+    }
+
+    /**
+     * Obtenir le chiffre d'affaires des commandes payées (depuis le cache d'agrégats)
+     */
+    public ValeurCachee<BigDecimal> obtenirChiffreAffaires() {
+        return cacheAgregats.obtenir("commandes.chiffre-affaires", commandeService::calculerChiffreAffaires);
+    }
+
+    private Map<String, Object> calculerDashboardFactures() {
+        Map<String, Supplier<?>> parties = partiesStatistiques();
+        parties.put("facturesNonTraitees", factureService::obtenirFacturesNonTraitees);
+        parties.put("facturesPayeesMois", factureService::obtenirFacturesPayeesDuMois);
+
+        AgregationParallele.Resultats resultats = agregationParallele.executer(parties);
+        List<FactureDTO> facturesNonTraitees = resultats.get("facturesNonTraitees");
+        List<FactureDTO> facturesPayeesMois = resultats.get("facturesPayeesMois");
+
+        Map<String, Object> dashboard = new LinkedHashMap<>();
+        dashboard.put("statistiques", statistiques(resultats));
+        if (facturesNonTraitees != null) {
+            dashboard.put("facturesNonTraitees", facturesNonTraitees.size());
+            dashboard.put("dernieresFacturesNonTraitees", facturesNonTraitees.stream().limit(5).collect(Collectors.toList()));
+        }
+        if (facturesPayeesMois != null) {
+            dashboard.put("facturesPayeesMois", facturesPayeesMois.size());
+            dashboard.put("dernieresFacturesPayees", facturesPayeesMois.stream().limit(5).collect(Collectors.toList()));
+        }
+        dashboard.put("partiel", resultats.estPartiel());
+        dashboard.put("partiesEnErreur", resultats.getErreurs());
+        return dashboard;
+    }
+
+    /**
+     * Les six requêtes des statistiques des factures, séparées pour être parallélisées
+     */
+    private Map<String, Supplier<?>> partiesStatistiques() {
+        LocalDate debutMois = LocalDate.now().withDayOfMonth(1);
+        LocalDate finMois = LocalDate.now().withDayOfMonth(LocalDate.now().lengthOfMonth());
+
+        Map<String, Supplier<?>> parties = new LinkedHashMap<>();
+        parties.put("totalFactures", factureRepository::count);
+        parties.put("facturesEnAttente", () -> factureRepository.countByStatut(StatutFacture.EN_ATTENTE));
+        parties.put("facturesPayees", () -> factureRepository.countByStatut(StatutFacture.PAYEE));
+        parties.put("facturesAnnulees", () -> factureRepository.countByStatut(StatutFacture.ANNULEE));
+        parties.put("chiffreAffairesMois", () -> factureRepository.sumMontantTTCByStatutAndDateFactureBetween(
+                StatutFacture.PAYEE, debutMois.atStartOfDay(), finMois.atTime(23, 59, 59)));
+        parties.put("chiffreAffairesTotal", () -> factureRepository.sumMontantTTCByStatut(StatutFacture.PAYEE));
+        return parties;
+    }
+
+    /**
+     * Assembler les statistiques ; une partie en échec reste à null (voir partiesEnErreur)
+     */
+    private FactureService.FactureStatistiques statistiques(AgregationParallele.Resultats resultats) {
+        FactureService.FactureStatistiques stats = new FactureService.FactureStatistiques();
+        stats.setTotalFactures(resultats.get("totalFactures"));
+        stats.setFacturesEnAttente(resultats.get("facturesEnAttente"));
+        stats.setFacturesPayees(resultats.get("facturesPayees"));
+        stats.setFacturesAnnulees(resultats.get("facturesAnnulees"));
+        stats.setChiffreAffairesMois(montant(resultats, "chiffreAffairesMois"));
+        stats.setChiffreAffairesTotal(montant(resultats, "chiffreAffairesTotal"));
+        stats.setPartiesEnErreur(resultats.getErreurs());
+        return stats;
+    }
+
+    private BigDecimal montant(AgregationParallele.Resultats resultats, String nom) {
+        BigDecimal montant = resultats.get(nom);
+        if (montant == null && !resultats.getErreurs().containsKey(nom)) {
+            return BigDecimal.ZERO;
+        }
+        return montant;
+    }
+}
@@ -3,6 +3,7 @@
 
 import com.facturation.facture.model.User;
 import com.facturation.facture.model.enums.Role;
+import com.facturation.facture.repository.NotificationRepository;
 import com.facturation.facture.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,10 +18,12 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final NotificationRepository notificationRepository;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, NotificationRepository notificationRepository) {
         this.userRepository = userRepository;
+        this.notificationRepository = notificationRepository;
     }
 
 
@@ -138,6 +141,8 @@ public class UserService {
             throw new RuntimeException("Impossible de supprimer le client car il a des commandes associées");
         }
 
+        // Suppression en masse plutôt que le chargement de la collection par cascade
+        notificationRepository.supprimerParUtilisateur(idClient);
         userRepository.deleteById(idClient);
     }
 
@@ -0,0 +1,133 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.dto.TopClientDTO;
+import com.facturation.facture.dto.TopProduitDTO;
+import com.facturation.facture.event.CommandesStatutModifieEvent;
+import com.facturation.facture.repository.VenteClientJourRepository;
+import com.facturation.facture.repository.VenteProduitJourRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cumuls journaliers des ventes (client x jour, produit x jour), tenus à jour à chaque
+ * passage d'une commande en statut vendu, et classements top-K calculés sur ces cumuls
+ */
+@Service
+@Transactional
+public class VentesService {
+
+    private static final Logger log = LoggerFactory.getLogger(VentesService.class);
+
+    public static final int K_MAX = 100;
+
+    private static final LocalDate DEBUT_HISTORIQUE = LocalDate.of(2000, 1, 1);
+
+    private final VenteClientJourRepository venteClientJourRepository;
+    private final VenteProduitJourRepository venteProduitJourRepository;
+
+    @Autowired
+    public VentesService(VenteClientJourRepository venteClientJourRepository,
+                         VenteProduitJourRepository venteProduitJourRepository) {
+        this.venteClientJourRepository = venteClientJourRepository;
+        this.venteProduitJourRepository = venteProduitJourRepository;
+    }
+
+    /**
+     * Mettre à jour les cumuls dans la transaction qui change le statut des commandes
+     */
+    @EventListener
+    public void surChangementStatut(CommandesStatutModifieEvent event) {
+        List<Long> vendues = new ArrayList<>();
+        List<Long> retirees = new ArrayList<>();
+        for (CommandesStatutModifieEvent.Transition transition : event.getTransitions()) {
+            if (transition.devientVendue()) {
+                vendues.add(transition.getCommandeId());
+            } else if (transition.quitteVentes()) {
+                retirees.add(transition.getCommandeId());
+            }
+        }
+
+        if (!vendues.isEmpty()) {
+            venteClientJourRepository.cumulerCommandes(vendues, 1);
+            venteProduitJourRepository.cumulerLignesCommandes(vendues, 1);
+        }
+        if (!retirees.isEmpty()) {
+            venteClientJourRepository.cumulerCommandes(retirees, -1);
+            venteProduitJourRepository.cumulerLignesCommandes(retirees, -1);
+        }
+    }
+
+    /**
+     * Obtenir les k meilleurs clients sur la période
+     */
+    @Transactional(readOnly = true)
+    public List<TopClientDTO> obtenirTopClients(int k, CritereClassement critere, LocalDate dateDebut, LocalDate dateFin) {
+        PageRequest limite = PageRequest.of(0, borner(k));
+        LocalDate debut = dateDebut != null ? dateDebut : DEBUT_HISTORIQUE;
+        LocalDate fin = dateFin != null ? dateFin : LocalDate.now();
+
+        if (critere == CritereClassement.NOMBRE_COMMANDES) {
+            return venteClientJourRepository.findTopClientsParNombreCommandes(debut, fin, limite);
+        }
+        if (critere == CritereClassement.CHIFFRE_AFFAIRES) {
+            return venteClientJourRepository.findTopClientsParChiffreAffaires(debut, fin, limite);
+        }
+        throw new RuntimeException("Critère de classement des clients invalide : " + critere
+                + " (CHIFFRE_AFFAIRES ou NOMBRE_COMMANDES)");
+    }
+
+    /**
+     * Obtenir les k meilleurs produits sur la période
+     */
+    @Transactional(readOnly = true)
+    public List<TopProduitDTO> obtenirTopProduits(int k, CritereClassement critere, LocalDate dateDebut, LocalDate dateFin) {
+        PageRequest limite = PageRequest.of(0, borner(k));
+        LocalDate debut = dateDebut != null ? dateDebut : DEBUT_HISTORIQUE;
+        LocalDate fin = dateFin != null ? dateFin : LocalDate.now();
+
+        if (critere == CritereClassement.QUANTITE) {
+            return venteProduitJourRepository.findTopProduitsParQuantite(debut, fin, limite);
+        }
+        if (critere == CritereClassement.CHIFFRE_AFFAIRES) {
+            return venteProduitJourRepository.findTopProduitsParChiffreAffaires(debut, fin, limite);
+        }
+        throw new RuntimeException("Critère de classement des produits invalide : " + critere
+                + " (QUANTITE ou CHIFFRE_AFFAIRES)");
+    }
+
+    /**
+     * Reconstruire les cumuls depuis l'historique (après import ou correction manuelle)
+     */
+    public Map<String, Integer> reconstruireCumuls() {
+        venteClientJourRepository.viderTout();
+        venteProduitJourRepository.viderTout();
+        int lignesClients = venteClientJourRepository.reconstruireDepuisCommandes();
+        int lignesProduits = venteProduitJourRepository.reconstruireDepuisCommandes();
+        log.info("Cumuls de ventes reconstruits : {} lignes client/jour, {} lignes produit/jour",
+                lignesClients, lignesProduits);
+        return Map.of("lignesClientJour", lignesClients, "lignesProduitJour", lignesProduits);
+    }
+
+    private int borner(int k) {
+        if (k < 1) {
+            throw new RuntimeException("Le paramètre k doit être supérieur ou égal à 1");
+        }
+        return Math.min(k, K_MAX);
+    }
+
+    public enum CritereClassement {
+        CHIFFRE_AFFAIRES,
+        NOMBRE_COMMANDES,
+        QUANTITE
+    }
+}
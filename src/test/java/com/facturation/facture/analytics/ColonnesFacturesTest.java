@@ -0,0 +1,160 @@
+package com.facturation.facture.analytics;
+
+import com.facturation.facture.model.enums.ModePaiement;
+import com.facturation.facture.model.enums.StatutFacture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Copie colonnaire des factures : écritures, suppressions et agrégations filtrées
+ */
+class ColonnesFacturesTest {
+
+    private static final LocalDate JOUR = LocalDate.of(2025, 10, 19);
+
+    private ForkJoinPool pool;
+    private ColonnesFactures colonnes;
+
+    @BeforeEach
+    void preparer() {
+        pool = new ForkJoinPool(2);
+        colonnes = new ColonnesFactures();
+    }
+
+    @AfterEach
+    void nettoyer() {
+        pool.shutdown();
+    }
+
+    @Test
+    void agregeLesMontantsEnCentimes() {
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.CARTE_BANCAIRE, 10, "100.00", "19.00", "119.00");
+        enregistrer(2, JOUR, StatutFacture.PAYEE, ModePaiement.VIREMENT, 11, "50.005", "9.50", "59.51");
+
+        Map<Long, long[]> total = agreger(tout(), RegroupementFactures.AUCUN);
+
+        assertEquals(2, colonnes.nombreFactures());
+        assertArrayEquals(new long[]{2, 15001, 2850, 17851}, total.get(0L));
+    }
+
+    @Test
+    void remplaceUneFactureSansPerdreSonClient() {
+        enregistrer(1, JOUR, StatutFacture.EN_ATTENTE, ModePaiement.ESPECES, 10, "100.00", "19.00", "119.00");
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.ESPECES, -1, "80.00", "15.20", "95.20");
+
+        Map<Long, long[]> parClient = agreger(tout(), RegroupementFactures.CLIENT);
+
+        assertEquals(1, colonnes.nombreFactures());
+        assertArrayEquals(new long[]{1, 8000, 1520, 9520}, parClient.get(10L));
+        assertEquals(1, agreger(new FiltreFactures(List.of(StatutFacture.PAYEE), null, null, null, null),
+                RegroupementFactures.AUCUN).get(0L)[0]);
+    }
+
+    @Test
+    void ignoreLesFacturesSupprimeesEtLesRetablitALaReecriture() {
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.CHEQUE, 10, "10.00", "1.90", "11.90");
+        enregistrer(2, JOUR, StatutFacture.PAYEE, ModePaiement.CHEQUE, 10, "20.00", "3.80", "23.80");
+
+        colonnes.supprimer(1);
+        colonnes.supprimer(1);
+
+        assertFalse(colonnes.contient(1));
+        assertEquals(1, colonnes.nombreFactures());
+        assertArrayEquals(new long[]{1, 2000, 380, 2380}, agreger(tout(), RegroupementFactures.AUCUN).get(0L));
+
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.CHEQUE, -1, "10.00", "1.90", "11.90");
+
+        assertTrue(colonnes.contient(1));
+        assertEquals(2, colonnes.nombreFactures());
+        assertEquals(2, agreger(tout(), RegroupementFactures.CLIENT).get(10L)[0]);
+    }
+
+    @Test
+    void filtreParModeClientEtPeriode() {
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.VIREMENT, 10, "10.00", "1.90", "11.90");
+        enregistrer(2, JOUR.minusDays(1), StatutFacture.PAYEE, ModePaiement.VIREMENT, 10, "20.00", "3.80", "23.80");
+        enregistrer(3, JOUR, StatutFacture.PAYEE, null, 10, "30.00", "5.70", "35.70");
+        enregistrer(4, JOUR, StatutFacture.PAYEE, ModePaiement.VIREMENT, 11, "40.00", "7.60", "47.60");
+
+        Map<Long, long[]> filtre = agreger(new FiltreFactures(null, List.of(ModePaiement.VIREMENT), 10L, JOUR, JOUR),
+                RegroupementFactures.AUCUN);
+        Map<Long, long[]> sansMode = agreger(new FiltreFactures(null, Arrays.asList((ModePaiement) null),
+                null, null, null), RegroupementFactures.AUCUN);
+
+        assertArrayEquals(new long[]{1, 1000, 190, 1190}, filtre.get(0L));
+        assertArrayEquals(new long[]{1, 3000, 570, 3570}, sansMode.get(0L));
+    }
+
+    @Test
+    void regroupeParJourEtParMois() {
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.ESPECES, 10, "10.00", "1.90", "11.90");
+        enregistrer(2, JOUR, StatutFacture.PAYEE, ModePaiement.ESPECES, 10, "10.00", "1.90", "11.90");
+        enregistrer(3, LocalDate.of(2025, 9, 30), StatutFacture.PAYEE, ModePaiement.ESPECES, 10, "10.00", "1.90", "11.90");
+
+        Map<Long, long[]> parJour = agreger(tout(), RegroupementFactures.JOUR);
+        Map<Long, long[]> parMois = agreger(tout(), RegroupementFactures.MOIS);
+
+        assertEquals(2, parJour.get(JOUR.toEpochDay())[0]);
+        assertEquals(2, parMois.get(202510L)[0]);
+        assertEquals(1, parMois.get(202509L)[0]);
+    }
+
+    @Test
+    void agregeAuDelaDeLaCapaciteInitialeSurPlusieursTranches() {
+        int nombre = 200_000;
+        for (long id = 1; id <= nombre; id++) {
+            enregistrer(id, JOUR, id % 2 == 0 ? StatutFacture.PAYEE : StatutFacture.EN_ATTENTE,
+                    ModePaiement.CARTE_BANCAIRE, id % 7, "1.00", "0.19", "1.19");
+        }
+
+        Map<Long, long[]> parStatut = agreger(tout(), RegroupementFactures.STATUT);
+
+        assertEquals(nombre, colonnes.nombreFactures());
+        assertEquals(nombre / 2, parStatut.get((long) StatutFacture.PAYEE.ordinal())[0]);
+        assertEquals(nombre / 2, parStatut.get((long) StatutFacture.EN_ATTENTE.ordinal())[0]);
+        assertEquals(7, agreger(tout(), RegroupementFactures.CLIENT).size());
+    }
+
+    @Test
+    void viderRetireToutesLesFactures() {
+        enregistrer(1, JOUR, StatutFacture.PAYEE, ModePaiement.ESPECES, 10, "10.00", "1.90", "11.90");
+        colonnes.supprimer(1);
+        enregistrer(2, JOUR, StatutFacture.PAYEE, ModePaiement.ESPECES, 10, "10.00", "1.90", "11.90");
+
+        colonnes.vider();
+
+        assertEquals(0, colonnes.nombreFactures());
+        assertFalse(colonnes.contient(2));
+        assertTrue(agreger(tout(), RegroupementFactures.AUCUN).isEmpty());
+    }
+
+    private void enregistrer(long id, LocalDate jour, StatutFacture statut, ModePaiement mode, long clientId,
+                             String ht, String tva, String ttc) {
+        colonnes.enregistrer(id, jour, statut, mode, clientId, new BigDecimal(ht), new BigDecimal(tva), new BigDecimal(ttc));
+    }
+
+    private static FiltreFactures tout() {
+        return new FiltreFactures(null, null, null, null, null);
+    }
+
+    private Map<Long, long[]> agreger(FiltreFactures filtre, RegroupementFactures regroupement) {
+        Map<Long, long[]> resultat = new HashMap<>();
+        colonnes.agreger(filtre, regroupement, pool).parcourir(
+                (cle, nombre, ht, tva, ttc) -> resultat.put(cle, new long[]{nombre, ht, tva, ttc}));
+        return resultat;
+    }
+}
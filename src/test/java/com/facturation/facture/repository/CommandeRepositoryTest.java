@@ -0,0 +1,113 @@
+package com.facturation.facture.repository;
+
+import com.facturation.facture.model.Categorie;
+import com.facturation.facture.model.Commande;
+import com.facturation.facture.model.LigneCommande;
+import com.facturation.facture.model.Produit;
+import com.facturation.facture.model.User;
+import com.facturation.facture.model.enums.Role;
+import com.facturation.facture.model.enums.StatutCommande;
+import org.hibernate.LazyInitializationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Plans de chargement des commandes : chaque appel du dépôt dans sa propre transaction,
+ * comme depuis un service, puis accès hors transaction comme depuis un contrôleur
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CommandeRepositoryTest {
+
+    @Autowired
+    private CommandeRepository commandeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LigneCommandeRepository ligneCommandeRepository;
+
+    @Autowired
+    private ProduitRepository produitRepository;
+
+    @Autowired
+    private CategorieRepository categorieRepository;
+
+    private Commande commande;
+
+    @BeforeEach
+    void preparer() {
+        User client = userRepository.save(new User("client@test.fr", "motdepasse", "Dupont", "Jean", Role.CLIENT));
+        commande = new Commande(client);
+        commande.setNumeroCommande("CMD-20251019-0001");
+        commande = commandeRepository.save(commande);
+
+        Produit produit = new Produit();
+        produit.setNom("Clavier");
+        produit.setPrix(new BigDecimal("45.00"));
+        produit.setQuantiteStock(10);
+        produit.setCategorie(categorieRepository.save(new Categorie("Informatique", "Périphériques")));
+        produit = produitRepository.save(produit);
+        ligneCommandeRepository.save(new LigneCommande(2, new BigDecimal("45.00"), commande, produit));
+        ligneCommandeRepository.save(new LigneCommande(1, new BigDecimal("45.00"), commande, produit));
+    }
+
+    @AfterEach
+    void nettoyer() {
+        ligneCommandeRepository.deleteAllInBatch();
+        commandeRepository.deleteAllInBatch();
+        produitRepository.deleteAllInBatch();
+        categorieRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void listeChargeLeClientSansLesLignes() {
+        List<Commande> commandes = commandeRepository.findByStatut(StatutCommande.EN_ATTENTE);
+
+        assertEquals(1, commandes.size());
+        assertEquals("Dupont", commandes.get(0).getClient().getNom());
+        assertThrows(LazyInitializationException.class, () -> commandes.get(0).getLignesCommande().size());
+    }
+
+    @Test
+    void historiqueClientChargeLeClientSansLesLignes() {
+        List<Commande> commandes = commandeRepository.findByClientIdOrderByDateCommandeDesc(
+                commande.getClient().getId());
+
+        assertEquals(1, commandes.size());
+        assertEquals("Jean", commandes.get(0).getClient().getPrenom());
+        assertThrows(LazyInitializationException.class, () -> commandes.get(0).getLignesCommande().size());
+    }
+
+    @Test
+    void detailChargeLesLignes() {
+        Commande detail = commandeRepository.findByIdWithDetails(commande.getId()).orElseThrow();
+
+        assertEquals(2, detail.getLignesCommande().size());
+        assertEquals("Clavier", detail.getLignesCommande().get(0).getProduit().getNom());
+        assertEquals("Informatique", detail.getLignesCommande().get(0).getProduit().getCategorie().getNom());
+        assertEquals("Dupont", detail.getClient().getNom());
+    }
+
+    @Test
+    void accesParesseuxHorsPlanEchoue() {
+        Commande sansPlan = commandeRepository.findById(commande.getId()).orElseThrow();
+
+        assertThrows(LazyInitializationException.class, () -> sansPlan.getLignesCommande().size());
+    }
+}
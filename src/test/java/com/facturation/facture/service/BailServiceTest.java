@@ -0,0 +1,113 @@
+package com.facturation.facture.service;
+
+import com.facturation.facture.bail.BailDetenu;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Baux sur une base H2 embarquée : deux instances de BailService jouent deux nœuds
+ */
+class BailServiceTest {
+
+    private static final Duration DUREE = Duration.ofSeconds(60);
+
+    private EmbeddedDatabase base;
+    private JdbcTemplate jdbcTemplate;
+    private BailService noeudA;
+    private BailService noeudB;
+
+    @BeforeEach
+    void preparer() {
+        base = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("baux-" + UUID.randomUUID())
+                .build();
+        jdbcTemplate = new JdbcTemplate(base);
+        jdbcTemplate.execute("CREATE TABLE baux (nom VARCHAR(100) PRIMARY KEY, proprietaire VARCHAR(150) NOT NULL, " +
+                "expire_le TIMESTAMP(3) NOT NULL, jeton BIGINT DEFAULT 0 NOT NULL)");
+        noeudA = new BailService(jdbcTemplate);
+        noeudB = new BailService(jdbcTemplate);
+    }
+
+    @AfterEach
+    void nettoyer() {
+        noeudA.arreter();
+        noeudB.arreter();
+        base.shutdown();
+    }
+
+    @Test
+    void acquiertUnBailLibre() {
+        Optional<BailDetenu> bail = noeudA.acquerir("test", DUREE);
+
+        assertTrue(bail.isPresent());
+        assertEquals(1, bail.get().getJeton());
+        assertEquals(noeudA.getIdentifiantNoeud(),
+                jdbcTemplate.queryForObject("SELECT proprietaire FROM baux WHERE nom = 'test'", String.class));
+    }
+
+    @Test
+    void refuseUnBailDetenuParUnAutreNoeud() {
+        assertTrue(noeudA.acquerir("test", DUREE).isPresent());
+
+        assertTrue(noeudB.acquerir("test", DUREE).isEmpty());
+        AtomicBoolean execute = new AtomicBoolean();
+        assertFalse(noeudB.executerSousBail("test", DUREE, () -> execute.set(true)));
+        assertFalse(execute.get());
+    }
+
+    @Test
+    void conserveLeJetonQuandLeDetenteurReprendSonBail() {
+        long jeton = noeudA.acquerir("test", DUREE).orElseThrow().getJeton();
+
+        assertEquals(jeton, noeudA.acquerir("test", DUREE).orElseThrow().getJeton());
+    }
+
+    @Test
+    void incrementeLeJetonALaRepriseDUnBailExpire() {
+        long jetonA = noeudA.acquerir("test", DUREE).orElseThrow().getJeton();
+        expirer("test");
+
+        Optional<BailDetenu> bailB = noeudB.acquerir("test", DUREE);
+
+        assertTrue(bailB.isPresent());
+        assertEquals(jetonA + 1, bailB.get().getJeton());
+    }
+
+    @Test
+    void refuseLesEcrituresDUnJetonPerime() {
+        AtomicBoolean verifieAvantReprise = new AtomicBoolean();
+
+        assertThrows(RuntimeException.class, () -> noeudA.executerSousBail("test", DUREE, () -> {
+            noeudA.verifierBailCourant();
+            verifieAvantReprise.set(true);
+
+            // Le bail de A expire et B le reprend : le jeton de A est désormais périmé
+            expirer("test");
+            assertTrue(noeudB.acquerir("test", DUREE).isPresent());
+            noeudA.verifierBailCourant();
+        }));
+        assertTrue(verifieAvantReprise.get());
+        assertEquals(noeudB.getIdentifiantNoeud(),
+                jdbcTemplate.queryForObject("SELECT proprietaire FROM baux WHERE nom = 'test'", String.class));
+    }
+
+    private void expirer(String nom) {
+        jdbcTemplate.update("UPDATE baux SET expire_le = TIMESTAMP '1970-01-01 00:00:01' WHERE nom = ?", nom);
+    }
+}